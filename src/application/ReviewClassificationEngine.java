@@ -0,0 +1,372 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package application;
+
+import indexing.Token;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import lexicon.SentimentLexicon;
+import lexicon.TermSentiment.Sentiment;
+import topics.TopicLexicon;
+import util.AppLogger;
+import wordnet.Synset;
+import classes.Review;
+import dependencies.DependencyTreeParse;
+import dependencies.ParsedCorpus;
+import dependencies.ReviewDependencyAnalyzer;
+import dependencies.rules.DependencyRuleSet;
+
+
+/**
+ * Classifies sentences, reviews and whole corpora against a set of sentiment and topic lexicons,
+ * spreading the work over a pool of worker threads. Reviews of a corpus are classified
+ * concurrently, one review per task, while the sentences of a single review or text are classified
+ * concurrently, one sentence per task.
+ * <p>
+ * Every worker parses with its own {@link ReviewDependencyAnalyzer} chain and its own Stanford
+ * parser, as handed out by {@link util.ModelRegistry}. The lexicons and the rule set are shared
+ * among workers, and must therefore be safe for concurrent reads. The number of tasks in flight is
+ * bounded, so that corpora of any size can be streamed through the engine, and task results are
+ * merged in submission order, so that the output is identical to that of a sequential run.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ReviewClassificationEngine {
+	
+	private SentimentLexicon								mainLexicon		= null;
+	private SentimentLexicon								auxLexicon		= null;
+	private TopicLexicon<Synset>							topicLexicon	= null;
+	private DependencyRuleSet								ruleset			= null;
+	
+	private ExecutorService									workers			= null;
+	private int												maxInFlight		= 1;
+	
+	private final ThreadLocal<ReviewDependencyAnalyzer>	analyzers		= new ThreadLocal<ReviewDependencyAnalyzer>() {
+		
+		@Override
+		protected ReviewDependencyAnalyzer initialValue()
+		{
+			return new ReviewDependencyAnalyzer();
+		}
+	};
+	
+	/**
+	 * Merges the results of a sequence of tasks in the order the tasks were submitted. At most
+	 * {@link ReviewClassificationEngine#maxInFlight} tasks are queued or running at any time;
+	 * submitting another task blocks until the oldest one completes. If the engine has no worker
+	 * pool, tasks are run right away on the calling thread.
+	 */
+	private abstract class OrderedMerger<T> {
+		
+		private LinkedList<Future<T>>	inFlight	= new LinkedList<Future<T>>();
+		
+		protected abstract void merge(T result);
+		
+		public void submit(Callable<T> task)
+		{
+			if (workers == null) {
+				try {
+					merge(task.call());
+				} catch ( Exception e ) {
+					AppLogger.error.log(Level.SEVERE, "Classification failed: " + e);
+					throw new RuntimeException("Exiting application", e);
+				}
+			}
+			else {
+				if (inFlight.size() >= maxInFlight) {
+					mergeNext();
+				}
+				inFlight.add(workers.submit(task));
+			}
+		}
+		
+		public void finish()
+		{
+			while ( !inFlight.isEmpty() ) {
+				mergeNext();
+			}
+		}
+		
+		private void mergeNext()
+		{
+			try {
+				merge(inFlight.removeFirst().get());
+			} catch ( InterruptedException e ) {
+				cancelAll();
+				AppLogger.error.log(Level.SEVERE, "Classification was interrupted");
+				throw new RuntimeException("Exiting application", e);
+			} catch ( ExecutionException e ) {
+				cancelAll();
+				AppLogger.error.log(Level.SEVERE, "Classification failed: " + e.getCause());
+				throw new RuntimeException("Exiting application", e.getCause());
+			}
+		}
+		
+		private void cancelAll()
+		{
+			for (Future<T> task : inFlight) {
+				task.cancel(true);
+			}
+			inFlight.clear();
+		}
+	}
+	
+	/**
+	 * Merges topic-to-sentiment results into lists of non-neutral sentiments per topic
+	 */
+	private class SentimentMerger extends OrderedMerger<Map<String, Sentiment>> {
+		
+		private LinkedHashMap<String, ArrayList<Sentiment>>	sentiments	= new LinkedHashMap<String, ArrayList<Sentiment>>();
+		
+		/*
+		 * (non-Javadoc)
+		 * @see application.ReviewClassificationEngine.OrderedMerger#merge(java.lang.Object)
+		 */
+		@Override
+		protected void merge(Map<String, Sentiment> topic_sentiments)
+		{
+			for (Entry<String, Sentiment> topic_sentiment : topic_sentiments.entrySet()) {
+				if (!topic_sentiment.getValue().isNeutral()) {
+					ArrayList<Sentiment> topic_list = sentiments.get(topic_sentiment.getKey());
+					if (topic_list == null) {
+						topic_list = new ArrayList<Sentiment>();
+						sentiments.put(topic_sentiment.getKey(), topic_list);
+					}
+					topic_list.add(topic_sentiment.getValue());
+				}
+			}
+		}
+		
+		public LinkedHashMap<String, ArrayList<Sentiment>> getSentiments()
+		{
+			finish();
+			return sentiments;
+		}
+	}
+	
+	/**
+	 * Constructor for class ReviewClassificationEngine
+	 * 
+	 * @param threads
+	 *            The number of worker threads. If 1 or less, all classification is done on the
+	 *            calling thread.
+	 */
+	public ReviewClassificationEngine(SentimentLexicon mainLexicon, SentimentLexicon auxLexicon,
+			TopicLexicon<Synset> topicLexicon, DependencyRuleSet ruleset, int threads)
+	{
+		this.mainLexicon = mainLexicon;
+		this.auxLexicon = auxLexicon;
+		this.topicLexicon = topicLexicon;
+		this.ruleset = ruleset;
+		
+		if (threads > 1) {
+			maxInFlight = 4 * threads;
+			workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				
+				private int	count	= 0;
+				
+				@Override
+				public synchronized Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "classifier-" + ++count);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+	
+	/**
+	 * @return the analyzer of the calling thread
+	 */
+	public ReviewDependencyAnalyzer getAnalyzer()
+	{
+		return analyzers.get();
+	}
+	
+	/**
+	 * Parses a sentence and classifies it on the calling thread
+	 * 
+	 * @return the sentiment of each topic found in the sentence, or an empty map if the sentence
+	 *         could not be parsed
+	 */
+	public Map<String, Sentiment> classifySentence(ArrayList<Token> sentence)
+	{
+		try {
+			return new DependencyTreeParse(sentence).parse(ruleset, mainLexicon, auxLexicon, topicLexicon, false);
+		} catch ( IllegalArgumentException e ) {
+			return new HashMap<String, Sentiment>();
+		}
+	}
+	
+	/**
+	 * Classifies a list of sentences concurrently, one sentence per task
+	 * 
+	 * @return the non-neutral sentiments of each topic, in sentence order
+	 */
+	public Map<String, ArrayList<Sentiment>> classifySentences(ArrayList<ArrayList<Token>> sentences)
+	{
+		SentimentMerger merger = new SentimentMerger();
+		
+		for (final ArrayList<Token> sentence : sentences) {
+			merger.submit(new Callable<Map<String, Sentiment>>() {
+				
+				@Override
+				public Map<String, Sentiment> call() throws Exception
+				{
+					return classifySentence(sentence);
+				}
+			});
+		}
+		
+		return merger.getSentiments();
+	}
+	
+	/**
+	 * Classifies the sentences of a review concurrently, one sentence per task
+	 * 
+	 * @return the non-neutral sentiments of each topic, in sentence order
+	 */
+	public Map<String, ArrayList<Sentiment>> classifyReview(Review review)
+	{
+		return classifySentences(getAnalyzer().getSentences(review));
+	}
+	
+	/**
+	 * Classifies a stream of reviews concurrently, one review per task. Each review is split into
+	 * sentences and classified by a single worker, and its sentiments are then aggregated per topic.
+	 * 
+	 * @return the non-neutral aggregate sentiments of each topic, in review order
+	 */
+	public Map<String, ArrayList<Sentiment>> classifyCorpus(Iterator<Review> reviews)
+	{
+		SentimentMerger merger = new SentimentMerger();
+		
+		while ( reviews.hasNext() ) {
+			final Review review = reviews.next();
+			merger.submit(new Callable<Map<String, Sentiment>>() {
+				
+				@Override
+				public Map<String, Sentiment> call() throws Exception
+				{
+					HashMap<String, ArrayList<Sentiment>> review_sentiments = new HashMap<String, ArrayList<Sentiment>>();
+					for (ArrayList<Token> sentence : getAnalyzer().getSentences(review)) {
+						collectSentiments(review_sentiments, classifySentence(sentence));
+					}
+					return aggregateSentiments(review_sentiments);
+				}
+			});
+		}
+		
+		return merger.getSentiments();
+	}
+	
+	/**
+	 * Classifies the sentences of a pre-parsed corpus concurrently, one review per task. Consecutive
+	 * sentences of the same review are classified by a single worker, and their sentiments are then
+	 * aggregated per topic. No sentences are tokenized or parsed during classification.
+	 * 
+	 * @return the non-neutral aggregate sentiments of each topic, in review order
+	 */
+	public Map<String, ArrayList<Sentiment>> classifyCorpus(ParsedCorpus corpus)
+	{
+		SentimentMerger merger = new SentimentMerger();
+		
+		Iterator<ParsedCorpus.ParsedSentence> sentence_i = corpus.iterator();
+		ParsedCorpus.ParsedSentence sentence = sentence_i.hasNext() ? sentence_i.next() : null;
+		while ( sentence != null ) {
+			final ArrayList<ParsedCorpus.ParsedSentence> review = new ArrayList<ParsedCorpus.ParsedSentence>();
+			int reviewid = sentence.getReviewId();
+			do {
+				review.add(sentence);
+				sentence = sentence_i.hasNext() ? sentence_i.next() : null;
+			} while ( sentence != null && sentence.getReviewId() == reviewid );
+			
+			merger.submit(new Callable<Map<String, Sentiment>>() {
+				
+				@Override
+				public Map<String, Sentiment> call() throws Exception
+				{
+					HashMap<String, ArrayList<Sentiment>> review_sentiments = new HashMap<String, ArrayList<Sentiment>>();
+					for (ParsedCorpus.ParsedSentence parsed_sentence : review) {
+						collectSentiments(review_sentiments, parsed_sentence.getTreeParse().parse(ruleset, mainLexicon,
+							auxLexicon, topicLexicon, false));
+					}
+					return aggregateSentiments(review_sentiments);
+				}
+			});
+		}
+		
+		return merger.getSentiments();
+	}
+	
+	/*
+	 * Adds the non-neutral sentiments of a sentence to the sentiment lists of their topics
+	 */
+	private static void collectSentiments(Map<String, ArrayList<Sentiment>> sentiments,
+			Map<String, Sentiment> sentence_sentiments)
+	{
+		for (Entry<String, Sentiment> topic_sentiment : sentence_sentiments.entrySet()) {
+			if (!topic_sentiment.getValue().isNeutral()) {
+				if (!sentiments.containsKey(topic_sentiment.getKey())) {
+					sentiments.put(topic_sentiment.getKey(), new ArrayList<Sentiment>());
+				}
+				sentiments.get(topic_sentiment.getKey()).add(topic_sentiment.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * @return the average sentiment of each topic
+	 */
+	public static Map<String, Sentiment> aggregateSentiments(Map<String, ArrayList<Sentiment>> sentiments)
+	{
+		LinkedHashMap<String, Sentiment> aggregate_map = new LinkedHashMap<String, Sentiment>();
+		for (Entry<String, ArrayList<Sentiment>> topic : sentiments.entrySet()) {
+			aggregate_map.put(topic.getKey(), Sentiment.average(topic.getValue()));
+		}
+		return aggregate_map;
+	}
+	
+	/**
+	 * Stops the worker threads, after letting any submitted tasks complete
+	 */
+	public void shutdown()
+	{
+		if (workers != null) {
+			workers.shutdown();
+		}
+	}
+}
@@ -32,10 +32,7 @@ import java.io.InputStreamReader;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import lexicon.GeneralInquirerLexicon;
@@ -47,18 +44,21 @@ import lexicon.TermSentiment.Polarity;
 import lexicon.TermSentiment.Sentiment;
 import lexicon.TermSentiment.Sentiment.SentimentFormat;
 import lexicon.classifiers.WidestWindowSentimentClassifier;
+import org.apache.commons.lang.ArrayUtils;
 import topics.FastLookupTopicLexicon;
 import topics.TopicLexicon;
 import util.AppLogger;
 import util.DatabaseConnection;
+import util.ModelRegistry;
 import wordnet.Synset;
 import classes.Counter;
 import classes.DatabaseReview;
+import classes.DatabaseReviewStream;
 import classes.Review;
 import classes.ReviewCollection;
 import config.Globals;
 import config.Paths;
-import dependencies.ReviewDependencyAnalyzer;
+import dependencies.ParsedCorpus;
 import dependencies.rules.DependencyRule;
 import dependencies.rules.PatternCollectorRuleSet;
 import dependencies.rules.SimpleEnglishRules;
@@ -73,7 +73,7 @@ import dependencies.visualisation.DependencyTreeParseViz;
  */
 public class ReviewClassifierShell {
 	
-	private ReviewDependencyAnalyzer	analyzer		= null;
+	private ReviewClassificationEngine	engine			= null;
 	private SentimentLexicon			mainLexicon		= null;
 	private SentimentLexicon			auxLexicon		= null;
 	private TopicLexicon<Synset>		topicLexicon	= null;
@@ -81,12 +81,24 @@ public class ReviewClassifierShell {
 	private PatternCollectorRuleSet		patternset		= null;
 	private StatsRuleSet				ruleset			= null;
 	
+	private boolean						visualize		= false;
+	
 	/**
 	 * Constructor for class ReviewClassifierShell
 	 */
 	public ReviewClassifierShell()
 	{
-		analyzer = new ReviewDependencyAnalyzer();
+		this(1);
+	}
+	
+	/**
+	 * Constructor for class ReviewClassifierShell
+	 * 
+	 * @param threads
+	 *            The number of threads that reviews and sentences are classified on
+	 */
+	public ReviewClassifierShell(int threads)
+	{
 		// mainLexicon = new SentimentLexicon(false);
 		mainLexicon = SentimentLexicon.loadLexicon(new WidestWindowSentimentClassifier(), PayloadFilters.FILTER_PLAIN);
 		// auxLexicon = new SentimentLexicon(false);
@@ -94,6 +106,7 @@ public class ReviewClassifierShell {
 		// topicLexicon = new FastLookupTopicLexicon<Synset>(new HashMap<Synset, String>());
 		topicLexicon = FastLookupTopicLexicon.loadLexicon();
 		ruleset = new StatsRuleSet(SimpleEnglishRules.defaultRules, SimpleEnglishRules.clausalRelations);
+		engine = new ReviewClassificationEngine(mainLexicon, auxLexicon, topicLexicon, ruleset, threads);
 	}
 	
 	/**
@@ -101,11 +114,11 @@ public class ReviewClassifierShell {
 	 */
 	public ReviewClassifierShell(SentimentLexicon mainLexicon, SentimentLexicon auxLexicon)
 	{
-		analyzer = new ReviewDependencyAnalyzer();
 		this.mainLexicon = mainLexicon;
 		this.auxLexicon = auxLexicon;
 		topicLexicon = FastLookupTopicLexicon.loadLexicon();
 		ruleset = new StatsRuleSet(SimpleEnglishRules.defaultRules, SimpleEnglishRules.clausalRelations);
+		engine = new ReviewClassificationEngine(mainLexicon, auxLexicon, topicLexicon, ruleset, 1);
 	}
 	
 	/**
@@ -120,6 +133,9 @@ public class ReviewClassifierShell {
 
 	private Map<String, Sentiment> classifySentence(ArrayList<Token> sentence)
 	{
+		if (!visualize)
+			return engine.classifySentence(sentence);
+		
 		try {
 			return classify(new DependencyTreeParseViz(sentence));
 		} catch ( IllegalArgumentException e ) {
@@ -129,63 +145,22 @@ public class ReviewClassifierShell {
 	
 	private Map<String, ArrayList<Sentiment>> classifySentences(ArrayList<ArrayList<Token>> sentences)
 	{
-		HashMap<String, ArrayList<Sentiment>> sentiments = new HashMap<String, ArrayList<Sentiment>>();
-		for (ArrayList<Token> sentence : sentences) {
-			try {
-				Set<Entry<String, Sentiment>> sentence_topics = classify(new DependencyTreeParseViz(sentence))
-					.entrySet();
-				
-				for (Entry<String, Sentiment> sentence_topic : sentence_topics) {
-					if (!sentence_topic.getValue().isNeutral()) {
-						if (!sentiments.containsKey(sentence_topic.getKey())) {
-							sentiments.put(sentence_topic.getKey(), new ArrayList<Sentiment>());
-						}
-						sentiments.get(sentence_topic.getKey()).add(sentence_topic.getValue());
-					}
-				}
-			} catch ( IllegalArgumentException e ) {
-				continue;
-			}
-		}
-		
-		return sentiments;
+		return engine.classifySentences(sentences);
 	}
 
 	private Map<String, ArrayList<Sentiment>> classifyReview(Review review)
 	{
-		return classifySentences(analyzer.getSentences(review));
+		return engine.classifyReview(review);
 	}
 	
 	private Map<String, ArrayList<Sentiment>> classifyCorpus(ReviewCollection corpus)
 	{
-		LinkedHashMap<String, ArrayList<Sentiment>> corpus_sentiments = new LinkedHashMap<String, ArrayList<Sentiment>>();
-		Iterator<Review> review_iterator = corpus.getIterator();
-		while ( review_iterator.hasNext() ) {
-			Review review = review_iterator.next();
-			Map<String, Sentiment> review_sentiment = aggregateSentiments(classifyReview(review));
-			Set<Entry<String, Sentiment>> review_sentiment_entries = review_sentiment.entrySet();
-			for (Entry<String, Sentiment> review_sentiment_entry : review_sentiment_entries) {
-				if (!review_sentiment_entry.getValue().isNeutral()) {
-					if (!corpus_sentiments.containsKey(review_sentiment_entry.getKey())) {
-						corpus_sentiments.put(review_sentiment_entry.getKey(), new ArrayList<Sentiment>());
-					}
-					
-					corpus_sentiments.get(review_sentiment_entry.getKey()).add(review_sentiment_entry.getValue());
-				}
-			}
-		}
-		
-		return corpus_sentiments;
+		return engine.classifyCorpus(corpus.getIterator());
 	}
 	
 	private Map<String, Sentiment> aggregateSentiments(Map<String, ArrayList<Sentiment>> sentiments)
 	{
-		LinkedHashMap<String, Sentiment> aggregate_map = new LinkedHashMap<String, Sentiment>();
-		Set<Entry<String, ArrayList<Sentiment>>> topics = sentiments.entrySet();
-		for (Entry<String, ArrayList<Sentiment>> topic : topics) {
-			aggregate_map.put(topic.getKey(), Sentiment.average(topic.getValue()));
-		}
-		return aggregate_map;
+		return ReviewClassificationEngine.aggregateSentiments(sentiments);
 	}
 	
 	private void printResult(Map<String, Sentiment> topic_map)
@@ -259,6 +234,7 @@ public class ReviewClassifierShell {
 	private void processShellCommand(String input)
 	{
 		if (input.isEmpty()) {
+			ModelRegistry.printLoadStatistics();
 			System.exit(0);
 		}
 		else if (input.startsWith("~")) {
@@ -271,7 +247,7 @@ public class ReviewClassifierShell {
 				
 				try {
 					BufferedReader r = new BufferedReader(new FileReader(inputfile));
-					printResults(classifySentences(analyzer.getSentences(r)));
+					printResults(classifySentences(engine.getAnalyzer().getSentences(r)));
 				} catch ( FileNotFoundException e ) {
 					AppLogger.error.log(Level.SEVERE, "File not found or cannot be opened");
 				}
@@ -333,12 +309,42 @@ public class ReviewClassifierShell {
 					}
 				}
 			}
+			else if (args[0].equals("corpus")) {
+				// Classify all reviews in the given range of review ids
+				String[] arg_array = args.length > 1 ? args[1].split("\\D+") : new String[0];
+				if (arg_array.length < 2) {
+					AppLogger.error.log(Level.WARNING, "Usage: ~corpus {first reviewid} {last reviewid}");
+					return;
+				}
+				try {
+					DatabaseReviewStream corpus = new DatabaseReviewStream();
+					corpus.setLimits(Integer.parseInt(arg_array[0]) - 1, Integer.parseInt(arg_array[1]));
+					try {
+						printResults(engine.classifyCorpus(corpus.iterator()));
+					} finally {
+						corpus.close();
+					}
+				} catch ( SQLException e ) {
+					AppLogger.error.log(Level.SEVERE, "Error connecting to database: " + e.getMessage());
+				}
+			}
+			else if (args[0].equals("parsed")) {
+				// Classify all reviews in a pre-parsed corpus file
+				try {
+					ParsedCorpus corpus = args.length > 1 ? new ParsedCorpus(new File(args[1].trim())) : ParsedCorpus
+						.open();
+					printResults(engine.classifyCorpus(corpus));
+					corpus.close();
+				} catch ( IOException e ) {
+					AppLogger.error.log(Level.SEVERE, "Cannot open parsed corpus: " + e.getMessage());
+				}
+			}
 			else if (args[0].equals("movie")) {
 				System.err.println("Not Implemented");
 			}
 		}
 		else {
-			ArrayList<ArrayList<Token>> sentences = analyzer.getSentences(input);
+			ArrayList<ArrayList<Token>> sentences = engine.getAnalyzer().getSentences(input);
 			switch (sentences.size()) {
 				case 0:
 					AppLogger.error.log(Level.WARNING, "Input is not a sentence");
@@ -355,8 +361,18 @@ public class ReviewClassifierShell {
 
 	public static void main(String[] args) throws IOException
 	{
+		// Classify reviews and sentences on a pool of worker threads, if requested
+		int threads = 1;
+		int pos = ArrayUtils.indexOf(args, "--threads");
+		if (pos != ArrayUtils.INDEX_NOT_FOUND && pos + 1 < args.length) {
+			threads = Math.max(1, Integer.parseInt(args[pos + 1]));
+		}
+		
 		System.out.println("Initializing classifier...");
-		ReviewClassifierShell reviewClassifier = new ReviewClassifierShell();
+		ReviewClassifierShell reviewClassifier = new ReviewClassifierShell(threads);
+		
+		// Render the parse of single sentences to dot files, if requested
+		reviewClassifier.visualize = ArrayUtils.contains(args, "--visualize");
 		
 		BufferedReader r = new BufferedReader(new InputStreamReader(System.in));
 		String input;
@@ -27,24 +27,36 @@ import indexing.SynsetTermsAggregator;
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriter.MaxFieldLength;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.lucene.store.SimpleFSDirectory;
 import topics.TokenListsCollector;
+import util.AnalysisProfiler;
 import util.AppLogger;
+import util.ModelRegistry;
 import util.State;
+import wordnet.DictionaryFactory;
+import wordnet.WordnetCache;
+import wordnet.WordnetLookup;
 import classes.DatabaseReview;
-import classes.DatabaseReviewCollection;
+import classes.DatabaseReviewStream;
 import classes.Review;
 import classes.ReviewId;
 import classes.ReviewStats;
+import config.Globals;
 import config.Paths;
 
 
@@ -65,6 +77,8 @@ public class ReviewDocumentIndexer {
 		public static int		maxMergeDocs	= 10000;
 		/** Minimum number of index segments required before merging takes place */
 		public static int		mergeFactor		= 10;
+		/** Default number of concurrent analysis workers. A value of 1 disables concurrent indexing */
+		public static int		workerThreads	= 1;
 	}
 	
 	/**
@@ -74,10 +88,15 @@ public class ReviewDocumentIndexer {
 												+ "ReviewDocumentIndexer [options]\n\n"
 												+ "--new            \tStarts indexing from the beginning. Previous index will be overwritten.\n"
 												+ "--resume         \tResumes indexing from the point it was last stopped\n"
-																	+ "--update         \tResumes indexing from the beginning of the database\n"
+																	+ "--update         \tIndexes the reviews added since the last run, replacing any that are already indexed\n"
 												+ "--restore        \tRestores index from the latest backup copy, then resumes indexing\n"
 												+ "--stop-after {n} \tSave state, backup index and exit after processing {n} reviews\n"
-												+ "--pause-every {n}\tPause indexing and save state every {n} reviews";
+												+ "--pause-every {n}\tPause indexing and save state every {n} reviews\n"
+												+ "--threads {n}    \tAnalyze reviews with {n} concurrent workers sharing a single index writer\n"
+												+ "--prewarm {n}    \tPrewarm the wordnet lookup cache with the {n} most frequent terms of the index\n"
+												+ "--compiled-wordnet\tLemmatize with the compiled wordnet lexicon instead of JWNL. Lemmas may differ.\n"
+												+ "--tokenlist-ids  \tWrite topic modeller token lists as term ids of a shared vocabulary file\n"
+												+ "--profile        \tRecord time, tokens and allocations per analysis stage and report them at every pause";
 
 	// private Document reviewDocument = null;
 	// private Analyzer reviewDocumentAnalyzer = null;
@@ -88,15 +107,19 @@ public class ReviewDocumentIndexer {
 	public ReviewStats						theStats			= new ReviewStats();
 	public TokenListsCollector				theTokenLists		= new TokenListsCollector();
 	public SynsetTermsAggregator			theSynsets			= new SynsetTermsAggregator();
+	public AnalysisProfiler					theProfiler			= null;
 	private State<ReviewId>					reviewId_state		= null;
 	private State<ReviewStats>				stats_state			= null;
 	private State<TokenListsCollector>		tokenlists_state	= null;
 	private State<SynsetTermsAggregator>	synsets_state		= null;
 	
 	private boolean							new_index			= false;
+	private boolean							upsert				= false;
 	private int								min_reviewid		= 0;
 	private int								stop_after			= 0;
 	private int								pause_every			= 10000;
+	private int								threads				= Config.workerThreads;
+	private int								prewarm_terms		= 0;
 
 	public ReviewDocumentIndexer()
 	{
@@ -126,6 +149,9 @@ public class ReviewDocumentIndexer {
 	
 	public void backupIndex()
 	{
+		// Wait for any state files still being written
+		State.awaitBackgroundSaves();
+		
 		// Making a backup of the lucene index
 		File luceneIndex = new File(Paths.luceneIndex);
 		File luceneBackup = new File(Paths.luceneBackupIndex);
@@ -172,11 +198,12 @@ public class ReviewDocumentIndexer {
 		tokenlists_state.setObj(theTokenLists);
 		synsets_state.setObj(theSynsets);
 
-		// Serializing objects
-		reviewId_state.saveState();
-		stats_state.saveState();
-		tokenlists_state.saveState();
-		synsets_state.saveState();
+		// Encoding objects. State files are written in the background, so that indexing can go on
+		// while they are being written
+		reviewId_state.saveStateInBackground();
+		stats_state.saveStateInBackground();
+		tokenlists_state.saveStateInBackground();
+		synsets_state.saveStateInBackground();
 	}
 	
 	public void setCurrentReview(DatabaseReview r)
@@ -188,6 +215,30 @@ public class ReviewDocumentIndexer {
 		theStats.setCurrent(review_id, rating);
 	}
 	
+	/**
+	 * Merges the side outputs collected by a concurrent indexing worker (review stats and synset
+	 * terms) into the state of this indexer, and clears them in the worker. Token lists are not
+	 * merged, as workers write them directly through the token lists collector of this indexer.
+	 * Meant to be called at every commit point, after all workers have finished indexing the current
+	 * segment.
+	 * 
+	 * @param worker
+	 */
+	public void mergeWorker(ReviewIndexingWorker worker)
+	{
+		ReviewDocumentIndexer side_outputs = worker.getSideOutputs();
+		
+		theStats.merge(side_outputs.theStats);
+		theSynsets.merge(side_outputs.theSynsets);
+		side_outputs.theStats.clear();
+		side_outputs.theSynsets.clear();
+		
+		if (worker.getMaxReviewId() > theReviewId.get()) {
+			theReviewId.set(worker.getMaxReviewId());
+		}
+		worker.resetMaxReviewId();
+	}
+	
 	private void setArgs(String[] args) throws RuntimeException
 	{
 		// Parse and process command line arguments
@@ -212,9 +263,14 @@ public class ReviewDocumentIndexer {
 			}
 		}
 		else if (ArrayUtils.contains(args, "--update")) {
+			// Index reviews past the high-water mark of the last committed run. Documents are
+			// upserted by review id, so that reviews re-read after an interrupted run are replaced
+			// rather than duplicated. Reviews whose stats were saved with the restored state are
+			// skipped, so that their synset terms and token lists are not counted twice.
 			try {
 				restoreState();
-				min_reviewid = 0;
+				min_reviewid = theReviewId.get();
+				upsert = true;
 			} catch ( IOException e ) {
 				AppLogger.error.log(Level.SEVERE,
 									"Cannot restore indexer state. Some files are missing or are unreadable.");
@@ -241,6 +297,21 @@ public class ReviewDocumentIndexer {
 			if ((pos = ArrayUtils.indexOf(args, "--pause-every")) != ArrayUtils.INDEX_NOT_FOUND) {
 				pause_every = Integer.parseInt(args[pos + 1]);
 			}
+			if ((pos = ArrayUtils.indexOf(args, "--threads")) != ArrayUtils.INDEX_NOT_FOUND) {
+				threads = Math.max(1, Integer.parseInt(args[pos + 1]));
+			}
+			if ((pos = ArrayUtils.indexOf(args, "--prewarm")) != ArrayUtils.INDEX_NOT_FOUND) {
+				prewarm_terms = Integer.parseInt(args[pos + 1]);
+			}
+			if (ArrayUtils.contains(args, "--compiled-wordnet")) {
+				DictionaryFactory.setUseCompiledLexicon(true);
+			}
+			if (ArrayUtils.contains(args, "--tokenlist-ids")) {
+				theTokenLists.setFormat(TokenListsCollector.Format.IDS);
+			}
+			if (ArrayUtils.contains(args, "--profile")) {
+				theProfiler = new AnalysisProfiler(new File(Paths.stateFiles, "analysis.metrics"));
+			}
 		} catch ( ArrayIndexOutOfBoundsException e ) {
 			throw new RuntimeException("Command line syntax error");
 		}
@@ -259,9 +330,10 @@ public class ReviewDocumentIndexer {
 
 		// Open a new index
 		IndexWriter index = null;
+		ReviewTextAnalyzer analyzer = new ReviewTextAnalyzer(indexer);
 		try {
-			index = new IndexWriter(new SimpleFSDirectory(new File(Paths.luceneIndex)),
-					new ReviewTextAnalyzer(indexer), indexer.new_index ? true : false, MaxFieldLength.UNLIMITED);
+			index = new IndexWriter(new SimpleFSDirectory(new File(Paths.luceneIndex)), analyzer,
+					indexer.new_index ? true : false, MaxFieldLength.UNLIMITED);
 			if (indexer.pause_every > 2) {
 				index.setMaxBufferedDocs(indexer.pause_every);
 			}
@@ -280,10 +352,41 @@ public class ReviewDocumentIndexer {
 			throw new RuntimeException("Exiting application", e);
 		}
 		
+		// Prewarm the wordnet lookup cache with the most frequent terms of the existing index
+		WordnetLookup lookup = DictionaryFactory.getWordnetLookup(analyzer.getWordnet());
+		if (!indexer.new_index && indexer.prewarm_terms > 0 && lookup instanceof WordnetCache) {
+			WordnetCache cache = (WordnetCache)lookup;
+			try {
+				IndexReader reader = IndexReader.open(new SimpleFSDirectory(new File(Paths.luceneIndex)), true);
+				try {
+					System.out.print("Prewarming wordnet cache... ");
+					cache.prewarm(reader, Globals.IndexFieldNames.text, indexer.prewarm_terms);
+					System.out.println(cache);
+				} finally {
+					reader.close();
+				}
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.WARNING, "Could not prewarm wordnet cache from the index located at "
+					+ Paths.luceneIndex);
+			}
+		}
+		
+		// Set up concurrent indexing workers, if requested. Each worker gets its own analyzer chain,
+		// but all of them share the wordnet resources of the main analyzer.
+		ExecutorService executor = null;
+		List<ReviewIndexingWorker> workers = new ArrayList<ReviewIndexingWorker>();
+		if (indexer.threads > 1) {
+			executor = Executors.newFixedThreadPool(indexer.threads);
+			for (int i = 0 ; i < indexer.threads ; i++) {
+				workers.add(new ReviewIndexingWorker(index, analyzer, indexer.theTokenLists, indexer.upsert,
+					indexer.theStats));
+			}
+		}
+		
 		// Load a number of reviews from database
-		NumberFormat docIdFormat = TokenListsCollector.defaultDocIdFormat();
+		DatabaseReviewStream reviews = null;
 		try {
-			DatabaseReviewCollection reviews = new DatabaseReviewCollection(indexer.pause_every);
+			reviews = new DatabaseReviewStream(indexer.pause_every);
 			reviews.setLimits(indexer.min_reviewid, indexer.stop_after);
 			int indexed_counter = 0;
 
@@ -296,41 +399,61 @@ public class ReviewDocumentIndexer {
 				Iterator<Review> reviewsIterator = reviews.getIterator();
 				
 				System.out.print(" Indexing... ");
-				while(reviewsIterator.hasNext()) {
-					DatabaseReview dbr = (DatabaseReview)reviewsIterator.next();
-					int dbr_id = dbr.getReviewid();
-					int dbr_rating = dbr.getRating();
-
+				if (executor != null) {
 					try {
-						indexer.theReviewId.set(dbr_id);
-						indexer.theStats.setCurrent(dbr_id, dbr_rating);
-
-						index.addDocument(dbr.getDocumentForIndexing());
-						indexed_counter++;
-						
-						// Also, keep track of the rating and length of this review
-						indexer.theStats.storeCurrent();
-						
+						indexed_counter += indexConcurrently(indexer, executor, workers, reviewsIterator);
 					} catch ( CorruptIndexException e ) {
-						AppLogger.error.log(Level.SEVERE, "Lucene detected an inconsistency upon saving review #"
-							+ Integer.toString(dbr.getReviewid()) + "to the index located at " + Paths.luceneIndex);
 						return;
-					} catch ( IOException e ) {
-						AppLogger.error.log(Level.WARNING, "Review #" + Integer.toString(dbr.getReviewid())
-							+ " could not be indexed");
+					}
+				}
+				else {
+					while(reviewsIterator.hasNext()) {
+						DatabaseReview dbr = (DatabaseReview)reviewsIterator.next();
+						int dbr_id = dbr.getReviewid();
+						int dbr_rating = dbr.getRating();
+						if (indexer.upsert && indexer.theStats.contains(dbr_id)) {
+							continue;
+						}
+
+						try {
+							indexer.theReviewId.set(dbr_id);
+							indexer.theStats.setCurrent(dbr_id, dbr_rating);
+
+							if (indexer.upsert) {
+								index.updateDocument(dbr.getIndexTerm(), dbr.getDocumentForIndexing());
+							}
+							else {
+								index.addDocument(dbr.getDocumentForIndexing());
+							}
+							indexed_counter++;
+							
+							// Also, keep track of the rating and length of this review
+							indexer.theStats.storeCurrent();
+							
+						} catch ( CorruptIndexException e ) {
+							AppLogger.error.log(Level.SEVERE, "Lucene detected an inconsistency upon saving review #"
+								+ Integer.toString(dbr.getReviewid()) + "to the index located at " + Paths.luceneIndex);
+							return;
+						} catch ( IOException e ) {
+							AppLogger.error.log(Level.WARNING, "Review #" + Integer.toString(dbr.getReviewid())
+								+ " could not be indexed");
+						}
 					}
 				}
 				
 				// Backup everything
 				System.out.print("Indexed " + indexed_counter + " reviews total. ");
 				if (indexer.pause_every > 0) {
-					System.out.print("Saving tokenlists... ");
-					indexer.theTokenLists.writeNextFile(docIdFormat);
+					System.out.print("Closing tokenlists... ");
+					indexer.theTokenLists.writeNextFile();
 
 					System.out.print("Saving state... ");
 					try {
 						index.commit();
 						indexer.saveState();
+						if (indexer.theProfiler != null) {
+							indexer.theProfiler.report();
+						}
 					} catch ( CorruptIndexException e ) {
 						AppLogger.error.log(Level.SEVERE, "Committing index changes failed on review #"
 							+ indexer.theReviewId.get() + "due to CorruptIndexException");
@@ -348,6 +471,15 @@ public class ReviewDocumentIndexer {
 			AppLogger.error.log(Level.SEVERE, "An exception occured while trying to access the database.\n"
 				+ e.getMessage());
 			return;
+		} finally {
+			if (reviews != null) {
+				reviews.close();
+			}
+			if (executor != null) {
+				executor.shutdown();
+			}
+			indexer.theTokenLists.close();
+			State.awaitBackgroundSaves();
 		}
 		
 		try {
@@ -360,8 +492,52 @@ public class ReviewDocumentIndexer {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		AppLogger.error.log(Level.INFO, "Wordnet lookups: " + lookup);
+		ModelRegistry.printLoadStatistics();
+		if (indexer.theProfiler != null) {
+			indexer.theProfiler.report();
+		}
 		System.err.println("Indexing successfully completed!");
 		return;
 	}
+	
+	/**
+	 * Indexes all reviews of the current segment with a pool of concurrent workers, then merges the
+	 * side outputs of every worker into the main indexer, so that they can be saved at the commit
+	 * point that follows.
+	 * 
+	 * @return the number of reviews indexed
+	 * @throws CorruptIndexException
+	 *             if any of the workers detected an inconsistency in the index
+	 */
+	private static int indexConcurrently(ReviewDocumentIndexer indexer, ExecutorService executor,
+			List<ReviewIndexingWorker> workers, Iterator<Review> reviewsIterator) throws CorruptIndexException
+	{
+		for (ReviewIndexingWorker worker : workers) {
+			worker.setReviews(reviewsIterator);
+		}
+		
+		int indexed_counter = 0;
+		try {
+			List<Future<Integer>> results = executor.invokeAll(workers);
+			for (Future<Integer> result : results) {
+				indexed_counter += result.get();
+			}
+		} catch ( InterruptedException e ) {
+			AppLogger.error.log(Level.SEVERE, "Indexing was interrupted while waiting for workers to complete");
+			throw new RuntimeException("Exiting application", e);
+		} catch ( ExecutionException e ) {
+			if (e.getCause() instanceof CorruptIndexException)
+				throw (CorruptIndexException)e.getCause();
+			else
+				throw new RuntimeException("Exiting application", e.getCause());
+		}
+		
+		for (ReviewIndexingWorker worker : workers) {
+			indexer.mergeWorker(worker);
+		}
+		
+		return indexed_counter;
+	}
 
 }
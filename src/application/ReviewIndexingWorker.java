@@ -0,0 +1,176 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package application;
+
+import indexing.ReviewTextAnalyzer;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexWriter;
+import topics.TokenListsCollector;
+import util.AppLogger;
+import classes.DatabaseReview;
+import classes.Review;
+import classes.ReviewStats;
+import config.Paths;
+
+
+/**
+ * A unit of work for the concurrent indexing mode of {@link ReviewDocumentIndexer}. Each worker owns
+ * a private {@link ReviewTextAnalyzer} chain, along with a private {@link ReviewDocumentIndexer}
+ * object that holds the side outputs of that chain (review stats and synset terms). All workers
+ * draw reviews from a shared iterator, add the analyzed documents to a shared {@link IndexWriter}
+ * and write token lists through a shared {@link TokenListsCollector}. The side outputs are merged
+ * back into the main indexer by {@link ReviewDocumentIndexer#mergeWorker} at every commit point.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ReviewIndexingWorker implements Callable<Integer> {
+	
+	private ReviewDocumentIndexer	sideOutputs;
+	private ReviewTextAnalyzer		analyzer;
+	private IndexWriter				index;
+	private Iterator<Review>		reviews		= null;
+	private int						maxReviewId	= 0;
+	private boolean					upsert;
+	private ReviewStats				indexedStats;
+	
+	/**
+	 * Constructor for class ReviewIndexingWorker
+	 * 
+	 * @param index
+	 *            The index writer shared among all workers
+	 * @param prototype
+	 *            An analyzer whose wordnet resources and profiler will be shared with the worker's own
+	 *            analyzer
+	 * @param tokenLists
+	 *            The token lists collector shared among all workers
+	 * @param upsert
+	 *            Whether documents should replace any documents already indexed for the same review
+	 * @param indexedStats
+	 *            The review stats of the main indexer. When upserting, reviews already stored there
+	 *            are skipped, as their side outputs have already been counted.
+	 */
+	public ReviewIndexingWorker(IndexWriter index, ReviewTextAnalyzer prototype, TokenListsCollector tokenLists,
+			boolean upsert, ReviewStats indexedStats)
+	{
+		this.index = index;
+		this.upsert = upsert;
+		this.indexedStats = indexedStats;
+		sideOutputs = new ReviewDocumentIndexer();
+		sideOutputs.theTokenLists = tokenLists;
+		sideOutputs.theProfiler = prototype.getProfiler();
+		analyzer = new ReviewTextAnalyzer(sideOutputs, prototype.getWordnet(), prototype.getCompoundWordnetIndex());
+	}
+	
+	/**
+	 * Assigns the iterator from which the worker will draw reviews during its next call. The same
+	 * iterator is meant to be shared among all workers, so access to it is synchronized on the
+	 * iterator itself.
+	 * 
+	 * @param reviews
+	 */
+	public void setReviews(Iterator<Review> reviews)
+	{
+		this.reviews = reviews;
+	}
+	
+	/**
+	 * @return the object holding the side outputs collected by this worker
+	 */
+	public ReviewDocumentIndexer getSideOutputs()
+	{
+		return sideOutputs;
+	}
+	
+	/**
+	 * @return the highest review id indexed by this worker since the last call to
+	 *         {@link #resetMaxReviewId}
+	 */
+	public int getMaxReviewId()
+	{
+		return maxReviewId;
+	}
+	
+	public void resetMaxReviewId()
+	{
+		maxReviewId = 0;
+	}
+	
+	private DatabaseReview nextReview()
+	{
+		synchronized (reviews) {
+			return reviews.hasNext() ? (DatabaseReview)reviews.next() : null;
+		}
+	}
+
+	/**
+	 * Indexes reviews from the shared iterator until it is exhausted
+	 * 
+	 * @return the number of reviews that were indexed by this worker
+	 * @throws CorruptIndexException
+	 *             if Lucene detects an inconsistency while adding a review to the index
+	 */
+	@Override
+	public Integer call() throws CorruptIndexException
+	{
+		int indexed_counter = 0;
+		
+		DatabaseReview dbr;
+		while ( (dbr = nextReview()) != null ) {
+			int dbr_id = dbr.getReviewid();
+			int dbr_rating = dbr.getRating();
+			if (upsert && indexedStats.contains(dbr_id)) {
+				continue;
+			}
+			
+			try {
+				sideOutputs.theReviewId.set(dbr_id);
+				sideOutputs.theStats.setCurrent(dbr_id, dbr_rating);
+				
+				if (upsert) {
+					index.updateDocument(dbr.getIndexTerm(), dbr.getDocumentForIndexing(), analyzer);
+				}
+				else {
+					index.addDocument(dbr.getDocumentForIndexing(), analyzer);
+				}
+				indexed_counter++;
+				maxReviewId = Math.max(maxReviewId, dbr_id);
+				
+				// Also, keep track of the rating and length of this review
+				sideOutputs.theStats.storeCurrent();
+				
+			} catch ( CorruptIndexException e ) {
+				AppLogger.error.log(Level.SEVERE, "Lucene detected an inconsistency upon saving review #"
+					+ Integer.toString(dbr_id) + "to the index located at " + Paths.luceneIndex);
+				throw e;
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.WARNING, "Review #" + Integer.toString(dbr_id) + " could not be indexed");
+			}
+		}
+		
+		return indexed_counter;
+	}
+}
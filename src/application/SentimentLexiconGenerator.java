@@ -24,17 +24,22 @@ package application;
 
 import indexing.ReviewTermPayload;
 import indexing.SynsetTermsAggregator;
-import indexing.TermTypeFilter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import lexicon.PayloadFilters;
 import lexicon.RatingHistogram;
+import lexicon.RatingHistogramBuilder;
 import lexicon.RatingHistogramCollector;
 import lexicon.SentimentLexicon;
 import lexicon.SentimentLexiconFile;
@@ -45,10 +50,10 @@ import lexicon.classifiers.PNSentimentClassifier;
 import lexicon.classifiers.PeakSentimentClassifier;
 import lexicon.classifiers.SentimentClassifier;
 import lexicon.classifiers.WidestWindowSentimentClassifier;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.spans.SpanTermQuery;
 import org.apache.lucene.search.spans.TermSpans;
@@ -210,50 +215,46 @@ public class SentimentLexiconGenerator {
 
 	public RatingHistogramCollector makeAllHistograms()
 	{
-		// Initialize histogram collector
-		RatingHistogramCollector collector = new RatingHistogramCollector();
-
-
-		// For each term in index
+		RatingHistogramCollector[] collectors = makeAllHistograms(new PayloadFilter[]{ filter });
+		return collectors == null ? null : collectors[0];
+	}
+	
+	/**
+	 * Generates the histograms of all indexed terms for several payload filters at once, making a
+	 * single pass over the index
+	 * 
+	 * @return a histogram collector for each of the given filters, or null if histogram generation
+	 *         was interrupted by an I/O error
+	 */
+	public RatingHistogramCollector[] makeAllHistograms(PayloadFilter[] filters)
+	{
+		return makeAllHistograms(filters, null, 1);
+	}
+	
+	/**
+	 * Generates the histograms of all indexed terms for several payload filters at once. If an
+	 * executor is specified, the term dictionary is split into a number of term ranges that are
+	 * processed concurrently.
+	 * 
+	 * @return a histogram collector for each of the given filters, or null if histogram generation
+	 *         was interrupted by an I/O error
+	 */
+	public RatingHistogramCollector[] makeAllHistograms(PayloadFilter[] filters, ExecutorService executor,
+			int partitions)
+	{
+		RatingHistogramBuilder builder = new RatingHistogramBuilder(reader, reviewStats, filters);
+		builder.setDiscardedTermsOutput(discardedOtherFile);
 		try {
-			TermEnum terms = reader.terms();
-			while ( terms.next() ) {
-				
-				// Extract term text. This will usually be a 9-byte synset identifier (e.g.
-				// n00348562), but it could also be an English word or phrase that does not have a
-				// synset equivalent
-				String term = terms.term().text();
-				
-				// For each extracted term, generate a histogram for each of the specified filters
-				// If current term has the form of a synset identifier
-				if (TermTypeFilter.isLemma(term)) {
-
-					// Make histograms for all filter-matching occurrences of current synset
-					Synset synset = new Synset(term);
-					RatingHistogram term_histogram = makeRatingHistogramForSynset(synset, reviewStats);
-					collector.insertHistogram(synset, term_histogram);
-				}
-				else if (TermTypeFilter.isNonLemma(term)) {
-					HashMap<SynsetCategory, RatingHistogram> histograms = makeRatingHistogramsForTerm(term, reviewStats);
-					Set<SynsetCategory> synsetcats = histograms.keySet();
-					for (SynsetCategory synsetcat : synsetcats) {
-						if (histograms.get(synsetcat).getTotalObservations() > 0) {
-							collector.insertHistogram(synsetcat, term, histograms.get(synsetcat));
-						}
-					}
-				}
-				else {
-					discardedOtherFile.write(term + "\n");
-				}
-			}
+			if (executor != null)
+				return builder.makeAllHistograms(executor, partitions);
+			else
+				return builder.makeAllHistograms();
 		} catch ( IOException e ) {
 			AppLogger.error.log(Level.SEVERE,
 								"Histogram generation was interrupted because of the following I/O error: \n"
 									+ e.getMessage());
 			return null;
 		}
-		
-		return collector;
 	}
 	
 	
@@ -314,7 +315,64 @@ public class SentimentLexiconGenerator {
 		return lex.getObj();
 	}
 
+	/**
+	 * Generates a lexicon for each of the given classifiers concurrently. Each lexicon is generated
+	 * by a single task, in the iteration order of the histograms collector, so the generated
+	 * lexicons are identical to the ones generated sequentially by
+	 * {@link #generateLexicon(String, RatingHistogramCollector, SentimentClassifier)}.
+	 * 
+	 * @return the generated lexicons, in the same order as the classifiers
+	 */
+	public SentimentLexicon[] generateLexicons(final PayloadFilter filter, final RatingHistogramCollector histograms,
+			SentimentClassifier[] classifiers, ExecutorService executor)
+	{
+		ArrayList<Future<SentimentLexicon>> lexicons = new ArrayList<Future<SentimentLexicon>>();
+		for (final SentimentClassifier classifier : classifiers) {
+			lexicons.add(executor.submit(new Callable<SentimentLexicon>() {
+				
+				@Override
+				public SentimentLexicon call() throws Exception
+				{
+					return generateLexicon(SentimentLexicon.name(classifier, filter), histograms, classifier);
+				}
+			}));
+		}
+		
+		SentimentLexicon[] generated = new SentimentLexicon[classifiers.length];
+		try {
+			for (int i = 0 ; i < classifiers.length ; i++) {
+				generated[i] = lexicons.get(i).get();
+			}
+		} catch ( InterruptedException e ) {
+			AppLogger.error.log(Level.SEVERE, "Lexicon generation was interrupted");
+			throw new RuntimeException("Exiting application", e);
+		} catch ( ExecutionException e ) {
+			AppLogger.error.log(Level.SEVERE, "Lexicon generation failed: " + e.getCause());
+			throw new RuntimeException("Exiting application", e.getCause());
+		}
+		
+		return generated;
+	}
+
 	public static void main(String[] args) throws IOException
+	{
+		// Set up a pool of worker threads, if concurrent generation is requested
+		int threads = 1;
+		int pos = ArrayUtils.indexOf(args, "--threads");
+		if (pos != ArrayUtils.INDEX_NOT_FOUND && pos + 1 < args.length) {
+			threads = Math.max(1, Integer.parseInt(args[pos + 1]));
+		}
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			generateAll(args, executor, threads);
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+	
+	private static void generateAll(String[] args, ExecutorService executor, int threads) throws IOException
 	{
 		// Initialize sentiment lexicon generator
 		System.out.println("Initializing...");
@@ -328,6 +386,19 @@ public class SentimentLexiconGenerator {
 			PayloadFilters.FILTER_NEGATED,
 			PayloadFilters.FILTER_COMPARATIVE,
 			PayloadFilters.FILTER_SUPERLATIVE };
+		
+		// Generate and store histograms for all filters in a single pass over the index, if requested
+		if (ArrayUtils.contains(args, "--histograms")) {
+			System.out.println("Generating frequency histograms for indexed terms...");
+			RatingHistogramCollector[] all_histograms = lexGen.makeAllHistograms(filters, executor, 4 * threads);
+			if (all_histograms == null)
+				return;
+			for (int f = 0 ; f < filters.length ; f++) {
+				System.out.println("\nHistograms for filter " + filters[f].name() + ":\n" + all_histograms[f] + "\n");
+				System.out.println("Saving generated histograms...");
+				new State<RatingHistogramCollector>("histograms_" + filters[f].name(), all_histograms[f]).saveState();
+			}
+		}
 
 		for (PayloadFilter current_filter : filters) {
 			lexGen.setFilter(current_filter);
@@ -367,15 +438,28 @@ public class SentimentLexiconGenerator {
 			System.out.println("*** Sentiment lexicon files generation has started: ");
 			
 			String current_lexicon_name;
-			for (SentimentClassifier classifier : classifiers) {
-				System.out.println("Generating lexicon using classifier " + classifier.name());
-				
-				current_lexicon_name = SentimentLexicon.name(classifier, current_filter);
-				SentimentLexicon lexicon = lexGen.generateLexicon(current_lexicon_name, histograms, classifier);
-				State<SentimentLexicon> lex_state = new State<SentimentLexicon>(current_lexicon_name, lexicon);
-				lex_state.saveState();
-				
-				System.out.println("\n" + lexicon + "\n");
+			if (executor != null) {
+				System.out.println("Generating lexicons using " + classifiers.length + " classifiers concurrently");
+				SentimentLexicon[] lexicons = lexGen.generateLexicons(current_filter, histograms, classifiers, executor);
+				for (int i = 0 ; i < classifiers.length ; i++) {
+					current_lexicon_name = SentimentLexicon.name(classifiers[i], current_filter);
+					State<SentimentLexicon> lex_state = new State<SentimentLexicon>(current_lexicon_name, lexicons[i]);
+					lex_state.saveState();
+					
+					System.out.println("\n" + current_lexicon_name + ":\n" + lexicons[i] + "\n");
+				}
+			}
+			else {
+				for (SentimentClassifier classifier : classifiers) {
+					System.out.println("Generating lexicon using classifier " + classifier.name());
+					
+					current_lexicon_name = SentimentLexicon.name(classifier, current_filter);
+					SentimentLexicon lexicon = lexGen.generateLexicon(current_lexicon_name, histograms, classifier);
+					State<SentimentLexicon> lex_state = new State<SentimentLexicon>(current_lexicon_name, lexicon);
+					lex_state.saveState();
+					
+					System.out.println("\n" + lexicon + "\n");
+				}
 			}
 			
 			System.out.println("DONE! All lexicons generated");
@@ -0,0 +1,715 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package benchmarks;
+
+import indexing.ComparisonDegree;
+import indexing.PosTag.PosCategory;
+import indexing.ReviewTermAttribute;
+import indexing.ReviewTermAttributeImpl;
+import indexing.ReviewTermPayload;
+import indexing.ReviewTextAnalyzer;
+import indexing.Token;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.logging.Level;
+import lexicon.GeneralInquirerLexicon;
+import lexicon.MPQALexicon;
+import lexicon.RatingHistogram;
+import lexicon.Ratings;
+import lexicon.SentimentLexicon;
+import lexicon.TermSentiment;
+import lexicon.classifiers.WidestWindowSentimentClassifier;
+import net.didion.jwnl.dictionary.Dictionary;
+import org.apache.lucene.analysis.KeywordTokenizer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import topics.FastLookupTopicLexicon;
+import util.AnalysisProfiler;
+import util.AppLogger;
+import util.ModelRegistry;
+import wordnet.DictionaryFactory;
+import wordnet.Synset;
+import wordnet.Synset.SynsetCategory;
+import application.ReviewDocumentIndexer;
+import dependencies.DependencyTreeParse;
+import dependencies.ParseCache;
+import dependencies.ReviewDependencyAnalyzer;
+import dependencies.rules.SimpleEnglishRules;
+import dependencies.rules.StatsRuleSet;
+import filters.LemmatizationFilter;
+import filters.NamedEntityFilter;
+import filters.PosTaggingFilter;
+
+
+/**
+ * A suite of micro-benchmarks for the hot paths of review analysis and lexicon generation: POS
+ * tagging, lemmatization, the complete analyzer chain of the indexer, the encoding of review term
+ * annotations, sentiment lexicon lookups, histogram classification and dependency tree parsing.
+ * The benchmarks run offline, against the models, wordnet dictionary and lexicons configured in
+ * {@link config.Paths}, over a fixed set of review texts. Usage:
+ * 
+ * <pre>
+ * AnalysisBenchmarks [--warmup n] [--iterations n] [--time ms] [--fixtures dir] [benchmark ...]
+ * </pre>
+ * 
+ * If benchmark names are given, only the benchmarks whose names contain one of them are run. If a
+ * fixtures directory is given, the review texts are read from the .txt files it contains.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class AnalysisBenchmarks {
+	
+	private static final String[]	defaultReviews	= {
+		"I had high hopes for this movie, but it was a huge disappointment. The plot made no sense "
+			+ "and the acting was wooden. Even Robert De Niro could not save it from being boring.",
+		"One of the best films I have seen in years! The cinematography is stunning, the score is "
+			+ "beautiful and the story never lets you go. I wouldn't change a single scene.",
+		"It's not a bad movie, just not a very memorable one. The first half is funny and fast, the "
+			+ "second half drags. Worth renting, but don't expect a masterpiece.",
+		"The special effects were better than the original, yet the characters were far less "
+			+ "interesting. The director seems to care more about explosions than about the people in "
+			+ "the story, and it shows. Disappointing sequel.",
+		"A quiet, moving drama about a family in New York. The performances are excellent, "
+			+ "especially the young actress playing the daughter. It is slow at times, but never dull." };
+	
+	private static int				warmupIterations	= 3;
+	private static int				iterations			= 5;
+	private static long				iterationMillis		= 1000;
+	private static String[]			reviews				= defaultReviews;
+	
+	
+	/**
+	 * Consumes all tokens of a token stream
+	 * 
+	 * @return the number of tokens consumed
+	 */
+	private static long consume(TokenStream stream)
+	{
+		long tokens = 0;
+		try {
+			while ( stream.incrementToken() ) {
+				tokens++;
+			}
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "Error reading benchmark token stream");
+			throw new RuntimeException("Exiting application", e);
+		}
+		return tokens;
+	}
+	
+	
+	/**
+	 * Tags the fixture reviews with the part-of-speech tagger. Every operation tags all fixtures.
+	 */
+	private static class PosTaggingBenchmark extends Benchmark {
+		
+		private KeywordTokenizer	source	= null;
+		private TokenStream			tagger	= null;
+		
+		PosTaggingBenchmark()
+		{
+			super("PosTaggingFilter");
+		}
+		
+		@Override
+		public void setup()
+		{
+			source = new KeywordTokenizer(new StringReader(""));
+			tagger = new PosTaggingFilter(source, ModelRegistry.getTagger());
+		}
+		
+		@Override
+		public long run()
+		{
+			long tokens = 0;
+			try {
+				for (String review : reviews) {
+					source.reset(new StringReader(review));
+					tagger.reset();
+					tokens += consume(tagger);
+				}
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.SEVERE, "Error resetting benchmark token stream");
+				throw new RuntimeException("Exiting application", e);
+			}
+			return tokens;
+		}
+	}
+	
+
+	/**
+	 * Replays a list of tagged tokens, so that the filters that follow the tagger in the analyzer
+	 * chain can be measured in isolation
+	 */
+	private static class TokenReplay extends TokenStream {
+		
+		private TermAttribute		output_term;
+		private TypeAttribute		output_type;
+		private ReviewTermAttribute	output_reviewterm;
+		
+		private String[]			terms		= new String[0];
+		private String[]			types		= new String[0];
+		private byte[]				reviewterms	= new byte[0];
+		private int					next		= 0;
+		
+		TokenReplay()
+		{
+			output_term = addAttribute(TermAttribute.class);
+			output_type = addAttribute(TypeAttribute.class);
+			output_reviewterm = addAttribute(ReviewTermAttribute.class);
+		}
+		
+		/**
+		 * Records the tokens of a token stream for replay
+		 */
+		static TokenReplay record(TokenStream stream)
+		{
+			ArrayList<String> terms = new ArrayList<String>();
+			ArrayList<String> types = new ArrayList<String>();
+			ArrayList<Byte> reviewterms = new ArrayList<Byte>();
+			
+			TermAttribute input_term = stream.getAttribute(TermAttribute.class);
+			TypeAttribute input_type = stream.getAttribute(TypeAttribute.class);
+			ReviewTermAttribute input_reviewterm = stream.addAttribute(ReviewTermAttribute.class);
+			try {
+				while ( stream.incrementToken() ) {
+					terms.add(input_term.term());
+					types.add(input_type.type());
+					reviewterms.add(input_reviewterm.encode());
+				}
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.SEVERE, "Error reading benchmark token stream");
+				throw new RuntimeException("Exiting application", e);
+			}
+			
+			TokenReplay replay = new TokenReplay();
+			replay.terms = terms.toArray(new String[terms.size()]);
+			replay.types = types.toArray(new String[types.size()]);
+			replay.reviewterms = new byte[reviewterms.size()];
+			for (int i = 0 ; i < replay.reviewterms.length ; i++) {
+				replay.reviewterms[i] = reviewterms.get(i);
+			}
+			return replay;
+		}
+		
+		/**
+		 * Replays the tokens recorded by another replay stream
+		 */
+		void load(TokenReplay recorded)
+		{
+			terms = recorded.terms;
+			types = recorded.types;
+			reviewterms = recorded.reviewterms;
+			next = 0;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.apache.lucene.analysis.TokenStream#incrementToken()
+		 */
+		@Override
+		public boolean incrementToken() throws IOException
+		{
+			if (next >= terms.length)
+				return false;
+			
+			clearAttributes();
+			output_term.setTermBuffer(terms[next]);
+			output_type.setType(types[next]);
+			output_reviewterm.decode(reviewterms[next]);
+			next++;
+			return true;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.apache.lucene.analysis.TokenStream#reset()
+		 */
+		@Override
+		public void reset() throws IOException
+		{
+			next = 0;
+		}
+	}
+	
+
+	/**
+	 * Lemmatizes the pre-tagged fixture reviews, including the lookup of wordnet compound terms in
+	 * the compound term trie. Every operation lemmatizes all fixtures.
+	 */
+	private static class LemmatizationBenchmark extends Benchmark {
+		
+		private TokenReplay		replay		= null;
+		private TokenStream		lemmatizer	= null;
+		private TokenReplay[]	tagged		= null;
+		
+		LemmatizationBenchmark()
+		{
+			super("LemmatizationFilter");
+		}
+		
+		@Override
+		public void setup()
+		{
+			tagged = new TokenReplay[reviews.length];
+			for (int i = 0 ; i < reviews.length ; i++) {
+				tagged[i] = TokenReplay.record(new NamedEntityFilter(new PosTaggingFilter(new KeywordTokenizer(
+						new StringReader(reviews[i])), ModelRegistry.getTagger())));
+			}
+			
+			Dictionary wordnet = DictionaryFactory.getWordnetInstance();
+			replay = new TokenReplay();
+			lemmatizer = new LemmatizationFilter(replay, true, wordnet, DictionaryFactory
+				.setupCompoundTermsIndex(wordnet));
+		}
+		
+		@Override
+		public long run()
+		{
+			long tokens = 0;
+			try {
+				for (TokenReplay review : tagged) {
+					replay.load(review);
+					lemmatizer.reset();
+					tokens += consume(lemmatizer);
+				}
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.SEVERE, "Error resetting benchmark token stream");
+				throw new RuntimeException("Exiting application", e);
+			}
+			return tokens;
+		}
+	}
+	
+
+	/**
+	 * Runs the fixture reviews through the complete analyzer chain of the indexer. Every operation
+	 * analyzes all fixtures.
+	 */
+	private static class AnalyzerChainBenchmark extends Benchmark {
+		
+		private ReviewTextAnalyzer	analyzer	= null;
+		
+		AnalyzerChainBenchmark()
+		{
+			super("ReviewTextAnalyzer");
+		}
+		
+		@Override
+		public void setup()
+		{
+			analyzer = new ReviewTextAnalyzer(new ReviewDocumentIndexer());
+		}
+		
+		@Override
+		public long run()
+		{
+			long tokens = 0;
+			try {
+				for (String review : reviews) {
+					tokens += consume(analyzer.reusableTokenStream("", new StringReader(review)));
+				}
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.SEVERE, "Error resetting benchmark token stream");
+				throw new RuntimeException("Exiting application", e);
+			}
+			return tokens;
+		}
+	}
+	
+
+	/**
+	 * Builds the encodings of all valid combinations of review term annotations
+	 */
+	private static byte[][] reviewTermEncodings()
+	{
+		ArrayList<byte[]> encodings = new ArrayList<byte[]>();
+		for (PosCategory posCat : PosCategory.values()) {
+			for (ComparisonDegree degree : ComparisonDegree.values()) {
+				for (int flags = 0 ; flags < 8 ; flags++) {
+					encodings.add(ReviewTermPayload.encode(posCat, degree, (flags & 1) != 0, (flags & 2) != 0,
+						(flags & 4) != 0));
+				}
+			}
+		}
+		return encodings.toArray(new byte[encodings.size()][]);
+	}
+	
+	
+	/**
+	 * Decodes and re-encodes all valid review term payloads. Every operation round-trips all
+	 * combinations of annotations.
+	 */
+	private static class PayloadBenchmark extends Benchmark {
+		
+		private ReviewTermPayload	payload		= new ReviewTermPayload();
+		private byte[][]			encodings	= null;
+		
+		PayloadBenchmark()
+		{
+			super("ReviewTermPayload");
+		}
+		
+		@Override
+		public void setup()
+		{
+			encodings = reviewTermEncodings();
+		}
+		
+		@Override
+		public long run()
+		{
+			long result = 0;
+			for (byte[] encoded : encodings) {
+				payload.decode(encoded);
+				result += payload.encode()[0];
+			}
+			return result;
+		}
+	}
+	
+
+	/**
+	 * Decodes and re-encodes all valid review term annotations through the token attribute that
+	 * carries them along the analyzer chain, for comparison with {@link PayloadBenchmark}
+	 */
+	private static class AttributeBenchmark extends Benchmark {
+		
+		private ReviewTermAttributeImpl	attribute	= new ReviewTermAttributeImpl();
+		private byte[]					encodings	= null;
+		
+		AttributeBenchmark()
+		{
+			super("ReviewTermAttribute");
+		}
+		
+		@Override
+		public void setup()
+		{
+			byte[][] payloads = reviewTermEncodings();
+			encodings = new byte[payloads.length];
+			for (int i = 0 ; i < payloads.length ; i++) {
+				encodings[i] = payloads[i][0];
+			}
+		}
+		
+		@Override
+		public long run()
+		{
+			long result = 0;
+			for (byte encoded : encodings) {
+				attribute.decode(encoded);
+				result += attribute.encode();
+			}
+			return result;
+		}
+	}
+	
+
+	/**
+	 * Looks up synsets in the sentiment lexicon. Half of the lookups are for synsets of the lexicon,
+	 * half are for synsets that are (most likely) missing from it. Every operation performs all
+	 * lookups.
+	 */
+	private static class LexiconLookupBenchmark extends Benchmark {
+		
+		private static final int	MAX_KEYS	= 10000;
+		
+		private SentimentLexicon	lexicon		= null;
+		private Synset[]			keys		= null;
+		
+		LexiconLookupBenchmark()
+		{
+			super("SentimentLexicon.getEntry");
+		}
+		
+		@Override
+		public void setup()
+		{
+			lexicon = SentimentLexicon.loadLexicon();
+			
+			ArrayList<Synset> hits = new ArrayList<Synset>();
+			for (SynsetCategory synsetcat : Synset.getSynsetCategories()) {
+				Iterator<Entry<Synset, TermSentiment>> entries = lexicon.getLemmaEntries(synsetcat);
+				while ( entries.hasNext() && hits.size() < MAX_KEYS / 2 ) {
+					hits.add(entries.next().getKey());
+				}
+			}
+			
+			ArrayList<Synset> lookups = new ArrayList<Synset>();
+			for (Synset synset : hits) {
+				lookups.add(synset);
+				lookups.add(new Synset(synset.getPos(), synset.getOffset() + 1));
+			}
+			keys = lookups.toArray(new Synset[lookups.size()]);
+		}
+		
+		@Override
+		public long run()
+		{
+			long found = 0;
+			for (Synset key : keys) {
+				if (lexicon.getEntry(key) != null) {
+					found++;
+				}
+			}
+			return found;
+		}
+	}
+	
+
+	/**
+	 * Classifies synthetic rating histograms. Every operation classifies all histograms.
+	 */
+	private static class ClassifierBenchmark extends Benchmark {
+		
+		private static final int				HISTOGRAMS	= 1000;
+		
+		private WidestWindowSentimentClassifier	classifier	= null;
+		private RatingHistogram[]				histograms	= null;
+		
+		ClassifierBenchmark()
+		{
+			super("WidestWindowClassifier");
+		}
+		
+		@Override
+		public void setup()
+		{
+			classifier = new WidestWindowSentimentClassifier();
+			
+			float[] weights = new float[Ratings.capacity()];
+			for (int rating = Ratings.MIN_RATING ; rating <= Ratings.MAX_RATING ; rating++) {
+				weights[rating] = 1.0F / Ratings.N_RATINGS;
+			}
+			
+			Random random = new Random(42);
+			histograms = new RatingHistogram[HISTOGRAMS];
+			for (int i = 0 ; i < histograms.length ; i++) {
+				histograms[i] = new RatingHistogram(weights);
+				for (int rating = Ratings.MIN_RATING ; rating <= Ratings.MAX_RATING ; rating++) {
+					histograms[i].addObeservation(rating, random.nextInt(50));
+				}
+				for (int documents = 1 + random.nextInt(20) ; documents > 0 ; documents--) {
+					histograms[i].incrementUniqueDocuments();
+				}
+			}
+		}
+		
+		@Override
+		public long run()
+		{
+			long classified = 0;
+			for (RatingHistogram histogram : histograms) {
+				if (classifier.classify(histogram) != null) {
+					classified++;
+				}
+			}
+			return classified;
+		}
+	}
+	
+
+	/**
+	 * Parses the dependency trees of the sentences of the fixture reviews for sentiment and topics.
+	 * The sentences are parsed by the dependency parser during setup, so only the traversal of the
+	 * trees by the rule set is measured. Every operation parses all trees.
+	 */
+	private static class DependencyParseBenchmark extends Benchmark {
+		
+		private StatsRuleSet					ruleset		= null;
+		private SentimentLexicon				mainLexicon	= null;
+		private SentimentLexicon				auxLexicon	= null;
+		private FastLookupTopicLexicon<Synset>	topics		= null;
+		private DependencyTreeParse[]			trees		= null;
+		
+		DependencyParseBenchmark()
+		{
+			super("DependencyTreeParse.parse");
+		}
+		
+		@Override
+		public void setup()
+		{
+			// Fixture parses must neither come from nor end up in the parse cache of the application
+			ParseCache.setStateName(null);
+			
+			ReviewDependencyAnalyzer analyzer = new ReviewDependencyAnalyzer();
+			ArrayList<DependencyTreeParse> parses = new ArrayList<DependencyTreeParse>();
+			for (String review : reviews) {
+				for (ArrayList<Token> sentence : analyzer.getSentences(review)) {
+					try {
+						parses.add(new DependencyTreeParse(sentence));
+					} catch ( IllegalArgumentException e ) {
+						AppLogger.error.log(Level.WARNING, "Skipping sentence that could not be parsed: "
+							+ e.getMessage());
+					} catch ( UnsupportedOperationException e ) {
+						AppLogger.error.log(Level.WARNING, "Skipping sentence that could not be parsed: "
+							+ e.getMessage());
+					}
+				}
+			}
+			trees = parses.toArray(new DependencyTreeParse[parses.size()]);
+			
+			ruleset = new StatsRuleSet(SimpleEnglishRules.defaultRules, SimpleEnglishRules.clausalRelations);
+			mainLexicon = SentimentLexicon.loadLexicon();
+			auxLexicon = SentimentLexicon.merge(MPQALexicon.loadMPQA(), GeneralInquirerLexicon.loadGeneralInquirer());
+			topics = FastLookupTopicLexicon.loadLexicon();
+		}
+		
+		@Override
+		public long run()
+		{
+			long sentiments = 0;
+			for (DependencyTreeParse tree : trees) {
+				sentiments += tree.parse(ruleset, mainLexicon, auxLexicon, topics, false).size();
+			}
+			return sentiments;
+		}
+	}
+	
+
+	/*
+	 * Reads the review texts from the .txt files of a directory
+	 */
+	private static String[] loadFixtures(String dirname)
+	{
+		File[] files = new File(dirname).listFiles();
+		if (files == null) {
+			AppLogger.error.log(Level.SEVERE, "Fixtures directory " + dirname + " does not exist");
+			throw new RuntimeException("Exiting application");
+		}
+		Arrays.sort(files);
+		
+		ArrayList<String> texts = new ArrayList<String>();
+		for (File file : files) {
+			if (!file.isFile() || !file.getName().endsWith(".txt")) {
+				continue;
+			}
+			try {
+				BufferedReader reader = new BufferedReader(new FileReader(file));
+				StringBuilder text = new StringBuilder();
+				String line;
+				while ( (line = reader.readLine()) != null ) {
+					text.append(line).append('\n');
+				}
+				reader.close();
+				texts.add(text.toString());
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.SEVERE, "Error reading fixture " + file.getPath());
+				throw new RuntimeException("Exiting application", e);
+			}
+		}
+		
+		if (texts.isEmpty()) {
+			AppLogger.error.log(Level.SEVERE, "No .txt fixtures found in " + dirname);
+			throw new RuntimeException("Exiting application");
+		}
+		return texts.toArray(new String[texts.size()]);
+	}
+	
+	/*
+	 * Checks whether a benchmark has been selected on the command line
+	 */
+	private static boolean isSelected(Benchmark benchmark, ArrayList<String> filters)
+	{
+		if (filters.isEmpty())
+			return true;
+		for (String filter : filters) {
+			if (benchmark.getName().toLowerCase().contains(filter.toLowerCase()))
+				return true;
+		}
+		return false;
+	}
+	
+	private static void printUsage()
+	{
+		System.out.println("Usage: AnalysisBenchmarks [--warmup n] [--iterations n] [--time ms] "
+			+ "[--fixtures dir] [benchmark ...]");
+	}
+	
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		ArrayList<String> filters = new ArrayList<String>();
+		try {
+			for (int i = 0 ; i < args.length ; i++) {
+				if (args[i].equals("--warmup")) {
+					warmupIterations = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("--iterations")) {
+					iterations = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("--time")) {
+					iterationMillis = Long.parseLong(args[++i]);
+				}
+				else if (args[i].equals("--fixtures")) {
+					reviews = loadFixtures(args[++i]);
+				}
+				else {
+					filters.add(args[i]);
+				}
+			}
+		} catch ( ArrayIndexOutOfBoundsException e ) {
+			printUsage();
+			return;
+		} catch ( NumberFormatException e ) {
+			printUsage();
+			return;
+		}
+		
+		Benchmark[] benchmarks = {
+			new PosTaggingBenchmark(),
+			new LemmatizationBenchmark(),
+			new AnalyzerChainBenchmark(),
+			new PayloadBenchmark(),
+			new AttributeBenchmark(),
+			new LexiconLookupBenchmark(),
+			new ClassifierBenchmark(),
+			new DependencyParseBenchmark() };
+		
+		System.out.println(reviews.length + " fixture reviews, " + warmupIterations + " warmup and " + iterations
+			+ " measured iterations of " + iterationMillis + " ms");
+		if (!AnalysisProfiler.isAllocationCounterSupported()) {
+			System.out.println("Thread allocation counters are not supported by this JVM");
+		}
+		
+		for (Benchmark benchmark : benchmarks) {
+			if (isSelected(benchmark, filters)) {
+				benchmark.setup();
+				System.out.println(benchmark.measure(warmupIterations, iterations, iterationMillis));
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package benchmarks;
+
+import java.util.Locale;
+import util.AnalysisProfiler;
+
+
+/**
+ * A single benchmark of the {@link AnalysisBenchmarks} suite. A benchmark prepares its fixtures in
+ * {@link #setup()}, then {@link #measure(int, int, long)} calls {@link #run()} repeatedly: first for
+ * a number of warmup iterations, whose results are discarded, then for a number of measured
+ * iterations of fixed duration. Results are reported in operations per second, with the standard
+ * deviation across measured iterations, and in bytes allocated per operation.
+ * 
+ * @author Stelios Karabasakis
+ */
+public abstract class Benchmark {
+	
+	/*
+	 * Accumulates the results of all operations, so that the JIT cannot discard them as dead code
+	 */
+	private static volatile long	sink	= 0;
+
+	private String					name;
+	
+	/**
+	 * Constructor for class Benchmark
+	 * 
+	 * @param name
+	 *            The name under which the results of the benchmark are reported
+	 */
+	protected Benchmark(String name)
+	{
+		this.name = name;
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Loads the models and builds the fixtures needed by the benchmark. Not measured.
+	 */
+	public void setup()
+	{
+	}
+	
+	/**
+	 * Performs a single operation of the benchmark
+	 * 
+	 * @return a value derived from the result of the operation, e.g. the number of tokens produced
+	 */
+	public abstract long run();
+	
+	/**
+	 * The results of a benchmark
+	 */
+	public static final class Result {
+		
+		public final String	name;
+		public final double	opsPerSecond;
+		public final double	opsPerSecondError;
+		public final double	bytesPerOp;
+		
+		private Result(String name, double opsPerSecond, double opsPerSecondError, double bytesPerOp)
+		{
+			this.name = name;
+			this.opsPerSecond = opsPerSecond;
+			this.opsPerSecondError = opsPerSecondError;
+			this.bytesPerOp = bytesPerOp;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString()
+		{
+			return String.format(Locale.US, "%-28s %14.2f +/- %-12.2f ops/s %14s B/op", name, opsPerSecond,
+									opsPerSecondError, AnalysisProfiler.isAllocationCounterSupported() ? String
+										.format(Locale.US, "%.0f", bytesPerOp) : "n/a");
+		}
+	}
+	
+	/**
+	 * Runs the benchmark
+	 * 
+	 * @param warmup_iterations
+	 *            the number of iterations to run before measuring
+	 * @param iterations
+	 *            the number of measured iterations
+	 * @param iteration_millis
+	 *            the duration of every iteration. An iteration always runs at least one operation.
+	 * @return the results of the measured iterations
+	 */
+	public Result measure(int warmup_iterations, int iterations, long iteration_millis)
+	{
+		for (int i = 0 ; i < warmup_iterations ; i++) {
+			iterate(iteration_millis, null);
+		}
+		
+		double[] ops_per_second = new double[iterations];
+		long[] allocation = new long[2];
+		long total_ops = 0;
+		long total_bytes = 0;
+		for (int i = 0 ; i < iterations ; i++) {
+			long start_nanos = System.nanoTime();
+			long ops = iterate(iteration_millis, allocation);
+			ops_per_second[i] = ops * 1e9 / (System.nanoTime() - start_nanos);
+			total_ops += ops;
+			total_bytes += allocation[0];
+		}
+		
+		double mean = 0;
+		for (double value : ops_per_second) {
+			mean += value / iterations;
+		}
+		double variance = 0;
+		for (double value : ops_per_second) {
+			variance += (value - mean) * (value - mean) / Math.max(1, iterations - 1);
+		}
+		
+		return new Result(name, mean, Math.sqrt(variance), total_ops > 0 ? (double)total_bytes / total_ops : 0);
+	}
+	
+	/*
+	 * Runs operations until the given time has passed, and returns their number. If an allocation
+	 * array is given, the bytes allocated by the operations are stored in its first element.
+	 */
+	private long iterate(long iteration_millis, long[] allocation)
+	{
+		long deadline = System.nanoTime() + iteration_millis * 1000000L;
+		long ops = 0;
+		long result = 0;
+		long start_bytes = AnalysisProfiler.allocatedBytes();
+		do {
+			result += run();
+			ops++;
+		} while ( System.nanoTime() < deadline );
+		
+		if (allocation != null) {
+			allocation[0] = AnalysisProfiler.allocatedBytes() - start_bytes;
+		}
+		sink += result;
+		return ops;
+	}
+}
@@ -29,6 +29,7 @@ import java.util.logging.Level;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.Term;
 import util.AppLogger;
 import util.DatabaseConnection;
 import config.Globals;
@@ -127,7 +128,7 @@ public class DatabaseReview extends Review {
 		if (documentForIndexing == null) {
 			documentForIndexing = new Document();
 			documentForIndexing.add(new Field(Globals.IndexFieldNames.reviewid, Integer.toString(getReviewid()),
-					Field.Store.YES, Field.Index.NO));
+					Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
 			documentForIndexing.add(new Field(Globals.IndexFieldNames.text, getTitle() + "\n" + getReviewText(),
 					Field.Store.NO, Field.Index.ANALYZED_NO_NORMS));
 			documentForIndexing.add(new NumericField(Globals.IndexFieldNames.rating, Field.Store.YES, false)
@@ -136,5 +137,19 @@ public class DatabaseReview extends Review {
 		
 		return documentForIndexing;
 	}
+	
+	/**
+	 * @return the term that identifies the indexed document of this review, for use with
+	 *         {@link org.apache.lucene.index.IndexWriter#updateDocument} and term lookups
+	 */
+	public Term getIndexTerm()
+	{
+		return getIndexTerm(getReviewid());
+	}
+	
+	public static Term getIndexTerm(int reviewid)
+	{
+		return new Term(Globals.IndexFieldNames.reviewid, Integer.toString(reviewid));
+	}
 
 }
@@ -22,7 +22,6 @@
 //
 package classes;
 
-import java.sql.Clob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import util.DatabaseConnection;
@@ -37,7 +36,7 @@ public class DatabaseReviewCollection extends ReviewCollection {
 
 	private DatabaseConnection	conn				= null;
 	private int					maxSegmentSize		= 10000;
-	private int					segmentOffset		= 0;
+	private int					last_reviewid		= 0;
 	private int					min_reviewid		= 0;
 	private int					max_reviewid		= 0;
 	private boolean				has_next_segment	= true;
@@ -63,6 +62,7 @@ public class DatabaseReviewCollection extends ReviewCollection {
 	{
 		this.min_reviewid = min_reviewid;
 		this.max_reviewid = max_reviewid;
+		last_reviewid = min_reviewid;
 		has_next_segment = max_reviewid == 0 ? true : max_reviewid > min_reviewid;
 	}
 
@@ -79,14 +79,14 @@ public class DatabaseReviewCollection extends ReviewCollection {
 			r.setTitle(results.getString("title"));
 			r.setRating(results.getInt("rating"));
 			
-			Clob text = results.getClob("text");
-			r.setReviewText(text.getSubString(1, (int)text.length()));
+			// Read the text column directly as a string, rather than copying it out of a Clob
+			r.setReviewText(results.getString("text"));
 			
 			// Insert current review into collection
 			insertReview(r);
+			last_reviewid = r.getReviewid();
 		}
 		
-		segmentOffset++;
 		has_next_segment = getCount() == maxSegmentSize;
 		conn.closeQuery();
 	}
@@ -99,16 +99,17 @@ public class DatabaseReviewCollection extends ReviewCollection {
 	}
 
 	/**
-	 * @return
+	 * @return the query that retrieves the segment following the last loaded review. Segments are
+	 *         paged by review id, so that late segments are as cheap to retrieve as early ones.
 	 */
 	private String formReviewsQuery()
 	{
 		return "SELECT * FROM `" + table //
 			+ "` WHERE `enabled` = 1" /* + " AND `rating` > 0" *///
-			+ (min_reviewid == 0 ? "" : " AND `reviewid` > " + min_reviewid) //
+			+ (last_reviewid == 0 ? "" : " AND `reviewid` > " + last_reviewid) //
 			+ (max_reviewid == 0 ? "" : " AND `reviewid` <= " + max_reviewid) //
-			+ (maxSegmentSize == 0 ? "" : " LIMIT " + maxSegmentSize) //
-			+ (segmentOffset == 0 ? "" : " OFFSET " + segmentOffset * maxSegmentSize);
+			+ " ORDER BY `reviewid`" //
+			+ (maxSegmentSize == 0 ? "" : " LIMIT " + maxSegmentSize);
 	}
 
 	public boolean hasNextSegment()
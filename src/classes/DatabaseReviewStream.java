@@ -0,0 +1,277 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package classes;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import util.AppLogger;
+import util.DatabaseConnection;
+
+
+/**
+ * Streams the enabled reviews of the database in ascending review id order, one batch at a time.
+ * Unlike {@link DatabaseReviewCollection}, batches are paged by review id (keyset pagination)
+ * rather than by row offset, so that every batch costs the same to retrieve regardless of its
+ * position in the table. Rows are fetched through a server-side cursor, and only the columns needed
+ * for indexing are retrieved. While the current batch is being processed, the next one is
+ * prefetched on a background thread.
+ * <p>
+ * Batches can either be consumed one at a time, using {@link #hasNextSegment},
+ * {@link #loadNextSegment} and {@link #getIterator} like a {@link DatabaseReviewCollection}, or all
+ * at once through {@link #iterator}. Call {@link #close} when done, to release the prepared query
+ * and the prefetching thread.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class DatabaseReviewStream extends ReviewCollection implements Iterable<Review> {
+	
+	/** Default number of rows to fetch from the server per round trip */
+	public static int					defaultFetchSize	= 500;
+	
+	private DatabaseConnection			conn				= null;
+	private PreparedStatement			query				= null;
+	private int							maxSegmentSize		= 10000;
+	private int							min_reviewid		= 0;
+	private int							max_reviewid		= 0;
+	private int							last_reviewid		= 0;
+	private boolean						has_next_segment	= true;
+	
+	private ExecutorService				prefetcher			= null;
+	private Future<ArrayList<Review>>	nextSegment			= null;
+	
+	public DatabaseReviewStream() throws SQLException
+	{
+		this(10000, new DatabaseConnection());
+	}
+	
+	public DatabaseReviewStream(int maxSegmentSize) throws SQLException
+	{
+		this(maxSegmentSize, new DatabaseConnection());
+	}
+	
+	public DatabaseReviewStream(int maxSegmentSize, DatabaseConnection c) throws SQLException
+	{
+		this.maxSegmentSize = maxSegmentSize;
+		conn = c;
+		query = conn.prepareStreamingQuery(formReviewsQuery(), maxSegmentSize == 0 ? defaultFetchSize : Math
+			.min(maxSegmentSize, defaultFetchSize));
+		
+		prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "review-prefetcher");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	public void setLimits(int min_reviewid, int max_reviewid)
+	{
+		this.min_reviewid = min_reviewid;
+		this.max_reviewid = max_reviewid;
+		last_reviewid = min_reviewid;
+		has_next_segment = max_reviewid == 0 ? true : max_reviewid > min_reviewid;
+	}
+	
+	/**
+	 * Replaces the contents of the collection with the next batch of reviews. The batch is taken
+	 * from the prefetcher if it is already (being) retrieved, otherwise it is retrieved right away.
+	 * Retrieval of the batch that follows is then started in the background.
+	 * 
+	 * @throws SQLException
+	 */
+	public void loadNextSegment() throws SQLException
+	{
+		if (nextSegment == null) {
+			reviewList = fetchSegment();
+		}
+		else {
+			try {
+				reviewList = nextSegment.get();
+			} catch ( InterruptedException e ) {
+				throw new SQLException("Interrupted while waiting for the next batch of reviews", e);
+			} catch ( ExecutionException e ) {
+				if (e.getCause() instanceof SQLException)
+					throw (SQLException)e.getCause();
+				else
+					throw new SQLException("Prefetching the next batch of reviews failed", e.getCause());
+			} finally {
+				nextSegment = null;
+			}
+		}
+		
+		has_next_segment = maxSegmentSize != 0 && getCount() == maxSegmentSize
+			&& (max_reviewid == 0 || last_reviewid < max_reviewid);
+		if (has_next_segment) {
+			prefetchNextSegment();
+		}
+	}
+	
+	private void prefetchNextSegment()
+	{
+		nextSegment = prefetcher.submit(new Callable<ArrayList<Review>>() {
+			
+			@Override
+			public ArrayList<Review> call() throws SQLException
+			{
+				return fetchSegment();
+			}
+		});
+	}
+	
+	/*
+	 * Runs the keyset query for the batch of reviews that follows the last retrieved review id. This
+	 * is called either on the prefetcher thread or, for the first batch, on the caller's thread, but
+	 * never on both at the same time.
+	 */
+	private ArrayList<Review> fetchSegment() throws SQLException
+	{
+		ArrayList<Review> segment = new ArrayList<Review>(maxSegmentSize);
+		
+		query.setInt(1, last_reviewid);
+		query.setInt(2, max_reviewid == 0 ? Integer.MAX_VALUE : max_reviewid);
+		query.setInt(3, maxSegmentSize == 0 ? Integer.MAX_VALUE : maxSegmentSize);
+		ResultSet results = query.executeQuery();
+		try {
+			while ( results.next() ) {
+				DatabaseReview r = new DatabaseReview();
+				r.setReviewid(results.getInt(1));
+				r.setTitle(results.getString(2));
+				r.setRating(results.getInt(3));
+				
+				// Read the text column directly as a string, rather than copying it out of a Clob
+				r.setReviewText(results.getString(4));
+				
+				segment.add(r);
+			}
+		} finally {
+			results.close();
+		}
+		
+		if (!segment.isEmpty()) {
+			last_reviewid = ((DatabaseReview)segment.get(segment.size() - 1)).getReviewid();
+		}
+		
+		return segment;
+	}
+	
+	/**
+	 * @return the query that retrieves the batch of reviews following a given review id
+	 */
+	private static String formReviewsQuery()
+	{
+		return "SELECT `reviewid`, `title`, `rating`, `text` FROM `" + table //
+			+ "` WHERE `enabled` = 1" //
+			+ " AND `reviewid` > ? AND `reviewid` <= ?" //
+			+ " ORDER BY `reviewid` LIMIT ?";
+	}
+	
+	public boolean hasNextSegment()
+	{
+		return has_next_segment;
+	}
+	
+	/**
+	 * @return the id of the last review retrieved from the database so far
+	 */
+	public int getLastReviewId()
+	{
+		return last_reviewid;
+	}
+	
+	/**
+	 * Returns an iterator over all remaining reviews of the stream, which loads successive batches as
+	 * needed. Any {@link SQLException} thrown while loading a batch is logged and rethrown as a
+	 * {@link RuntimeException}.
+	 */
+	@Override
+	public Iterator<Review> iterator()
+	{
+		return new Iterator<Review>() {
+			
+			private Iterator<Review>	current	= getIterator();
+			
+			@Override
+			public boolean hasNext()
+			{
+				while ( !current.hasNext() && has_next_segment ) {
+					try {
+						loadNextSegment();
+					} catch ( SQLException e ) {
+						AppLogger.error.log(Level.SEVERE, "An exception occured while trying to access the database.\n"
+							+ e.getMessage());
+						throw new RuntimeException(e);
+					}
+					current = getIterator();
+				}
+				return current.hasNext();
+			}
+			
+			@Override
+			public Review next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return current.next();
+			}
+			
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * Stops the prefetching thread, after letting any batch retrieval in progress complete, and
+	 * releases the prepared query. The underlying database connection is left open.
+	 */
+	public void close()
+	{
+		prefetcher.shutdown();
+		try {
+			prefetcher.awaitTermination(60, TimeUnit.SECONDS);
+			query.close();
+		} catch ( InterruptedException e ) {
+			AppLogger.error.log(Level.WARNING, "Interrupted while waiting for the review prefetcher to stop");
+		} catch ( SQLException e ) {
+			AppLogger.error.log(Level.WARNING, "Review stream query could not be closed.\n" + e.getMessage());
+		}
+	}
+}
@@ -22,11 +22,17 @@
 //
 package classes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Map.Entry;
 import lexicon.Ratings;
+import util.BinaryState;
+import util.LongIntHashMap;
 
 
 /**
@@ -35,7 +41,7 @@ import lexicon.Ratings;
  * 
  * @author Stelios Karabasakis
  */
-public class ReviewStats implements Serializable {
+public class ReviewStats implements Serializable, BinaryState {
 	
 	private static final long						serialVersionUID	= 7361056987594437171L;
 
@@ -44,7 +50,7 @@ public class ReviewStats implements Serializable {
 	private Counter									currentReviewCounter;
 	
 	// Maps review id's to their corresponding lengths, grouped by rating
-	private ArrayList<HashMap<Integer, Integer>>	reviewLengths;
+	private ArrayList<LongIntHashMap>				reviewLengths;
 	
 	/**
 	 * Constructor for class ReviewStats
@@ -53,9 +59,32 @@ public class ReviewStats implements Serializable {
 	{
 		currentReviewCounter = new Counter();
 
-		reviewLengths = new ArrayList<HashMap<Integer, Integer>>(Ratings.capacity());
+		reviewLengths = new ArrayList<LongIntHashMap>(Ratings.capacity());
 		for (int pos = 0 ; pos < Ratings.capacity() ; pos++) {
-			reviewLengths.add(new HashMap<Integer, Integer>());
+			reviewLengths.add(new LongIntHashMap());
+		}
+	}
+	
+	/*
+	 * Reads serialized review stats. Older versions kept the review lengths of each rating in a
+	 * hash map, which is converted to a primitive map, so that legacy state files can still be
+	 * restored.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		
+		ArrayList<Object> lengths_by_rating = (ArrayList<Object>)(ArrayList<?>)reviewLengths;
+		for (int pos = 0 ; pos < lengths_by_rating.size() ; pos++) {
+			if (lengths_by_rating.get(pos) instanceof HashMap<?, ?>) {
+				HashMap<Integer, Integer> legacy_lengths = (HashMap<Integer, Integer>)lengths_by_rating.get(pos);
+				LongIntHashMap lengths = new LongIntHashMap(legacy_lengths.size());
+				for (Entry<Integer, Integer> length : legacy_lengths.entrySet()) {
+					lengths.put(length.getKey(), length.getValue());
+				}
+				lengths_by_rating.set(pos, lengths);
+			}
 		}
 	}
 	
@@ -89,9 +118,20 @@ public class ReviewStats implements Serializable {
 		return currentReviewCounter;
 	}
 
+	/**
+	 * Stores the staged review information. If the review has already been stored, with the same
+	 * or a different rating, its previous information is replaced.
+	 * 
+	 * @return false if no review is staged
+	 */
 	public boolean storeCurrent()
 	{
 		if (currentReviewId != 0) {
+			for (int pos = 0 ; pos < reviewLengths.size() ; pos++) {
+				if (pos != currentReviewRating) {
+					reviewLengths.get(pos).remove(currentReviewId);
+				}
+			}
 			reviewLengths.get(currentReviewRating).put(currentReviewId, currentReviewCounter.get());
 			resetCurrent();
 			return true;
@@ -107,13 +147,113 @@ public class ReviewStats implements Serializable {
 		currentReviewCounter.reset();
 	}
 	
+	/**
+	 * Merges the review lengths stored in another {@link ReviewStats} object into this one. As with
+	 * {@link #storeCurrent()}, a review that is already stored in this object is replaced, even if
+	 * it is stored under a different rating. Any review that is staged but not yet stored in
+	 * {@code other} is not merged.
+	 * 
+	 * @param other
+	 *            The object whose stored review lengths will be merged
+	 */
+	public void merge(ReviewStats other)
+	{
+		for (int pos = 0 ; pos < Ratings.capacity() ; pos++) {
+			LongIntHashMap.Cursor length = other.reviewLengths.get(pos).cursor();
+			while ( length.next() ) {
+				for (int other_pos = 0 ; other_pos < reviewLengths.size() ; other_pos++) {
+					if (other_pos != pos) {
+						reviewLengths.get(other_pos).remove(length.key());
+					}
+				}
+				reviewLengths.get(pos).put(length.key(), length.value());
+			}
+		}
+	}
+	
+	/**
+	 * @return true if a review is stored in this object, under any rating
+	 */
+	public boolean contains(int reviewId)
+	{
+		for (LongIntHashMap lengths : reviewLengths) {
+			if (lengths.containsKey(reviewId))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Discards all stored review lengths, as well as the currently staged review
+	 */
+	public void clear()
+	{
+		for (LongIntHashMap lengths : reviewLengths) {
+			lengths.clear();
+		}
+		resetCurrent();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#stateVersion()
+	 */
+	@Override
+	public int stateVersion()
+	{
+		return 1;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#writeState(java.io.DataOutput)
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException
+	{
+		out.writeInt(reviewLengths.size());
+		for (LongIntHashMap lengths : reviewLengths) {
+			out.writeInt(lengths.size());
+			LongIntHashMap.Cursor length = lengths.cursor();
+			while ( length.next() ) {
+				out.writeInt((int)length.key());
+				out.writeInt(length.value());
+			}
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#readState(java.io.DataInput, int)
+	 */
+	@Override
+	public void readState(DataInput in, int version) throws IOException
+	{
+		clear();
+		int n_ratings = in.readInt();
+		for (int pos = 0 ; pos < n_ratings ; pos++) {
+			int n_reviews = in.readInt();
+			LongIntHashMap lengths = new LongIntHashMap(n_reviews);
+			for (int i = 0 ; i < n_reviews ; i++) {
+				int review_id = in.readInt();
+				lengths.put(review_id, in.readInt());
+			}
+			if (pos < reviewLengths.size()) {
+				reviewLengths.set(pos, lengths);
+			}
+			else {
+				reviewLengths.add(lengths);
+			}
+		}
+	}
+	
 	/**
 	 * @param rating
 	 * @return
 	 */
 	public int getTotalReviews(int rating)
 	{
-		return reviewLengths.get(rating).keySet().size();
+		return reviewLengths.get(rating).size();
 	}
 
 	public int getTotalReviews()
@@ -130,9 +270,9 @@ public class ReviewStats implements Serializable {
 	public int getTotalLength(int rating) {
 		int total_length = 0;
 
-		Iterator<Integer> i = reviewLengths.get(rating).values().iterator();
-		while ( i.hasNext() ) {
-			total_length += i.next();
+		LongIntHashMap.Cursor length = reviewLengths.get(rating).cursor();
+		while ( length.next() ) {
+			total_length += length.value();
 		}
 		
 		return total_length;
@@ -53,6 +53,8 @@ public class Paths {
 	public static final String	lexiconDiscardedPath	= WORKDIR_ROOT + "/sentilexicon/discarded/";
 	public static final String	ruleSetFilesPath		= WORKDIR_ROOT + "/ruleset/";
 	public static final String	dotFilesPath			= WORKDIR_ROOT + "/treeviz/";
+	public static final String	compiledWordnetFile		= WORKDIR_ROOT + "/wordnet.lex";
+	public static final String	parsedCorpusFile		= WORKDIR_ROOT + "/corpus.parsed";
 
 
 	
@@ -24,6 +24,7 @@ package dependencies;
 
 import indexing.Token;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -34,11 +35,11 @@ import java.util.Iterator;
 import java.util.Random;
 import java.util.logging.Level;
 import lexicon.SentimentLexicon;
+import org.apache.commons.lang.ArrayUtils;
 import util.AppLogger;
 import classes.DatabaseReviewCollection;
 import classes.Review;
 import config.Globals;
-import dependencies.visualisation.DependencyTreeParseNoViz;
 
 
 /**
@@ -52,6 +53,9 @@ public class DependencyExampleGenerator {
 	ReviewDependencyAnalyzer		analyzer		= new ReviewDependencyAnalyzer();
 	ArrayList<DependencyTreeParse>	trees			= new ArrayList<DependencyTreeParse>();
 	SentimentLexicon				sentiments		= SentimentLexicon.loadLexicon();
+	DependencyPatternIndex			index			= new DependencyPatternIndex();
+	ParsedCorpus					corpus			= null;
+	long[]							positions		= null;
 
 	/**
 	 * Constructor for class DependencyExampleGenerator
@@ -72,7 +76,7 @@ public class DependencyExampleGenerator {
 					ArrayList<ArrayList<Token>> sentences = analyzer.getSentences(review_i.next());
 					for (ArrayList<Token> sentence : sentences) {
 						try {
-							trees.add(new DependencyTreeParseNoViz(sentence));
+							addTree(new DependencyTreeParse(sentence));
 						} catch ( Exception e ) {
 							AppLogger.error.log(Level.FINE, e.getMessage());
 						}
@@ -92,7 +96,7 @@ public class DependencyExampleGenerator {
 		try {
 			ArrayList<ArrayList<Token>> sentences = analyzer.getSentences(new FileReader(file));
 			for (ArrayList<Token> sentence : sentences) {
-				trees.add(new DependencyTreeParseNoViz(sentence));
+				addTree(new DependencyTreeParse(sentence));
 			}
 		} catch ( FileNotFoundException e ) {
 			AppLogger.error.log(Level.SEVERE, "File not found or not accessible: " + file);
@@ -100,6 +104,39 @@ public class DependencyExampleGenerator {
 		}
 	}
 
+	/**
+	 * Constructor for class DependencyExampleGenerator. All sentences of a pre-parsed corpus are
+	 * indexed, instead of a pool of sentences parsed in advance, and the sentences that may contain
+	 * examples are read back from the corpus file as needed.
+	 */
+	public DependencyExampleGenerator(ParsedCorpus corpus)
+	{
+		this.corpus = corpus;
+		positions = new long[1024];
+		Iterator<ParsedCorpus.ParsedSentence> sentence_i = corpus.iterator();
+		while ( sentence_i.hasNext() ) {
+			ParsedCorpus.ParsedSentence sentence = sentence_i.next();
+			int id = index.add(sentence.getTreeParse(), sentiments);
+			if (id == positions.length) {
+				long[] grown = new long[positions.length * 2];
+				System.arraycopy(positions, 0, grown, 0, positions.length);
+				positions = grown;
+			}
+			positions[id] = sentence.getPosition();
+		}
+	}
+	
+	private void addTree(DependencyTreeParse tree)
+	{
+		index.add(tree, sentiments);
+		trees.add(tree);
+	}
+	
+	private DependencyTreeParse getTree(int id)
+	{
+		return corpus != null ? corpus.getSentence(positions[id]).getTreeParse() : trees.get(id);
+	}
+	
 	/**
 	 * @return the exampleCount
 	 */
@@ -118,12 +155,16 @@ public class DependencyExampleGenerator {
 		this.exampleCount = exampleCount;
 	}
 	
+	/**
+	 * Looks up the sentences that may contain patterns matching the query in the pattern index, and
+	 * collects examples from them until {@link #getExampleCount()} examples have been found
+	 */
 	public ArrayList<DependencyExample> generateExamples(DependencyQuery query)
 	{
 		ArrayList<DependencyExample> examples = new ArrayList<DependencyExample>();
-		Iterator<DependencyTreeParse> tree_i = trees.iterator();
-		while ( examples.size() < exampleCount && tree_i.hasNext() ) {
-			examples.addAll(tree_i.next().findExamples(query, sentiments));
+		Iterator<Integer> id_i = index.lookup(query);
+		while ( examples.size() < exampleCount && id_i.hasNext() ) {
+			examples.addAll(getTree(id_i.next()).findExamples(query, sentiments));
 		}
 		
 		return examples;
@@ -131,8 +172,20 @@ public class DependencyExampleGenerator {
 	
 	public static void main(String[] args)
 	{
-
-		DependencyExampleGenerator gen = new DependencyExampleGenerator(500);
+		DependencyExampleGenerator gen;
+		int pos = ArrayUtils.indexOf(args, "--corpus");
+		if (pos != ArrayUtils.INDEX_NOT_FOUND) {
+			try {
+				gen = new DependencyExampleGenerator(pos + 1 < args.length ? new ParsedCorpus(new File(args[pos + 1]))
+					: ParsedCorpus.open());
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.SEVERE, "Cannot open parsed corpus: " + e.getMessage());
+				return;
+			}
+		}
+		else {
+			gen = new DependencyExampleGenerator(500);
+		}
 		BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
 
 		String query;
@@ -0,0 +1,229 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package dependencies;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import lexicon.Ratings;
+import lexicon.SentimentLexicon;
+import lexicon.TermSentiment.Sentiment;
+import lexicon.TermSentiment.Sentiment.SentimentFormat;
+import wordnet.Synset.SynsetCategory;
+import dependencies.rules.DependencyPattern;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+
+
+/**
+ * An inverted index over the dependency patterns of a collection of sentences. For each
+ * grammatical relation, the index keeps a postings list of sentence ids for every combination of
+ * gov category, gov prior sentiment rating, dep category and dep prior sentiment rating found in
+ * the collection. A {@link DependencyQuery} is answered by merging the postings of the
+ * combinations that satisfy it, so that only sentences that contain a candidate pattern need to be
+ * parsed and matched against the query.
+ * <p>
+ * Sentence ids are assigned in the order sentences are added, starting from 0. It is up to the
+ * caller to map them back to the sentences.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class DependencyPatternIndex {
+	
+	private static final int									CATEGORIES		= SynsetCategory.values().length;
+	private static final int									RATINGS			= Ratings.MAX_RATING + 1;
+	
+	private HashMap<GrammaticalRelation, HashMap<Integer, Postings>>	index			= new HashMap<GrammaticalRelation, HashMap<Integer, Postings>>();
+	private int													sentenceCount	= 0;
+	
+	/*
+	 * An ascending list of sentence ids
+	 */
+	private static class Postings {
+		
+		private int[]	ids		= new int[4];
+		private int		size	= 0;
+		
+		private void add(int id)
+		{
+			if (size > 0 && ids[size - 1] == id)
+				return;
+			if (size == ids.length) {
+				int[] grown = new int[size * 2];
+				System.arraycopy(ids, 0, grown, 0, size);
+				ids = grown;
+			}
+			ids[size++] = id;
+		}
+	}
+	
+	/*
+	 * A position in a postings list, ordered by the id it points to
+	 */
+	private static class PostingsCursor implements Comparable<PostingsCursor> {
+		
+		private Postings	postings;
+		private int			next	= 0;
+		
+		private PostingsCursor(Postings postings)
+		{
+			this.postings = postings;
+		}
+		
+		private int current()
+		{
+			return postings.ids[next];
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		@Override
+		public int compareTo(PostingsCursor other)
+		{
+			return current() < other.current() ? -1 : current() == other.current() ? 0 : 1;
+		}
+	}
+	
+	
+	/**
+	 * Constructor for class DependencyPatternIndex
+	 */
+	public DependencyPatternIndex()
+	{
+	}
+	
+	/**
+	 * Adds the patterns of a sentence to the index
+	 * 
+	 * @param lexicon
+	 *            The lexicon that provides the prior sentiments of the terms in the sentence
+	 * @return the id assigned to the sentence
+	 */
+	public int add(DependencyTreeParse tree, SentimentLexicon lexicon)
+	{
+		ArrayList<DependencyPattern> patterns = tree.getPatterns(lexicon);
+		int id = sentenceCount++;
+		for (DependencyPattern pattern : patterns) {
+			HashMap<Integer, Postings> relation_postings = index.get(pattern.getReln());
+			if (relation_postings == null) {
+				relation_postings = new HashMap<Integer, Postings>();
+				index.put(pattern.getReln(), relation_postings);
+			}
+			
+			Integer key = key(pattern.getGov().getCategory(), rating(pattern.getGov().getSentiment()), pattern
+				.getDep().getCategory(), rating(pattern.getDep().getSentiment()));
+			Postings postings = relation_postings.get(key);
+			if (postings == null) {
+				postings = new Postings();
+				relation_postings.put(key, postings);
+			}
+			postings.add(id);
+		}
+		return id;
+	}
+	
+	/**
+	 * @return the ids of the sentences that contain at least one pattern with the relation,
+	 *         categories and sentiment ratings requested by the query, in ascending order. The
+	 *         patterns of these sentences still need to be matched against the query, as the
+	 *         relative strength of the gov and dep sentiments is not indexed.
+	 */
+	public Iterator<Integer> lookup(DependencyQuery query)
+	{
+		final PriorityQueue<PostingsCursor> cursors = new PriorityQueue<PostingsCursor>();
+		HashMap<Integer, Postings> relation_postings = index.get(query.getRelation());
+		if (relation_postings != null) {
+			for (Entry<Integer, Postings> entry : relation_postings.entrySet()) {
+				int key = entry.getKey();
+				int dep_rating = key % RATINGS;
+				key /= RATINGS;
+				SynsetCategory dep_category = SynsetCategory.values()[key % CATEGORIES];
+				key /= CATEGORIES;
+				int gov_rating = key % RATINGS;
+				SynsetCategory gov_category = SynsetCategory.values()[key / RATINGS];
+				if (query.matches(query.getRelation(), gov_category, gov_rating, dep_category, dep_rating)) {
+					cursors.add(new PostingsCursor(entry.getValue()));
+				}
+			}
+		}
+		
+		// Merge the postings lazily, so that callers can stop once they have enough examples
+		return new Iterator<Integer>() {
+			
+			@Override
+			public boolean hasNext()
+			{
+				return !cursors.isEmpty();
+			}
+			
+			@Override
+			public Integer next()
+			{
+				if (cursors.isEmpty())
+					throw new NoSuchElementException();
+				
+				int id = cursors.peek().current();
+				while ( !cursors.isEmpty() && cursors.peek().current() == id ) {
+					PostingsCursor cursor = cursors.poll();
+					if (++cursor.next < cursor.postings.size) {
+						cursors.add(cursor);
+					}
+				}
+				return id;
+			}
+			
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * @return the number of sentences added to the index
+	 */
+	public int size()
+	{
+		return sentenceCount;
+	}
+	
+	private static int key(SynsetCategory gov_category, int gov_rating, SynsetCategory dep_category, int dep_rating)
+	{
+		return ((gov_category.ordinal() * RATINGS + gov_rating) * CATEGORIES + dep_category.ordinal()) * RATINGS
+			+ dep_rating;
+	}
+	
+	/*
+	 * Nodes without a prior sentiment are indexed under rating 0, which falls outside every
+	 * sentiment interval
+	 */
+	private static int rating(Sentiment sentiment)
+	{
+		return sentiment == null ? 0 : sentiment.toNumber(SentimentFormat.RATING);
+	}
+}
@@ -117,6 +117,11 @@ public class DependencyQuery {
 				&& interval.contains(node.getSentiment());
 		}
 		
+		public boolean matches(SynsetCategory node_category, int node_rating)
+		{
+			return (category == SynsetCategory.NONE || category == node_category) && interval.containsRating(node_rating);
+		}
+		
 		/*
 		 * (non-Javadoc)
 		 * @see java.lang.Object#toString()
@@ -185,6 +190,14 @@ public class DependencyQuery {
 		}
 	}
 	
+	/**
+	 * @return the grammatical relation the query is looking for
+	 */
+	public GrammaticalRelation getRelation()
+	{
+		return reln;
+	}
+	
 	public boolean matches(DependencyPattern pattern)
 	{
 		return reln.equals(pattern.getReln()) //
@@ -193,6 +206,19 @@ public class DependencyQuery {
 			&& compareNodeSentiments(pattern);
 	}
 	
+	/**
+	 * Checks the relation, categories and sentiment ratings of a pattern against the query, without
+	 * comparing the sentiments of its nodes. Patterns that do not pass this check cannot match the
+	 * query.
+	 */
+	boolean matches(GrammaticalRelation relation, SynsetCategory gov_category, int gov_rating,
+			SynsetCategory dep_category, int dep_rating)
+	{
+		return reln.equals(relation) //
+			&& govQuery.matches(gov_category, gov_rating) //
+			&& depQuery.matches(dep_category, dep_rating);
+	}
+	
 	private boolean compareNodeSentiments(DependencyPattern pattern)
 	{
 		switch (comparison) {
@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Level;
 import util.AppLogger;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
 import edu.stanford.nlp.trees.TypedDependency;
 
 
@@ -49,70 +50,118 @@ public class DependencyTree {
 
 	
 	public DependencyTree(ArrayList<Token> sentence) throws IllegalArgumentException
+	{
+		// Saving sentence tokens so that we can reference them by index id later
+		tokenIndex = sentence;
+		relationIndex = parseRelations(sentence);
+		buildTree();
+	}
+	
+	/**
+	 * Constructor for class DependencyTree, for a sentence that has already been parsed, e.g. one
+	 * read from a {@link ParsedCorpus}
+	 * 
+	 * @param relations
+	 *            The relations of the sentence, in the order returned by
+	 *            {@link #parseRelations(ArrayList)}
+	 */
+	public DependencyTree(ArrayList<Token> sentence, ArrayList<TypedDependencyWrapper> relations)
+	{
+		tokenIndex = sentence;
+		relationIndex = relations;
+		buildTree();
+	}
+	
+	/**
+	 * Retrieves the typed dependencies of a sentence from the parse cache, or, if the sentence is
+	 * not cached, by sending it through the Stanford parser of the current thread
+	 * 
+	 * @return the relations of the sentence, in the order returned by the parser
+	 * @throws IllegalArgumentException
+	 *             if the sentence cannot be parsed
+	 */
+	public static ArrayList<TypedDependencyWrapper> parseRelations(ArrayList<Token> sentence)
+			throws IllegalArgumentException
 	{
 		try {
 			
-			// Saving sentence tokens so that we can reference them by index id later
-			tokenIndex = sentence;
-
-			// Sending sentence through the Stanford parser
-			ParsingUtils.lexicalizedParser.parse(sentence);
-
-			// Retrieving the dependency tree of the sentence from the parser
-			List<TypedDependency> dependency_tree = ParsingUtils.grammaticalStructureFactory //
-				.newGrammaticalStructure(ParsingUtils.lexicalizedParser.getBestParse()).typedDependencies(false);
-			
-
-			// Storing the dependency tree as an ordered list of binary grammatical relations
-			relationIndex = new ArrayList<TypedDependencyWrapper>();
-			for (TypedDependency dependency : dependency_tree) {
-				relationIndex.add(new TypedDependencyWrapper(dependency));
+			// Looking up the dependency tree of the sentence in the parse cache
+			ParseCache cache = ParseCache.getInstance();
+			ArrayList<TypedDependencyWrapper> relations = cache.get(sentence);
+			if (relations == null) {
+				
+				// Sending sentence through the Stanford parser of the current thread
+				LexicalizedParser parser = ParsingUtils.getLexicalizedParser();
+				try {
+					parser.parse(sentence);
+				} catch ( UnsupportedOperationException e ) {
+					cache.putUnparseable(sentence);
+					throw e;
+				}
+				
+				// Retrieving the dependency tree of the sentence from the parser
+				List<TypedDependency> dependency_tree = ParsingUtils.getGrammaticalStructureFactory() //
+					.newGrammaticalStructure(parser.getBestParse()).typedDependencies(false);
+				
+				// Storing the dependency tree as an ordered list of binary grammatical relations
+				relations = new ArrayList<TypedDependencyWrapper>();
+				for (TypedDependency dependency : dependency_tree) {
+					relations.add(new TypedDependencyWrapper(dependency));
+				}
+				cache.put(sentence, relations);
 			}
 			
-			// Extracting set of depIndex -> govIndex pointers
-			parents = new HashMap<Integer, Integer>();
-			for (TypedDependencyWrapper relation : relationIndex) {
-				parents.put(relation.getDepIndex(), relation.getGovIndex());
-			}
-
-			for (TypedDependencyWrapper relation : relationIndex) {
-				relation.setPathToRoot(pathToRoot(relation.getGovIndex()));
-			}
-
-			Collections.sort(relationIndex);
-
-			// Retrieving nodes that partake in dependencies
-			relationTerms = new HashSet<Integer>();
-			for (TypedDependencyWrapper relation : relationIndex) {
-				relationTerms.add(relation.getGovIndex());
-				relationTerms.add(relation.getDepIndex());
-			}
-			if (relationTerms.isEmpty()) {
-				relationTerms.add(1);
-			}
-
-
-			// Retrieving leaf nodes
-			HashSet<Integer> depNodes = new HashSet<Integer>();
-			HashSet<Integer> govNodes = new HashSet<Integer>();
-			for (TypedDependencyWrapper relation : relationIndex) {
-				govNodes.add(relation.getGovIndex());
-				depNodes.add(relation.getDepIndex());
-			}
-			depNodes.removeAll(govNodes);
-			leafNodes = depNodes;
+			return relations;
 			
 		} catch ( UnsupportedOperationException e ) {
-			AppLogger.error.log(Level.SEVERE, "\"" + getSentence() + "\"\n" + e.getMessage());
+			AppLogger.error.log(Level.SEVERE, "\"" + getSentence(sentence) + "\"\n" + e.getMessage());
 			throw new IllegalArgumentException(e);
 		} catch ( OutOfMemoryError e ) {
-			AppLogger.error.log(Level.SEVERE, "\"" + getSentence() + "\"\n" + e.getMessage());
+			AppLogger.error.log(Level.SEVERE, "\"" + getSentence(sentence) + "\"\n" + e.getMessage());
 			throw new IllegalArgumentException(e);
+		} catch ( IllegalArgumentException e ) {
+			throw e;
 		} catch ( Exception e ) {
 			throw new IllegalArgumentException(e);
 		}
 	}
 	
+	private void buildTree()
+	{
+		// Extracting set of depIndex -> govIndex pointers
+		parents = new HashMap<Integer, Integer>();
+		for (TypedDependencyWrapper relation : relationIndex) {
+			parents.put(relation.getDepIndex(), relation.getGovIndex());
+		}
+
+		for (TypedDependencyWrapper relation : relationIndex) {
+			relation.setPathToRoot(pathToRoot(relation.getGovIndex()));
+		}
+
+		Collections.sort(relationIndex);
+
+		// Retrieving nodes that partake in dependencies
+		relationTerms = new HashSet<Integer>();
+		for (TypedDependencyWrapper relation : relationIndex) {
+			relationTerms.add(relation.getGovIndex());
+			relationTerms.add(relation.getDepIndex());
+		}
+		if (relationTerms.isEmpty()) {
+			relationTerms.add(1);
+		}
+
+
+		// Retrieving leaf nodes
+		HashSet<Integer> depNodes = new HashSet<Integer>();
+		HashSet<Integer> govNodes = new HashSet<Integer>();
+		for (TypedDependencyWrapper relation : relationIndex) {
+			govNodes.add(relation.getGovIndex());
+			depNodes.add(relation.getDepIndex());
+		}
+		depNodes.removeAll(govNodes);
+		leafNodes = depNodes;
+	}
+	
 	/**
 	 * Constructor for class DependencyTree
 	 */
@@ -184,9 +233,14 @@ public class DependencyTree {
 	}
 
 	protected String getSentence()
+	{
+		return getSentence(tokenIndex);
+	}
+	
+	private static String getSentence(List<Token> tokens)
 	{
 		StringBuilder sentence = new StringBuilder();
-		for (Token token : tokenIndex) {
+		for (Token token : tokens) {
 			sentence.append(token.isProper() ? token.word().toUpperCase() : token.word()).append(' ');
 		}
 		
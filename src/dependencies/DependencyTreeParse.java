@@ -25,17 +25,13 @@ package dependencies;
 import indexing.PosTag;
 import indexing.Token;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Map.Entry;
 import lexicon.SentimentLexicon;
 import lexicon.TermSentiment;
 import lexicon.TermSentiment.Sentiment;
-import lexicon.TermSentiment.Sentiment.SentimentFormat;
 import net.didion.jwnl.data.POS;
 import topics.TopicLexicon;
 import wordnet.Synset;
@@ -45,23 +41,24 @@ import dependencies.rules.DependencyRuleSet;
 
 
 /**
- * TODO Description missing
+ * Infers the sentiment of each topic found in a sentence, by traversing its dependency tree and
+ * applying a rule to each relation. Per-node state is kept in arrays indexed by node id. Parsing
+ * builds no trace output, unless a {@link DependencyTreeParseListener} is attached to the parse.
  * 
  * @author Stelios Karabasakis
  */
-public abstract class DependencyTreeParse extends DependencyTree {
+public class DependencyTreeParse extends DependencyTree {
 	
-	private HashSet<Integer>							clauseRoots;
+	private boolean[]									clauseRoots;
 
 	protected int										next;
-	protected LinkedHashMap<Integer, Sentiment>			nodeSentimentsInit;
-	protected LinkedHashMap<Integer, Sentiment>			nodeSentiments;
+	protected Sentiment[]								nodeSentimentsInit;
+	protected Sentiment[]								nodeSentiments;
 	protected LinkedHashMap<Integer, String>			nodeTopics;
 	protected LinkedHashMap<Integer, Integer>			nodeTopicRoots;
-	protected HashMap<Integer, PriorityQueue<Integer>>	nodeTokens;
-	protected HashSet<Integer>							traversedNodes;
+	protected boolean[]									traversedNodes;
 	
-	protected StringBuilder								explanation;
+	private ArrayList<DependencyTreeParseListener>		listeners	= null;
 	
 	
 	/**
@@ -74,6 +71,16 @@ public abstract class DependencyTreeParse extends DependencyTree {
 		super(sentence);
 	}
 	
+	/**
+	 * Constructor for class DependencyTreeParse, for a sentence that has already been parsed
+	 * 
+	 * @see DependencyTree#DependencyTree(ArrayList, ArrayList)
+	 */
+	public DependencyTreeParse(ArrayList<Token> sentence, ArrayList<TypedDependencyWrapper> relations)
+	{
+		super(sentence, relations);
+	}
+	
 	public DependencyTreeParse(DependencyTree tree)
 	{
 		tokenIndex = tree.tokenIndex;
@@ -81,21 +88,42 @@ public abstract class DependencyTreeParse extends DependencyTree {
 		relationTerms = tree.relationTerms;
 	}
 
+	/**
+	 * Attaches a listener that is notified of every step of subsequent parses
+	 */
+	public void addListener(DependencyTreeParseListener listener)
+	{
+		if (listeners == null) {
+			listeners = new ArrayList<DependencyTreeParseListener>();
+		}
+		listeners.add(listener);
+	}
+	
+	public void removeListener(DependencyTreeParseListener listener)
+	{
+		if (listeners != null) {
+			listeners.remove(listener);
+			if (listeners.isEmpty()) {
+				listeners = null;
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of nodes of the tree, including the root node 0
+	 */
+	private int nodeCount()
+	{
+		return tokenIndex.size() + 1;
+	}
+	
 	private void reset()
 	{
 		resetSentiments();
 		resetTopics();
 
-		nodeTokens = new HashMap<Integer, PriorityQueue<Integer>>();
-		for (Integer nodeid : relationTerms) {
-			PriorityQueue<Integer> q = new PriorityQueue<Integer>();
-			q.add(nodeid);
-			nodeTokens.put(nodeid, q);
-		}
-		explanation = new StringBuilder();
 		next = 0;
-		
-		traversedNodes = new HashSet<Integer>();
+		traversedNodes = new boolean[nodeCount()];
 	}
 	
 	private Sentiment resolvePriorSentiment(Token token, SentimentLexicon lexicon)
@@ -121,11 +149,10 @@ public abstract class DependencyTreeParse extends DependencyTree {
 
 	public void initSentiments(SentimentLexicon lexicon)
 	{
-		nodeSentimentsInit = new LinkedHashMap<Integer, Sentiment>();
+		nodeSentimentsInit = new Sentiment[nodeCount()];
 
 		for (Integer nodeid : relationTerms) {
-			Sentiment s = resolvePriorSentiment(tokenIndex.get(nodeid - 1), lexicon);
-			nodeSentimentsInit.put(nodeid, s);
+			nodeSentimentsInit[nodeid] = resolvePriorSentiment(tokenIndex.get(nodeid - 1), lexicon);
 		}
 		
 		resetSentiments();
@@ -134,31 +161,22 @@ public abstract class DependencyTreeParse extends DependencyTree {
 	private void resetSentiments()
 	{
 		if (nodeSentimentsInit != null) {
-			nodeSentiments = new LinkedHashMap<Integer, Sentiment>();
-			Set<Entry<Integer, Sentiment>> entries = nodeSentimentsInit.entrySet();
-			for (Entry<Integer, Sentiment> entry : entries) {
-				nodeSentiments.put(entry.getKey(), entry.getValue());
-			}
+			nodeSentiments = nodeSentimentsInit.clone();
 		}
 	}
 
 	public void initSentiments(SentimentLexicon mainLexicon, SentimentLexicon auxLexicon)
 	{
-		nodeSentimentsInit = new LinkedHashMap<Integer, Sentiment>();
+		nodeSentimentsInit = new Sentiment[nodeCount()];
 		
-		if (relationTerms.isEmpty()) {
-			
-		}
-		else {
-			for (Integer nodeid : relationTerms) {
-				Sentiment s = resolvePriorSentiment(tokenIndex.get(nodeid - 1), mainLexicon);
-				Sentiment aux = resolvePriorSentiment(tokenIndex.get(nodeid - 1), auxLexicon);
-				if (!aux.isNeutral() && s.getPolarity() != aux.getPolarity()) {
-					nodeSentimentsInit.put(nodeid, aux);
-				}
-				else {
-					nodeSentimentsInit.put(nodeid, s);
-				}
+		for (Integer nodeid : relationTerms) {
+			Sentiment s = resolvePriorSentiment(tokenIndex.get(nodeid - 1), mainLexicon);
+			Sentiment aux = resolvePriorSentiment(tokenIndex.get(nodeid - 1), auxLexicon);
+			if (!aux.isNeutral() && s.getPolarity() != aux.getPolarity()) {
+				nodeSentimentsInit[nodeid] = aux;
+			}
+			else {
+				nodeSentimentsInit[nodeid] = s;
 			}
 		}
 		
@@ -167,10 +185,10 @@ public abstract class DependencyTreeParse extends DependencyTree {
 
 	private void initClauseRoots(DependencyRuleSet ruleset)
 	{
-		clauseRoots = new HashSet<Integer>();
+		clauseRoots = new boolean[nodeCount()];
 		for (TypedDependencyWrapper relation : relationIndex) {
 			if (ruleset.isClausalRelation(relation.getRelation())) {
-				clauseRoots.add(relation.getDepIndex());
+				clauseRoots[relation.getDepIndex()] = true;
 			}
 		}
 	}
@@ -183,7 +201,7 @@ public abstract class DependencyTreeParse extends DependencyTree {
 			String topicname = resolveTopicRelation(tokenIndex.get(nodeid - 1), topiclexicon);
 			if (topicname != null && PosTag.toPOS(tokenIndex.get(nodeid - 1).type) != POS.VERB) {
 				nodeTopics.put(nodeid, topicname);
-				nodeSentiments.put(nodeid, TermSentiment.NEUTRAL_SENTIMENT.getSentiment());
+				nodeSentiments[nodeid] = TermSentiment.NEUTRAL_SENTIMENT.getSentiment();
 			}
 		}
 		
@@ -233,7 +251,7 @@ public abstract class DependencyTreeParse extends DependencyTree {
 			ancestor = pathToRoot.get(i);
 			
 			// If current relation separates clauses, don't climb further up
-			if (clauseRoots.contains(ancestor))
+			if (clauseRoots[ancestor])
 				return ancestor;
 			
 			// If current ancestor is a topic term, don't climb further up
@@ -269,14 +287,14 @@ public abstract class DependencyTreeParse extends DependencyTree {
 	private DependencyPattern getPatternOf(TypedDependencyWrapper reln)
 	{
 		// Collect gov node info
-		Integer gov = reln.getGovIndex();
+		int gov = reln.getGovIndex();
 		Token govt = getToken(gov);
-		Sentiment govs = nodeSentiments.get(gov);
+		Sentiment govs = nodeSentiments[gov];
 		
 		// Collect dep node info
-		Integer dep = reln.getDepIndex();
+		int dep = reln.getDepIndex();
 		Token dept = getToken(dep);
-		Sentiment deps = nodeSentiments.get(dep);
+		Sentiment deps = nodeSentiments[dep];
 		
 		// Compose dependency pattern based on current (gov,dep,reln) tuple
 		return new DependencyPattern(govt, dept, govs, deps, reln);
@@ -321,104 +339,63 @@ public abstract class DependencyTreeParse extends DependencyTree {
 	{
 		// Retrieve requested relation
 		TypedDependencyWrapper reln = relationIndex.get(next);
-		Integer gov = reln.getGovIndex();
-		Integer dep = reln.getDepIndex();
+		int gov = reln.getGovIndex();
+		int dep = reln.getDepIndex();
 		DependencyPattern pattern = getPatternOf(reln);
 		
-		traversedNodes.add(dep);
+		traversedNodes[dep] = true;
 		
-		// Apply matching rule from the ruleset, updating tree and explanation
-		explanation.append(getRuleConditionsString(gov, dep));
-		applyClosestRule(ruleset, gov, dep, pattern);
-		// applyCurrentTopic(gov, dep);
-		mergeNodes(gov, dep);
-		explanation.append(getRuleOutcomeString(gov));
+		// Apply matching rule from the ruleset, storing the result as the sentiment of gov
+		Sentiment result = ruleset.applyMatchingRule(pattern);
+		nodeSentiments[gov] = result;
 		
-		// Call visualization code here
-		if (super.relationIndex.size() > 0) {
-			visualize();
+		if (listeners != null) {
+			for (DependencyTreeParseListener listener : listeners) {
+				listener.relationTraversed(this, reln, pattern, result);
+			}
 		}
 		
-		traversedNodes.add(gov);
+		traversedNodes[gov] = true;
 
 		next++;
 	}
 	
-
-	private void mergeNodes(int govIndex, int depIndex)
-	{
-		nodeTokens.get(govIndex).addAll(nodeTokens.get(depIndex));
-		// nodeTokens.remove(depIndex); // Remove dep token
-	}
-	
-	private void applyClosestRule(DependencyRuleSet ruleset, int govIndex, int depIndex, DependencyPattern pattern)
-	{
-		Sentiment result = ruleset.applyMatchingRule(pattern);
-		nodeSentiments.put(govIndex, result); // Store result sentiment as sentiment of gov
-		// if (!nodeTopics.containsKey(depIndex)) {
-		// nodeSentiments.remove(depIndex); // Remove sentiment of dep, unless dep represents a
-		// // topic
-		// }
-	}
-	
-	private String getRuleConditionsString(int govIndex, int depIndex)
-	{
-		StringBuilder str = new StringBuilder();
-		
-		str.append(getNodeString(depIndex)). //
-			append('[').append(nodeSentiments.get(depIndex).toString(SentimentFormat.RATING, false)).append(']');
-		str.append(" x ");
-		str.append(getNodeString(govIndex)). //
-			append('[').append(nodeSentiments.get(govIndex).toString(SentimentFormat.RATING, false)).append(']');
-		
-		return str.toString();
-	}
-	
-	private String getRuleOutcomeString(int govIndex)
-	{
-		return " --> " + nodeSentiments.get(govIndex).toString(SentimentFormat.RATING, false) + "\n";
-	}
-
-
-	private String getNodeString(int index)
-	{
-		Iterator<Integer> tokens = nodeTokens.get(index).iterator();
-		String combined = tokenIndex.get(tokens.next() - 1).word();
-		while ( tokens.hasNext() ) {
-			combined += " " + tokenIndex.get(tokens.next() - 1).word();
-		}
-		return combined;
-	}
-	
 	public LinkedHashMap<String, Sentiment> parse(DependencyRuleSet ruleset, SentimentLexicon sentilexicon,
 			SentimentLexicon auxLexicon, TopicLexicon<Synset> topiclexicon, boolean print_output)
 	{
+		ParseExplanation explanation = null;
+		if (print_output) {
+			explanation = new ParseExplanation();
+			addListener(explanation);
+		}
+		
 		reset();
 		initClauseRoots(ruleset);
 		initSentiments(sentilexicon, auxLexicon);
 		initTopics(topiclexicon);
 		
-		// if (super.relationIndex.size() > 0) {
-		// visualize_init();
-		// }
+		if (listeners != null) {
+			for (DependencyTreeParseListener listener : listeners) {
+				listener.parseStarted(this);
+			}
+		}
 
 		while ( hasNext() ) {
 			traverseNext(ruleset);
 		}
-		traversedNodes.add(Globals.TopicParameters.globalTopicId);
+		traversedNodes[Globals.TopicParameters.globalTopicId] = true;
+		
+		if (listeners != null) {
+			for (DependencyTreeParseListener listener : listeners) {
+				listener.parseCompleted(this);
+			}
+		}
 		
 		if (print_output) {
+			removeListener(explanation);
 			System.out.println(explanation);
 		}
 		
-		// Set<Entry<Integer, Sentiment>> sentiment = nodeSentiments.entrySet();
-		// if (sentiment.size() != 1) {
-		// AppLogger.error.log(Level.WARNING,
-		// "More than a single sentiment entry after tree parse complete");
-		// }
-		if (super.relationIndex.size() > 0) {
-			visualize();
-		}
 		return getTopicSentimentMap();
 	}
 	
@@ -432,23 +409,39 @@ public abstract class DependencyTreeParse extends DependencyTree {
 		Set<Entry<Integer, Integer>> topic_entries = nodeTopicRoots.entrySet();
 		for (Entry<Integer, Integer> topic_entry : topic_entries) {
 			if (topicSentimentMap.get(topic_entry.getKey()) == null) {
-				topicSentimentMap.put(nodeTopics.get(topic_entry.getKey()), nodeSentiments.get(topic_entry.getValue()));
+				topicSentimentMap.put(nodeTopics.get(topic_entry.getKey()), nodeSentiments[topic_entry.getValue()]);
 			}
 			else {
 				topicSentimentMap.put(nodeTopics.get(topic_entry.getKey()) + "_" + topic_entry.getValue(),
-										nodeSentiments.get(topic_entry.getValue()));
+										nodeSentiments[topic_entry.getValue()]);
 			}
 		}
 		return topicSentimentMap;
 	}
 	
-	public ArrayList<DependencyExample> findExamples(DependencyQuery query, SentimentLexicon sentilexicon)
+	/**
+	 * @return the dependency patterns of all relations in the tree, using the prior sentiments of
+	 *         the terms in the given lexicon
+	 */
+	public ArrayList<DependencyPattern> getPatterns(SentimentLexicon sentilexicon)
 	{
 		initSentiments(sentilexicon);
+		
+		ArrayList<DependencyPattern> patterns = new ArrayList<DependencyPattern>(relationIndex.size());
+		for (TypedDependencyWrapper reln : relationIndex) {
+			patterns.add(getPatternOf(reln));
+		}
+		return patterns;
+	}
+	
+	public ArrayList<DependencyExample> findExamples(DependencyQuery query, SentimentLexicon sentilexicon)
+	{
+		ArrayList<DependencyPattern> patterns = getPatterns(sentilexicon);
 
 		ArrayList<DependencyExample> examples = new ArrayList<DependencyExample>();
-		for (TypedDependencyWrapper reln : relationIndex) {
-			DependencyPattern pattern = getPatternOf(reln);
+		for (int i = 0 ; i < patterns.size() ; i++) {
+			TypedDependencyWrapper reln = relationIndex.get(i);
+			DependencyPattern pattern = patterns.get(i);
 			if (query.matches(pattern)) {
 				examples.add(new DependencyExample(pattern, getTerm(reln.getGovIndex()), getTerm(reln.getDepIndex()),
 						getSentence(reln, 15)));
@@ -457,9 +450,5 @@ public abstract class DependencyTreeParse extends DependencyTree {
 		
 		return examples;
 	}
-	
-	abstract protected void visualize_init();
-
-	abstract protected void visualize();
 
 }
@@ -0,0 +1,60 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package dependencies;
+
+import lexicon.TermSentiment.Sentiment;
+import dependencies.rules.DependencyPattern;
+
+
+/**
+ * Receives the steps of a {@link DependencyTreeParse}, e.g. to trace or visualize them. A parse
+ * with no listeners attached builds no trace output at all.
+ * 
+ * @author Stelios Karabasakis
+ */
+public interface DependencyTreeParseListener {
+	
+	/**
+	 * Called once the prior sentiments and the topics of the tree nodes have been initialized,
+	 * before any relation is traversed
+	 */
+	public void parseStarted(DependencyTreeParse parse);
+	
+	/**
+	 * Called after a rule has been applied to a relation of the tree
+	 * 
+	 * @param pattern
+	 *            The pattern the rule was matched against, holding the sentiments of the gov and
+	 *            dep nodes before the rule was applied
+	 * @param outcome
+	 *            The sentiment assigned to the gov node by the rule
+	 */
+	public void relationTraversed(DependencyTreeParse parse, TypedDependencyWrapper relation,
+			DependencyPattern pattern, Sentiment outcome);
+	
+	/**
+	 * Called after all relations of the tree have been traversed
+	 */
+	public void parseCompleted(DependencyTreeParse parse);
+
+}
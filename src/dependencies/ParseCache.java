@@ -0,0 +1,437 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package dependencies;
+
+import indexing.Token;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import util.AppLogger;
+import util.BinaryState;
+import util.State;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+
+
+/**
+ * A bounded, persistent cache of the typed dependencies produced by the Stanford parser, keyed by
+ * a hash of the words and POS tags of the parsed sentence. It allows the sentences of a corpus to be
+ * classified again, e.g. with a different lexicon or rule set, without parsing them again.
+ * Sentences that the parser rejects are cached as well.
+ * <p>
+ * Entries are kept in least-recently-used order; when the cache is full, its least recently used
+ * entry is evicted. The cache is restored from its state file when first used, and is saved back
+ * when the application exits, if it has been modified. Applications that should not read or
+ * overwrite the default state file, such as benchmarks or one-off corpus builds, can select
+ * another state file, or none, with {@link #setStateName(String)}.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ParseCache implements BinaryState {
+	
+	public static final int				DEFAULT_CAPACITY	= 500000;
+	public static final String			DEFAULT_STATE_NAME	= "parseCache";
+	private static final int			STATE_VERSION		= 1;
+	
+	private static volatile ParseCache	instance			= null;
+	private static String				instanceStateName	= DEFAULT_STATE_NAME;
+	
+	private int									capacity;
+	private String								stateName	= null;
+	private LinkedHashMap<Long, CachedParse>	entries;
+	private boolean								modified	= false;
+	
+	private final AtomicLong					hits		= new AtomicLong();
+	private final AtomicLong					misses		= new AtomicLong();
+	private final AtomicLong					evictions	= new AtomicLong();
+	
+	/*
+	 * The relations of a parsed sentence, in the order returned by the parser. The check value is a
+	 * second hash of the sentence, used to tell apart sentences whose keys collide.
+	 */
+	private static class CachedParse {
+		
+		private int						check;
+		private int[]					govIndex;
+		private String[]				govLabel;
+		private int[]					depIndex;
+		private String[]				depLabel;
+		private GrammaticalRelation[]	relation;
+		
+		private CachedParse(int check, int relations)
+		{
+			this.check = check;
+			govIndex = new int[relations];
+			govLabel = new String[relations];
+			depIndex = new int[relations];
+			depLabel = new String[relations];
+			relation = new GrammaticalRelation[relations];
+		}
+		
+		private CachedParse(int check, List<TypedDependencyWrapper> relations)
+		{
+			this(check, relations == null ? 0 : relations.size());
+			if (relations == null) {
+				relation = null;
+			}
+			else {
+				for (int i = 0 ; i < relations.size() ; i++) {
+					TypedDependencyWrapper reln = relations.get(i);
+					govIndex[i] = reln.getGovIndex();
+					govLabel[i] = reln.getGovLabel();
+					depIndex[i] = reln.getDepIndex();
+					depLabel[i] = reln.getDepLabel();
+					relation[i] = reln.getRelation();
+				}
+			}
+		}
+		
+		private boolean isParseable()
+		{
+			return relation != null;
+		}
+		
+		private ArrayList<TypedDependencyWrapper> getRelations()
+		{
+			ArrayList<TypedDependencyWrapper> relations = new ArrayList<TypedDependencyWrapper>(relation.length);
+			for (int i = 0 ; i < relation.length ; i++) {
+				relations.add(new TypedDependencyWrapper(govIndex[i], govLabel[i], depIndex[i], depLabel[i],
+						relation[i]));
+			}
+			return relations;
+		}
+	}
+	
+	/**
+	 * Constructor for class ParseCache
+	 */
+	public ParseCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor for class ParseCache
+	 * 
+	 * @param capacity
+	 *            The maximum number of sentences to keep in the cache
+	 */
+	@SuppressWarnings("serial")
+	public ParseCache(int capacity)
+	{
+		this.capacity = capacity;
+		entries = new LinkedHashMap<Long, CachedParse>(1024, 0.75F, true) {
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CachedParse> eldest)
+			{
+				if (size() > ParseCache.this.capacity) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				else
+					return false;
+			}
+		};
+	}
+	
+	/**
+	 * Selects the state file of the shared parse cache. Must be called before the cache is first
+	 * used.
+	 * 
+	 * @param state_name
+	 *            The name of the state file, or null for a cache that is neither restored nor saved
+	 */
+	public static synchronized void setStateName(String state_name)
+	{
+		if (instance != null) {
+			AppLogger.error.log(Level.WARNING, "Parse cache is already in use with state file " + instance.stateName);
+		}
+		instanceStateName = state_name;
+	}
+	
+	/**
+	 * @return the parse cache shared by all threads, restored from its state file on first use
+	 */
+	public static ParseCache getInstance()
+	{
+		ParseCache cache = instance;
+		if (cache == null) {
+			synchronized (ParseCache.class) {
+				cache = instance;
+				if (cache == null) {
+					cache = restoreInstance(instanceStateName);
+					instance = cache;
+				}
+			}
+		}
+		return cache;
+	}
+	
+	private static ParseCache restoreInstance(String state_name)
+	{
+		if (state_name == null)
+			return new ParseCache();
+		
+		ParseCache cache;
+		State<ParseCache> cache_state = new State<ParseCache>(state_name, null);
+		try {
+			cache = cache_state.exists() ? cache_state.restoreState() : new ParseCache();
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.WARNING, "Parse cache could not be restored, starting with an empty cache.\n"
+				+ e.getMessage());
+			cache = new ParseCache();
+		}
+		cache.stateName = state_name;
+		
+		final ParseCache saved_cache = cache;
+		Runtime.getRuntime().addShutdownHook(new Thread("parse-cache-writer") {
+			
+			@Override
+			public void run()
+			{
+				AppLogger.error.log(Level.INFO, saved_cache.toString());
+				saved_cache.save();
+			}
+		});
+		return cache;
+	}
+	
+	/**
+	 * @return a fresh copy of the cached relations of the sentence, in the order returned by the
+	 *         parser, or null if the sentence is not in the cache
+	 * @throws IllegalArgumentException
+	 *             if the sentence is cached as one that the parser rejects
+	 */
+	public ArrayList<TypedDependencyWrapper> get(List<Token> sentence) throws IllegalArgumentException
+	{
+		CachedParse cached;
+		synchronized (this) {
+			cached = entries.get(key(sentence));
+		}
+		
+		if (cached == null || cached.check != check(sentence)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		
+		hits.incrementAndGet();
+		if (!cached.isParseable())
+			throw new IllegalArgumentException("Sentence cannot be parsed");
+		return cached.getRelations();
+	}
+	
+	/**
+	 * Caches the relations of a sentence, in the order returned by the parser
+	 */
+	public void put(List<Token> sentence, List<TypedDependencyWrapper> relations)
+	{
+		CachedParse cached = new CachedParse(check(sentence), relations);
+		synchronized (this) {
+			entries.put(key(sentence), cached);
+			modified = true;
+		}
+	}
+	
+	/**
+	 * Caches a sentence as one that the parser rejects
+	 */
+	public void putUnparseable(List<Token> sentence)
+	{
+		CachedParse cached = new CachedParse(check(sentence), null);
+		synchronized (this) {
+			entries.put(key(sentence), cached);
+			modified = true;
+		}
+	}
+	
+	/*
+	 * 64-bit FNV-1a hash of the words and tags of a sentence
+	 */
+	private static long key(List<Token> sentence)
+	{
+		long h = 0xcbf29ce484222325L;
+		for (Token token : sentence) {
+			h = hash(h, token.word());
+			h = hash(h, token.tag());
+		}
+		return h;
+	}
+	
+	private static long hash(long h, String str)
+	{
+		if (str != null) {
+			for (int i = 0 ; i < str.length() ; i++) {
+				h ^= str.charAt(i);
+				h *= 0x100000001b3L;
+			}
+		}
+		h ^= 0xffff; // Field separator, not a valid character
+		h *= 0x100000001b3L;
+		return h;
+	}
+	
+	private static int check(List<Token> sentence)
+	{
+		int h = sentence.size();
+		for (Token token : sentence) {
+			h = 31 * h + (token.word() == null ? 0 : token.word().hashCode());
+			h = 31 * h + (token.tag() == null ? 0 : token.tag().hashCode());
+		}
+		return h;
+	}
+	
+	/**
+	 * Saves the cache to its state file, if it has one and it has been modified since it was
+	 * restored or last saved
+	 */
+	public synchronized void save()
+	{
+		if (modified && stateName != null) {
+			new State<ParseCache>(stateName, this).saveState();
+			modified = false;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#stateVersion()
+	 */
+	@Override
+	public int stateVersion()
+	{
+		return STATE_VERSION;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#writeState(java.io.DataOutput)
+	 */
+	@Override
+	public synchronized void writeState(DataOutput out) throws IOException
+	{
+		out.writeInt(capacity);
+		out.writeInt(entries.size());
+		
+		// Entries are written from least to most recently used, so that reading them back in order
+		// restores their recency
+		for (Entry<Long, CachedParse> entry : entries.entrySet()) {
+			CachedParse cached = entry.getValue();
+			out.writeLong(entry.getKey());
+			out.writeInt(cached.check);
+			if (!cached.isParseable()) {
+				out.writeInt(-1);
+				continue;
+			}
+			
+			out.writeInt(cached.relation.length);
+			for (int i = 0 ; i < cached.relation.length ; i++) {
+				out.writeInt(cached.govIndex[i]);
+				out.writeUTF(cached.govLabel[i]);
+				out.writeInt(cached.depIndex[i]);
+				out.writeUTF(cached.depLabel[i]);
+				out.writeUTF(cached.relation[i].toString());
+			}
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#readState(java.io.DataInput, int)
+	 */
+	@Override
+	public synchronized void readState(DataInput in, int version) throws IOException
+	{
+		if (version != STATE_VERSION)
+			throw new IOException("Unsupported parse cache version " + version);
+		
+		capacity = in.readInt();
+		entries.clear();
+		int size = in.readInt();
+		for (int e = 0 ; e < size ; e++) {
+			long key = in.readLong();
+			int check = in.readInt();
+			int relations = in.readInt();
+			if (relations < 0) {
+				entries.put(key, new CachedParse(check, null));
+				continue;
+			}
+			
+			CachedParse cached = new CachedParse(check, relations);
+			boolean valid = true;
+			for (int i = 0 ; i < relations ; i++) {
+				cached.govIndex[i] = in.readInt();
+				cached.govLabel[i] = in.readUTF();
+				cached.depIndex[i] = in.readInt();
+				cached.depLabel[i] = in.readUTF();
+				cached.relation[i] = EnglishGrammaticalRelations.valueOf(in.readUTF());
+				
+				// Drop entries with relations unknown to the current parser version
+				valid &= cached.relation[i] != null;
+			}
+			if (valid) {
+				entries.put(key, cached);
+			}
+		}
+		modified = false;
+	}
+	
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+	
+	public long getHits()
+	{
+		return hits.get();
+	}
+	
+	public long getMisses()
+	{
+		return misses.get();
+	}
+	
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		long lookups = getHits() + getMisses();
+		return "ParseCache: " + size() + " entries, " + getHits() + " hits, " + getMisses() + " misses ("
+			+ (lookups == 0 ? 0 : getHits() * 100 / lookups) + "% hit rate), " + getEvictions() + " evictions";
+	}
+}
@@ -0,0 +1,114 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package dependencies;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import lexicon.TermSentiment.Sentiment;
+import lexicon.TermSentiment.Sentiment.SentimentFormat;
+import dependencies.rules.DependencyPattern;
+
+
+/**
+ * Builds a textual trace of a {@link DependencyTreeParse}, with a line for every rule applied.
+ * Each line shows the words merged so far into the dep and gov nodes of the relation, along with
+ * their sentiments, and the outcome of the rule.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ParseExplanation implements DependencyTreeParseListener {
+	
+	private HashMap<Integer, PriorityQueue<Integer>>	nodeTokens	= null;
+	private StringBuilder								explanation	= new StringBuilder();
+	
+	/*
+	 * (non-Javadoc)
+	 * @see dependencies.DependencyTreeParseListener#parseStarted(dependencies.DependencyTreeParse)
+	 */
+	@Override
+	public void parseStarted(DependencyTreeParse parse)
+	{
+		nodeTokens = new HashMap<Integer, PriorityQueue<Integer>>();
+		for (Integer nodeid : parse.relationTerms) {
+			PriorityQueue<Integer> q = new PriorityQueue<Integer>();
+			q.add(nodeid);
+			nodeTokens.put(nodeid, q);
+		}
+		explanation = new StringBuilder();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see dependencies.DependencyTreeParseListener#relationTraversed(dependencies.DependencyTreeParse,
+	 * dependencies.TypedDependencyWrapper, dependencies.rules.DependencyPattern,
+	 * lexicon.TermSentiment.Sentiment)
+	 */
+	@Override
+	public void relationTraversed(DependencyTreeParse parse, TypedDependencyWrapper relation,
+			DependencyPattern pattern, Sentiment outcome)
+	{
+		int gov = relation.getGovIndex();
+		int dep = relation.getDepIndex();
+		
+		explanation.append(getNodeString(parse, dep)). //
+			append('[').append(pattern.getDep().getSentiment().toString(SentimentFormat.RATING, false)).append(']');
+		explanation.append(" x ");
+		explanation.append(getNodeString(parse, gov)). //
+			append('[').append(pattern.getGov().getSentiment().toString(SentimentFormat.RATING, false)).append(']');
+		
+		// Merge the words of the dep node into the gov node
+		nodeTokens.get(gov).addAll(nodeTokens.get(dep));
+		
+		explanation.append(" --> ").append(outcome.toString(SentimentFormat.RATING, false)).append("\n");
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see dependencies.DependencyTreeParseListener#parseCompleted(dependencies.DependencyTreeParse)
+	 */
+	@Override
+	public void parseCompleted(DependencyTreeParse parse)
+	{
+	}
+	
+	private String getNodeString(DependencyTreeParse parse, int index)
+	{
+		Iterator<Integer> tokens = nodeTokens.get(index).iterator();
+		StringBuilder combined = new StringBuilder(parse.getToken(tokens.next()).word());
+		while ( tokens.hasNext() ) {
+			combined.append(' ').append(parse.getToken(tokens.next()).word());
+		}
+		return combined.toString();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return explanation.toString();
+	}
+}
@@ -0,0 +1,742 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package dependencies;
+
+import indexing.ReviewTermPayload;
+import indexing.Token;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import org.apache.commons.lang.ArrayUtils;
+import util.AppLogger;
+import classes.DatabaseReview;
+import classes.DatabaseReviewStream;
+import classes.Review;
+import config.Paths;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+
+
+/**
+ * An append-only file of pre-parsed review sentences. For every sentence, the file holds the id of
+ * its review, its typed dependencies, in the order returned by the parser, and its tokens, along
+ * with their flags and payloads. The file is produced once for a range of reviews by
+ * {@link #main(String[])}, and can then be streamed any number of times, so that dependency
+ * experiments do not need to tokenize and parse the corpus again.
+ * <p>
+ * The file starts with a header that holds a table of grammatical relation names. Each sentence
+ * record that follows is prefixed with its length, and stores its relations before its tokens,
+ * with relations encoded as indices into the header table. This allows scans that look for a
+ * specific relation to skip non-matching sentences without decoding their tokens. The file is read
+ * through memory-mapped windows, and a truncated record at the end of the file, e.g. left over by
+ * an interrupted run, is ignored. When a writer reopens the file, it removes the truncated record
+ * and the sentences of the last review in the file before appending.
+ * <p>
+ * Relation labels are not stored; the labels of the relations read back from the file are the
+ * lowercased words of their gov and dep tokens.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ParsedCorpus implements Iterable<ParsedCorpus.ParsedSentence> {
+	
+	private static final int	MAGIC			= 0x50435250;	// "PCRP"
+	private static final int	VERSION			= 1;
+	private static final String	CHARSET			= "UTF-8";
+	private static final int	INLINE_RELATION	= 0xff;
+	private static final int	WINDOW_SIZE		= 1 << 28;
+	
+	private File				file;
+	private int					headerLength;
+	private GrammaticalRelation[]	relations;
+	
+	private FileChannel			channel				= null;
+	private boolean				scanned				= false;
+	private int					lastReviewId		= 0;
+	private int					previousReviewId	= 0;
+	private long				lastReviewStart		= 0;
+	
+	/**
+	 * A sentence read from the corpus file
+	 */
+	public static class ParsedSentence {
+		
+		private long								position;
+		private int									reviewid;
+		private ArrayList<Token>					tokens;
+		private ArrayList<TypedDependencyWrapper>	relations;
+		
+		private ParsedSentence(long position, int reviewid, ArrayList<Token> tokens,
+				ArrayList<TypedDependencyWrapper> relations)
+		{
+			this.position = position;
+			this.reviewid = reviewid;
+			this.tokens = tokens;
+			this.relations = relations;
+		}
+		
+		/**
+		 * @return the position of the sentence in the corpus file, to be passed to
+		 *         {@link ParsedCorpus#getSentence(long)}
+		 */
+		public long getPosition()
+		{
+			return position;
+		}
+		
+		public int getReviewId()
+		{
+			return reviewid;
+		}
+		
+		public ArrayList<Token> getTokens()
+		{
+			return tokens;
+		}
+		
+		/**
+		 * @return the relations of the sentence, in the order returned by the parser
+		 */
+		public ArrayList<TypedDependencyWrapper> getRelations()
+		{
+			return relations;
+		}
+		
+		/**
+		 * @return a new dependency tree parse of the sentence. The tree takes over the token and
+		 *         relation lists of the sentence.
+		 */
+		public DependencyTreeParse getTreeParse()
+		{
+			return new DependencyTreeParse(tokens, relations);
+		}
+	}
+	
+	/**
+	 * Appends sentences to a corpus file, creating the file if it does not exist. An existing file
+	 * may end with the partly written sentences of a review, and with a truncated record, if the run
+	 * that wrote it was interrupted. So, before appending, the file is truncated to the end of the
+	 * last review before the last one in the file, and writing should resume from the review
+	 * returned by {@link #getLastReviewId()}.
+	 */
+	public static class Writer {
+		
+		private DataOutputStream				out;
+		private HashMap<GrammaticalRelation, Integer>	relationCodes	= new HashMap<GrammaticalRelation, Integer>();
+		private ByteArrayOutputStream			record			= new ByteArrayOutputStream(4096);
+		private DataOutputStream				recordOut		= new DataOutputStream(record);
+		private int								lastReviewId	= 0;
+		
+		public Writer(File file) throws IOException
+		{
+			GrammaticalRelation[] relation_table;
+			if (file.exists() && file.length() > 0) {
+				ParsedCorpus corpus = new ParsedCorpus(file);
+				relation_table = corpus.relations;
+				lastReviewId = corpus.truncateLastReview();
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+			}
+			else {
+				relation_table = defaultRelationTable();
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false), 1 << 16));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeShort(relation_table.length);
+				for (GrammaticalRelation relation : relation_table) {
+					writeString(out, relation.toString());
+				}
+			}
+			
+			for (int i = 0 ; i < relation_table.length && i < INLINE_RELATION ; i++) {
+				relationCodes.put(relation_table[i], i);
+			}
+		}
+		
+		/**
+		 * @return the id of the last review whose sentences are all in the file, or 0 if the file
+		 *         holds no complete review
+		 */
+		public int getLastReviewId()
+		{
+			return lastReviewId;
+		}
+		
+		/**
+		 * Appends a sentence to the corpus file
+		 * 
+		 * @param relations
+		 *            The relations of the sentence, in the order returned by
+		 *            {@link DependencyTree#parseRelations(ArrayList)}
+		 */
+		public void write(int reviewid, ArrayList<Token> sentence, ArrayList<TypedDependencyWrapper> relations)
+				throws IOException
+		{
+			record.reset();
+			recordOut.writeInt(reviewid);
+			
+			recordOut.writeShort(relations.size());
+			for (TypedDependencyWrapper relation : relations) {
+				recordOut.writeShort(relation.getGovIndex());
+				recordOut.writeShort(relation.getDepIndex());
+				Integer code = relationCodes.get(relation.getRelation());
+				if (code != null) {
+					recordOut.writeByte(code);
+				}
+				else {
+					recordOut.writeByte(INLINE_RELATION);
+					writeString(recordOut, relation.getRelation().toString());
+				}
+			}
+			
+			recordOut.writeShort(sentence.size());
+			for (Token token : sentence) {
+				writeString(recordOut, token.term);
+				writeString(recordOut, token.type);
+				recordOut.writeInt(token.flags);
+				recordOut.write((token.payload != null ? token.payload : new ReviewTermPayload()).encode());
+			}
+			
+			recordOut.flush();
+			out.writeInt(record.size());
+			record.writeTo(out);
+		}
+		
+		public void close() throws IOException
+		{
+			out.close();
+		}
+		
+		private static void writeString(DataOutputStream out, String str) throws IOException
+		{
+			byte[] bytes = str == null ? new byte[0] : str.getBytes(CHARSET);
+			out.writeShort(bytes.length);
+			out.write(bytes);
+		}
+	}
+	
+	/*
+	 * Decodes sentence records from a byte buffer
+	 */
+	private class RecordDecoder {
+		
+		private byte[]	scratch	= new byte[256];
+		
+		/*
+		 * Decodes the record whose body (i.e. the part after the length prefix) starts at the given
+		 * position of the buffer. Returns null if the filter relation is not null and the sentence
+		 * does not contain it.
+		 */
+		private ParsedSentence decode(ByteBuffer buffer, int pos, long record_position, GrammaticalRelation filter)
+		{
+			int reviewid = buffer.getInt(pos);
+			pos += 4;
+			
+			// Relations
+			int relation_count = buffer.getShort(pos) & 0xffff;
+			pos += 2;
+			GrammaticalRelation[] sentence_relations = new GrammaticalRelation[relation_count];
+			int[] gov = new int[relation_count];
+			int[] dep = new int[relation_count];
+			boolean matches = filter == null;
+			for (int i = 0 ; i < relation_count ; i++) {
+				gov[i] = buffer.getShort(pos) & 0xffff;
+				dep[i] = buffer.getShort(pos + 2) & 0xffff;
+				int code = buffer.get(pos + 4) & 0xff;
+				pos += 5;
+				if (code == INLINE_RELATION) {
+					int name_length = buffer.getShort(pos) & 0xffff;
+					sentence_relations[i] = EnglishGrammaticalRelations.valueOf(readString(buffer, pos + 2,
+						name_length));
+					pos += 2 + name_length;
+				}
+				else {
+					sentence_relations[i] = relations[code];
+				}
+				matches |= sentence_relations[i] == filter;
+			}
+			
+			// Skip sentences that do not contain the requested relation without decoding them
+			if (!matches)
+				return null;
+			
+			// Tokens
+			int token_count = buffer.getShort(pos) & 0xffff;
+			pos += 2;
+			ArrayList<Token> tokens = new ArrayList<Token>(token_count);
+			for (int i = 0 ; i < token_count ; i++) {
+				int term_length = buffer.getShort(pos) & 0xffff;
+				String term = readString(buffer, pos + 2, term_length);
+				pos += 2 + term_length;
+				int type_length = buffer.getShort(pos) & 0xffff;
+				String type = readString(buffer, pos + 2, type_length);
+				pos += 2 + type_length;
+				int flags = buffer.getInt(pos);
+				ReviewTermPayload payload = new ReviewTermPayload();
+				payload.decode(new byte[]{ buffer.get(pos + 4) });
+				pos += 5;
+				tokens.add(new Token(term, type, flags, payload));
+			}
+			
+			ArrayList<TypedDependencyWrapper> sentence_dependencies = new ArrayList<TypedDependencyWrapper>(
+					relation_count);
+			for (int i = 0 ; i < relation_count ; i++) {
+				sentence_dependencies.add(new TypedDependencyWrapper(gov[i], label(tokens, gov[i]), dep[i], label(
+					tokens, dep[i]), sentence_relations[i]));
+			}
+			
+			return new ParsedSentence(record_position, reviewid, tokens, sentence_dependencies);
+		}
+		
+		private String label(ArrayList<Token> tokens, int index)
+		{
+			return index > 0 && index <= tokens.size() ? tokens.get(index - 1).word().toLowerCase() : "root";
+		}
+		
+		private String readString(ByteBuffer buffer, int pos, int length)
+		{
+			if (scratch.length < length) {
+				scratch = new byte[length];
+			}
+			for (int i = 0 ; i < length ; i++) {
+				scratch[i] = buffer.get(pos + i);
+			}
+			try {
+				return new String(scratch, 0, length, CHARSET);
+			} catch ( UnsupportedEncodingException e ) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	/*
+	 * Reads records through a sliding window of the memory-mapped file. Windows are mapped from the
+	 * channel shared by all readers of the corpus, so an iterator that is abandoned before the end
+	 * of the file holds no file handle of its own.
+	 */
+	private class Cursor implements Iterator<ParsedSentence> {
+		
+		private FileChannel			channel;
+		private long				size;
+		private MappedByteBuffer	window		= null;
+		private long				windowStart	= 0;
+		private int					position	= 0;
+		private GrammaticalRelation	filter;
+		private RecordDecoder		decoder		= new RecordDecoder();
+		private ParsedSentence		next		= null;
+		private boolean				done		= false;
+		
+		private Cursor(GrammaticalRelation filter, long start) throws IOException
+		{
+			this.filter = filter;
+			channel = getChannel();
+			size = channel.size();
+			map(start, 0);
+		}
+		
+		private void map(long start, int min_length) throws IOException
+		{
+			windowStart = start;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, Math.max(
+				WINDOW_SIZE, min_length)));
+			position = 0;
+		}
+		
+		/*
+		 * Positions the window on the next complete record, and returns its length, or -1 at the
+		 * end of the file
+		 */
+		private int nextRecord() throws IOException
+		{
+			if (windowStart + position + 4 > size)
+				return -1;
+			if (position + 4 > window.limit()) {
+				map(windowStart + position, 4);
+			}
+			
+			int length = window.getInt(position);
+			if (windowStart + position + 4 + length > size) {
+				AppLogger.error.log(Level.WARNING, "Ignoring truncated record at the end of " + file.getName());
+				return -1;
+			}
+			if (position + 4 + length > window.limit()) {
+				map(windowStart + position, 4 + length);
+			}
+			return length;
+		}
+		
+		private ParsedSentence readNext() throws IOException
+		{
+			int length;
+			while ( (length = nextRecord()) >= 0 ) {
+				long record_position = windowStart + position;
+				ParsedSentence sentence = decoder.decode(window, position + 4, record_position, filter);
+				position += 4 + length;
+				if (sentence != null)
+					return sentence;
+			}
+			
+			// Release the window, so that it can be unmapped
+			window = null;
+			done = true;
+			return null;
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			if (next == null && !done) {
+				try {
+					next = readNext();
+				} catch ( IOException e ) {
+					AppLogger.error.log(Level.SEVERE, "Error reading parsed corpus file " + file.getName() + ": "
+						+ e.getMessage());
+					throw new RuntimeException("Exiting application", e);
+				}
+			}
+			return next != null;
+		}
+		
+		@Override
+		public ParsedSentence next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			ParsedSentence sentence = next;
+			next = null;
+			return sentence;
+		}
+		
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Constructor for class ParsedCorpus
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a parsed corpus file
+	 */
+	public ParsedCorpus(File file) throws IOException
+	{
+		this.file = file;
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.readInt() != MAGIC || raf.readInt() != VERSION)
+				throw new IOException(file.getName() + " is not a parsed corpus file of version " + VERSION);
+			
+			relations = new GrammaticalRelation[raf.readUnsignedShort()];
+			for (int i = 0 ; i < relations.length ; i++) {
+				byte[] name = new byte[raf.readUnsignedShort()];
+				raf.readFully(name);
+				relations[i] = EnglishGrammaticalRelations.valueOf(new String(name, CHARSET));
+			}
+			headerLength = (int)raf.getFilePointer();
+		} finally {
+			raf.close();
+		}
+	}
+	
+	/*
+	 * Returns the read-only channel shared by all readers of the corpus file, opening it if needed
+	 */
+	private synchronized FileChannel getChannel() throws IOException
+	{
+		if (channel == null || !channel.isOpen()) {
+			channel = new RandomAccessFile(file, "r").getChannel();
+		}
+		return channel;
+	}
+	
+	/**
+	 * Closes the corpus file. The corpus can still be read after it is closed, in which case the file
+	 * is opened again.
+	 */
+	public synchronized void close() throws IOException
+	{
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+	
+	/**
+	 * Opens the default corpus file, at {@link Paths#parsedCorpusFile}
+	 */
+	public static ParsedCorpus open() throws IOException
+	{
+		return new ParsedCorpus(new File(Paths.parsedCorpusFile));
+	}
+	
+	private static GrammaticalRelation[] defaultRelationTable()
+	{
+		ArrayList<GrammaticalRelation> table = new ArrayList<GrammaticalRelation>(EnglishGrammaticalRelations.values());
+		Collections.sort(table, new java.util.Comparator<GrammaticalRelation>() {
+			
+			@Override
+			public int compare(GrammaticalRelation r1, GrammaticalRelation r2)
+			{
+				return r1.toString().compareTo(r2.toString());
+			}
+		});
+		return table.toArray(new GrammaticalRelation[table.size()]);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<ParsedSentence> iterator()
+	{
+		return iterator(null);
+	}
+	
+	/**
+	 * @return an iterator over the sentences of the corpus that contain at least one relation of
+	 *         the given type, or over all sentences if the relation is null
+	 */
+	public Iterator<ParsedSentence> iterator(GrammaticalRelation relation)
+	{
+		try {
+			return new Cursor(relation, headerLength);
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "Cannot open parsed corpus file " + file.getName() + ": "
+				+ e.getMessage());
+			throw new RuntimeException("Exiting application", e);
+		}
+	}
+	
+	/**
+	 * Reads a single sentence from the corpus file, with a positional read from the channel shared
+	 * by all readers of the corpus, so that random lookups need no memory mapping
+	 * 
+	 * @param position
+	 *            The position of the sentence, as returned by {@link ParsedSentence#getPosition()}
+	 * @return the sentence, or null if there is no complete sentence at the given position
+	 */
+	public ParsedSentence getSentence(long position)
+	{
+		try {
+			FileChannel corpus_channel = getChannel();
+			ByteBuffer length_buffer = ByteBuffer.allocate(4);
+			if (!read(corpus_channel, length_buffer, position))
+				return null;
+			
+			int length = length_buffer.getInt(0);
+			if (length < 4 || position + 4 + length > corpus_channel.size())
+				return null;
+			ByteBuffer record = ByteBuffer.allocate(length);
+			if (!read(corpus_channel, record, position + 4))
+				return null;
+			return new RecordDecoder().decode(record, 0, position, null);
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "Error reading parsed corpus file " + file.getName() + ": "
+				+ e.getMessage());
+			throw new RuntimeException("Exiting application", e);
+		}
+	}
+	
+	/*
+	 * Fills a buffer from the given position of a channel, without moving the channel position, so
+	 * that concurrent readers can share the channel. Returns false if the end of the file is reached
+	 * first.
+	 */
+	private static boolean read(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while ( buffer.hasRemaining() ) {
+			int bytes = channel.read(buffer, position);
+			if (bytes < 0)
+				return false;
+			position += bytes;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the id of the review of the last complete sentence in the file, or 0 if the file is
+	 *         empty
+	 */
+	public int getLastReviewId()
+	{
+		try {
+			scan();
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "Error reading parsed corpus file " + file.getName() + ": "
+				+ e.getMessage());
+			throw new RuntimeException("Exiting application", e);
+		}
+		return lastReviewId;
+	}
+	
+	/*
+	 * Reads the lengths and review ids of all records in the file, without decoding them, and finds
+	 * the last review in the file, the review before it and the position of its first record
+	 */
+	private void scan() throws IOException
+	{
+		if (scanned)
+			return;
+		
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			long size = file.length();
+			long position = headerLength;
+			skip(in, headerLength);
+			lastReviewStart = headerLength;
+			while ( position + 8 <= size ) {
+				int length = in.readInt();
+				if (length < 4 || position + 4 + length > size) {
+					break;
+				}
+				int reviewid = in.readInt();
+				if (reviewid != lastReviewId) {
+					previousReviewId = lastReviewId;
+					lastReviewId = reviewid;
+					lastReviewStart = position;
+				}
+				skip(in, length - 4);
+				position += 4 + length;
+			}
+		} finally {
+			in.close();
+		}
+		scanned = true;
+	}
+	
+	private static void skip(DataInputStream in, long bytes) throws IOException
+	{
+		while ( bytes > 0 ) {
+			long skipped = in.skip(bytes);
+			if (skipped <= 0)
+				throw new IOException("Unexpected end of file");
+			bytes -= skipped;
+		}
+	}
+	
+	/*
+	 * Removes the sentences of the last review in the file, which may be incomplete, along with any
+	 * truncated record that follows them, and returns the id of the review before it
+	 */
+	private int truncateLastReview() throws IOException
+	{
+		scan();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.getChannel().truncate(lastReviewStart);
+		} finally {
+			raf.close();
+		}
+		
+		lastReviewId = previousReviewId;
+		scanned = false;
+		return lastReviewId;
+	}
+	
+	/**
+	 * @return the corpus file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	 * Parses all reviews in a range of review ids and appends their sentences to the corpus file.
+	 * If the file already exists, an interrupted run is resumed: the last review in the file, which
+	 * may have been partly written, is removed and parsed again, and the reviews before it are
+	 * skipped.
+	 * <p>
+	 * Usage: ParsedCorpus {first reviewid} {last reviewid} [--file {path}]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int first_reviewid = Integer.parseInt(args[0]);
+		int last_reviewid = Integer.parseInt(args[1]);
+		int pos = ArrayUtils.indexOf(args, "--file");
+		File file = new File(pos != ArrayUtils.INDEX_NOT_FOUND && pos + 1 < args.length ? args[pos + 1]
+			: Paths.parsedCorpusFile);
+		
+		// Every sentence of the corpus is parsed once, so the parse cache of the application is
+		// neither needed nor updated
+		ParseCache.setStateName(null);
+		
+		ReviewDependencyAnalyzer analyzer = new ReviewDependencyAnalyzer();
+		Writer writer = new Writer(file);
+		
+		// Resume after the last complete review already in the file
+		int min_reviewid = Math.max(first_reviewid - 1, writer.getLastReviewId());
+		int reviews = 0, sentences = 0, failed = 0;
+		try {
+			DatabaseReviewStream stream = new DatabaseReviewStream();
+			stream.setLimits(min_reviewid, last_reviewid);
+			try {
+				for (Review review : stream) {
+					int reviewid = ((DatabaseReview)review).getReviewid();
+					for (ArrayList<Token> sentence : analyzer.getSentences(review)) {
+						try {
+							writer.write(reviewid, sentence, DependencyTree.parseRelations(sentence));
+							sentences++;
+						} catch ( IllegalArgumentException e ) {
+							failed++;
+						}
+					}
+					
+					if (++reviews % 1000 == 0) {
+						System.out.println(reviews + " reviews, " + sentences + " sentences parsed (" + failed
+							+ " failed), last reviewid: " + reviewid);
+					}
+				}
+			} finally {
+				stream.close();
+			}
+		} catch ( SQLException e ) {
+			AppLogger.error.log(Level.SEVERE, "An exception occured while trying to access the database.\n"
+				+ e.getMessage());
+		} finally {
+			writer.close();
+		}
+		
+		System.out.println(reviews + " reviews, " + sentences + " sentences parsed (" + failed + " failed)");
+	}
+}
@@ -22,30 +22,31 @@
 //
 package dependencies;
 
-import config.Paths;
+import util.ModelRegistry;
 import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
 import edu.stanford.nlp.trees.GrammaticalStructureFactory;
-import edu.stanford.nlp.trees.PennTreebankLanguagePack;
 
 
 /**
- * TODO Description missing
+ * Access point for the parsing resources used by {@link DependencyTree}. Parsers are not safe for
+ * concurrent use, so each calling thread gets its own instances from the {@link ModelRegistry}.
  * @author Stelios Karabasakis
  */
 public class ParsingUtils {
 	
-	public static final LexicalizedParser			lexicalizedParser			= getLexicalizedParserInstance();
-	public static final GrammaticalStructureFactory	grammaticalStructureFactory	= getGrammaticalStructureFactoryInstance();
-	
-	private static LexicalizedParser getLexicalizedParserInstance()
+	/**
+	 * @return the lexicalized parser of the calling thread
+	 */
+	public static LexicalizedParser getLexicalizedParser()
 	{
-		LexicalizedParser lp = new LexicalizedParser(Paths.depParserPath + "/englishPCFG.ser.gz");
-		lp.setOptionFlags(new String[]{ "-maxLength", "60", "-retainTmpSubcategories" });
-		return lp;
+		return ModelRegistry.getParser();
 	}
 	
-	private static GrammaticalStructureFactory getGrammaticalStructureFactoryInstance()
+	/**
+	 * @return the grammatical structure factory of the calling thread
+	 */
+	public static GrammaticalStructureFactory getGrammaticalStructureFactory()
 	{
-		return new PennTreebankLanguagePack().grammaticalStructureFactory();
+		return ModelRegistry.getGrammaticalStructureFactory();
 	}
 }
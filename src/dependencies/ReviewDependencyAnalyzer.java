@@ -22,6 +22,7 @@
 //
 package dependencies;
 
+import indexing.ReviewTermAttribute;
 import indexing.ReviewTermPayload;
 import indexing.Token;
 import java.io.FileReader;
@@ -38,12 +39,11 @@ import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import util.AppLogger;
+import wordnet.CompoundTermTrie;
 import wordnet.DictionaryFactory;
-import wordnet.IndexMap;
 import classes.Review;
 import filters.ComparisonDegreeFilter;
 import filters.LemmatizationFilter;
@@ -61,9 +61,9 @@ import filters.dependencies.NegationWordFilter;
  */
 public final class ReviewDependencyAnalyzer extends Analyzer {
 	
-	private Dictionary	wordnet;
-	private IndexMap	compoundWordnetIndex;
-	private Tokenizer	source_document;
+	private Dictionary			wordnet;
+	private CompoundTermTrie	compoundWordnetIndex;
+	private Tokenizer			source_document;
 
 	
 	/**
@@ -127,7 +127,7 @@ public final class ReviewDependencyAnalyzer extends Analyzer {
 			TermAttribute tok_term = tokstr.getAttribute(TermAttribute.class);
 			TypeAttribute tok_type = tokstr.getAttribute(TypeAttribute.class);
 			FlagsAttribute tok_flags = tokstr.getAttribute(FlagsAttribute.class);
-			PayloadAttribute tok_payload = tokstr.getAttribute(PayloadAttribute.class);
+			ReviewTermAttribute tok_reviewterm = tokstr.addAttribute(ReviewTermAttribute.class);
 			
 			// Split the tokenstream returned by the analyzer into sentences. Convert each sentence
 			// into a linked list of tokens
@@ -136,7 +136,7 @@ public final class ReviewDependencyAnalyzer extends Analyzer {
 			
 			while ( tokstr.incrementToken() ) {
 				Token current_token = new Token(tok_term.term(), tok_type.type(), tok_flags.getFlags(),
-						new ReviewTermPayload(tok_payload.getPayload()));
+						tok_reviewterm.get(new ReviewTermPayload()));
 				current_sentence.add(current_token);
 				
 				// End of sentence reached. Add current sentence to the sentence list
@@ -58,6 +58,19 @@ public class TypedDependencyWrapper implements Comparable<TypedDependencyWrapper
 		relation = d.reln();
 	}
 	
+	/**
+	 * Constructor for class TypedDependencyWrapper
+	 */
+	public TypedDependencyWrapper(int govIndex, String govLabel, int depIndex, String depLabel,
+			GrammaticalRelation relation)
+	{
+		this.govIndex = govIndex;
+		this.govLabel = govLabel;
+		this.depIndex = depIndex;
+		this.depLabel = depLabel;
+		this.relation = relation;
+	}
+	
 	public int getGovIndex()
 	{
 		return govIndex;
@@ -41,7 +41,8 @@ public class DependencyPattern {
 		
 		private SynsetCategory	category;
 		private Sentiment		sentiment;
-		private String			word	= null;
+		private String			word			= null;
+		private String			normalizedWord	= null;
 		
 		
 		/**
@@ -85,6 +86,18 @@ public class DependencyPattern {
 		{
 			return word;
 		}
+		
+		/**
+		 * @return the word in lower case and with surrounding whitespace removed, as stored in the
+		 *         word lists of dependency rules
+		 */
+		public String getNormalizedWord()
+		{
+			if (normalizedWord == null) {
+				normalizedWord = word.toLowerCase().trim();
+			}
+			return normalizedWord;
+		}
 	}
 	
 	protected Node					gov;
@@ -46,6 +46,8 @@ public class DependencyRule {
 	private List<SynsetCategory>			dep				= null;
 	private List<String>					gov_wordlist	= null;
 	private List<String>					dep_wordlist	= null;
+	private HashSet<String>					gov_words		= null;
+	private HashSet<String>					dep_words		= null;
 	// private SentimentInterval govSentiment;
 	// private SentimentInterval depSentiment;
 	private HashSet<GrammaticalRelation>	reln			= new HashSet<GrammaticalRelation>(1);
@@ -70,6 +72,7 @@ public class DependencyRule {
 			for (String word : wordlist) {
 				gov_wordlist.add(word.toLowerCase().trim());
 			}
+			gov_words = new HashSet<String>(gov_wordlist);
 		}
 	}
 
@@ -90,6 +93,7 @@ public class DependencyRule {
 			for (String word : wordlist) {
 				dep_wordlist.add(word.toLowerCase().trim());
 			}
+			dep_words = new HashSet<String>(dep_wordlist);
 		}
 	}
 
@@ -149,10 +153,42 @@ public class DependencyRule {
 	public boolean matches(DependencyPattern pattern)
 	{
 		return reln.contains(pattern.getReln()) //
-			&& (gov == null || gov.contains(pattern.getGov().getCategory())) //
-			&& (dep == null || dep.contains(pattern.getDep().getCategory()))
-			&& (gov_wordlist == null || gov_wordlist.contains(pattern.getGov().getWord().toLowerCase().trim())) //
-			&& (dep_wordlist == null || dep_wordlist.contains(pattern.getDep().getWord().toLowerCase().trim()));
+			&& acceptsGov(pattern.getGov().getCategory()) //
+			&& acceptsDep(pattern.getDep().getCategory()) //
+			&& matchesWords(pattern);
+	}
+	
+	Set<GrammaticalRelation> getRelations()
+	{
+		return reln;
+	}
+	
+	boolean acceptsGov(SynsetCategory category)
+	{
+		return gov == null || gov.contains(category);
+	}
+	
+	boolean acceptsDep(SynsetCategory category)
+	{
+		return dep == null || dep.contains(category);
+	}
+	
+	/**
+	 * @return true if the rule restricts the words of the gov or dep nodes
+	 */
+	boolean hasWordLists()
+	{
+		return gov_words != null || dep_words != null;
+	}
+	
+	/**
+	 * @return true if the words of the gov and dep nodes of the pattern are in the word lists of
+	 *         the rule, if any
+	 */
+	boolean matchesWords(DependencyPattern pattern)
+	{
+		return (gov_words == null || gov_words.contains(pattern.getGov().getNormalizedWord())) //
+			&& (dep_words == null || dep_words.contains(pattern.getDep().getNormalizedWord()));
 	}
 
 	public Sentiment apply(DependencyPattern pattern)
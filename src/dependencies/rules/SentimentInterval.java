@@ -73,6 +73,15 @@ public class SentimentInterval {
 		return compareSentiments(minSentiment, s) <= 0 && compareSentiments(s, maxSentiment) <= 0;
 	}
 	
+	/**
+	 * @return true if a sentiment of the given rating falls within the interval
+	 */
+	public boolean containsRating(int rating)
+	{
+		return minSentiment.toNumber(SentimentFormat.RATING) <= rating
+			&& rating <= maxSentiment.toNumber(SentimentFormat.RATING);
+	}
+	
 	// toString
 	
 	public static final SentimentInterval	NONE		= new SentimentInterval();
@@ -24,16 +24,22 @@ package dependencies.rules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import lexicon.TermSentiment.Sentiment;
 import util.AppLogger;
+import wordnet.Synset.SynsetCategory;
 import edu.stanford.nlp.trees.GrammaticalRelation;
 
 
 /**
- * TODO Description missing
+ * An ordered list of dependency rules, where the first rule that matches a pattern is the one that
+ * applies. Matching goes through a rule index, compiled when the rule set is first used, so that
+ * resolving the rule for a relation does not require scanning the whole list.
+ * 
  * @author Stelios Karabasakis
  */
 public class SimpleEnglishRuleSet extends DependencyRuleSet {
@@ -41,6 +47,78 @@ public class SimpleEnglishRuleSet extends DependencyRuleSet {
 	protected ArrayList<DependencyRule>	ruleSet;
 	protected Set<GrammaticalRelation>	clausalRelations;
 	
+	private volatile RuleIndex			ruleIndex	= null;
+	
+	/**
+	 * The positions of the rules that may match a pattern, keyed by the relation and the gov and
+	 * dep categories of the pattern. Candidates are listed in rule set order, up to and including
+	 * the first one that does not restrict the words of the pattern, since no rule after that can
+	 * ever be the first one to match.
+	 */
+	private static class RuleIndex {
+		
+		private static final SynsetCategory[]		categories	= SynsetCategory.values();
+		private static final int[]					NO_RULES	= new int[0];
+		
+		private HashMap<GrammaticalRelation, int[][]>	candidates	= new HashMap<GrammaticalRelation, int[][]>();
+		
+		public RuleIndex(List<DependencyRule> rules)
+		{
+			HashSet<GrammaticalRelation> relations = new HashSet<GrammaticalRelation>();
+			for (DependencyRule rule : rules) {
+				relations.addAll(rule.getRelations());
+			}
+			
+			ArrayList<Integer> rule_positions = new ArrayList<Integer>();
+			for (GrammaticalRelation relation : relations) {
+				int[][] relation_candidates = new int[categories.length * categories.length][];
+				for (SynsetCategory gov : categories) {
+					for (SynsetCategory dep : categories) {
+						rule_positions.clear();
+						for (int pos = 0 ; pos < rules.size() ; pos++) {
+							DependencyRule rule = rules.get(pos);
+							if (rule.getRelations().contains(relation) && rule.acceptsGov(gov) && rule.acceptsDep(dep)) {
+								rule_positions.add(pos);
+								if (!rule.hasWordLists()) {
+									break;
+								}
+							}
+						}
+						
+						int[] positions = rule_positions.isEmpty() ? NO_RULES : new int[rule_positions.size()];
+						for (int i = 0 ; i < positions.length ; i++) {
+							positions[i] = rule_positions.get(i);
+						}
+						relation_candidates[slot(gov, dep)] = positions;
+					}
+				}
+				candidates.put(relation, relation_candidates);
+			}
+		}
+		
+		private static int slot(SynsetCategory gov, SynsetCategory dep)
+		{
+			return gov.ordinal() * categories.length + dep.ordinal();
+		}
+		
+		/**
+		 * @return the position of the first rule that matches the pattern, or -1 if no rule
+		 *         matches
+		 */
+		public int getMatchingRule(List<DependencyRule> rules, DependencyPattern pattern)
+		{
+			int[][] relation_candidates = candidates.get(pattern.getReln());
+			if (relation_candidates != null) {
+				for (int pos : relation_candidates[slot(pattern.getGov().getCategory(), pattern.getDep().getCategory())]) {
+					if (rules.get(pos).matchesWords(pattern))
+						return pos;
+				}
+			}
+			
+			return -1;
+		}
+	}
+	
 	/**
 	 * Constructor for class SimpleEnglishRuleSet
 	 */
@@ -62,6 +140,7 @@ public class SimpleEnglishRuleSet extends DependencyRuleSet {
 	public void addRule(DependencyRule rule)
 	{
 		ruleSet.add(rule);
+		ruleIndex = null;
 	}
 	
 	/* (non-Javadoc)
@@ -79,13 +158,34 @@ public class SimpleEnglishRuleSet extends DependencyRuleSet {
 	@Override
 	public DependencyRule getMatchingRule(DependencyPattern pattern)
 	{
-		for (DependencyRule rule : ruleSet) {
-			if (rule.matches(pattern))
-				return rule;
+		int pos = getMatchingRulePosition(pattern);
+		return pos < 0 ? null : ruleSet.get(pos);
+	}
+	
+	/**
+	 * @return the position in the rule set of the first rule that matches the pattern, or -1 if no
+	 *         rule matches
+	 */
+	protected int getMatchingRulePosition(DependencyPattern pattern)
+	{
+		RuleIndex index = ruleIndex;
+		if (index == null) {
+			index = compileRules();
 		}
 		
-		AppLogger.error.log(Level.INFO, pattern + " (No matching tule found)");
-		return null;
+		int pos = index.getMatchingRule(ruleSet, pattern);
+		if (pos < 0) {
+			AppLogger.error.log(Level.INFO, pattern + " (No matching tule found)");
+		}
+		return pos;
+	}
+	
+	private synchronized RuleIndex compileRules()
+	{
+		if (ruleIndex == null) {
+			ruleIndex = new RuleIndex(ruleSet);
+		}
+		return ruleIndex;
 	}
 	
 	/* (non-Javadoc)
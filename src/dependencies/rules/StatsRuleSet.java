@@ -75,7 +75,11 @@ public class StatsRuleSet extends SimpleEnglishRuleSet {
 		int size = ruleSet.size();
 		HashMap<Integer, ArrayList<DependencyRule>> ruleCountMap = new HashMap<Integer, ArrayList<DependencyRule>>();
 		for (int i = 0; i < size; i++) {
-			Integer count = ruleCounters.get(i).get();
+			Counter counter = ruleCounters.get(i);
+			Integer count;
+			synchronized (counter) {
+				count = counter.get();
+			}
 			DependencyRule rule = ruleSet.get(i);
 			
 			if (!ruleCountMap.containsKey(count)) {
@@ -106,6 +110,25 @@ public class StatsRuleSet extends SimpleEnglishRuleSet {
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see dependencies.rules.DependencyRuleSet#applyMatchingRule(dependencies.rules.DependencyPattern)
+	 */
+	@Override
+	public Sentiment applyMatchingRule(DependencyPattern pattern)
+	{
+		int pos = getMatchingRulePosition(pattern);
+		if (pos < 0)
+			return applyRule(pattern, null);
+		
+		// Rules may be applied by several classifier threads at once
+		Counter counter = ruleCounters.get(pos);
+		synchronized (counter) {
+			counter.increment();
+		}
+		return super.applyRule(pattern, ruleSet.get(pos));
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see dependencies.rules.SimpleEnglishRuleSet#applyRule(dependencies.rules.DependencyPattern,
@@ -114,7 +137,11 @@ public class StatsRuleSet extends SimpleEnglishRuleSet {
 	@Override
 	public Sentiment applyRule(DependencyPattern pattern, DependencyRule rule)
 	{
-		ruleCounters.get(ruleSet.indexOf(rule)).increment();
+		// Rules may be applied by several classifier threads at once
+		Counter counter = ruleCounters.get(ruleSet.indexOf(rule));
+		synchronized (counter) {
+			counter.increment();
+		}
 		return super.applyRule(pattern, rule);
 	}
 
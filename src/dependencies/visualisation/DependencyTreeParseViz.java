@@ -40,15 +40,18 @@ import util.AppLogger;
 import config.Paths;
 import dependencies.DependencyTree;
 import dependencies.DependencyTreeParse;
+import dependencies.DependencyTreeParseListener;
 import dependencies.TypedDependencyWrapper;
+import dependencies.rules.DependencyPattern;
 
 
 /**
- * TODO Description missing
+ * A {@link DependencyTreeParse} that listens to its own steps, and renders the tree to a Graphviz
+ * dot file after every relation traversed. The files are written to {@link Paths#dotFilesPath}.
  * 
  * @author Stelios Karabasakis
  */
-public class DependencyTreeParseViz extends DependencyTreeParse {
+public class DependencyTreeParseViz extends DependencyTreeParse implements DependencyTreeParseListener {
 	
 	private String				basename;
 	private static NumberFormat	filenf	= NumberFormat.getInstance();
@@ -64,6 +67,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 		super(sentence);
 		basename = new Long(new Date().getTime()).toString();
 		filenf.setMinimumIntegerDigits(2);
+		addListener(this);
 	}
 	
 	/**
@@ -72,18 +76,43 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 	public DependencyTreeParseViz(DependencyTree tree)
 	{
 		super(tree);
+		addListener(this);
 	}
 	
-	protected void visualize_init()
+	/*
+	 * (non-Javadoc)
+	 * @see dependencies.DependencyTreeParseListener#parseStarted(dependencies.DependencyTreeParse)
+	 */
+	@Override
+	public void parseStarted(DependencyTreeParse parse)
 	{
-		printDotFile(true);
+		// printDotFile(true);
 	}
-
+	
+	/*
+	 * (non-Javadoc)
+	 * @see dependencies.DependencyTreeParseListener#relationTraversed(dependencies.DependencyTreeParse,
+	 * dependencies.TypedDependencyWrapper, dependencies.rules.DependencyPattern,
+	 * lexicon.TermSentiment.Sentiment)
+	 */
 	@Override
-	protected void visualize()
+	public void relationTraversed(DependencyTreeParse parse, TypedDependencyWrapper relation,
+			DependencyPattern pattern, Sentiment outcome)
 	{
 		printDotFile(false);
 	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see dependencies.DependencyTreeParseListener#parseCompleted(dependencies.DependencyTreeParse)
+	 */
+	@Override
+	public void parseCompleted(DependencyTreeParse parse)
+	{
+		if (relationIndex.size() > 0) {
+			printDotFile(false);
+		}
+	}
 
 	private BufferedWriter getDotFileWriter(String path)
 	{
@@ -210,7 +239,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 	
 	private String topicSentimentStr(int topicId)
 	{
-		Sentiment s = nodeSentiments.get(nodeTopicRoots.get(topicId));
+		Sentiment s = nodeSentiments[nodeTopicRoots.get(topicId)];
 		return "t" + topicId + " [" //
 			+ "label=\"" + nodeTopics.get(topicId)//
 			+ (s.isNeutral() ? "" : " " + snum(s)) //
@@ -220,7 +249,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 	
 	private String nodeStr(int nodeId)
 	{
-		Sentiment s = nodeSentimentsInit.get(nodeId);
+		Sentiment s = nodeSentimentsInit[nodeId];
 		return "n" + nodeId + " [label=\"" + tokenIndex.get(nodeId - 1).word() //
 			+ "|" + snum(s) + "\"]" //
 			+ "[fontcolor=" + color(s) + " color=" + color(s) + "]";
@@ -234,7 +263,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 	
 	private String nodeSentimentStr(int nodeId)
 	{
-		Sentiment s = nodeSentiments.get(nodeId);
+		Sentiment s = nodeSentiments[nodeId];
 		return "n" + nodeId + "s [label=\"" + snum(s) + "\"]" //
 			+ "[fillcolor=" + fillcolor(s) + "]";
 	}
@@ -312,7 +341,6 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 			g.newLine();
 			
 			// Token nodes, numbered by their nodeid, and marked up with their prior sentiment
-			Set<Integer> nodes = nodeSentimentsInit.keySet();
 			g.write( //
 				stmt("node [shape=record style=\"solid,filled\" color=grey60 fontcolor=grey60 fillcolor=lightyellow "
 					+ "fontname=\"Arial\" fontsize=9 height=0.1]"));
@@ -320,7 +348,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 				if (nodeTopics.containsKey(node)) {
 					g.write(stmt(nodeTopicStr(node)));
 				}
-				else if (nodeSentimentsInit.get(node).isNeutral()) {
+				else if (nodeSentimentsInit[node].isNeutral()) {
 					g.write(stmt(nodeNeutralStr(node)));
 				}
 				else {
@@ -340,7 +368,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 			g.write( //
 				stmt("node [shape=folder style=\"filled,solid\" color=black fontcolor=white height=0.3]"));
 			for (Entry<Integer, Integer> nodeTopicEntry : nodeTopicRoots.entrySet()) {
-				if (!init && traversedNodes.contains(nodeTopicEntry.getValue())
+				if (!init && traversedNodes[nodeTopicEntry.getValue()]
 					&& !leafNodes.contains(nodeTopicEntry.getValue())) {
 					g.write(stmt(topicSentimentStr(nodeTopicEntry.getKey())));
 				}
@@ -355,7 +383,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 			g.write( //
 				stmt("node [shape=circle color=white style=filled fixedsize=true width=0.3 height=0.3]"));
 			for (Integer snode : relationTerms) {
-				if (!init && traversedNodes.contains(snode) && !leafNodes.contains(snode)) {
+				if (!init && traversedNodes[snode] && !leafNodes.contains(snode)) {
 					
 					if (!topicRoots.contains(snode)) {
 						g.write(stmt(nodeSentimentStr(snode)));
@@ -403,7 +431,7 @@ public class DependencyTreeParseViz extends DependencyTreeParse {
 				stmt("edge [color=grey20 dir=forward style=solid arrowhead=dot labelangle=0 labeldistance=0 nodesep=0.2]"));
 			for (Integer snode : relationTerms) {
 				if (!topicRoots.contains(snode)) {
-					if (!init && traversedNodes.contains(snode) && !leafNodes.contains(snode)) {
+					if (!init && traversedNodes[snode] && !leafNodes.contains(snode)) {
 						g.write(stmt(edgeSentimentStr(snode)));
 					}
 					else {
@@ -23,19 +23,11 @@
 package filters;
 
 import indexing.ComparisonDegree;
-import indexing.PosTag;
-import indexing.Token;
+import indexing.ReviewTermAttribute;
 import indexing.PosTag.PosCategory;
 import java.io.IOException;
-import java.util.logging.Level;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
-import org.apache.lucene.analysis.tokenattributes.TermAttribute;
-import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.apache.lucene.index.Payload;
-import util.AppLogger;
 
 
 /**
@@ -46,14 +38,7 @@ public class ComparisonDegreeFilter extends TokenFilter {
 	
 	private ComparisonDegree	degree;
 	
-	private TermAttribute		input_term;
-	private TypeAttribute		input_type;
-	private FlagsAttribute		input_flags;
-	private PayloadAttribute	input_payload;
-	private TermAttribute		output_term;
-	private TypeAttribute		output_type;
-	private FlagsAttribute		output_flags;
-	private PayloadAttribute	output_payload;
+	private ReviewTermAttribute	reviewterm;
 
 
 	/**
@@ -65,17 +50,8 @@ public class ComparisonDegreeFilter extends TokenFilter {
 	{
 		super(input);
 		
-		// Getting attributes from input token stream
-		input_term = input.getAttribute(TermAttribute.class);
-		input_type = input.getAttribute(TypeAttribute.class);
-		input_flags = input.getAttribute(FlagsAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
-		
-		// Setting attributes for this token stream
-		output_term = this.getAttribute(TermAttribute.class);
-		output_type = this.getAttribute(TypeAttribute.class);
-		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = this.getAttribute(PayloadAttribute.class);
+		// The review term attribute is modified in place, as it passes through this filter
+		reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		// Default degree
 		degree = ComparisonDegree.NONE;
@@ -89,65 +65,35 @@ public class ComparisonDegreeFilter extends TokenFilter {
 	public boolean incrementToken() throws IOException
 	{
 		// Load next token from input stream
-		Token current_token;
-		if ((current_token = getNextToken()) == null)
+		if (!input.incrementToken())
 			return false;
 		
 
-		if ( !tokenAllowsDegree(current_token)) {
+		if ( !tokenAllowsDegree()) {
 			degree = ComparisonDegree.NONE;
 		}
 		else {
-			if (tokenHasDegree(current_token)) {
-				degree = current_token.payload.getDegree();
+			if (tokenHasDegree()) {
+				degree = reviewterm.getDegree();
 			}
 			else {
-				current_token.payload.setDegree(degree);
+				reviewterm.setDegree(degree);
 			}
 		}
 
-		// Setting attributes for output stream
-		output_term.setTermBuffer(current_token.term);
-		output_type.setType(current_token.type);
-		output_flags.setFlags(current_token.flags);
-		output_payload.setPayload(current_token.payload.getPayload());
-		
 		//
 		return true;
 	}
 	
-	private boolean tokenAllowsDegree(Token token)
+	private boolean tokenAllowsDegree()
 	{
-		PosTag.PosCategory pos_cat = token.payload.getPosCat();
+		PosCategory pos_cat = reviewterm.getPosCat();
 		return pos_cat == PosCategory.J || pos_cat == PosCategory.R;
 	}
 	
-	private boolean tokenHasDegree(Token token)
+	private boolean tokenHasDegree()
 	{
-		ComparisonDegree degree = token.payload.getDegree();
+		ComparisonDegree degree = reviewterm.getDegree();
 		return degree == ComparisonDegree.COMPARATIVE || degree == ComparisonDegree.SUPERLATIVE;
 	}
-
-	private Token getNextToken() throws IOException
-	{
-		if (input.incrementToken()) {
-			// Reading term attributes from input stream
-			String term = input_term.term();
-			String postag = input_type.type();
-			int flags = input_flags.getFlags();
-			Payload payload = input_payload.getPayload();
-			
-			// Adding token into buffer
-			Token t = new Token(term, postag, flags);
-			if (t.payload.decode(payload.getData()) == false) {
-				AppLogger.error.log(Level.WARNING, "Invalid payload data for token [" + term + ":" + postag
-					+ "] detected while reading input stream for NegationScopeFilter");
-			}
-			
-			return t;
-		}
-		else
-			return null;
-		
-	}
 }
@@ -26,26 +26,24 @@ import indexing.ComparisonDegree;
 import indexing.CompoundLemmaTagger;
 import indexing.Lemma;
 import indexing.PosTag;
-import indexing.ReviewTermPayload;
+import indexing.ReviewTermAttribute;
 import indexing.Token;
+import indexing.TokenWindow;
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.logging.Level;
 import net.didion.jwnl.JWNLException;
-import net.didion.jwnl.data.IndexWord;
-import net.didion.jwnl.data.IndexWordSet;
 import net.didion.jwnl.data.POS;
 import net.didion.jwnl.dictionary.Dictionary;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import util.AppLogger;
+import wordnet.CompoundTermTrie;
 import wordnet.DictionaryFactory;
-import wordnet.IndexMap;
 import wordnet.Synset;
+import wordnet.WordnetLookup;
 import config.Globals;
 
 
@@ -69,33 +67,35 @@ public class LemmatizationFilter extends TokenFilter {
 	
 	public static class Lemmatizer {
 		
-		private Dictionary	wordnet;
-		public IndexMap		compoundTermsIndex;
+		private Dictionary		wordnet;
+		private WordnetLookup	lookup;
+		public CompoundTermTrie	compoundTermsIndex;
 		
 		/**
 		 * Constructor for class filters.Lemmatizer
 		 */
 		public Lemmatizer()
 		{
-			wordnet = DictionaryFactory.getWordnetInstance();
+			wordnet = DictionaryFactory.getLemmatizationWordnet();
+			lookup = DictionaryFactory.getWordnetLookup(wordnet);
 			compoundTermsIndex = DictionaryFactory.setupCompoundTermsIndex(wordnet);
 		}
 		
-		public Lemmatizer(Dictionary wordnet, IndexMap compoundTermsIndex)
+		public Lemmatizer(Dictionary wordnet, CompoundTermTrie compoundTermsIndex)
 		{
 			this.wordnet = wordnet;
+			lookup = DictionaryFactory.getWordnetLookup(wordnet);
 			this.compoundTermsIndex = compoundTermsIndex;
 		}
 		
 		public Synset[] lookupWord(String word)
 		{
 			try {
-				IndexWord[] lookup_results = wordnet.lookupAllIndexWords(word).getIndexWordArray();
+				WordnetLookup.Entry[] lookup_results = lookup.lookupAllIndexWords(word);
 				Synset[] synsets = new Synset[lookup_results.length];
 				for (int i = 0 ; i < lookup_results.length ; i++) {
-					IndexWord lookup_result = lookup_results[i];
-					synsets[i] = new Synset(PosTag.toCategory(lookup_result.getSense(1).getPOS()), lookup_result
-						.getSense(1).getOffset());
+					WordnetLookup.Entry lookup_result = lookup_results[i];
+					synsets[i] = new Synset(PosTag.toCategory(lookup_result.getPos()), lookup_result.getOffset());
 				}
 				
 				return synsets;
@@ -112,9 +112,9 @@ public class LemmatizationFilter extends TokenFilter {
 		public Synset lookupWord(String word, POS pos)
 		{
 			try {
-				IndexWord lookup_result = wordnet.lookupIndexWord(pos, word);
+				WordnetLookup.Entry lookup_result = lookup.lookupIndexWord(pos, word);
 				if (lookup_result != null)
-					return new Synset(PosTag.toCategory(pos), lookup_result.getSense(1).getOffset());
+					return new Synset(PosTag.toCategory(pos), lookup_result.getOffset());
 				else
 					return null;
 			} catch ( JWNLException e ) {
@@ -129,9 +129,10 @@ public class LemmatizationFilter extends TokenFilter {
 		{
 			Lemma lemma_to_return = null;
 			try {
-				IndexWord lookup_result = wordnet.lookupIndexWord(lemma.getPos(), lemma.getLemma());
+				WordnetLookup.Entry lookup_result = lookup.lookupIndexWord(lemma.getPos(), lemma.getLemma());
 				if (lookup_result != null) {
-					lemma_to_return = new Lemma(lookup_result.getLemma(), lookup_result.getSense(1));
+					lemma_to_return = new Lemma(lookup_result.getLemma(), lookup_result.getPos(), lookup_result
+						.getOffset());
 				}
 				else {
 					lemma_to_return = new Lemma(lemma.getLemma());
@@ -152,14 +153,14 @@ public class LemmatizationFilter extends TokenFilter {
 		{
 			if (lemma.getLength() > 1) {
 				try {
-					IndexWordSet candidate_lemma_set = wordnet.lookupAllIndexWords(lemma.getLemma());
-					IndexWord[] candidate_indexwords = candidate_lemma_set.getIndexWordArray();
+					WordnetLookup.Entry[] candidate_indexwords = lookup.lookupAllIndexWords(lemma.getLemma());
 					
 					Lemma lemma_to_return = new Lemma();
-					for (IndexWord candidate_indexword : candidate_indexwords) {
+					for (WordnetLookup.Entry candidate_indexword : candidate_indexwords) {
 						Lemma candidate_lemma = new Lemma();
 						candidate_lemma.appendTokensToLemma(candidate_indexword.getLemma());
-						candidate_lemma.setSynset(candidate_indexword.getSense(1));
+						candidate_lemma.setPos(candidate_indexword.getPos());
+						candidate_lemma.setOffset(candidate_indexword.getOffset());
 						if (candidate_lemma.getLength() > lemma_to_return.getLength()
 							|| candidate_lemma.getWordLength() > lemma_to_return.getWordLength()) {
 							lemma_to_return = candidate_lemma;
@@ -194,14 +195,14 @@ public class LemmatizationFilter extends TokenFilter {
 	 * A temporary buffer for the tokens that make up the phrase that is currently being processed
 	 * by the TokenFilter
 	 */
-	private LinkedList<Token>	currentTokens		= new LinkedList<Token>();
+	private TokenWindow			currentTokens		= new TokenWindow();
 	
 	/*
 	 * Attributes of the input stream that is consumed by this filter
 	 */
 	private TermAttribute		input_term;
 	private TypeAttribute		input_type;
-	private PayloadAttribute	input_payload;
+	private ReviewTermAttribute	input_reviewterm;
 	
 	/*
 	 * Attributes for the output TokenStream that is produced by this filter
@@ -209,7 +210,7 @@ public class LemmatizationFilter extends TokenFilter {
 	private TermAttribute		output_term;
 	private TypeAttribute		output_type;
 	private FlagsAttribute		output_flags;
-	private PayloadAttribute	output_payload;
+	private ReviewTermAttribute	output_reviewterm;
 	
 	private boolean				lemmatized_output	= false;
 	
@@ -225,13 +226,13 @@ public class LemmatizationFilter extends TokenFilter {
 		// Getting attributes from input stream
 		input_term = input.getAttribute(TermAttribute.class);
 		input_type = input.getAttribute(TypeAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
+		input_reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		// Setting attributes for this stream
 		output_term = this.addAttribute(TermAttribute.class);
 		output_type = this.addAttribute(TypeAttribute.class);
 		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = this.addAttribute(PayloadAttribute.class);
+		output_reviewterm = this.addAttribute(ReviewTermAttribute.class);
 		
 		this.lemmatized_output = lemmatized_output;
 		
@@ -243,20 +244,20 @@ public class LemmatizationFilter extends TokenFilter {
 	 * Constructor for class LemmatizationFilter
 	 */
 	public LemmatizationFilter(TokenStream input, boolean lemmatized_output, Dictionary wordnet,
-			IndexMap compoundTermsIndex)
+			CompoundTermTrie compoundTermsIndex)
 	{
 		super(input);
 		
 		// Getting attributes from input stream
 		input_term = input.getAttribute(TermAttribute.class);
 		input_type = input.getAttribute(TypeAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
+		input_reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		// Setting attributes for this stream
 		output_term = this.getAttribute(TermAttribute.class);
 		output_type = this.getAttribute(TypeAttribute.class);
 		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = this.addAttribute(PayloadAttribute.class);
+		output_reviewterm = this.addAttribute(ReviewTermAttribute.class);
 		
 		this.lemmatized_output = lemmatized_output;
 		
@@ -284,11 +285,11 @@ public class LemmatizationFilter extends TokenFilter {
 		
 
 		if (current_token.isDelim(false)) {
-			token_to_return = currentTokens.remove(0);
+			token_to_return = currentTokens.remove();
 			token_to_return.payload.setPosCat(PosTag.toCategory(current_token.type));
 		}
 		else if (current_token.payload.isProper()) {
-			token_to_return = currentTokens.remove(0);
+			token_to_return = currentTokens.remove();
 			token_to_return.payload.setUnlemmatizable(true);
 		}
 		else {
@@ -348,18 +349,19 @@ public class LemmatizationFilter extends TokenFilter {
 		output_term.setTermBuffer(token_to_return.term);
 		output_type.setType(token_to_return.type);
 		output_flags.setFlags(token_to_return.flags);
-		output_payload.setPayload(token_to_return.payload.getPayload());
+		output_reviewterm.set(token_to_return.payload);
 		
 		return true;
 	}
 	
 	private Lemma getNextLemma(String first_token)
 	{
-		IndexMap index = lemmatizer.compoundTermsIndex.get(first_token);
+		CompoundTermTrie trie = lemmatizer.compoundTermsIndex;
+		int index = trie.get(first_token);
 		Lemma lemma = new Lemma(first_token);
 		Lemma lemma_suffix = new Lemma();
 		
-		if (index == null)
+		if (index == CompoundTermTrie.NO_NODE)
 			return lemma;
 		
 		Token current_token;
@@ -382,32 +384,32 @@ public class LemmatizationFilter extends TokenFilter {
 						// Search for possessive phrase is successfully over
 						search_for_possessive_phrase = false;
 						lemma_suffix.appendToLemma(possessive_phrase_term, lemma_suffix.getLength());
-						if (index.isEndNode()) {
+						if (trie.isEndNode(index)) {
 							lemma.appendToLemma(lemma_suffix);
 							lemma_suffix = new Lemma(); // Delete and reinitialize suffix_lemma
 						}
 					}
 					first_token_of_possessive_phrase = false;
 				}
-				else if (index.has(current_token.term)) {
-					index = index.get(current_token.term);
+				else if (trie.has(index, current_token.term)) {
+					index = trie.get(index, current_token.term);
 					lemma_suffix.appendToLemma(current_token.term);
 					
 					// Check that current chain of tokens forms compound term
-					if (index.isEndNode()) {
+					if (trie.isEndNode(index)) {
 						lemma.appendToLemma(lemma_suffix);
 						lemma_suffix = new Lemma(); // Delete and reinitialize suffix_lemma
 					}
 				}
-				else if (index.has("one's")) {
+				else if (trie.has(index, "one's")) {
 					possessive_phrase_term = "one's";
-					index = index.get("one's");
+					index = trie.get(index, "one's");
 					search_for_possessive_phrase = true;
 					first_token_of_possessive_phrase = true;
 				}
-				else if (index.has("someone's")) {
+				else if (trie.has(index, "someone's")) {
 					possessive_phrase_term = "someone's";
-					index = index.get("someone's");
+					index = trie.get(index, "someone's");
 					search_for_possessive_phrase = true;
 					first_token_of_possessive_phrase = true;
 				}
@@ -444,7 +446,7 @@ public class LemmatizationFilter extends TokenFilter {
 			if (input.incrementToken()) {
 				// Reading term attributes from input stream and adding token into buffer
 				Token current_token = loadNextToken();
-				
+				boolean keep_token = true;
 
 				// Act upon encountering delimiting punctuation
 				if (current_token.isDelim(false)) {
@@ -453,18 +455,19 @@ public class LemmatizationFilter extends TokenFilter {
 						// Quotation marks do not end the phrase. We just use them to switch the
 						// state of open quotation marks from open to closed or vice versa.
 						between_quotemarks = between_quotemarks ? false : true;
+						keep_token = false;
 					}
 					else {
 						// Delimiters do not end the phrase if we encounter them between open
 						// punctuation marks, but they do end the phrase in all other cases
 						end_of_phrase = between_quotemarks ? false : true;
-						if (!between_quotemarks) {
-							currentTokens.add(current_token);
-						}
+						keep_token = !between_quotemarks;
 					}
 				}
-				else {
-					currentTokens.add(current_token);
+				
+				// Tokens that are not part of the phrase are dropped from the buffer again
+				if (!keep_token) {
+					currentTokens.remove(currentTokens.size() - 1, 1);
 				}
 			}
 			else {
@@ -477,10 +480,13 @@ public class LemmatizationFilter extends TokenFilter {
 		return true;
 	}
 	
+	/*
+	 * Reads the next token from the input {@code TokenStream} into the next free slot of the buffer
+	 */
 	private Token loadNextToken()
 	{
-		Token next_token = new Token(input_term.term(), input_type.type(), Globals.NO_FLAGS, new ReviewTermPayload(
-				input_payload.getPayload()));
+		Token next_token = currentTokens.add(input_term.term(), input_type.type(), Globals.NO_FLAGS);
+		input_reviewterm.get(next_token.payload);
 		return next_token;
 	}
 	
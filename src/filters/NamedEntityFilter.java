@@ -23,15 +23,14 @@
 package filters;
 
 import indexing.PosTag;
-import indexing.ReviewTermPayload;
+import indexing.ReviewTermAttribute;
 import indexing.Token;
+import indexing.TokenWindow;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.logging.Level;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import util.AppLogger;
@@ -57,21 +56,21 @@ public class NamedEntityFilter extends TokenFilter {
 	 * A temporary buffer for the tokens that make up the phrase that is currently being processed
 	 * by the TokenFilter
 	 */
-	private ArrayList<Token>		currentTokens		= new ArrayList<Token>();
+	private TokenWindow				currentTokens		= new TokenWindow();
 	
 	/*
 	 * Attributes of the input stream that is consumed by this filter
 	 */
 	private TermAttribute			input_term;
 	private TypeAttribute			input_type;
-	private PayloadAttribute		input_payload;
+	private ReviewTermAttribute		input_reviewterm;
 	
 	/*
 	 * Attributes for the output TokenStream that is produced by this filter
 	 */
 	private TermAttribute			output_term;
 	private TypeAttribute			output_type;
-	private PayloadAttribute		output_payload;
+	private ReviewTermAttribute		output_reviewterm;
 	
 	/**
 	 * Constructor for class NamedEntityFilter
@@ -86,12 +85,12 @@ public class NamedEntityFilter extends TokenFilter {
 		// Getting attributes from input stream
 		input_term = input.getAttribute(TermAttribute.class);
 		input_type = input.getAttribute(TypeAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
+		input_reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		// Setting attributes for this stream
 		output_term = this.addAttribute(TermAttribute.class);
 		output_type = this.addAttribute(TypeAttribute.class);
-		output_payload = this.addAttribute(PayloadAttribute.class);
+		output_reviewterm = this.addAttribute(ReviewTermAttribute.class);
 		
 
 	}
@@ -112,10 +111,10 @@ public class NamedEntityFilter extends TokenFilter {
 		}
 
 		// Return current token
-		Token token_to_return = currentTokens.remove(0);
+		Token token_to_return = currentTokens.remove();
 		output_term.setTermBuffer(token_to_return.term);
 		output_type.setType(token_to_return.type);
-		output_payload.setPayload(token_to_return.payload.getPayload());
+		output_reviewterm.set(token_to_return.payload);
 		
 		return true;
 	}
@@ -181,11 +180,13 @@ public class NamedEntityFilter extends TokenFilter {
 		}
 		
 		Token concat_token = currentTokens.get(neStart);
-		int current_token_index = neStart + 1;
-		for (int index = neStart + 1 ; index <= neEnd ; index++) {
-			Token current_token = currentTokens.get(current_token_index);
-			concat_token.term = concat_token.term + " " + current_token.term;
-			currentTokens.remove(current_token_index);
+		if (neEnd > neStart) {
+			StringBuilder concat_term = new StringBuilder(concat_token.term);
+			for (int index = neStart + 1 ; index <= neEnd ; index++) {
+				concat_term.append(' ').append(currentTokens.get(index).term);
+			}
+			concat_token.term = concat_term.toString();
+			currentTokens.remove(neStart + 1, neEnd - neStart);
 		}
 		
 		concat_token.type = "NNP";
@@ -251,7 +252,6 @@ public class NamedEntityFilter extends TokenFilter {
 			if (input.incrementToken()) {
 				// Reading term attributes from input stream and adding token into buffer
 				Token current_token = loadNextToken();
-				currentTokens.add(current_token);
 				
 				// Act upon encountering delimiting punctuation
 				if (current_token.isDelim(false)) {
@@ -279,12 +279,12 @@ public class NamedEntityFilter extends TokenFilter {
 	}
 	
 	/*
-	 * Reads the next token from the input {@code TokenStream}
+	 * Reads the next token from the input {@code TokenStream} into the next free slot of the buffer
 	 */
 	private Token loadNextToken()
 	{
-		Token next_token = new Token(input_term.term(), input_type.type(), Globals.NO_FLAGS, new ReviewTermPayload(
-				input_payload.getPayload()));
+		Token next_token = currentTokens.add(input_term.term(), input_type.type(), Globals.NO_FLAGS);
+		input_reviewterm.get(next_token.payload);
 		return next_token;
 	}
 }
@@ -23,24 +23,32 @@
 package filters;
 
 import indexing.PosTag;
-import indexing.ReviewTermPayload;
+import indexing.ReviewTermAttribute;
+import indexing.Token;
+import indexing.TokenWindow;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.logging.Level;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import util.AppLogger;
-import config.Paths;
+import util.ModelRegistry;
+import config.Globals;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
 import edu.stanford.nlp.tagger.maxent.MaxentTagger;
 
 
 /**
  * A TokenFilter that <strong>consumes</strong> text segments, each segment constituting of one or
  * more complete sentences of text, and <strong>produces</strong> a series of POS-tagged tokens.
- * Each produced token represents a single entity, i.e. a single word or a punctuation mark. <h4>
+ * Each produced token represents a single entity, i.e. a single word or a punctuation mark.
+ * <p>
+ * Each segment is tokenized and split into sentences up front, but sentences are only handed to the
+ * tagger one at a time, as the tokens of the previous sentence are consumed. The tagger returns
+ * word/tag pairs directly, so only the tokens of a single sentence are buffered at any time. <h4>
  * Consumed attributes:</h4>
  * <ul>
  * <li>{@link TermAttribute}: should store the input text segment
@@ -49,21 +57,27 @@ import edu.stanford.nlp.tagger.maxent.MaxentTagger;
  * <ul>
  * <li>{@link TermAttribute}: stores the word or punctuation symbol represented by the token
  * <li>{@link TypeAttribute}: stores the POS tag of the token
+ * <li>{@link ReviewTermAttribute}: stores the POS category and comparison degree of the token
  * </ul>
  * 
  * @author Stelios Karabasakis
  */
 public class PosTaggingFilter extends TokenFilter {
 	
-	private MaxentTagger		tagger			= null;
-	private LinkedList<String>	currentTokens	= new LinkedList<String>();
+	private MaxentTagger		tagger				= null;
+	private TokenWindow			currentTokens		= new TokenWindow();
 	
-	private TermAttribute		input_term		= null;
-	private TermAttribute		output_term		= null;
-	private TypeAttribute		output_type		= null;
-	private PayloadAttribute	output_payload	= null;
+	/*
+	 * The tokenized sentences of the current input segment, and the position of the next sentence
+	 * to be tagged
+	 */
+	private List<List<? extends HasWord>>	currentSentences	= new ArrayList<List<? extends HasWord>>();
+	private int								nextSentence		= 0;
 	
-	// private PayloadAttribute output_payload = null;
+	private TermAttribute		input_term			= null;
+	private TermAttribute		output_term			= null;
+	private TypeAttribute		output_type			= null;
+	private ReviewTermAttribute	output_reviewterm	= null;
 	
 
 	/**
@@ -81,7 +95,7 @@ public class PosTaggingFilter extends TokenFilter {
 		// Setting attributes for this token stream
 		output_term = this.addAttribute(TermAttribute.class);
 		output_type = this.addAttribute(TypeAttribute.class);
-		output_payload = this.addAttribute(PayloadAttribute.class);
+		output_reviewterm = this.addAttribute(ReviewTermAttribute.class);
 
 		tagger = initializeTagger();
 	}
@@ -103,26 +117,18 @@ public class PosTaggingFilter extends TokenFilter {
 		// Setting attributes for this token stream
 		output_term = this.getAttribute(TermAttribute.class);
 		output_type = this.addAttribute(TypeAttribute.class);
-		output_payload = this.addAttribute(PayloadAttribute.class);
+		output_reviewterm = this.addAttribute(ReviewTermAttribute.class);
 
 		this.tagger = tagger;
 	}
 	
+	/**
+	 * @return the POS tagger of the calling thread, as provided by the {@link ModelRegistry}. The
+	 *         tagger model is only read from disk the first time a thread requests a tagger.
+	 */
 	public MaxentTagger initializeTagger()
 	{
-		MaxentTagger tagger = null;
-		
-		try {
-			tagger = new MaxentTagger(Paths.taggerPath + "/" + MaxentTagger.DEFAULT_DISTRIBUTION_PATH);
-		} catch ( IOException e ) {
-			AppLogger.error.log(Level.SEVERE, "Cannot read model " + MaxentTagger.DEFAULT_DISTRIBUTION_PATH
-				+ " from the following location:\n" + Paths.taggerPath);
-		} catch ( ClassNotFoundException e ) {
-			AppLogger.error.log(Level.SEVERE, "An error occured while loading a POS tagger based on model "
-				+ MaxentTagger.DEFAULT_DISTRIBUTION_PATH);
-		}
-		
-		return tagger;
+		return ModelRegistry.getTagger();
 	}
 
 	/*
@@ -132,15 +138,18 @@ public class PosTaggingFilter extends TokenFilter {
 	@Override
 	public boolean incrementToken() throws IOException
 	{
-		// If we are out of buffered input, try to load the next input segment into the buffer
-		if (currentTokens.isEmpty()) {
-			if (input.incrementToken()) {
-				// Calling the POS Tagger to tag the next segment of the input
-				String pos_tagged_segment = tagger.tagString(input_term.term());
-				
-				// Tokenizing the output of the POS tagger. Tokens are stored into the currentTokens
-				// list, which acts as a temporary term buffer that is preserved between calls.
-				tokenizePosTaggedText(pos_tagged_segment);
+		// If we are out of buffered tokens, tag the next sentence of the current segment. If the
+		// segment has no more sentences, try to load the next input segment.
+		while ( currentTokens.isEmpty() ) {
+			if (nextSentence < currentSentences.size()) {
+				tagSentence(currentSentences.get(nextSentence));
+				currentSentences.set(nextSentence, null);
+				nextSentence++;
+			}
+			else if (input.incrementToken()) {
+				// Breaking the next segment of the input down into tokenized sentences
+				currentSentences = MaxentTagger.tokenizeText(new StringReader(input_term.term()));
+				nextSentence = 0;
 			}
 			else
 				// No more input
@@ -149,38 +158,38 @@ public class PosTaggingFilter extends TokenFilter {
 		
 		// If we do have input tokens pending in the currentTokens buffer, then process the first
 		// token from the buffer.
-		String next_token = currentTokens.remove();
-		int split_position = next_token.lastIndexOf('/');
-		String next_token_term, next_token_type;
-		try {
-			next_token_term = next_token.substring(0, split_position);
-			next_token_type = next_token.substring(split_position + 1);
-		} catch ( StringIndexOutOfBoundsException e ) {
-			AppLogger.error.log(Level.SEVERE, "Token \"" + next_token + "\" lacks a POS tag and will not be indexed");
-			return incrementToken();
-		}
-
-		output_term.setTermBuffer(next_token_term);
-		output_type.setType(next_token_type);
-		output_payload.setPayload(ReviewTermPayload.getPayload(PosTag.toCategory(next_token_type), PosTag
-			.getDegree(next_token_type), false, false, false));
+		Token next_token = currentTokens.remove();
+		output_term.setTermBuffer(next_token.term);
+		output_type.setType(next_token.type);
+		output_reviewterm.set(PosTag.toCategory(next_token.type), PosTag.getDegree(next_token.type), false, false,
+			false);
 
 		return true;
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.analysis.TokenFilter#reset()
+	 */
+	@Override
+	public void reset() throws IOException
+	{
+		super.reset();
+		currentTokens.clear();
+		currentSentences.clear();
+		nextSentence = 0;
+	}
+	
 	/**
-	 * Break down the output of the POS Tagger into individual tokens and store them into
-	 * currentTokens
+	 * Calls the POS tagger on a single sentence and stores the tagged tokens into currentTokens
 	 * 
-	 * @param inputString
+	 * @param sentence
 	 */
-	private void tokenizePosTaggedText(String PosTaggedText)
+	private void tagSentence(List<? extends HasWord> sentence)
 	{
-		String[] current_tokens_array = PosTaggedText.split(" ");
-		
-		int length = current_tokens_array.length;
-		for (int i = 0 ; i < length ; i++) {
-			currentTokens.add(current_tokens_array[i]);
+		ArrayList<TaggedWord> tagged_sentence = tagger.tagSentence(sentence);
+		for (TaggedWord tagged_word : tagged_sentence) {
+			currentTokens.add(tagged_word.word(), tagged_word.tag(), Globals.NO_FLAGS);
 		}
 	}
 
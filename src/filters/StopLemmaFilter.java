@@ -23,7 +23,7 @@
 package filters;
 
 import indexing.PosTag;
-import indexing.Token;
+import indexing.ReviewTermAttribute;
 import indexing.PosTag.PosCategory;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -36,11 +36,8 @@ import java.util.logging.Level;
 import net.didion.jwnl.data.POS;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.apache.lucene.index.Payload;
 import util.AppLogger;
 import config.Paths;
 
@@ -57,12 +54,7 @@ public class StopLemmaFilter extends TokenFilter {
 
 	private TermAttribute		input_term;
 	private TypeAttribute		input_type;
-	private FlagsAttribute		input_flags;
-	private PayloadAttribute	input_payload;
-	private TermAttribute		output_term;
-	private TypeAttribute		output_type;
-	private FlagsAttribute		output_flags;
-	private PayloadAttribute	output_payload;
+	private ReviewTermAttribute	reviewterm;
 	
 	
 	/**
@@ -77,14 +69,9 @@ public class StopLemmaFilter extends TokenFilter {
 		// Getting attributes from input token stream
 		input_term = input.getAttribute(TermAttribute.class);
 		input_type = input.getAttribute(TypeAttribute.class);
-		input_flags = input.getAttribute(FlagsAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
 		
-		// Setting attributes for this token stream
-		output_term = this.getAttribute(TermAttribute.class);
-		output_type = this.getAttribute(TypeAttribute.class);
-		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = this.getAttribute(PayloadAttribute.class);
+		// The review term attribute is modified in place, as it passes through this filter
+		reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		this.removeStopLemmas = removeStopLemmas;
 
@@ -135,53 +122,24 @@ public class StopLemmaFilter extends TokenFilter {
 	public boolean incrementToken() throws IOException
 	{
 		// Load next token from input stream
-		Token current_token;
-		if ((current_token = getNextToken()) == null)
-			return false;
-
-		// If current token term belongs to the set of stop-lemmas, remove it from the stream if
-		// removeStopLemmas is enabled, otherwise change its PosCategory to "other", so that it will
-		// be ignored by subsequent analysis steps
-		ArrayList<String> stoplemmas;
-		if ((stoplemmas = stopLemmas.get(current_token.getPOS())) != null) {
-			if (stoplemmas.contains(current_token.term.toLowerCase())) {
-				if (removeStopLemmas)
-					return incrementToken();
-				else {
-					current_token.payload.setPosCat(PosCategory.other);
+		while ( input.incrementToken() ) {
+			// If current token term belongs to the set of stop-lemmas, remove it from the stream if
+			// removeStopLemmas is enabled, otherwise change its PosCategory to "other", so that it
+			// will be ignored by subsequent analysis steps
+			ArrayList<String> stoplemmas;
+			if ((stoplemmas = stopLemmas.get(PosTag.toPOS(input_type.type()))) != null) {
+				if (stoplemmas.contains(input_term.term().toLowerCase())) {
+					if (removeStopLemmas)
+						continue;
+					else {
+						reviewterm.setPosCat(PosCategory.other);
+					}
 				}
 			}
-		}
-
-		// Setting attributes for output stream
-		output_term.setTermBuffer(current_token.term);
-		output_type.setType(current_token.type);
-		output_flags.setFlags(current_token.flags);
-		output_payload.setPayload(current_token.payload.getPayload());
-
-		return true;
-	}
-	
-	private Token getNextToken() throws IOException
-	{
-		if (input.incrementToken()) {
-			// Reading term attributes from input stream
-			String term = input_term.term();
-			String postag = input_type.type();
-			int flags = input_flags.getFlags();
-			Payload payload = input_payload.getPayload();
-
-			// Adding token into buffer
-			Token t = new Token(term, postag, flags);
-			if (t.payload.decode(payload.getData()) == false) {
-				AppLogger.error.log(Level.WARNING, "Invalid payload data for token [" + term + ":" + postag
-					+ "] detected while reading input stream for NegationScopeFilter");
-			}
 			
-			return t;
+			return true;
 		}
-		else
-			return null;
-
+		
+		return false;
 	}
 }
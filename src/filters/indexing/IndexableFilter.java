@@ -22,15 +22,15 @@
 //
 package filters.indexing;
 
-import indexing.ReviewTermPayload;
+import indexing.ReviewTermAttribute;
 import indexing.Token;
 import java.io.IOException;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import wordnet.Synset;
 
 
 /**
@@ -41,14 +41,10 @@ public class IndexableFilter extends TokenFilter {
 	
 	private boolean				set_synset_terms	= false;
 
-	private TermAttribute		input_term;
-	private TypeAttribute		input_type;
-	private FlagsAttribute		input_flags;
-	private PayloadAttribute	input_payload;
-	private TermAttribute		output_term;
-	private TypeAttribute		output_type;
-	private FlagsAttribute		output_flags;
-	private PayloadAttribute	output_payload;
+	private TermAttribute		term;
+	private TypeAttribute		type;
+	private FlagsAttribute		flags;
+	private ReviewTermAttribute	reviewterm;
 
 	/**
 	 * Constructor for class IndexableFilter
@@ -58,17 +54,11 @@ public class IndexableFilter extends TokenFilter {
 	{
 		super(input);
 		
-		// Getting attributes from input token stream
-		input_term = input.getAttribute(TermAttribute.class);
-		input_type = input.getAttribute(TypeAttribute.class);
-		input_flags = input.getAttribute(FlagsAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
-		
-		// Setting attributes for this token stream
-		output_term = this.addAttribute(TermAttribute.class);
-		output_type = this.addAttribute(TypeAttribute.class);
-		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = input.addAttribute(PayloadAttribute.class);
+		// Token attributes are modified in place, as they pass through this filter
+		term = input.addAttribute(TermAttribute.class);
+		type = input.addAttribute(TypeAttribute.class);
+		flags = input.addAttribute(FlagsAttribute.class);
+		reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		this.set_synset_terms = set_synset_terms;
 	}
@@ -79,25 +69,20 @@ public class IndexableFilter extends TokenFilter {
 	@Override
 	public boolean incrementToken() throws IOException
 	{
-		Token current_token;
-		while ((current_token = getNextToken()) != null) {
-			if (current_token.isIndexable()) {
+		while ( input.incrementToken() ) {
+			if (Token.isIndexable(type.type(), reviewterm)) {
 				if (set_synset_terms) {
-					if (current_token.isLemmatized()) {
-						output_term.setTermBuffer(current_token.synset().toString());
-						output_type.setType(current_token.term);
+					if (!reviewterm.isUnlemmatizable()) {
+						type.setType(term.term());
+						term.setTermBuffer(synset().toString());
 					}
 					else {
-						output_term.setTermBuffer(current_token.term);
-						output_type.setType(current_token.term);
+						type.setType(term.term());
 					}
 				}
 				else {
-					output_term.setTermBuffer(current_token.term);
-					output_type.setType(current_token.synset().toString());
+					type.setType(synset().toString());
 				}
-				output_flags.setFlags(current_token.flags);
-				output_payload.setPayload(current_token.payload.getPayload());
 				
 				return true;
 			}
@@ -106,12 +91,8 @@ public class IndexableFilter extends TokenFilter {
 		return false;
 	}
 	
-	private Token getNextToken() throws IOException
+	private Synset synset()
 	{
-		if (input.incrementToken())
-			return new Token(input_term.term(), input_type.type(), input_flags.getFlags(), new ReviewTermPayload(
-					input_payload.getPayload()));
-		else
-			return null;
+		return Token.synset(reviewterm.getPosCat(), flags.getFlags(), !reviewterm.isUnlemmatizable());
 	}
 }
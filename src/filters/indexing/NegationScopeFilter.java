@@ -23,17 +23,12 @@
 package filters.indexing;
 
 import indexing.PosTag;
-import indexing.Token;
+import indexing.ReviewTermAttribute;
 import java.io.IOException;
-import java.util.logging.Level;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.apache.lucene.index.Payload;
-import util.AppLogger;
 import edu.stanford.nlp.util.ArrayUtils;
 
 
@@ -66,12 +61,7 @@ public class NegationScopeFilter extends TokenFilter {
 
 	private TermAttribute		input_term;
 	private TypeAttribute		input_type;
-	private FlagsAttribute		input_flags;
-	private PayloadAttribute	input_payload;
-	private TermAttribute		output_term;
-	private TypeAttribute		output_type;
-	private FlagsAttribute		output_flags;
-	private PayloadAttribute	output_payload;
+	private ReviewTermAttribute	reviewterm;
 
 
 	/**
@@ -85,14 +75,9 @@ public class NegationScopeFilter extends TokenFilter {
 		// Getting attributes from input token stream
 		input_term = input.getAttribute(TermAttribute.class);
 		input_type = input.getAttribute(TypeAttribute.class);
-		input_flags = input.getAttribute(FlagsAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
 		
-		// Setting attributes for this token stream
-		output_term = this.getAttribute(TermAttribute.class);
-		output_type = this.getAttribute(TypeAttribute.class);
-		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = this.getAttribute(PayloadAttribute.class);
+		// The review term attribute is modified in place, as it passes through this filter
+		reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 	}
 	
@@ -103,62 +88,33 @@ public class NegationScopeFilter extends TokenFilter {
 	public boolean incrementToken() throws IOException
 	{
 		// Load next token from input stream
-		Token current_token;
-		if ((current_token = getNextToken()) == null)
-			return false;
-
-		// If current token term belongs to the set of negation terms, switch the state of the
-		// negation flag (i.e. prepare to mark the next open class term as negated). Or if this
-		// is already the case, reverse the effect of the negation, to account for double negatives)
-		if ( ArrayUtils.contains(negationTerms, current_token.term)) {
-			negative = !negative;
-			return incrementToken();
-		}
-
-		
-		// If we are within the scope of a negation, modify the token's payload accordingly and
-		// reset the state of the negation flag
-		if (negative) {
-			if ( current_token.isOpenClass()) {
-				current_token.payload.setNegation(true);
-				negative = false;
+		while ( input.incrementToken() ) {
+			// If current token term belongs to the set of negation terms, switch the state of the
+			// negation flag (i.e. prepare to mark the next open class term as negated). Or if this
+			// is already the case, reverse the effect of the negation, to account for double
+			// negatives)
+			if (ArrayUtils.contains(negationTerms, input_term.term())) {
+				negative = !negative;
+				continue;
 			}
 			
-			// If we reached the end of a phrase, reset the state of the negation flag
-			else if (PosTag.isDelim(current_token.payload.getPosCat())) {
-				negative = false;
-			}
-		}
-		
-		// Setting attributes for output stream
-		output_term.setTermBuffer(current_token.term);
-		output_type.setType(current_token.type);
-		output_flags.setFlags(current_token.flags);
-		output_payload.setPayload(current_token.payload.getPayload());
-
-		return true;
-	}
-	
-	private Token getNextToken() throws IOException
-	{
-		if (input.incrementToken()) {
-			// Reading term attributes from input stream
-			String term = input_term.term();
-			String postag = input_type.type();
-			int flags = input_flags.getFlags();
-			Payload payload = input_payload.getPayload();
-
-			// Adding token into buffer
-			Token t = new Token(term, postag, flags);
-			if (t.payload.decode(payload.getData()) == false) {
-				AppLogger.error.log(Level.WARNING, "Invalid payload data for token [" + term + ":" + postag
-					+ "] detected while reading input stream for NegationScopeFilter");
+			// If we are within the scope of a negation, modify the token's review term attribute
+			// accordingly and reset the state of the negation flag
+			if (negative) {
+				if (PosTag.isOpenClass(PosTag.toCategory(input_type.type()))) {
+					reviewterm.setNegation(true);
+					negative = false;
+				}
+				
+				// If we reached the end of a phrase, reset the state of the negation flag
+				else if (PosTag.isDelim(reviewterm.getPosCat())) {
+					negative = false;
+				}
 			}
 			
-			return t;
+			return true;
 		}
-		else
-			return null;
-
+		
+		return false;
 	}
 }
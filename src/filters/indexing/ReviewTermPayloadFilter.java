@@ -0,0 +1,82 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package filters.indexing;
+
+import indexing.ReviewTermAttribute;
+import indexing.ReviewTermPayload;
+import java.io.IOException;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.index.Payload;
+
+
+/**
+ * The last {@link TokenFilter} of an indexing chain. It encodes the {@link ReviewTermAttribute} of
+ * each token into its {@link PayloadAttribute}, in the single byte format of
+ * {@link ReviewTermPayload}, so that the annotations are stored in the index. The filters before it
+ * only ever modify the {@code ReviewTermAttribute}. The payload object and its data array are reused
+ * for every token, since the index writer copies payload data as each token is consumed.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ReviewTermPayloadFilter extends TokenFilter {
+	
+	private ReviewTermAttribute	input_reviewterm;
+	private PayloadAttribute	output_payload;
+	
+	private byte[]				payloadData	= new byte[1];
+	private Payload				payload		= new Payload(payloadData);
+
+	/**
+	 * Constructor for class ReviewTermPayloadFilter
+	 * 
+	 * @param input
+	 */
+	public ReviewTermPayloadFilter(TokenStream input)
+	{
+		super(input);
+		
+		// Getting attributes from input token stream
+		input_reviewterm = input.addAttribute(ReviewTermAttribute.class);
+		
+		// Setting attributes for this token stream
+		output_payload = this.addAttribute(PayloadAttribute.class);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.analysis.TokenStream#incrementToken()
+	 */
+	@Override
+	public boolean incrementToken() throws IOException
+	{
+		if (input.incrementToken()) {
+			payloadData[0] = input_reviewterm.encode();
+			output_payload.setPayload(payload);
+			return true;
+		}
+		else
+			return false;
+	}
+}
@@ -22,18 +22,14 @@
 //
 package filters.indexing;
 
+import indexing.ReviewTermAttribute;
 import indexing.SynsetTermsAggregator;
 import indexing.Token;
 import java.io.IOException;
-import java.util.logging.Level;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
-import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.apache.lucene.index.Payload;
-import util.AppLogger;
 import application.ReviewDocumentIndexer;
 import classes.Counter;
 import classes.ReviewStats;
@@ -53,14 +49,9 @@ public class StatsFilter extends TokenFilter {
 	private ReviewStats				reviewLengths;
 
 
-	private TermAttribute			input_term;
 	private TypeAttribute			input_type;
 	private FlagsAttribute			input_flags;
-	private PayloadAttribute		input_payload;
-	private TermAttribute			output_term;
-	private TypeAttribute			output_type;
-	private FlagsAttribute			output_flags;
-	private PayloadAttribute		output_payload;
+	private ReviewTermAttribute		input_reviewterm;
 	
 	
 	/**
@@ -73,16 +64,9 @@ public class StatsFilter extends TokenFilter {
 		super(input);
 		
 		// Getting attributes from input token stream
-		input_term = input.getAttribute(TermAttribute.class);
-		input_type = input.getAttribute(TypeAttribute.class);
-		input_flags = input.getAttribute(FlagsAttribute.class);
-		input_payload = input.getAttribute(PayloadAttribute.class);
-		
-		// Setting attributes for this token stream
-		output_term = this.getAttribute(TermAttribute.class);
-		output_type = this.getAttribute(TypeAttribute.class);
-		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = this.getAttribute(PayloadAttribute.class);
+		input_type = input.addAttribute(TypeAttribute.class);
+		input_flags = input.addAttribute(FlagsAttribute.class);
+		input_reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		synsets = indexer.theSynsets;
 		reviewLengths = indexer.theStats;
@@ -96,23 +80,17 @@ public class StatsFilter extends TokenFilter {
 	public boolean incrementToken() throws IOException
 	{
 		// Load next token from input stream
-		Token current_token;
-		if ((current_token = getNextToken()) != null) {
+		if (input.incrementToken()) {
 
-			if (!current_token.payload.isNegation()) {
+			if (!input_reviewterm.isNegation()) {
 				// Add the token term in the synset aggregation filter.
-				synsets.addTerm(current_token.synset(), current_token.type);
+				synsets.addTerm(Token.synset(input_reviewterm.getPosCat(), input_flags.getFlags(), !input_reviewterm
+					.isUnlemmatizable()), input_type.type());
 			
 				// Increment review body length counter
 				reviewLengthCounter.increment();
 			}
 
-			// Setting attributes for output stream
-			output_term.setTermBuffer(current_token.term);
-			output_type.setType(current_token.type);
-			output_flags.setFlags(current_token.flags);
-			output_payload.setPayload(current_token.payload.getPayload());
-			
 			return true;
 		}
 		else {
@@ -134,27 +112,4 @@ public class StatsFilter extends TokenFilter {
 		reviewLengthCounter.reset();
 	}
 	
-	private Token getNextToken() throws IOException
-	{
-		if (input.incrementToken()) {
-			// Reading term attributes from input stream
-			String term = input_term.term();
-			String postag = input_type.type();
-			int flags = input_flags.getFlags();
-			Payload payload = input_payload.getPayload();
-			
-			// Adding token into buffer
-			Token t = new Token(term, postag, flags);
-			if (t.payload.decode(payload.getData()) == false) {
-				AppLogger.error.log(Level.WARNING, "Invalid payload data for token [" + term + ":" + postag
-					+ "] detected while reading input stream for NegationScopeFilter");
-			}
-			
-			return t;
-		}
-		else
-			return null;
-
-	}
-	
 }
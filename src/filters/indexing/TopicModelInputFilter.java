@@ -22,19 +22,17 @@
 //
 package filters.indexing;
 
+import indexing.PosTag;
+import indexing.ReviewTermAttribute;
 import indexing.Token;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.logging.Level;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.apache.lucene.index.Payload;
 import topics.TokenListsCollector;
-import util.AppLogger;
 import classes.Counter;
 import classes.ReviewId;
 
@@ -54,11 +52,7 @@ public class TopicModelInputFilter extends TokenFilter {
 	private TermAttribute		input_term;
 	private TypeAttribute		input_type;
 	private FlagsAttribute		input_flags;
-	private PayloadAttribute	input_payload;
-	private TermAttribute		output_term;
-	private TypeAttribute		output_type;
-	private FlagsAttribute		output_flags;
-	private PayloadAttribute	output_payload;
+	private ReviewTermAttribute	input_reviewterm;
 
 	
 	/**
@@ -72,19 +66,14 @@ public class TopicModelInputFilter extends TokenFilter {
 		super(input);
 		
 		// Getting attributes from input token stream
-		input_term = input.getAttribute(TermAttribute.class);
-		input_type = input.getAttribute(TypeAttribute.class);
-		input_flags = input.getAttribute(FlagsAttribute.class);
-		input_payload = input.hasAttribute(PayloadAttribute.class) ? input.getAttribute(PayloadAttribute.class) : null;
-		
-		// Setting attributes for this token stream
-		output_term = this.getAttribute(TermAttribute.class);
-		output_type = this.getAttribute(TypeAttribute.class);
-		output_flags = this.addAttribute(FlagsAttribute.class);
-		output_payload = input.hasAttribute(PayloadAttribute.class) ? this.getAttribute(PayloadAttribute.class) : null;
+		input_term = input.addAttribute(TermAttribute.class);
+		input_type = input.addAttribute(TypeAttribute.class);
+		input_flags = input.addAttribute(FlagsAttribute.class);
+		input_reviewterm = input.addAttribute(ReviewTermAttribute.class);
 		
 		this.reviewId = reviewId;
 		currentDocNumber = new Counter();
+		currentTokenList = new ArrayList<String>();
 		tokenListsCollector = tokenLists;
 	}
 	
@@ -95,66 +84,45 @@ public class TopicModelInputFilter extends TokenFilter {
 	@Override
 	public boolean incrementToken() throws IOException
 	{
-		Token current_token;
-		if ((current_token = getNextToken()) != null) {
+		while ( input.incrementToken() ) {
 			
-			if (isSegmentDelim(current_token)) {
+			if (isSegmentDelim()) {
 				
-				if (currentTokenList != null && !currentTokenList.isEmpty()) {
+				if (!currentTokenList.isEmpty()) {
+					writeCurrentDocument();
 					currentDocNumber.increment();
 				}
 				
-				currentTokenList = null;
-				return incrementToken();
+				continue;
 			}
-			else if (current_token.isIndexable()) {
-				if (currentTokenList == null) {
-					currentTokenList = tokenListsCollector.getTokenListForDocument(docId());
-				}
-				currentTokenList.add(current_token.isLemmatized() ? current_token.synset().toString() : current_token
-					.word());
+			else if (Token.isIndexable(input_type.type(), input_reviewterm)) {
+				currentTokenList.add(!input_reviewterm.isUnlemmatizable() ? Token.synset(input_reviewterm.getPosCat(),
+					input_flags.getFlags(), true).toString() : input_term.term());
 			}
 			
-			output_term.setTermBuffer(input_term.term());
-			output_type.setType(input_type.type());
-			output_flags.setFlags(input_flags.getFlags());
-			output_payload.setPayload(input_payload.getPayload());
-
 			return true;
 		}
-		else {
-			currentDocNumber.increment();
-			currentTokenList = null;
-			return false;
+		
+		// End of stream
+		if (!currentTokenList.isEmpty()) {
+			writeCurrentDocument();
 		}
+		currentDocNumber.increment();
+		return false;
 	}
 	
-	private boolean isSegmentDelim(Token token)
+	/*
+	 * Hands the tokens of the current document over to the collector, which writes them out
+	 */
+	private void writeCurrentDocument()
 	{
-		return token.isDelim(true);// false; //
+		tokenListsCollector.writeDocument(docId(), currentTokenList);
+		currentTokenList.clear();
 	}
-
-	private Token getNextToken() throws IOException
+	
+	private boolean isSegmentDelim()
 	{
-		if (input.incrementToken()) {
-			// Reading term attributes from input stream
-			String term = input_term.term();
-			String postag = input_type.type();
-			int flags = input_flags.getFlags();
-			Payload payload = input_payload.getPayload();
-			
-			// Adding token into buffer
-			Token t = new Token(term, postag, flags);
-			if (t.payload.decode(payload.getData()) == false) {
-				AppLogger.error.log(Level.WARNING, "Invalid payload data for token [" + term + ":" + postag
-					+ "] detected while reading input stream for NegationScopeFilter");
-			}
-			
-			return t;
-		}
-		else
-			return null;
-		
+		return PosTag.isSentenceDelim(PosTag.toCategory(input_type.type()));
 	}
 
 	/*
@@ -166,7 +134,7 @@ public class TopicModelInputFilter extends TokenFilter {
 	{
 		super.reset();
 		currentDocNumber.reset();
-		currentTokenList = null;
+		currentTokenList.clear();
 	}
 
 	private Long docId()
@@ -0,0 +1,92 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package indexing;
+
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.util.Attribute;
+
+
+/**
+ * A token attribute that carries the annotations of a review term (POS category, comparison
+ * degree, proper noun, unlemmatizable and negation flags) along the analyzer chain. Filters read
+ * and modify the attribute in place; it is only encoded into a {@link PayloadAttribute}, in the
+ * format of {@link ReviewTermPayload}, by the last filter of an indexing chain.
+ * 
+ * @author Stelios Karabasakis
+ */
+public interface ReviewTermAttribute extends Attribute {
+	
+	public PosTag.PosCategory getPosCat();
+	
+	public void setPosCat(PosTag.PosCategory posCat);
+	
+	public ComparisonDegree getDegree();
+	
+	public void setDegree(ComparisonDegree degree);
+	
+	public boolean isProper();
+	
+	/**
+	 * Marks the term as a proper noun. As with {@link ReviewTermPayload#setProper(boolean)}, a
+	 * proper term also has its POS category set to {@link PosTag.PosCategory#N}.
+	 */
+	public void setProper(boolean proper);
+	
+	public boolean isUnlemmatizable();
+	
+	public void setUnlemmatizable(boolean unlemmatizable);
+	
+	public boolean isNegation();
+	
+	public void setNegation(boolean negation);
+	
+	/**
+	 * Sets all annotations at once, e.g. when the term is first produced by a tagger
+	 */
+	public void set(PosTag.PosCategory posCat, ComparisonDegree degree, boolean proper, boolean unlemmatizable,
+		boolean negation);
+	
+	/**
+	 * Copies the annotations of a buffered term into this attribute
+	 */
+	public void set(ReviewTermPayload payload);
+	
+	/**
+	 * Copies the annotations of this attribute into the given payload object
+	 * 
+	 * @return the payload that was passed in
+	 */
+	public ReviewTermPayload get(ReviewTermPayload payload);
+	
+	/**
+	 * @return the annotations of this attribute, encoded in the single byte format of
+	 *         {@link ReviewTermPayload#encode()}
+	 */
+	public byte encode();
+	
+	/**
+	 * Loads the annotations of this attribute from a byte in the format of
+	 * {@link ReviewTermPayload#encode()}
+	 */
+	public void decode(byte encoded);
+}
@@ -0,0 +1,285 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package indexing;
+
+import org.apache.lucene.util.AttributeImpl;
+
+
+/**
+ * Default implementation of {@link ReviewTermAttribute}, located by Lucene's attribute factory by
+ * name. The annotations are kept in plain fields, so updating them allocates nothing.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ReviewTermAttributeImpl extends AttributeImpl implements ReviewTermAttribute {
+	
+	private static final long					serialVersionUID	= -6206543135920766407L;
+
+	private static final PosTag.PosCategory[]	POS_CATEGORIES		= PosTag.PosCategory.values();
+	private static final ComparisonDegree[]		DEGREES				= ComparisonDegree.values();
+
+	private PosTag.PosCategory					posCat				= PosTag.PosCategory.other;
+	private ComparisonDegree					degree				= ComparisonDegree.POSITIVE;
+	private boolean								proper				= false;
+	private boolean								unlemmatizable		= false;
+	private boolean								negation			= false;
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#getPosCat()
+	 */
+	@Override
+	public PosTag.PosCategory getPosCat()
+	{
+		return posCat;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#setPosCat(indexing.PosTag.PosCategory)
+	 */
+	@Override
+	public void setPosCat(PosTag.PosCategory posCat)
+	{
+		this.posCat = posCat;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#getDegree()
+	 */
+	@Override
+	public ComparisonDegree getDegree()
+	{
+		return degree;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#setDegree(indexing.ComparisonDegree)
+	 */
+	@Override
+	public void setDegree(ComparisonDegree degree)
+	{
+		this.degree = degree;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#isProper()
+	 */
+	@Override
+	public boolean isProper()
+	{
+		return proper;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#setProper(boolean)
+	 */
+	@Override
+	public void setProper(boolean proper)
+	{
+		this.proper = proper;
+		if (proper) {
+			posCat = PosTag.PosCategory.N;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#isUnlemmatizable()
+	 */
+	@Override
+	public boolean isUnlemmatizable()
+	{
+		return unlemmatizable;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#setUnlemmatizable(boolean)
+	 */
+	@Override
+	public void setUnlemmatizable(boolean unlemmatizable)
+	{
+		this.unlemmatizable = unlemmatizable;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#isNegation()
+	 */
+	@Override
+	public boolean isNegation()
+	{
+		return negation;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#setNegation(boolean)
+	 */
+	@Override
+	public void setNegation(boolean negation)
+	{
+		this.negation = negation;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#set(indexing.PosTag.PosCategory, indexing.ComparisonDegree,
+	 * boolean, boolean, boolean)
+	 */
+	@Override
+	public void set(PosTag.PosCategory posCat, ComparisonDegree degree, boolean proper, boolean unlemmatizable,
+		boolean negation)
+	{
+		this.posCat = posCat;
+		this.degree = degree;
+		this.proper = proper;
+		this.unlemmatizable = unlemmatizable;
+		this.negation = negation;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#set(indexing.ReviewTermPayload)
+	 */
+	@Override
+	public void set(ReviewTermPayload payload)
+	{
+		posCat = payload.getPosCat();
+		degree = payload.getDegree();
+		proper = payload.isProper();
+		unlemmatizable = payload.isUnlemmatizable();
+		negation = payload.isNegation();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#get(indexing.ReviewTermPayload)
+	 */
+	@Override
+	public ReviewTermPayload get(ReviewTermPayload payload)
+	{
+		payload.setPosCat(posCat);
+		payload.setDegree(degree);
+		payload.setUnlemmatizable(unlemmatizable);
+		payload.setNegation(negation);
+		// Set last: the payload forces proper terms to the N category, as this attribute does
+		payload.setProper(proper);
+		return payload;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#encode()
+	 */
+	@Override
+	public byte encode()
+	{
+		return (byte)(posCat.ordinal() /* bits 0-2: posCat */
+			| degree.ordinal() << 3 /* bits 3-4: degree */
+			| (proper ? 1 : 0) << 5 /* bit 5: proper */
+			| (unlemmatizable ? 1 : 0) << 6 /* bit 6: unlemmatizable */
+			| (negation ? 1 : 0) << 7 /* bit 7: negation */
+		);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see indexing.ReviewTermAttribute#decode(byte)
+	 */
+	@Override
+	public void decode(byte encoded)
+	{
+		negation = (encoded >> 7 & 0x01) != 0;
+		unlemmatizable = (encoded >> 6 & 0x01) != 0;
+		proper = (encoded >> 5 & 0x01) != 0;
+		degree = DEGREES[encoded >> 3 & 0x03];
+		posCat = POS_CATEGORIES[encoded & 0x07];
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.util.AttributeImpl#clear()
+	 */
+	@Override
+	public void clear()
+	{
+		posCat = PosTag.PosCategory.other;
+		degree = ComparisonDegree.POSITIVE;
+		proper = false;
+		unlemmatizable = false;
+		negation = false;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.util.AttributeImpl#copyTo(org.apache.lucene.util.AttributeImpl)
+	 */
+	@Override
+	public void copyTo(AttributeImpl target)
+	{
+		((ReviewTermAttribute)target).set(posCat, degree, proper, unlemmatizable, negation);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.util.AttributeImpl#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		if (other == this)
+			return true;
+		if (!(other instanceof ReviewTermAttributeImpl))
+			return false;
+		
+		ReviewTermAttributeImpl target = (ReviewTermAttributeImpl)other;
+		return posCat == target.posCat && degree == target.degree && proper == target.proper
+			&& unlemmatizable == target.unlemmatizable && negation == target.negation;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.util.AttributeImpl#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return encode();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.util.AttributeImpl#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "reviewTerm=" + (encode() & 0xff);
+	}
+}
@@ -76,6 +76,18 @@ public class ReviewTermPayload implements Serializable {
 		this.decode(payload.getData());
 	}
 
+	/**
+	 * Resets all fields to the values of a newly created payload, so that the object can be reused
+	 */
+	public void clear()
+	{
+		posCat = PosTag.PosCategory.other;
+		degree = ComparisonDegree.POSITIVE;
+		proper = false;
+		unlemmatizable = false;
+		negation = false;
+	}
+	
 	public Payload getPayload()
 	{
 		return new Payload(this.encode());
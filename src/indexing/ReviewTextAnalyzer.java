@@ -28,24 +28,23 @@ import java.io.Reader;
 import net.didion.jwnl.dictionary.Dictionary;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.KeywordTokenizer;
-import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
-import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import util.AnalysisProfiler;
+import wordnet.CompoundTermTrie;
 import wordnet.DictionaryFactory;
-import wordnet.IndexMap;
 import application.ReviewDocumentIndexer;
 import filters.ComparisonDegreeFilter;
 import filters.LemmatizationFilter;
 import filters.NamedEntityFilter;
 import filters.PosTaggingFilter;
 import filters.StopLemmaFilter;
-import filters._TokenLogFilter;
 import filters.indexing.IndexableFilter;
 import filters.indexing.NegationScopeFilter;
+import filters.indexing.ReviewTermPayloadFilter;
 import filters.indexing.StatsFilter;
 import filters.indexing.TopicModelInputFilter;
 
@@ -58,9 +57,10 @@ import filters.indexing.TopicModelInputFilter;
 public final class ReviewTextAnalyzer extends Analyzer {
 	
 	private Dictionary				wordnet;
-	private IndexMap				compundWordnetIndex;
-	private ReviewDocumentIndexer	indexer	= null;
+	private CompoundTermTrie		compundWordnetIndex;
+	private ReviewDocumentIndexer	indexer			= null;
 	private Tokenizer				source_document;
+	private AnalysisProfiler.Chain	profilerChain	= null;
 	
 
 	/**
@@ -71,10 +71,41 @@ public final class ReviewTextAnalyzer extends Analyzer {
 		super();
 		this.indexer = indexer;
 		
-		wordnet = DictionaryFactory.getWordnetInstance();
+		wordnet = DictionaryFactory.getLemmatizationWordnet();
 		compundWordnetIndex = DictionaryFactory.setupCompoundTermsIndex(wordnet);
 	}
 	
+	/**
+	 * Constructor for class ReviewTextAnalyzer. Shares an already loaded wordnet dictionary and
+	 * compound terms index with other analyzer instances, e.g. those of concurrent indexing workers.
+	 */
+	public ReviewTextAnalyzer(ReviewDocumentIndexer indexer, Dictionary wordnet,
+		CompoundTermTrie compoundWordnetIndex)
+	{
+		super();
+		this.indexer = indexer;
+		
+		this.wordnet = wordnet;
+		compundWordnetIndex = compoundWordnetIndex;
+	}
+	
+	/**
+	 * @return the wordnet dictionary used by this analyzer, or null if lemmatization is backed by the
+	 *         compiled wordnet lexicon
+	 */
+	public Dictionary getWordnet()
+	{
+		return wordnet;
+	}
+	
+	/**
+	 * @return the index of wordnet compound terms used by this analyzer
+	 */
+	public CompoundTermTrie getCompoundWordnetIndex()
+	{
+		return compundWordnetIndex;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.apache.lucene.analysis.Analyzer#tokenStream(java.lang.String, java.io.Reader)
@@ -83,20 +114,38 @@ public final class ReviewTextAnalyzer extends Analyzer {
 	public TokenStream tokenStream(String fieldName, Reader reader)
 	{
 		source_document = new KeywordTokenizer(reader);
+		profilerChain = indexer.theProfiler != null ? indexer.theProfiler.newChain(indexer.theReviewId) : null;
 		
-		TokenFilter tokf_1 = new PosTaggingFilter(source_document);
-		TokenFilter tokf_2 = new NamedEntityFilter(tokf_1);
-		TokenFilter tokf_3 = new LemmatizationFilter(tokf_2, true, wordnet, compundWordnetIndex);
-		TokenFilter tokf_4 = new StopLemmaFilter(tokf_3, true);
-		TokenFilter tokf_5 = new ComparisonDegreeFilter(tokf_4);
-		TokenFilter tokf_6 = new NegationScopeFilter(tokf_5);
-		TokenFilter tokf_7 = new TopicModelInputFilter(tokf_6, indexer.theTokenLists, indexer.theReviewId);
-		TokenFilter tokf_8 = new IndexableFilter(tokf_7, true);
-		TokenFilter tokf_9 = new StatsFilter(tokf_8, indexer);
-
-		TokenFilter tokf_p = new _TokenLogFilter(tokf_9);
-
-		return tokf_3;
+		TokenStream tokf_0 = probe(source_document);
+		TokenStream tokf_1 = probe(new PosTaggingFilter(tokf_0));
+		TokenStream tokf_2 = probe(new NamedEntityFilter(tokf_1));
+		TokenStream tokf_3 = probe(new LemmatizationFilter(tokf_2, true, wordnet, compundWordnetIndex));
+		TokenStream tokf_4 = probe(new StopLemmaFilter(tokf_3, true));
+		TokenStream tokf_5 = probe(new ComparisonDegreeFilter(tokf_4));
+		TokenStream tokf_6 = probe(new NegationScopeFilter(tokf_5));
+		TokenStream tokf_7 = probe(new TopicModelInputFilter(tokf_6, indexer.theTokenLists, indexer.theReviewId));
+		TokenStream tokf_8 = probe(new IndexableFilter(tokf_7, true));
+		TokenStream tokf_9 = probe(new StatsFilter(tokf_8, indexer));
+		
+		// Review term annotations are only encoded into token payloads at the end of the chain
+		return probe(new ReviewTermPayloadFilter(tokf_9));
+	}
+	
+	/*
+	 * Wraps a stage of the analyzer chain in a profiler probe, if profiling is enabled
+	 */
+	private TokenStream probe(TokenStream stage)
+	{
+		return profilerChain != null ? profilerChain.probe(stage) : stage;
+	}
+	
+	/**
+	 * @return the profiler that instruments the analyzer chains of the indexer, or null if
+	 *         profiling is disabled
+	 */
+	public AnalysisProfiler getProfiler()
+	{
+		return indexer.theProfiler;
 	}
 	
 	@Override
@@ -131,7 +180,7 @@ public final class ReviewTextAnalyzer extends Analyzer {
 				TermAttribute output_term = tokstr.addAttribute(TermAttribute.class);
 				TypeAttribute output_type = tokstr.addAttribute(TypeAttribute.class);
 				FlagsAttribute output_flags = tokstr.addAttribute(FlagsAttribute.class);
-				PayloadAttribute output_payload = tokstr.addAttribute(PayloadAttribute.class);
+				ReviewTermAttribute output_reviewterm = tokstr.addAttribute(ReviewTermAttribute.class);
 				
 				int review_id = r.indexer.theReviewId.get() + 1;
 				r.indexer.theReviewId.set(review_id);
@@ -140,7 +189,7 @@ public final class ReviewTextAnalyzer extends Analyzer {
 				while ( tokstr.incrementToken() ) {
 					
 					Token current_token = new Token(output_term.term(), output_type.type(), output_flags.getFlags(),
-							new ReviewTermPayload(output_payload.getPayload()));
+							output_reviewterm.get(new ReviewTermPayload()));
 					
 					System.out.print(current_token);
 					
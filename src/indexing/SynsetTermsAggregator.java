@@ -24,10 +24,14 @@ package indexing;
 
 import indexing.TermTypeFilter.TermType;
 import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -35,6 +39,8 @@ import java.util.Set;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import util.AppLogger;
+import util.BinaryState;
+import util.LongIntHashMap;
 import util.State;
 import wordnet.Synset;
 import wordnet.Synset.SynsetCategory;
@@ -42,33 +48,171 @@ import classes.Counter;
 
 
 /**
- * TODO Description missing
+ * Aggregates the terms that occur in the corpus for each synset, along with their frequencies.
+ * Terms are interned to integer ids, and the frequency of each (synset, term) pair is kept in a
+ * primitive map per synset category, keyed by the synset offset and the term id, so that counting
+ * a term allocates no objects. Updates are not thread-safe; concurrent indexing workers update
+ * separate aggregators, which are then combined with {@link #merge(SynsetTermsAggregator)}. Once
+ * updates are done, an aggregator can be queried by several threads at once.
  * 
  * @author Stelios Karabasakis
  */
-public class SynsetTermsAggregator implements Serializable {
+public class SynsetTermsAggregator implements Serializable, BinaryState {
 	
-	private static final long													serialVersionUID	= 2389213657783968906L;
+	private static final long			serialVersionUID	= 2389213657783968906L;
 	
-	private HashMap<SynsetCategory, HashMap<Synset, HashMap<String, Counter>>>	synsetmap;
-	private HashMap<SynsetCategory, HashMap<String, Counter>>					unlemmatizedMap;
+	// Term dictionary
+	private ArrayList<String>			terms;
+	private HashMap<String, Integer>	termIds;
+	
+	// Term frequencies per synset category, keyed by synset offset and term id
+	private LongIntHashMap[]			termCounts;
+	// Term frequencies per synset category, for terms without a synset offset, keyed by term id
+	private LongIntHashMap[]			unlemmatizedCounts;
+	
+	// Sorted (synset offset, term id) keys per synset category, rebuilt after updates
+	private transient long[][]			sortedKeys;
+	private transient int[]				synsetCounts;
 	
 	/**
 	 * Constructor for class SynsetTermsAggregator
 	 */
 	public SynsetTermsAggregator()
 	{
-		synsetmap = new HashMap<Synset.SynsetCategory, HashMap<Synset, HashMap<String, Counter>>>();
-		unlemmatizedMap = new HashMap<SynsetCategory, HashMap<String, Counter>>();
+		init();
+	}
+	
+	private void init()
+	{
+		int n_synsetcats = SynsetCategory.values().length;
+		terms = new ArrayList<String>();
+		termIds = new HashMap<String, Integer>();
+		termCounts = new LongIntHashMap[n_synsetcats];
+		unlemmatizedCounts = new LongIntHashMap[n_synsetcats];
+		for (int i = 0 ; i < n_synsetcats ; i++) {
+			termCounts[i] = new LongIntHashMap();
+			unlemmatizedCounts[i] = new LongIntHashMap();
+		}
+	}
+	
+	/*
+	 * Reads serialized aggregators. The serialized form of older versions held nested hash maps of
+	 * term counters, under the field names synsetmap and unlemmatizedMap. Their counts are converted
+	 * to the current representation, so that legacy state files can still be restored.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = in.readFields();
+		if (fields.getObjectStreamClass().getField("synsetmap") == null) {
+			terms = (ArrayList<String>)fields.get("terms", null);
+			termIds = (HashMap<String, Integer>)fields.get("termIds", null);
+			termCounts = (LongIntHashMap[])fields.get("termCounts", null);
+			unlemmatizedCounts = (LongIntHashMap[])fields.get("unlemmatizedCounts", null);
+			return;
+		}
+		
+		init();
+		HashMap<SynsetCategory, HashMap<Synset, HashMap<String, Counter>>> legacy_synsetmap;
+		HashMap<SynsetCategory, HashMap<String, Counter>> legacy_unlemmatizedMap;
+		legacy_synsetmap = (HashMap<SynsetCategory, HashMap<Synset, HashMap<String, Counter>>>)fields.get(
+			"synsetmap", null);
+		legacy_unlemmatizedMap = (HashMap<SynsetCategory, HashMap<String, Counter>>)fields.get("unlemmatizedMap",
+			null);
 		for (SynsetCategory synsetcat : SynsetCategory.values()) {
-			synsetmap.put(synsetcat, new HashMap<Synset, HashMap<String, Counter>>());
-			unlemmatizedMap.put(synsetcat, new HashMap<String, Counter>());
+			int cat = synsetcat.ordinal();
+			if (legacy_synsetmap != null && legacy_synsetmap.get(synsetcat) != null) {
+				for (Entry<Synset, HashMap<String, Counter>> synset_entry : legacy_synsetmap.get(synsetcat).entrySet()) {
+					long offset = synset_entry.getKey().getOffset();
+					for (Entry<String, Counter> term_entry : synset_entry.getValue().entrySet()) {
+						termCounts[cat].add(key(offset, getTermId(term_entry.getKey())), term_entry.getValue().get());
+					}
+				}
+			}
+			if (legacy_unlemmatizedMap != null && legacy_unlemmatizedMap.get(synsetcat) != null) {
+				for (Entry<String, Counter> term_entry : legacy_unlemmatizedMap.get(synsetcat).entrySet()) {
+					unlemmatizedCounts[cat].add(getTermId(term_entry.getKey()), term_entry.getValue().get());
+				}
+			}
+		}
+	}
+	
+	private static long key(long offset, int term_id)
+	{
+		return offset << 32 | term_id;
+	}
+	
+	private static long offsetOf(long key)
+	{
+		return key >>> 32;
+	}
+	
+	private static int termIdOf(long key)
+	{
+		return (int)key;
+	}
+	
+	private int getTermId(String term)
+	{
+		Integer term_id = termIds.get(term);
+		if (term_id == null) {
+			term_id = terms.size();
+			terms.add(term);
+			termIds.put(term, term_id);
+		}
+		return term_id;
+	}
+	
+	/*
+	 * Returns the sorted keys of a synset category, rebuilding them if the category was updated.
+	 * Synchronized, so that threads that query a shared aggregator build the keys only once and see
+	 * them fully built.
+	 */
+	private synchronized long[] getSortedKeys(SynsetCategory synsetcat)
+	{
+		if (sortedKeys == null) {
+			sortedKeys = new long[SynsetCategory.values().length][];
+			synsetCounts = new int[SynsetCategory.values().length];
+		}
+		
+		int cat = synsetcat.ordinal();
+		if (sortedKeys[cat] == null) {
+			long[] keys = new long[termCounts[cat].size()];
+			LongIntHashMap.Cursor entry = termCounts[cat].cursor();
+			for (int i = 0 ; entry.next() ; i++) {
+				keys[i] = entry.key();
+			}
+			Arrays.sort(keys);
+			
+			int n_synsets = 0;
+			for (int i = 0 ; i < keys.length ; i++) {
+				if (i == 0 || offsetOf(keys[i]) != offsetOf(keys[i - 1])) {
+					n_synsets++;
+				}
+			}
+			sortedKeys[cat] = keys;
+			synsetCounts[cat] = n_synsets;
+		}
+		return sortedKeys[cat];
+	}
+	
+	private synchronized void invalidateSortedKeys(SynsetCategory synsetcat)
+	{
+		if (sortedKeys != null) {
+			sortedKeys[synsetcat.ordinal()] = null;
 		}
 	}
 
 	public Iterator<Synset> getSynsetIterator(SynsetCategory synsetcat)
 	{
-		return synsetmap.get(synsetcat).keySet().iterator();
+		long[] keys = getSortedKeys(synsetcat);
+		ArrayList<Synset> synsets = new ArrayList<Synset>(getSynsetCount(synsetcat));
+		for (int i = 0 ; i < keys.length ; i++) {
+			if (i == 0 || offsetOf(keys[i]) != offsetOf(keys[i - 1])) {
+				synsets.add(new Synset(synsetcat, offsetOf(keys[i])));
+			}
+		}
+		return synsets.iterator();
 	}
 	
 	public String getSynsetTopTerm(Synset synset)
@@ -88,13 +232,31 @@ public class SynsetTermsAggregator implements Serializable {
 		return topterm;
 	}
 
+	/**
+	 * @return the frequencies of the terms aggregated for a synset, or null if no terms have been
+	 *         aggregated for it
+	 */
 	public HashMap<String, Counter> getSynsetTerms(Synset synset)
 	{
-		HashMap<Synset, HashMap<String, Counter>> category_synsets = synsetmap.get(synset.getPos());
-		if (category_synsets != null)
-			return category_synsets.get(synset);
-		else
-			return new HashMap<String, Counter>();
+		int cat = synset.getPos().ordinal();
+		long[] keys = getSortedKeys(synset.getPos());
+		long offset = synset.getOffset();
+		
+		// Binary search for the first key of the synset
+		int pos = Arrays.binarySearch(keys, key(offset, 0));
+		if (pos < 0) {
+			pos = -pos - 1;
+		}
+		if (pos == keys.length || offsetOf(keys[pos]) != offset)
+			return null;
+		
+		HashMap<String, Counter> synset_terms = new HashMap<String, Counter>();
+		for ( ; pos < keys.length && offsetOf(keys[pos]) == offset ; pos++) {
+			Counter c = new Counter();
+			c.set(termCounts[cat].get(keys[pos]));
+			synset_terms.put(terms.get(termIdOf(keys[pos])), c);
+		}
+		return synset_terms;
 	}
 	
 	public String getSynsetTermsString(Synset synset, boolean with_frequencies)
@@ -202,29 +364,14 @@ public class SynsetTermsAggregator implements Serializable {
 	public void addTerm(Synset synset, String term)
 	{
 		if (synset.getPos() != SynsetCategory.NONE) {
-			HashMap<String, Counter> current_synset_terms;
+			int cat = synset.getPos().ordinal();
 			if (synset.hasOffset()) {
-				// Retrieve the index that corresponds to the POS of the provided synset
-				HashMap<Synset, HashMap<String, Counter>> category_map = synsetmap.get(synset.getPos());
-				
-				// Retrieve (and create if necessary) the term set for the specified synset
-				current_synset_terms = category_map.get(synset);
-				if (current_synset_terms == null) {
-					current_synset_terms = new HashMap<String, Counter>();
-					category_map.put(synset, current_synset_terms);
-				}
+				termCounts[cat].add(key(synset.getOffset(), getTermId(term)), 1);
+				invalidateSortedKeys(synset.getPos());
 			}
 			else {
-				current_synset_terms = unlemmatizedMap.get(synset.getPos());
+				unlemmatizedCounts[cat].add(getTermId(term), 1);
 			}
-			
-			// Increment the counter associated with the term instance for current term
-			Counter c = current_synset_terms.get(term);
-			if (c == null) {
-				c = new Counter();
-				current_synset_terms.put(term, c);
-			}
-			c.increment();
 		}
 		else {
 			AppLogger.error.log(Level.WARNING, "Synset " + term + "(" + synset.toString() + ")"
@@ -233,22 +380,169 @@ public class SynsetTermsAggregator implements Serializable {
 		}
 	}
 	
-	public int getSynsetCount(SynsetCategory synsetcat)
+	/**
+	 * Adds the term counts aggregated by another {@link SynsetTermsAggregator} to the term counts of
+	 * this one.
+	 * 
+	 * @param other
+	 *            The aggregator whose term counts will be merged
+	 */
+	public void merge(SynsetTermsAggregator other)
+	{
+		// Map the term ids of the other aggregator to term ids of this one
+		int[] term_ids = new int[other.terms.size()];
+		for (int i = 0 ; i < term_ids.length ; i++) {
+			term_ids[i] = getTermId(other.terms.get(i));
+		}
+		
+		for (SynsetCategory synsetcat : SynsetCategory.values()) {
+			int cat = synsetcat.ordinal();
+			LongIntHashMap.Cursor entry = other.termCounts[cat].cursor();
+			while ( entry.next() ) {
+				termCounts[cat].add(key(offsetOf(entry.key()), term_ids[termIdOf(entry.key())]), entry.value());
+			}
+			entry = other.unlemmatizedCounts[cat].cursor();
+			while ( entry.next() ) {
+				unlemmatizedCounts[cat].add(term_ids[(int)entry.key()], entry.value());
+			}
+			invalidateSortedKeys(synsetcat);
+		}
+	}
+	
+	/**
+	 * Discards all aggregated term counts
+	 */
+	public void clear()
+	{
+		terms.clear();
+		termIds.clear();
+		for (SynsetCategory synsetcat : SynsetCategory.values()) {
+			termCounts[synsetcat.ordinal()].clear();
+			unlemmatizedCounts[synsetcat.ordinal()].clear();
+			invalidateSortedKeys(synsetcat);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#stateVersion()
+	 */
+	@Override
+	public int stateVersion()
+	{
+		return 2;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#writeState(java.io.DataOutput)
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException
+	{
+		out.writeInt(terms.size());
+		for (String term : terms) {
+			out.writeUTF(term);
+		}
+		
+		for (SynsetCategory synsetcat : SynsetCategory.values()) {
+			LongIntHashMap category_map = termCounts[synsetcat.ordinal()];
+			out.writeInt(category_map.size());
+			LongIntHashMap.Cursor entry = category_map.cursor();
+			while ( entry.next() ) {
+				out.writeInt((int)offsetOf(entry.key()));
+				out.writeInt(termIdOf(entry.key()));
+				out.writeInt(entry.value());
+			}
+			
+			category_map = unlemmatizedCounts[synsetcat.ordinal()];
+			out.writeInt(category_map.size());
+			entry = category_map.cursor();
+			while ( entry.next() ) {
+				out.writeInt((int)entry.key());
+				out.writeInt(entry.value());
+			}
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#readState(java.io.DataInput, int)
+	 */
+	@Override
+	public void readState(DataInput in, int version) throws IOException
+	{
+		clear();
+		if (version == 1) {
+			readStateV1(in);
+			return;
+		}
+		
+		int n_terms = in.readInt();
+		terms.ensureCapacity(n_terms);
+		for (int i = 0 ; i < n_terms ; i++) {
+			getTermId(in.readUTF());
+		}
+		
+		for (SynsetCategory synsetcat : SynsetCategory.values()) {
+			int n_entries = in.readInt();
+			LongIntHashMap category_map = new LongIntHashMap(n_entries);
+			for (int i = 0 ; i < n_entries ; i++) {
+				long offset = in.readInt() & 0xffffffffL;
+				category_map.put(key(offset, in.readInt()), in.readInt());
+			}
+			termCounts[synsetcat.ordinal()] = category_map;
+			
+			n_entries = in.readInt();
+			category_map = new LongIntHashMap(n_entries);
+			for (int i = 0 ; i < n_entries ; i++) {
+				category_map.put(in.readInt(), in.readInt());
+			}
+			unlemmatizedCounts[synsetcat.ordinal()] = category_map;
+		}
+	}
+	
+	/*
+	 * Reads the format of version 1, where terms are written out in full for each synset
+	 */
+	private void readStateV1(DataInput in) throws IOException
+	{
+		for (SynsetCategory synsetcat : SynsetCategory.values()) {
+			int cat = synsetcat.ordinal();
+			int n_synsets = in.readInt();
+			for (int i = 0 ; i < n_synsets ; i++) {
+				long offset = in.readLong();
+				int n_terms = in.readInt();
+				for (int j = 0 ; j < n_terms ; j++) {
+					String term = in.readUTF();
+					termCounts[cat].put(key(offset, getTermId(term)), in.readInt());
+				}
+			}
+			
+			int n_terms = in.readInt();
+			for (int j = 0 ; j < n_terms ; j++) {
+				String term = in.readUTF();
+				unlemmatizedCounts[cat].put(getTermId(term), in.readInt());
+			}
+		}
+	}
+
+	public synchronized int getSynsetCount(SynsetCategory synsetcat)
 	{
-		return synsetmap.get(synsetcat).size();
+		getSortedKeys(synsetcat);
+		return synsetCounts[synsetcat.ordinal()];
 	}
 	
 	public int getTermCount(SynsetCategory synsetcat)
 	{
-		return unlemmatizedMap.get(synsetcat).size();
+		return unlemmatizedCounts[synsetcat.ordinal()].size();
 	}
 	
 	public int getSynsetCount()
 	{
 		int count = 0;
-		Set<SynsetCategory> synsetcats = synsetmap.keySet();
-		for (SynsetCategory synsetcat : synsetcats) {
-			count += synsetmap.get(synsetcat).size();
+		for (SynsetCategory synsetcat : SynsetCategory.values()) {
+			count += getSynsetCount(synsetcat);
 		}
 		return count;
 	}
@@ -256,9 +550,8 @@ public class SynsetTermsAggregator implements Serializable {
 	public int getTermCount()
 	{
 		int count = 0;
-		Set<SynsetCategory> synsetcats = unlemmatizedMap.keySet();
-		for (SynsetCategory synsetcat : synsetcats) {
-			count += unlemmatizedMap.get(synsetcat).size();
+		for (SynsetCategory synsetcat : SynsetCategory.values()) {
+			count += getTermCount(synsetcat);
 		}
 		return count;
 	}
@@ -267,16 +560,18 @@ public class SynsetTermsAggregator implements Serializable {
 	{
 		Counter removed_terms = new Counter();
 
-		Set<SynsetCategory> synsetcats = unlemmatizedMap.keySet();
-		for (SynsetCategory synsetcat : synsetcats) {
-			HashMap<String, Counter> map = unlemmatizedMap.get(synsetcat);
-			Iterator<Entry<String, Counter>> map_iter = map.entrySet().iterator();
-			while ( map_iter.hasNext() ) {
-				if (TermTypeFilter.isTermType(map_iter.next().getKey(), TermType.JUNK)) {
-					map_iter.remove();
-					removed_terms.increment();
+		for (LongIntHashMap map : unlemmatizedCounts) {
+			ArrayList<Long> junk_terms = new ArrayList<Long>();
+			LongIntHashMap.Cursor entry = map.cursor();
+			while ( entry.next() ) {
+				if (TermTypeFilter.isTermType(terms.get((int)entry.key()), TermType.JUNK)) {
+					junk_terms.add(entry.key());
 				}
 			}
+			for (Long term_id : junk_terms) {
+				map.remove(term_id);
+				removed_terms.increment();
+			}
 		}
 		
 		return removed_terms.get();
@@ -111,10 +111,27 @@ public class Token implements HasWord, HasTag, Serializable {
 	
 	public Synset synset()
 	{
-		if (isLemmatized())
-			return new Synset(payload.getPosCat(), flags);
+		return synset(payload.getPosCat(), flags, isLemmatized());
+	}
+	
+	/**
+	 * @return the synset of a term with the given POS category and synset offset flags, for filters
+	 *         that read these directly from the token attributes instead of building a {@code Token}
+	 */
+	public static Synset synset(PosTag.PosCategory posCat, int flags, boolean lemmatized)
+	{
+		if (lemmatized)
+			return new Synset(posCat, flags);
 		else
-			return new Synset(payload.getPosCat());
+			return new Synset(posCat);
+	}
+	
+	/**
+	 * @return whether a term with the given POS tag and review term annotations should be indexed
+	 */
+	public static boolean isIndexable(String type, ReviewTermAttribute reviewterm)
+	{
+		return PosTag.isOpenClass(PosTag.toCategory(type)) && !reviewterm.isProper();
 	}
 
 	public void concat(Token token)
@@ -0,0 +1,192 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package indexing;
+
+import config.Globals;
+
+
+/**
+ * A lookahead buffer of {@link Token}s for the token filters that need to see a whole phrase or
+ * sentence before emitting its first token. Tokens are kept in a ring buffer, so that adding a token
+ * at the end, removing one from the front and reading any buffered token by its position all take
+ * constant time.
+ * <p>
+ * The window owns its {@code Token} objects and reuses them: {@link #add(String, String, int)}
+ * hands out a recycled slot rather than a new token. A token that has been removed from the window
+ * therefore stays valid only until the next call to {@code add}. The capacity of the window grows
+ * to the longest phrase seen by the filter and is then kept, so a long review does not allocate a
+ * token per word.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class TokenWindow {
+	
+	private static final int	DEFAULT_CAPACITY	= 64;
+
+	private Token[]				slots;
+	private int					head				= 0;
+	private int					size				= 0;
+	
+	/**
+	 * Constructor for class TokenWindow
+	 */
+	public TokenWindow()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor for class TokenWindow
+	 * 
+	 * @param capacity
+	 *            the initial number of token slots, rounded up to a power of two
+	 */
+	public TokenWindow(int capacity)
+	{
+		int slot_count = 1;
+		while ( slot_count < capacity ) {
+			slot_count <<= 1;
+		}
+		
+		slots = new Token[slot_count];
+		fillSlots(0);
+	}
+	
+	/**
+	 * Appends a token to the end of the window. The returned token is a recycled slot: its term,
+	 * type and flags are set to the given values and its payload is cleared.
+	 * 
+	 * @return the token that was appended
+	 */
+	public Token add(String term, String type, int flags)
+	{
+		if (size == slots.length) {
+			grow();
+		}
+		
+		Token slot = slots[(head + size) & (slots.length - 1)];
+		slot.term = term;
+		slot.type = type;
+		slot.flags = flags;
+		slot.payload.clear();
+		size++;
+		
+		return slot;
+	}
+	
+	/**
+	 * @param index
+	 *            the position of a token, counting from the front of the window
+	 * @return the token at the given position
+	 */
+	public Token get(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		
+		return slots[(head + index) & (slots.length - 1)];
+	}
+	
+	/**
+	 * Removes the first token of the window
+	 * 
+	 * @return the removed token, which remains valid until the next call to
+	 *         {@link #add(String, String, int)}
+	 */
+	public Token remove()
+	{
+		Token removed = get(0);
+		head = (head + 1) & (slots.length - 1);
+		size--;
+		
+		return removed;
+	}
+	
+	/**
+	 * Removes a run of consecutive tokens from the window. The tokens that follow the removed run are
+	 * shifted towards the front of the window.
+	 * 
+	 * @param index
+	 *            the position of the first token to remove
+	 * @param count
+	 *            the number of tokens to remove
+	 */
+	public void remove(int index, int count)
+	{
+		if (index < 0 || count < 0 || index + count > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Count: " + count + ", Size: " + size);
+		
+		// Swap rather than overwrite, so that the slots of the removed tokens stay in the pool
+		int mask = slots.length - 1;
+		for (int i = index ; i + count < size ; i++) {
+			int target = (head + i) & mask;
+			int source = (head + i + count) & mask;
+			Token removed = slots[target];
+			slots[target] = slots[source];
+			slots[source] = removed;
+		}
+		size -= count;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	/**
+	 * Removes all tokens from the window. The token slots are kept for reuse.
+	 */
+	public void clear()
+	{
+		head = 0;
+		size = 0;
+	}
+	
+	/*
+	 * Doubles the number of slots, moving the buffered tokens to the start of the new array
+	 */
+	private void grow()
+	{
+		Token[] new_slots = new Token[slots.length << 1];
+		for (int i = 0 ; i < slots.length ; i++) {
+			new_slots[i] = slots[(head + i) & (slots.length - 1)];
+		}
+		
+		int old_length = slots.length;
+		slots = new_slots;
+		head = 0;
+		fillSlots(old_length);
+	}
+	
+	private void fillSlots(int from)
+	{
+		for (int i = from ; i < slots.length ; i++) {
+			slots[i] = new Token("", "", Globals.NO_FLAGS);
+		}
+	}
+}
@@ -22,53 +22,136 @@
 //
 package lexicon;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.Set;
+import java.util.Map.Entry;
 import classes.Counter;
 import classes.ReviewStats;
 
 
 /**
- * TODO Description missing
+ * A histogram of the ratings of the reviews in which a term occurs. Observation counts and rating
+ * weights are kept in primitive arrays indexed by rating, so that histograms are compact and
+ * cheap to query. The relative frequency of a rating is its observation count multiplied by the
+ * weight of the rating.
  * 
  * @author Stelios Karabasakis
  */
 public class RatingHistogram implements Serializable {
 	
-	private static final long							serialVersionUID	= -8045655706117881329L;
+	private static final long	serialVersionUID	= -8045655706117881329L;
 	
-	private Counter										uniqueDocuments;
-	// private ArrayList<RelativeFrequency> frequencies;
-	private LinkedHashMap<Integer, RelativeFrequency>	frequencies;
-	private LinkedList<RelativeFrequency>				frequencyRanking	= null;
-	private boolean										isRanked			= false;
+	private int					uniqueDocumentCount	= 0;
+	private int[]				counts;
+	private float[]				weights;
+	private transient int[]		frequencyRanking	= null;
+	private transient boolean	isRanked			= false;
 	
-	/* Results Cache */
-	// private boolean cacheIsValid = false;
-	// private ArrayList<Integer> rankedRatings = null;
-
 	/**
 	 * Constructor for class RatingHistogram
 	 */
 	public RatingHistogram(ReviewStats reviewStats)
 	{
-		uniqueDocuments = new Counter();
-
+		this(getRatingWeights(reviewStats));
+	}
+	
+	/**
+	 * Constructor for class RatingHistogram
+	 * 
+	 * @param weights
+	 *            The weight of each rating, indexed by rating, as returned by
+	 *            {@link #getRatingWeights(ReviewStats)}. The array is shared, not copied.
+	 */
+	public RatingHistogram(float[] weights)
+	{
+		this.weights = weights;
+		counts = new int[Ratings.capacity()];
+	}
+	
+	/**
+	 * Constructor for class RatingHistogram. Creates a histogram from a slice of a count column.
+	 * 
+	 * @param weights
+	 *            The weight of each rating, indexed by rating. The array is shared, not copied.
+	 * @param count_column
+	 *            An array that contains the observation counts of the histogram, for ratings
+	 *            {@link Ratings#MIN_RATING} to {@link Ratings#MAX_RATING}, starting from position
+	 *            {@code offset}
+	 * @param unique_documents
+	 *            The unique documents count of the histogram
+	 */
+	public RatingHistogram(float[] weights, int[] count_column, int offset, int unique_documents)
+	{
+		this(weights);
+		System.arraycopy(count_column, offset, counts, Ratings.MIN_RATING, Ratings.N_RATINGS);
+		uniqueDocumentCount = unique_documents;
+	}
+	
+	/*
+	 * Reads serialized histograms. The serialized form of older versions held a counter of unique
+	 * documents and a map of relative frequencies, keyed by rating, under the field names
+	 * uniqueDocuments and frequencies. These are converted to counts and weights, so that legacy
+	 * histogram state files can still be restored.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = in.readFields();
+		if (fields.getObjectStreamClass().getField("frequencies") == null) {
+			uniqueDocumentCount = fields.get("uniqueDocumentCount", 0);
+			counts = (int[])fields.get("counts", null);
+			weights = (float[])fields.get("weights", null);
+			return;
+		}
+		
+		Counter legacy_unique_documents = (Counter)fields.get("uniqueDocuments", null);
+		uniqueDocumentCount = legacy_unique_documents == null ? 0 : legacy_unique_documents.get();
+		counts = new int[Ratings.capacity()];
+		weights = new float[Ratings.capacity()];
+		LinkedHashMap<Integer, RelativeFrequency> legacy_frequencies;
+		legacy_frequencies = (LinkedHashMap<Integer, RelativeFrequency>)fields.get("frequencies", null);
+		for (Entry<Integer, RelativeFrequency> frequency : legacy_frequencies.entrySet()) {
+			counts[frequency.getKey()] = frequency.getValue().frequency();
+			weights[frequency.getKey()] = frequency.getValue().weightFactor;
+		}
+	}
+	
+	/**
+	 * @return the weights of all ratings, indexed by rating, for the given review statistics
+	 */
+	public static float[] getRatingWeights(ReviewStats reviewStats)
+	{
 		ArrayList<Float> classWeights = reviewStats.getRatingWeights();
-		frequencies = new LinkedHashMap<Integer, RelativeFrequency>(Ratings.capacity());
+		float[] weights = new float[Ratings.capacity()];
 		for (int class_id = Ratings.MIN_RATING ; class_id <= Ratings.MAX_RATING ; class_id++) {
-			frequencies.put(class_id, new RelativeFrequency(class_id, classWeights.get(class_id - 1)));
+			weights[class_id] = classWeights.get(class_id - 1);
 		}
+		return weights;
+	}
+	
+	/**
+	 * Copies the observation counts of this histogram to a count column, for ratings
+	 * {@link Ratings#MIN_RATING} to {@link Ratings#MAX_RATING}, starting from position
+	 * {@code offset}
+	 */
+	public void copyCounts(int[] count_column, int offset)
+	{
+		System.arraycopy(counts, Ratings.MIN_RATING, count_column, offset, Ratings.N_RATINGS);
+	}
+	
+	public float[] getWeights()
+	{
+		return weights;
 	}
 
 	public void incrementUniqueDocuments()
 	{
-		uniqueDocuments.increment();
+		uniqueDocumentCount++;
 	}
 	
 	/**
@@ -76,94 +159,126 @@ public class RatingHistogram implements Serializable {
 	 */
 	public int getUniqueDocuments()
 	{
-		return uniqueDocuments.get();
+		return uniqueDocumentCount;
 	}
 
 	public void addObeservation(int class_num, int weight)
 	{
-		frequencies.get(class_num).addObservation(weight);
+		counts[class_num] += weight;
 		isRanked = false;
 	}
 	
+	public int getFrequency(int class_num)
+	{
+		return counts[class_num];
+	}
+	
 	public int getTotalObservations()
 	{
-		Integer total_frequency = 0;
+		int total_frequency = 0;
 		for (int i = Ratings.MIN_RATING ; i <= Ratings.MAX_RATING ; i++) {
-			total_frequency += frequencies.get(i).frequency();
+			total_frequency += counts[i];
 		}
 		return total_frequency;
 	}
 
-	public void rankRatingsByFrequency()
+	/**
+	 * Ranks ratings by descending relative frequency. Ratings with equal relative frequencies are
+	 * ranked by descending rating. The ranking array is allocated once and reused.
+	 */
+	public synchronized void rankRatingsByFrequency()
 	{
-		frequencyRanking = new LinkedList<RelativeFrequency>(frequencies.values());
-		Collections.sort(frequencyRanking);
-		Collections.reverse(frequencyRanking);
+		if (frequencyRanking == null) {
+			frequencyRanking = new int[Ratings.N_RATINGS];
+		}
+		
+		// Insertion sort, since there are only a handful of ratings
+		for (int i = 0 ; i < Ratings.N_RATINGS ; i++) {
+			int rating = Ratings.MAX_RATING - i;
+			float freq = getFreq(rating);
+			int j = i - 1;
+			while ( j >= 0 && getFreq(frequencyRanking[j]) < freq ) {
+				frequencyRanking[j + 1] = frequencyRanking[j];
+				j--;
+			}
+			frequencyRanking[j + 1] = rating;
+		}
 		isRanked = true;
 	}
 
 	/**************************/
 	
 
-	public Float getFreq(int class_num)
+	public float getFreq(int class_num)
 	{
-		return frequencies.get(class_num).relFrequency();
+		return weights[class_num] * counts[class_num];
 	}
 	
-	public Float getMinFreq()
+	public float getMinFreq()
 	{
 		return getFreq(getRatingByRank(Ratings.N_RATINGS));
 	}
 	
-	public Float getMaxFreq()
+	public float getMaxFreq()
 	{
 		return getFreq(getRatingByRank(1));
 	}
 
-	public int getRatingByRank(int rank)
+	public synchronized int getRatingByRank(int rank)
 	{
 		if (!isRanked) {
 			rankRatingsByFrequency();
 		}
 
-		return frequencyRanking.get(rank - 1).class_id();
+		return frequencyRanking[rank - 1];
 	}
 
-	private Set<Integer> allClasses()
+	public float getFreqSum()
 	{
-		return frequencies.keySet();
-	}
-
-	public Float getFreqSum()
-	{
-		return getFreqSum(allClasses());
+		float freq_sum = 0F;
+		for (int i = Ratings.MIN_RATING ; i <= Ratings.MAX_RATING ; i++) {
+			freq_sum += getFreq(i);
+		}
+		return freq_sum;
 	}
 	
-	public Float getFreqSum(Set<Integer> classlist)
+	public float getFreqSum(Set<Integer> classlist)
 	{
-		Float freq_sum = 0F;
+		float freq_sum = 0F;
 		for (Integer class_id : classlist) {
-			freq_sum += frequencies.get(class_id).relFrequency();
+			freq_sum += getFreq(class_id);
 		}
 		return freq_sum;
 	}
 	
-	public Float getFreqAvg()
+	public float getFreqAvg()
 	{
-		return getFreqAvg(allClasses());
+		return getFreqSum() / Ratings.N_RATINGS;
 	}
 	
-	public Float getFreqAvg(Set<Integer> classlist)
+	public float getFreqAvg(Set<Integer> classlist)
 	{
 		return getFreqSum(classlist) / classlist.size();
 	}
 
-	public Float getWeightedAvgRating(Set<Integer> classlist)
+	public float getWeightedAvgRating()
+	{
+		float freq_weighted_sum = 0F;
+		float freq_sum = 0F;
+		for (int class_id = Ratings.MIN_RATING ; class_id <= Ratings.MAX_RATING ; class_id++) {
+			float class_id_freq = getFreq(class_id);
+			freq_sum += class_id_freq;
+			freq_weighted_sum += class_id_freq * class_id;
+		}
+		return freq_weighted_sum / freq_sum;
+	}
+	
+	public float getWeightedAvgRating(Set<Integer> classlist)
 	{
 		float freq_weighted_sum = 0F;
 		float freq_sum = 0F;
 		for (Integer class_id : classlist) {
-			float class_id_freq = frequencies.get(class_id).relFrequency();
+			float class_id_freq = getFreq(class_id);
 			freq_sum += class_id_freq;
 			freq_weighted_sum += class_id_freq * class_id;
 		}
@@ -174,7 +289,7 @@ public class RatingHistogram implements Serializable {
 	{
 		Iterator<Integer> iter = classlist.iterator();
 		while ( iter.hasNext() ) {
-			if (frequencies.get(iter.next()).relFrequency() < freqCutoff) {
+			if (getFreq(iter.next()) < freqCutoff) {
 				iter.remove();
 			}
 		}
@@ -240,8 +355,8 @@ public class RatingHistogram implements Serializable {
 	public String toString()
 	{
 		String str = getUniqueDocuments() + " docs\n";
-		for (int i = 1 ; i <= Ratings.N_RATINGS ; i++) {
-			str += frequencies.get(i) + "\n";
+		for (int i = Ratings.MIN_RATING ; i <= Ratings.MAX_RATING ; i++) {
+			str += "relf(" + i + ") = " + getFreq(i) + "\n";
 		}
 		str += "\n";
 		
@@ -261,7 +376,7 @@ public class RatingHistogram implements Serializable {
 	{
 		String histogram_str = "";
 		for (int i = Ratings.MIN_RATING ; i <= Ratings.MAX_RATING ; i++) {
-			histogram_str += frequencies.get(i).frequency() + ",";
+			histogram_str += counts[i] + ",";
 		}
 		return histogram_str;
 	}
@@ -270,7 +385,7 @@ public class RatingHistogram implements Serializable {
 	{
 		String histogram_str = "";
 		for (int i = Ratings.MIN_RATING ; i <= Ratings.MAX_RATING ; i++) {
-			histogram_str += frequencies.get(i).relFrequency() + ",";
+			histogram_str += getFreq(i) + ",";
 		}
 		return histogram_str;
 	}
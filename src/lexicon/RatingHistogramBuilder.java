@@ -0,0 +1,432 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package lexicon;
+
+import indexing.ReviewTermPayload;
+import indexing.TermTypeFilter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import lexicon.PayloadFilters.PayloadFilter;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.index.TermPositions;
+import util.AppLogger;
+import wordnet.Synset;
+import wordnet.Synset.SynsetCategory;
+import classes.ReviewStats;
+import config.Globals;
+
+
+/**
+ * Generates the rating histograms of all indexed terms for a number of payload filters at once, in
+ * a single pass over the postings of the index.
+ * <p>
+ * The rating of every indexed review is loaded only once, into an array indexed by document
+ * number. Then, the positions of each term are walked directly, and each position payload is tested
+ * against all filters, so that the histograms for every filter are filled at the same time. Since
+ * payloads are a single byte, the outcome of each filter and the POS category are precomputed for
+ * every possible payload value.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class RatingHistogramBuilder {
+	
+	private static final int		NO_RATING	= 0;
+	
+	private IndexReader				reader;
+	private float[]					weights;
+	private PayloadFilter[]			filters;
+	private Writer					discardedTermsOutput;
+	
+	private int[]					ratings		= null;
+	private boolean[][]				filterTable;
+	private SynsetCategory[]		posTable;
+	
+	/**
+	 * Constructor for class RatingHistogramBuilder
+	 * 
+	 * @param reader
+	 *            The index to read term postings from
+	 * @param reviewStats
+	 *            The index statistics used for weighting histogram frequencies
+	 * @param filters
+	 *            The payload filters to generate histograms for
+	 */
+	public RatingHistogramBuilder(IndexReader reader, ReviewStats reviewStats, PayloadFilter[] filters)
+	{
+		this.reader = reader;
+		weights = RatingHistogram.getRatingWeights(reviewStats);
+		this.filters = filters.clone();
+		
+		// Precompute filter outcomes and POS categories for all possible payload values
+		filterTable = new boolean[filters.length][256];
+		posTable = new SynsetCategory[256];
+		ReviewTermPayload p = new ReviewTermPayload();
+		for (int value = 0 ; value < 256 ; value++) {
+			try {
+				ReviewTermPayload.decode(new byte[]{ (byte)value }, p);
+			} catch ( ArrayIndexOutOfBoundsException e ) {
+				// Not a valid payload value
+				continue;
+			}
+			posTable[value] = Synset.convertPosCategory(p.getPosCat());
+			for (int f = 0 ; f < filters.length ; f++) {
+				filterTable[f][value] = filters[f].filterPayload(p);
+			}
+		}
+	}
+	
+	/**
+	 * @param discardedTermsOutput
+	 *            a writer where terms that are neither lemmas nor valid words are written to
+	 */
+	public void setDiscardedTermsOutput(Writer discardedTermsOutput)
+	{
+		this.discardedTermsOutput = discardedTermsOutput;
+	}
+	
+	/**
+	 * Loads the rating of every indexed review into an array indexed by document number. Only the
+	 * rating field of each stored document is read.
+	 * 
+	 * @return the rating column of the index
+	 * @throws IOException
+	 */
+	public synchronized int[] getRatings() throws IOException
+	{
+		if (ratings == null) {
+			MapFieldSelector rating_only = new MapFieldSelector(new String[]{ Globals.IndexFieldNames.rating });
+			int[] doc_ratings = new int[reader.maxDoc()];
+			for (int doc_num = 0 ; doc_num < doc_ratings.length ; doc_num++) {
+				if (reader.isDeleted(doc_num)) {
+					doc_ratings[doc_num] = NO_RATING;
+				}
+				else {
+					Document doc = reader.document(doc_num, rating_only);
+					doc_ratings[doc_num] = Integer.parseInt(doc.get(Globals.IndexFieldNames.rating));
+				}
+			}
+			ratings = doc_ratings;
+		}
+		
+		return ratings;
+	}
+	
+	/**
+	 * Generates the histograms of all indexed terms
+	 * 
+	 * @return a histogram collector for each of the filters, in the same order as the filters were
+	 *         specified in the constructor
+	 * @throws IOException
+	 */
+	public RatingHistogramCollector[] makeAllHistograms() throws IOException
+	{
+		return makeHistograms(null, null);
+	}
+	
+	/**
+	 * Generates the histograms of all indexed terms concurrently. The term dictionary is split into a
+	 * number of contiguous term ranges, and the histograms of each range are generated by a separate
+	 * task of the given executor. The resulting fragments are merged in term order, so the result is
+	 * identical to that of {@link #makeAllHistograms()}.
+	 * 
+	 * @param executor
+	 *            The executor to run range tasks on
+	 * @param partitions
+	 *            The number of term ranges to split the term dictionary into
+	 * @return a histogram collector for each of the filters, in the same order as the filters were
+	 *         specified in the constructor
+	 * @throws IOException
+	 */
+	public RatingHistogramCollector[] makeAllHistograms(ExecutorService executor, int partitions) throws IOException
+	{
+		// Load the rating column up front, so that range tasks do not wait for each other
+		getRatings();
+		
+		ArrayList<String> bounds = getTermRangeBounds(partitions);
+		ArrayList<Future<RatingHistogramCollector[]>> fragments = new ArrayList<Future<RatingHistogramCollector[]>>();
+		for (int i = 0 ; i < bounds.size() - 1 ; i++) {
+			final String lower_term = bounds.get(i);
+			final String upper_term = bounds.get(i + 1);
+			fragments.add(executor.submit(new Callable<RatingHistogramCollector[]>() {
+				
+				@Override
+				public RatingHistogramCollector[] call() throws Exception
+				{
+					return makeHistograms(lower_term, upper_term);
+				}
+			}));
+		}
+		
+		RatingHistogramCollector[] collectors = new RatingHistogramCollector[filters.length];
+		for (int f = 0 ; f < filters.length ; f++) {
+			collectors[f] = new RatingHistogramCollector();
+		}
+		try {
+			for (Future<RatingHistogramCollector[]> fragment : fragments) {
+				RatingHistogramCollector[] fragment_collectors = fragment.get();
+				for (int f = 0 ; f < filters.length ; f++) {
+					collectors[f].merge(fragment_collectors[f]);
+				}
+			}
+		} catch ( InterruptedException e ) {
+			throw new IOException("Histogram generation was interrupted");
+		} catch ( ExecutionException e ) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			else
+				throw new RuntimeException(e.getCause());
+		} finally {
+			for (Future<RatingHistogramCollector[]> fragment : fragments) {
+				fragment.cancel(true);
+			}
+		}
+		
+		return collectors;
+	}
+	
+	/**
+	 * Splits the term dictionary of the text field into contiguous ranges with roughly the same
+	 * number of terms each
+	 * 
+	 * @return the bounds of the ranges, i.e. a list whose first element is null (the start of the
+	 *         dictionary), whose last element is null (the end of the dictionary) and whose
+	 *         intermediate elements are the first terms of each range but the first
+	 * @throws IOException
+	 */
+	public ArrayList<String> getTermRangeBounds(int partitions) throws IOException
+	{
+		String field = Globals.IndexFieldNames.text.intern();
+		
+		// Count terms
+		int n_terms = 0;
+		TermEnum terms = reader.terms(new Term(field, ""));
+		try {
+			do {
+				Term term = terms.term();
+				if (term == null || term.field() != field) {
+					break;
+				}
+				n_terms++;
+			} while ( terms.next() );
+		} finally {
+			terms.close();
+		}
+		
+		// Pick range bounds at regular intervals
+		ArrayList<String> bounds = new ArrayList<String>();
+		bounds.add(null);
+		int range_size = Math.max(1, (n_terms + partitions - 1) / Math.max(1, partitions));
+		int term_num = 0;
+		terms = reader.terms(new Term(field, ""));
+		try {
+			do {
+				Term term = terms.term();
+				if (term == null || term.field() != field) {
+					break;
+				}
+				if (term_num > 0 && term_num % range_size == 0) {
+					bounds.add(term.text());
+				}
+				term_num++;
+			} while ( terms.next() );
+		} finally {
+			terms.close();
+		}
+		bounds.add(null);
+		
+		return bounds;
+	}
+	
+	/**
+	 * Generates the histograms of the indexed terms that fall in a given range
+	 * 
+	 * @param lower_term
+	 *            The first term of the range (inclusive), or null to start from the first term
+	 * @param upper_term
+	 *            The last term of the range (exclusive), or null to continue to the last term
+	 * @return a histogram collector for each of the filters, in the same order as the filters were
+	 *         specified in the constructor
+	 * @throws IOException
+	 */
+	public RatingHistogramCollector[] makeHistograms(String lower_term, String upper_term) throws IOException
+	{
+		int[] doc_ratings = getRatings();
+		
+		RatingHistogramCollector[] collectors = new RatingHistogramCollector[filters.length];
+		for (int f = 0 ; f < filters.length ; f++) {
+			collectors[f] = new RatingHistogramCollector();
+		}
+		
+		String field = Globals.IndexFieldNames.text.intern();
+		TermEnum terms = reader.terms(new Term(field, lower_term == null ? "" : lower_term));
+		TermPositions positions = reader.termPositions();
+		byte[] payload = new byte[1];
+		try {
+			do {
+				Term term = terms.term();
+				if (term == null || term.field() != field || upper_term != null
+					&& term.text().compareTo(upper_term) >= 0) {
+					break;
+				}
+				
+				// Extract term text. This will usually be a 9-byte synset identifier (e.g.
+				// n00348562), but it could also be an English word or phrase that does not have a
+				// synset equivalent
+				String term_text = term.text();
+				if (TermTypeFilter.isLemma(term_text)) {
+					positions.seek(terms);
+					collectSynset(new Synset(term_text), positions, doc_ratings, payload, collectors);
+				}
+				else if (TermTypeFilter.isNonLemma(term_text)) {
+					positions.seek(terms);
+					collectTerm(term_text, positions, doc_ratings, payload, collectors);
+				}
+				else if (discardedTermsOutput != null) {
+					discardedTermsOutput.write(term_text + "\n");
+				}
+			} while ( terms.next() );
+		} finally {
+			positions.close();
+			terms.close();
+		}
+		
+		return collectors;
+	}
+	
+	/*
+	 * Lemmatized terms get one histogram per filter. As in the span-based implementation of
+	 * SentimentLexiconGenerator, the unique documents counter is incremented for every occurrence of
+	 * the synset, whether or not it matches the filter.
+	 */
+	private void collectSynset(Synset synset, TermPositions positions, int[] doc_ratings, byte[] payload,
+			RatingHistogramCollector[] collectors) throws IOException
+	{
+		RatingHistogram[] histograms = new RatingHistogram[filters.length];
+		for (int f = 0 ; f < filters.length ; f++) {
+			histograms[f] = new RatingHistogram(weights);
+		}
+		
+		while ( positions.next() ) {
+			int doc_rating = doc_ratings[positions.doc()];
+			
+			int freq = positions.freq();
+			for (int i = 0 ; i < freq ; i++) {
+				for (int f = 0 ; f < filters.length ; f++) {
+					histograms[f].incrementUniqueDocuments();
+				}
+				int value = nextPayloadValue(positions, payload);
+				if (value < 0) {
+					continue;
+				}
+				for (int f = 0 ; f < filters.length ; f++) {
+					if (filterTable[f][value]) {
+						histograms[f].addObeservation(doc_rating, 1);
+					}
+				}
+			}
+		}
+		
+		for (int f = 0 ; f < filters.length ; f++) {
+			collectors[f].insertHistogram(synset, histograms[f]);
+		}
+	}
+	
+	/*
+	 * Non-lemmatized terms get one histogram per filter and POS category, and only histograms with
+	 * at least one observation are collected
+	 */
+	private void collectTerm(String term, TermPositions positions, int[] doc_ratings, byte[] payload,
+			RatingHistogramCollector[] collectors) throws IOException
+	{
+		SynsetCategory[] synsetcats = Synset.getSynsetCategories();
+		RatingHistogram[][] histograms = new RatingHistogram[filters.length][SynsetCategory.values().length];
+		
+		while ( positions.next() ) {
+			int doc_rating = doc_ratings[positions.doc()];
+			
+			int freq = positions.freq();
+			for (int i = 0 ; i < freq ; i++) {
+				int value = nextPayloadValue(positions, payload);
+				if (value < 0) {
+					continue;
+				}
+				SynsetCategory synsetcat = posTable[value];
+				if (synsetcat == null) {
+					continue;
+				}
+				for (int f = 0 ; f < filters.length ; f++) {
+					if (filterTable[f][value]) {
+						RatingHistogram histogram = histograms[f][synsetcat.ordinal()];
+						if (histogram == null) {
+							histogram = new RatingHistogram(weights);
+							histograms[f][synsetcat.ordinal()] = histogram;
+						}
+						histogram.incrementUniqueDocuments();
+						histogram.addObeservation(doc_rating, 1);
+					}
+				}
+			}
+		}
+		
+		for (int f = 0 ; f < filters.length ; f++) {
+			for (SynsetCategory synsetcat : synsetcats) {
+				RatingHistogram histogram = histograms[f][synsetcat.ordinal()];
+				if (histogram != null && histogram.getTotalObservations() > 0) {
+					collectors[f].insertHistogram(synsetcat, term, histogram);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Advances to the next position of the current document and returns its payload value, or -1 if
+	 * the position has no payload. As in ReviewTermPayload.decode, only the first byte of a payload
+	 * is significant. The payload value is returned even if it has no POS category, since synset
+	 * terms are counted regardless of their POS.
+	 */
+	private int nextPayloadValue(TermPositions positions, byte[] payload) throws IOException
+	{
+		positions.nextPosition();
+		if (!positions.isPayloadAvailable() || positions.getPayloadLength() == 0)
+			return -1;
+		
+		if (positions.getPayloadLength() != 1) {
+			AppLogger.error.log(Level.WARNING, "Unexpected payload length " + positions.getPayloadLength());
+			byte[] long_payload = positions.getPayload(new byte[positions.getPayloadLength()], 0);
+			return long_payload[0] & 0xff;
+		}
+		
+		positions.getPayload(payload, 0);
+		return payload[0] & 0xff;
+	}
+}
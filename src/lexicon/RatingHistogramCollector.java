@@ -23,14 +23,22 @@
 package lexicon;
 
 import indexing.SynsetTermsAggregator;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
 import java.util.Map.Entry;
 import lexicon.PayloadFilters.PayloadFilter;
+import util.BinaryState;
 import util.State;
 import wordnet.Synset;
 import wordnet.Synset.SynsetCategory;
@@ -39,41 +47,249 @@ import config.Paths;
 
 
 /**
- * TODO Description missing
+ * A collection of rating histograms for lemmatized (synset) and non-lemmatized terms, organized by
+ * synset category.
+ * <p>
+ * Histograms are not kept as separate objects. Instead, each term is assigned an integer id in
+ * insertion order, and the observation counts and unique document counts of all histograms of a
+ * category are stored in columnar primitive arrays indexed by term id. Since all histograms of a
+ * collection share the same rating weights, weights are stored once per collector. Histogram
+ * objects are created on demand when retrieved.
  * 
  * @author Stelios Karabasakis
  */
-public class RatingHistogramCollector implements Serializable {
+public class RatingHistogramCollector implements Serializable, BinaryState {
 	
 	private static final long												serialVersionUID	= 1613013463379217050L;
 
-	private HashMap<SynsetCategory, LinkedHashMap<Synset, RatingHistogram>>	lemmaHistograms		= null;
-	private HashMap<SynsetCategory, LinkedHashMap<String, RatingHistogram>>	nonLemmaHistograms	= null;
+	/*
+	 * The histograms of the terms of one synset category, in columnar form
+	 */
+	private static class HistogramColumns<K> implements Serializable {
+		
+		private static final long				serialVersionUID	= 3917504208841153297L;
+		
+		private ArrayList<K>					keys				= new ArrayList<K>();
+		private int[]							counts				= new int[16 * Ratings.N_RATINGS];
+		private int[]							uniqueDocuments		= new int[16];
+		private transient HashMap<K, Integer>	termIds				= new HashMap<K, Integer>();
+		
+		private void put(K key, RatingHistogram histogram)
+		{
+			Integer term_id = termIds.get(key);
+			if (term_id == null) {
+				term_id = keys.size();
+				keys.add(key);
+				termIds.put(key, term_id);
+				if (term_id == uniqueDocuments.length) {
+					uniqueDocuments = Arrays.copyOf(uniqueDocuments, 2 * uniqueDocuments.length);
+					counts = Arrays.copyOf(counts, 2 * counts.length);
+				}
+			}
+			
+			histogram.copyCounts(counts, term_id * Ratings.N_RATINGS);
+			uniqueDocuments[term_id] = histogram.getUniqueDocuments();
+		}
+		
+		private RatingHistogram get(K key, float[] weights)
+		{
+			Integer term_id = termIds.get(key);
+			return term_id == null ? null : get(term_id, weights);
+		}
+		
+		private RatingHistogram get(int term_id, float[] weights)
+		{
+			return new RatingHistogram(weights, counts, term_id * Ratings.N_RATINGS, uniqueDocuments[term_id]);
+		}
+		
+		private int size()
+		{
+			return keys.size();
+		}
+		
+		private void writeCounts(DataOutput out) throws IOException
+		{
+			for (int term_id = 0 ; term_id < keys.size() ; term_id++) {
+				out.writeInt(uniqueDocuments[term_id]);
+				for (int i = term_id * Ratings.N_RATINGS ; i < (term_id + 1) * Ratings.N_RATINGS ; i++) {
+					out.writeInt(counts[i]);
+				}
+			}
+		}
+		
+		/*
+		 * Reads the counts of all terms, after their keys have been read
+		 */
+		private void readCounts(DataInput in) throws IOException
+		{
+			uniqueDocuments = new int[Math.max(1, keys.size())];
+			counts = new int[uniqueDocuments.length * Ratings.N_RATINGS];
+			termIds = new HashMap<K, Integer>(keys.size() * 4 / 3 + 1);
+			for (int term_id = 0 ; term_id < keys.size() ; term_id++) {
+				termIds.put(keys.get(term_id), term_id);
+				uniqueDocuments[term_id] = in.readInt();
+				for (int i = term_id * Ratings.N_RATINGS ; i < (term_id + 1) * Ratings.N_RATINGS ; i++) {
+					counts[i] = in.readInt();
+				}
+			}
+		}
+		
+		private Iterator<Entry<K, RatingHistogram>> iterator(final float[] weights)
+		{
+			return new Iterator<Entry<K, RatingHistogram>>() {
+				
+				private int	next_id	= 0;
+				
+				@Override
+				public boolean hasNext()
+				{
+					return next_id < keys.size();
+				}
+				
+				@Override
+				public Entry<K, RatingHistogram> next()
+				{
+					if (!hasNext())
+						throw new NoSuchElementException();
+					K key = keys.get(next_id);
+					return new SimpleImmutableEntry<K, RatingHistogram>(key, get(next_id++, weights));
+				}
+				
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+		
+		/*
+		 * Trims the columns to their actual size before serialization and rebuilds the term id
+		 * lookup table after deserialization
+		 */
+		private void writeObject(java.io.ObjectOutputStream out) throws IOException
+		{
+			uniqueDocuments = Arrays.copyOf(uniqueDocuments, Math.max(1, keys.size()));
+			counts = Arrays.copyOf(counts, uniqueDocuments.length * Ratings.N_RATINGS);
+			out.defaultWriteObject();
+		}
+		
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+		{
+			in.defaultReadObject();
+			termIds = new HashMap<K, Integer>(keys.size() * 4 / 3 + 1);
+			for (int i = 0 ; i < keys.size() ; i++) {
+				termIds.put(keys.get(i), i);
+			}
+		}
+	}
+	
+	private HashMap<SynsetCategory, HistogramColumns<Synset>>	lemmaHistograms		= null;
+	private HashMap<SynsetCategory, HistogramColumns<String>>	nonLemmaHistograms	= null;
+	private float[]												weights				= null;
 	
 	public RatingHistogramCollector()
 	{
-		lemmaHistograms = new HashMap<SynsetCategory, LinkedHashMap<Synset, RatingHistogram>>();
-		nonLemmaHistograms = new HashMap<SynsetCategory, LinkedHashMap<String, RatingHistogram>>();
+		lemmaHistograms = new HashMap<SynsetCategory, HistogramColumns<Synset>>();
+		nonLemmaHistograms = new HashMap<SynsetCategory, HistogramColumns<String>>();
 		for (SynsetCategory synsetcat : Synset.getSynsetCategories()) {
-			lemmaHistograms.put(synsetcat, new LinkedHashMap<Synset, RatingHistogram>());
-			nonLemmaHistograms.put(synsetcat, new LinkedHashMap<String, RatingHistogram>());
+			lemmaHistograms.put(synsetcat, new HistogramColumns<Synset>());
+			nonLemmaHistograms.put(synsetcat, new HistogramColumns<String>());
+		}
+	}
+	
+	/*
+	 * Reads serialized collectors. The serialized form of older versions held a map of histogram
+	 * objects per synset category, under the same field names. These histograms are inserted into
+	 * columns, so that legacy histogram state files can still be restored.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		
+		HashMap<SynsetCategory, Object> lemma_map = (HashMap<SynsetCategory, Object>)(HashMap<?, ?>)lemmaHistograms;
+		HashMap<SynsetCategory, Object> nonlemma_map = (HashMap<SynsetCategory, Object>)(HashMap<?, ?>)nonLemmaHistograms;
+		boolean legacy = false;
+		for (Object columns : lemma_map.values()) {
+			legacy |= !(columns instanceof HistogramColumns<?>);
+		}
+		for (Object columns : nonlemma_map.values()) {
+			legacy |= !(columns instanceof HistogramColumns<?>);
+		}
+		if (!legacy)
+			return;
+		
+		lemmaHistograms = new HashMap<SynsetCategory, HistogramColumns<Synset>>();
+		nonLemmaHistograms = new HashMap<SynsetCategory, HistogramColumns<String>>();
+		for (SynsetCategory synsetcat : Synset.getSynsetCategories()) {
+			lemmaHistograms.put(synsetcat, new HistogramColumns<Synset>());
+			nonLemmaHistograms.put(synsetcat, new HistogramColumns<String>());
+			
+			LinkedHashMap<Synset, RatingHistogram> legacy_lemmas = (LinkedHashMap<Synset, RatingHistogram>)lemma_map
+				.get(synsetcat);
+			if (legacy_lemmas != null) {
+				for (Entry<Synset, RatingHistogram> entry : legacy_lemmas.entrySet()) {
+					insertHistogram(entry.getKey(), entry.getValue());
+				}
+			}
+			LinkedHashMap<String, RatingHistogram> legacy_nonlemmas = (LinkedHashMap<String, RatingHistogram>)nonlemma_map
+				.get(synsetcat);
+			if (legacy_nonlemmas != null) {
+				for (Entry<String, RatingHistogram> entry : legacy_nonlemmas.entrySet()) {
+					insertHistogram(synsetcat, entry.getKey(), entry.getValue());
+				}
+			}
+		}
+	}
+	
+	/*
+	 * All histograms of a collector share the weights of the first histogram inserted
+	 */
+	private void setWeights(RatingHistogram histogram)
+	{
+		if (weights == null) {
+			weights = histogram.getWeights();
 		}
 	}
 	
 	public void insertHistogram(Synset synset, RatingHistogram histogram)
 	{
+		setWeights(histogram);
 		lemmaHistograms.get(synset.getPos()).put(synset, histogram);
 	}
 	
 	public void insertHistogram(SynsetCategory synsetcat, String term, RatingHistogram histogram)
 	{
+		setWeights(histogram);
 		nonLemmaHistograms.get(synsetcat).put(term, histogram);
 	}
 	
+	/**
+	 * Appends all histograms of another collector to this one. Histograms are appended in the
+	 * iteration order of the other collector, so merging the fragments of a partitioned collection
+	 * in partition order yields the same collector as a sequential collection.
+	 */
+	public void merge(RatingHistogramCollector other)
+	{
+		for (SynsetCategory synsetcat : Synset.getSynsetCategories()) {
+			Iterator<Entry<Synset, RatingHistogram>> lemma_i = other.getLemmaHistograms(synsetcat);
+			while ( lemma_i.hasNext() ) {
+				Entry<Synset, RatingHistogram> entry = lemma_i.next();
+				insertHistogram(entry.getKey(), entry.getValue());
+			}
+			Iterator<Entry<String, RatingHistogram>> nonlemma_i = other.getNonLemmaHistograms(synsetcat);
+			while ( nonlemma_i.hasNext() ) {
+				Entry<String, RatingHistogram> entry = nonlemma_i.next();
+				insertHistogram(synsetcat, entry.getKey(), entry.getValue());
+			}
+		}
+	}
+	
 	public RatingHistogram getHistogram(Synset synset)
 	{
 		try {
-			return lemmaHistograms.get(synset.getPos()).get(synset);
+			return lemmaHistograms.get(synset.getPos()).get(synset, weights);
 		} catch ( NullPointerException e ) {
 			return null;
 		}
@@ -82,7 +298,7 @@ public class RatingHistogramCollector implements Serializable {
 	public RatingHistogram getHistogram(SynsetCategory synsetcat, String term)
 	{
 		try {
-			return nonLemmaHistograms.get(synsetcat).get(term);
+			return nonLemmaHistograms.get(synsetcat).get(term, weights);
 		} catch ( Exception e ) {
 			return null;
 		}
@@ -90,12 +306,85 @@ public class RatingHistogramCollector implements Serializable {
 	
 	public Iterator<Entry<Synset, RatingHistogram>> getLemmaHistograms(SynsetCategory synsetcat)
 	{
-		return lemmaHistograms.get(synsetcat).entrySet().iterator();
+		return lemmaHistograms.get(synsetcat).iterator(weights);
 	}
 	
 	public Iterator<Entry<String, RatingHistogram>> getNonLemmaHistograms(SynsetCategory synsetcat)
 	{
-		return nonLemmaHistograms.get(synsetcat).entrySet().iterator();
+		return nonLemmaHistograms.get(synsetcat).iterator(weights);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#stateVersion()
+	 */
+	@Override
+	public int stateVersion()
+	{
+		return 1;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#writeState(java.io.DataOutput)
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException
+	{
+		out.writeInt(weights == null ? 0 : weights.length);
+		for (int i = 0 ; weights != null && i < weights.length ; i++) {
+			out.writeFloat(weights[i]);
+		}
+		
+		for (SynsetCategory synsetcat : Synset.getSynsetCategories()) {
+			HistogramColumns<Synset> lemma_columns = lemmaHistograms.get(synsetcat);
+			out.writeInt(lemma_columns.size());
+			for (Synset synset : lemma_columns.keys) {
+				out.writeLong(synset.getOffset());
+			}
+			lemma_columns.writeCounts(out);
+			
+			HistogramColumns<String> nonlemma_columns = nonLemmaHistograms.get(synsetcat);
+			out.writeInt(nonlemma_columns.size());
+			for (String term : nonlemma_columns.keys) {
+				out.writeUTF(term);
+			}
+			nonlemma_columns.writeCounts(out);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#readState(java.io.DataInput, int)
+	 */
+	@Override
+	public void readState(DataInput in, int version) throws IOException
+	{
+		int n_weights = in.readInt();
+		weights = n_weights == 0 ? null : new float[n_weights];
+		for (int i = 0 ; i < n_weights ; i++) {
+			weights[i] = in.readFloat();
+		}
+		
+		for (SynsetCategory synsetcat : Synset.getSynsetCategories()) {
+			HistogramColumns<Synset> lemma_columns = new HistogramColumns<Synset>();
+			int n_synsets = in.readInt();
+			lemma_columns.keys.ensureCapacity(n_synsets);
+			for (int i = 0 ; i < n_synsets ; i++) {
+				lemma_columns.keys.add(new Synset(synsetcat, in.readLong()));
+			}
+			lemma_columns.readCounts(in);
+			lemmaHistograms.put(synsetcat, lemma_columns);
+			
+			HistogramColumns<String> nonlemma_columns = new HistogramColumns<String>();
+			int n_terms = in.readInt();
+			nonlemma_columns.keys.ensureCapacity(n_terms);
+			for (int i = 0 ; i < n_terms ; i++) {
+				nonlemma_columns.keys.add(in.readUTF());
+			}
+			nonlemma_columns.readCounts(in);
+			nonLemmaHistograms.put(synsetcat, nonlemma_columns);
+		}
 	}
 	
 	public String printSummary()
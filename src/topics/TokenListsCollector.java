@@ -22,109 +22,376 @@
 //
 package topics;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import util.AppLogger;
+import util.BinaryState;
 import classes.Counter;
 import config.Paths;
 
 
 /**
- * Collects sentences
+ * Writes the token lists of the documents produced by {@link filters.indexing.TopicModelInputFilter}
+ * to the input files of the topic modeller. Each document is appended to the current
+ * {@code docsNNNN.txt} file as soon as it is complete, through a buffered append-only stream, and
+ * a new file is started by {@link #writeNextFile()}. Documents are written either as text, one
+ * line of the form {@code docid n token1 ... tokenN} per document, or in a compact format where
+ * tokens are replaced by integer ids. The ids are the line numbers of the tokens in an
+ * append-only {@code vocabulary.txt} file, starting from 0.
+ * <p>
+ * Instances are shared among concurrent indexing workers, so writing is synchronized. The saved
+ * state of the collector is only a checkpoint: the current file id and the lengths of the current
+ * file and the vocabulary file at the time the state was encoded. When writing is resumed from a
+ * restored state, anything past these lengths is discarded, as it belongs to documents that were
+ * not committed to the index.
  * 
  * @author Stelios Karabasakis
  */
-public class TokenListsCollector implements Serializable {
-	
+public class TokenListsCollector implements Serializable, BinaryState {
 	
 	private static final long					serialVersionUID	= 1953712664414383225L;
 	
 	private static final String					FILENAME_PREFIX		= "docs";
 	private static final int					FILENAME_ID_LENGTH	= 4;
-
+	private static final String					VOCABULARY_FILENAME	= "vocabulary.txt";
+	private static final String					CHARSET				= "UTF-8";
+	private static final int					BUFFER_SIZE			= 1 << 16;
+	
+	/**
+	 * The formats in which token lists can be written
+	 */
+	public enum Format {
+		TEXT, IDS
+	}
+	
 	private Counter								topicModelFileId;
-	private HashMap<Long, ArrayList<String>>	tokenLists;
+	private Format								format;
+	private long								fileLength;
+	private long								vocabularyLength;
+	private long								tokenCount;
+	
+	private transient NumberFormat				docIdFormat;
+	private transient OutputStream				out;
+	private transient OutputStream				vocabularyOut;
+	private transient HashMap<String, Integer>	vocabulary;
+	private transient StringBuilder				line;
 	
 	public TokenListsCollector()
 	{
-		tokenLists = new HashMap<Long, ArrayList<String>>();
 		topicModelFileId = new Counter();
 		topicModelFileId.set(1);
+		format = Format.TEXT;
 	}
 	
-	public int countTokens()
+	/*
+	 * Reads serialized collectors. The serialized form of older versions held the token lists
+	 * buffered since the last file was written, in a field named tokenLists, and no format or
+	 * checkpoint. As with version 1 of the binary state, the buffered token lists of such a stream
+	 * are written out to the current file, which they had not yet reached, and the format defaults
+	 * to text.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
 	{
-		int counter = 0;
-		Set<Entry<Long, ArrayList<String>>> tokenlists_entries = tokenLists.entrySet();
-		for (Entry<Long, ArrayList<String>> tokenlist : tokenlists_entries) {
-			counter += tokenlist.getValue().size();
+		ObjectInputStream.GetField fields = in.readFields();
+		topicModelFileId = (Counter)fields.get("topicModelFileId", null);
+		format = (Format)fields.get("format", Format.TEXT);
+		fileLength = fields.get("fileLength", 0L);
+		vocabularyLength = fields.get("vocabularyLength", 0L);
+		tokenCount = fields.get("tokenCount", 0L);
+		
+		if (format == null) {
+			format = Format.TEXT;
+		}
+		if (topicModelFileId == null) {
+			topicModelFileId = new Counter();
+			topicModelFileId.set(1);
+		}
+		if (fields.getObjectStreamClass().getField("tokenLists") != null) {
+			HashMap<Long, ArrayList<String>> token_lists = (HashMap<Long, ArrayList<String>>)fields.get("tokenLists",
+				null);
+			if (token_lists != null) {
+				writeBufferedDocuments(token_lists);
+			}
 		}
-		return counter;
 	}
-
-	public ArrayList<String> getTokenListForDocument(Long docId)
+	
+	/*
+	 * Writes out the token lists buffered by a legacy state, in document id order
+	 */
+	private void writeBufferedDocuments(Map<Long, ? extends List<String>> token_lists)
 	{
-		ArrayList<String> list_to_return = null;
-		
-		if (!tokenLists.containsKey(docId)) {
-			list_to_return = tokenLists.put(docId, new ArrayList<String>());
+		for (Entry<Long, ? extends List<String>> token_list : new TreeMap<Long, List<String>>(token_lists).entrySet()) {
+			writeDocument(token_list.getKey(), token_list.getValue());
 		}
-		list_to_return = tokenLists.get(docId);
-		
-		return list_to_return;
 	}
 	
-	public ArrayList<String> setTokenListForDocument(Long docId, ArrayList<String> tokenList)
+	/**
+	 * @return the total number of tokens written
+	 */
+	public int countTokens()
 	{
-		ArrayList<String> docTokenList = getTokenListForDocument(docId);
-		docTokenList.addAll(tokenList);
-		return docTokenList;
+		return (int)tokenCount;
 	}
 	
-	public void writeNextFile(NumberFormat docIdFormat)
+	/**
+	 * @return the format in which token lists are written
+	 */
+	public Format getFormat()
+	{
+		return format;
+	}
+	
+	/**
+	 * Sets the format in which token lists are written. The format should only be changed at the
+	 * start of a new file.
+	 */
+	public synchronized void setFormat(Format format)
+	{
+		this.format = format;
+	}
+	
+	/**
+	 * Sets the format of the document ids written in text files. The default format is returned by
+	 * {@link #defaultDocIdFormat()}.
+	 */
+	public synchronized void setDocIdFormat(NumberFormat docIdFormat)
+	{
+		this.docIdFormat = docIdFormat;
+	}
+	
+	/**
+	 * Appends the token list of a complete document to the current file
+	 */
+	public synchronized void writeDocument(long docId, List<String> tokenList)
 	{
 		try {
-			BufferedWriter f = new BufferedWriter(new FileWriter(new File(getTokenListFilePath()), false));
-			Iterator<String> c;
-
-			Iterator<Entry<Long, ArrayList<String>>> entries = tokenLists.entrySet().iterator();
-			while ( entries.hasNext() ) {
-				StringBuilder entryline = new StringBuilder();
-				Entry<Long, ArrayList<String>> entry = entries.next();
-
-				entryline.append(docIdFormat.format(entry.getKey()) + " " + entry.getValue().size());
-				c = entry.getValue().iterator();
-				while ( c.hasNext() ) {
-					entryline.append(" " + c.next().replace(' ', '-'));
+			if (out == null) {
+				out = openForAppend(new File(getTokenListFilePath()), fileLength);
+				if (docIdFormat == null) {
+					docIdFormat = defaultDocIdFormat();
 				}
-				
-				f.append(entryline);
-				f.newLine();
+				line = new StringBuilder();
 			}
 			
-			f.close();
+			line.setLength(0);
+			if (format == Format.IDS) {
+				line.append(docId).append(' ').append(tokenList.size());
+				for (String token : tokenList) {
+					line.append(' ').append(getTokenId(token.replace(' ', '-')));
+				}
+			}
+			else {
+				line.append(docIdFormat.format(docId)).append(' ').append(tokenList.size());
+				for (String token : tokenList) {
+					line.append(' ').append(token.replace(' ', '-'));
+				}
+			}
+			line.append('\n');
 			
-		} catch ( FileNotFoundException e ) {
-			AppLogger.error.log(Level.WARNING, "Cannot open token list file (" + getTokenListFilePath()
-				+ ") for writing");
+			fileLength += write(out, line);
+			tokenCount += tokenList.size();
 		} catch ( IOException e ) {
 			AppLogger.error.log(Level.WARNING, "Attempt to write token list entry to file " + getTokenListFilePath()
 				+ " failed.");
 		}
+	}
+	
+	private int getTokenId(String token) throws IOException
+	{
+		if (vocabulary == null) {
+			vocabulary = readVocabulary();
+			vocabularyOut = openForAppend(getVocabularyFile(), vocabularyLength);
+		}
+		
+		Integer token_id = vocabulary.get(token);
+		if (token_id == null) {
+			token_id = vocabulary.size();
+			vocabulary.put(token, token_id);
+			vocabularyLength += write(vocabularyOut, new StringBuilder(token).append('\n'));
+		}
+		return token_id;
+	}
+	
+	/*
+	 * Reads the committed part of the vocabulary file
+	 */
+	private HashMap<String, Integer> readVocabulary() throws IOException
+	{
+		HashMap<String, Integer> vocabulary = new HashMap<String, Integer>();
+		File file = getVocabularyFile();
+		if (vocabularyLength > 0 && file.exists()) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+			try {
+				long length = 0;
+				String token;
+				while ( length < vocabularyLength && (token = in.readLine()) != null ) {
+					vocabulary.put(token, vocabulary.size());
+					length += token.getBytes(CHARSET).length + 1;
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return vocabulary;
+	}
+	
+	/*
+	 * Opens a file for appending, after discarding anything past the given length
+	 */
+	private static OutputStream openForAppend(File file, long length) throws IOException
+	{
+		if (file.exists() && file.length() > length) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+		}
+		return new BufferedOutputStream(new FileOutputStream(file, length > 0), BUFFER_SIZE);
+	}
+	
+	private static int write(OutputStream out, CharSequence str) throws IOException
+	{
+		byte[] bytes = str.toString().getBytes(CHARSET);
+		out.write(bytes);
+		return bytes.length;
+	}
+	
+	/**
+	 * Flushes all documents written so far to the output files
+	 */
+	public synchronized void flush()
+	{
+		try {
+			if (out != null) {
+				out.flush();
+			}
+			if (vocabularyOut != null) {
+				vocabularyOut.flush();
+			}
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.WARNING, "Cannot flush token list file " + getTokenListFilePath());
+		}
+	}
+	
+	/**
+	 * Flushes and closes the output files. Writing can be resumed later, by appending to the same
+	 * files.
+	 */
+	public synchronized void close()
+	{
+		try {
+			if (out != null) {
+				out.close();
+				out = null;
+			}
+			if (vocabularyOut != null) {
+				vocabularyOut.close();
+				vocabularyOut = null;
+				vocabulary = null;
+			}
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.WARNING, "Cannot close token list file " + getTokenListFilePath());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#stateVersion()
+	 */
+	@Override
+	public int stateVersion()
+	{
+		return 2;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#writeState(java.io.DataOutput)
+	 */
+	@Override
+	public synchronized void writeState(DataOutput out) throws IOException
+	{
+		// Make sure that the files are at least as long as the checkpoint
+		flush();
+		
+		out.writeInt(topicModelFileId.get());
+		out.writeInt(format.ordinal());
+		out.writeLong(fileLength);
+		out.writeLong(vocabularyLength);
+		out.writeLong(tokenCount);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see util.BinaryState#readState(java.io.DataInput, int)
+	 */
+	@Override
+	public synchronized void readState(DataInput in, int version) throws IOException
+	{
+		close();
+		topicModelFileId.set(in.readInt());
+		if (version == 1) {
+			// Version 1 held the token lists buffered since the last file was written. These are
+			// written out to the current file, which they had not yet reached.
+			format = Format.TEXT;
+			fileLength = vocabularyLength = tokenCount = 0;
+			HashMap<Long, ArrayList<String>> token_lists = new HashMap<Long, ArrayList<String>>();
+			int n_docs = in.readInt();
+			for (int i = 0 ; i < n_docs ; i++) {
+				long doc_id = in.readLong();
+				int n_tokens = in.readInt();
+				ArrayList<String> token_list = new ArrayList<String>(n_tokens);
+				for (int j = 0 ; j < n_tokens ; j++) {
+					token_list.add(in.readUTF());
+				}
+				token_lists.put(doc_id, token_list);
+			}
+			writeBufferedDocuments(token_lists);
+			return;
+		}
 		
-		// Resetting tokenlist hashmap
-		tokenLists.clear();
+		format = Format.values()[in.readInt()];
+		fileLength = in.readLong();
+		vocabularyLength = in.readLong();
+		tokenCount = in.readLong();
+	}
+
+	/**
+	 * Closes the current file, so that the documents written after this call go to a new file
+	 */
+	public synchronized void writeNextFile()
+	{
+		try {
+			if (out != null) {
+				out.close();
+				out = null;
+			}
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.WARNING, "Cannot close token list file " + getTokenListFilePath());
+		}
+		fileLength = 0;
 		topicModelFileId.increment();
 	}
 	
@@ -142,4 +409,9 @@ public class TokenListsCollector implements Serializable {
 		return Paths.tokenListPath + "/" + FILENAME_PREFIX + topicModelFileId.getValueString(FILENAME_ID_LENGTH)
 			+ ".txt";
 	}
+	
+	private static File getVocabularyFile()
+	{
+		return new File(Paths.tokenListPath + "/" + VOCABULARY_FILENAME);
+	}
 }
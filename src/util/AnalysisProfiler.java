@@ -0,0 +1,380 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.logging.Level;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import classes.ReviewId;
+
+
+/**
+ * Opt-in instrumentation for analyzer chains. Each stage of a chain is wrapped in a probe, i.e. a
+ * pass-through {@link TokenFilter}, which records the time spent in the stage, the number of tokens
+ * consumed and produced by the stage and, where the JVM supports it, the number of bytes allocated
+ * by the stage. Probes subtract the time and allocations of the stages nested below them, so the
+ * figures of every stage are its own, however the stages are chained. The outermost probe of a
+ * chain also records the wall time of each review.
+ * <p>
+ * Probes keep their counters per chain, and therefore per thread, and add them to the totals of
+ * the profiler at the end of every review. A single profiler can thus be shared by the analyzer
+ * chains of concurrent indexing workers. {@link #report()} logs a summary of the totals and writes
+ * them to a metrics file, in {@link java.util.Properties} format.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class AnalysisProfiler {
+	
+	/** Reviews that take longer than this to analyze are logged as they complete */
+	public static long					slowReviewMillis	= 10000;
+	
+	private static final int			NANOS				= 0;
+	private static final int			BYTES				= 1;
+	private static final int			TOKENS_IN			= 2;
+	private static final int			TOKENS_OUT			= 3;
+	
+	private static final boolean		allocationCounter	= enableAllocationCounter();
+
+	private File						metricsFile;
+	private ArrayList<String>			stageNames			= new ArrayList<String>();
+	private HashMap<String, Integer>	stageIds			= new HashMap<String, Integer>();
+	private ArrayList<long[]>			stageTotals			= new ArrayList<long[]>();
+	
+	private long						reviewCount			= 0;
+	private long						reviewNanos			= 0;
+	private long						maxReviewNanos		= 0;
+	private int							maxReviewId			= 0;
+	
+	/**
+	 * A set of probes that instrument a single analyzer chain. Not thread-safe: a chain, like the
+	 * analyzer that owns it, is only meant to be used by one thread at a time.
+	 */
+	public final class Chain {
+		
+		private ReviewId				reviewId;
+		private ArrayList<StageProbe>	probes			= new ArrayList<StageProbe>();
+		
+		/*
+		 * Time, allocations and tokens produced by the probes nested within the probe call that is
+		 * currently in progress
+		 */
+		private long					nestedNanos		= 0;
+		private long					nestedBytes		= 0;
+		private long					nestedTokens	= 0;
+		private int						depth			= 0;
+		
+		private boolean					inReview		= false;
+		private long					reviewStart		= 0;
+		
+		private Chain(ReviewId reviewId)
+		{
+			this.reviewId = reviewId;
+		}
+		
+		/**
+		 * Wraps a stage of the chain in a probe. Stages should be wrapped in the order in which they
+		 * are chained, starting from the tokenizer. Stages are named by their class.
+		 * 
+		 * @param stage
+		 *            the token stream produced by the stage
+		 * @return the instrumented token stream, to be passed on to the next stage of the chain
+		 */
+		public TokenStream probe(TokenStream stage)
+		{
+			StageProbe probe = new StageProbe(this, stage, stageId(stage.getClass().getSimpleName()));
+			probes.add(probe);
+			return probe;
+		}
+		
+		/*
+		 * Adds the counters of all probes to the totals of the profiler, and resets them
+		 */
+		private void commitReview()
+		{
+			long wall_nanos = System.nanoTime() - reviewStart;
+			inReview = false;
+			commit(this, wall_nanos, reviewId.get());
+		}
+	}
+	
+	/*
+	 * A pass-through filter that instruments a single stage of a chain
+	 */
+	private static final class StageProbe extends TokenFilter {
+		
+		private Chain	chain;
+		private int		stageId;
+		private long[]	counters	= new long[4];
+		
+		private StageProbe(Chain chain, TokenStream stage, int stageId)
+		{
+			super(stage);
+			this.chain = chain;
+			this.stageId = stageId;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.apache.lucene.analysis.TokenStream#incrementToken()
+		 */
+		@Override
+		public boolean incrementToken() throws IOException
+		{
+			boolean outermost = chain.depth == 0;
+			if (outermost && !chain.inReview) {
+				chain.inReview = true;
+				chain.reviewStart = System.nanoTime();
+			}
+			
+			// Stash the figures of the enclosing probe call, to account for nested calls separately
+			long outer_nanos = chain.nestedNanos;
+			long outer_bytes = chain.nestedBytes;
+			long outer_tokens = chain.nestedTokens;
+			chain.nestedNanos = 0;
+			chain.nestedBytes = 0;
+			chain.nestedTokens = 0;
+			chain.depth++;
+			
+			boolean has_token = false;
+			long start_bytes = allocatedBytes();
+			long start_nanos = System.nanoTime();
+			try {
+				has_token = input.incrementToken();
+			} finally {
+				long elapsed_nanos = System.nanoTime() - start_nanos;
+				long allocated_bytes = allocatedBytes() - start_bytes;
+				
+				counters[NANOS] += elapsed_nanos - chain.nestedNanos;
+				counters[BYTES] += allocated_bytes - chain.nestedBytes;
+				counters[TOKENS_IN] += chain.nestedTokens;
+				
+				chain.depth--;
+				chain.nestedNanos = outer_nanos + elapsed_nanos;
+				chain.nestedBytes = outer_bytes + allocated_bytes;
+				chain.nestedTokens = outer_tokens;
+			}
+			
+			if (has_token) {
+				counters[TOKENS_OUT]++;
+				chain.nestedTokens++;
+			}
+			else if (outermost && chain.inReview) {
+				chain.commitReview();
+			}
+			
+			return has_token;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.apache.lucene.analysis.TokenFilter#reset()
+		 */
+		@Override
+		public void reset() throws IOException
+		{
+			super.reset();
+			chain.inReview = false;
+		}
+	}
+	
+	/**
+	 * Constructor for class AnalysisProfiler
+	 * 
+	 * @param metricsFile
+	 *            the file to which {@link #report()} writes the collected metrics
+	 */
+	public AnalysisProfiler(File metricsFile)
+	{
+		this.metricsFile = metricsFile;
+		if (!allocationCounter) {
+			AppLogger.error.log(Level.INFO,
+								"Thread allocation counters are not supported by this JVM. Allocations will not be profiled.");
+		}
+	}
+	
+	/**
+	 * Creates a new set of probes for an analyzer chain
+	 * 
+	 * @param reviewId
+	 *            the id of the review being analyzed by the chain, used to report slow reviews
+	 */
+	public Chain newChain(ReviewId reviewId)
+	{
+		return new Chain(reviewId);
+	}
+	
+	private synchronized int stageId(String stage_name)
+	{
+		Integer stage_id = stageIds.get(stage_name);
+		if (stage_id == null) {
+			stage_id = stageNames.size();
+			stageIds.put(stage_name, stage_id);
+			stageNames.add(stage_name);
+			stageTotals.add(new long[4]);
+		}
+		return stage_id;
+	}
+	
+	private synchronized void commit(Chain chain, long wall_nanos, int review_id)
+	{
+		for (StageProbe probe : chain.probes) {
+			long[] totals = stageTotals.get(probe.stageId);
+			for (int i = 0 ; i < totals.length ; i++) {
+				totals[i] += probe.counters[i];
+				probe.counters[i] = 0;
+			}
+		}
+		
+		reviewCount++;
+		reviewNanos += wall_nanos;
+		if (wall_nanos > maxReviewNanos) {
+			maxReviewNanos = wall_nanos;
+			maxReviewId = review_id;
+		}
+		
+		if (wall_nanos / 1000000 > slowReviewMillis) {
+			AppLogger.error.log(Level.WARNING, "Review #" + review_id + " took " + wall_nanos / 1000000
+				+ " ms to analyze");
+		}
+	}
+	
+	/**
+	 * Logs a summary of the metrics collected so far and writes them to the metrics file. Meant to
+	 * be called periodically, e.g. at every commit point of the indexer.
+	 */
+	public synchronized void report()
+	{
+		StringBuilder summary = new StringBuilder("Analysis chain profile after " + reviewCount + " reviews ("
+			+ (reviewCount > 0 ? reviewNanos / reviewCount / 1000000 : 0) + " ms per review, slowest #" + maxReviewId
+			+ " at " + maxReviewNanos / 1000000 + " ms):\n");
+		for (int stage_id = 0 ; stage_id < stageNames.size() ; stage_id++) {
+			long[] totals = stageTotals.get(stage_id);
+			summary.append(String.format("  %-24s %10d ms %12d tokens in %12d tokens out %10.0f tokens/s %10d MB\n",
+											stageNames.get(stage_id), totals[NANOS] / 1000000, totals[TOKENS_IN],
+											totals[TOKENS_OUT], totals[NANOS] > 0 ? totals[TOKENS_OUT] * 1e9
+												/ totals[NANOS] : 0.0, totals[BYTES] >> 20));
+		}
+		AppLogger.error.log(Level.INFO, summary.toString());
+		
+		writeMetrics();
+	}
+	
+	private void writeMetrics()
+	{
+		try {
+			metricsFile.getParentFile().mkdirs();
+			BufferedWriter out = new BufferedWriter(new FileWriter(metricsFile));
+			try {
+				out.write("# Analysis chain metrics, " + new Date() + "\n");
+				out.write("reviews.count=" + reviewCount + "\n");
+				out.write("reviews.nanos=" + reviewNanos + "\n");
+				out.write("reviews.maxNanos=" + maxReviewNanos + "\n");
+				out.write("reviews.maxReviewId=" + maxReviewId + "\n");
+				
+				StringBuilder stage_list = new StringBuilder();
+				for (String stage_name : stageNames) {
+					stage_list.append(stage_list.length() > 0 ? "," : "").append(stage_name);
+				}
+				out.write("stages=" + stage_list + "\n");
+				
+				for (int stage_id = 0 ; stage_id < stageNames.size() ; stage_id++) {
+					String prefix = "stage." + stageNames.get(stage_id) + ".";
+					long[] totals = stageTotals.get(stage_id);
+					out.write(prefix + "nanos=" + totals[NANOS] + "\n");
+					out.write(prefix + "allocatedBytes=" + totals[BYTES] + "\n");
+					out.write(prefix + "tokensIn=" + totals[TOKENS_IN] + "\n");
+					out.write(prefix + "tokensOut=" + totals[TOKENS_OUT] + "\n");
+				}
+			} finally {
+				out.close();
+			}
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.WARNING, "Could not write analysis metrics to " + metricsFile);
+		}
+	}
+	
+	/**
+	 * @return whether {@link #allocatedBytes()} reports actual allocations on this JVM
+	 */
+	public static boolean isAllocationCounterSupported()
+	{
+		return allocationCounter;
+	}
+	
+	/**
+	 * @return the number of bytes allocated so far by the calling thread, or 0 if the JVM does not
+	 *         support thread allocation counters
+	 */
+	public static long allocatedBytes()
+	{
+		return allocationCounter ? AllocationCounter.allocatedBytes() : 0;
+	}
+	
+	/*
+	 * Enables the thread allocation counters, if the thread bean of the JVM provides them. The
+	 * com.sun.management package is looked up by name, so that this class can still be loaded on
+	 * JVMs that lack it.
+	 */
+	private static boolean enableAllocationCounter()
+	{
+		try {
+			Class<?> bean_class = Class.forName("com.sun.management.ThreadMXBean");
+			if (!bean_class.isInstance(ManagementFactory.getThreadMXBean()))
+				return false;
+		} catch ( ClassNotFoundException e ) {
+			return false;
+		}
+		return AllocationCounter.enable();
+	}
+	
+	/*
+	 * Reads the allocation counters of the thread bean. This class refers to com.sun.management
+	 * directly, so it must only be loaded once that package is known to be available.
+	 */
+	private static class AllocationCounter {
+		
+		private static final com.sun.management.ThreadMXBean	bean	= (com.sun.management.ThreadMXBean)ManagementFactory
+			.getThreadMXBean();
+		
+		static boolean enable()
+		{
+			if (!bean.isThreadAllocatedMemorySupported())
+				return false;
+			bean.setThreadAllocatedMemoryEnabled(true);
+			return true;
+		}
+		
+		static long allocatedBytes()
+		{
+			return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+}
@@ -1,17 +1,17 @@
 // The MIT License
-//  
-// Copyright (c) 2011 Stelios Karabasakis
-// 
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
 // Permission is hereby granted, free of charge, to any person obtaining a copy
 // of this software and associated documentation files (the "Software"), to deal
 // in the Software without restriction, including without limitation the rights
 // to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
 // copies of the Software, and to permit persons to whom the Software is
 // furnished to do so, subject to the following conditions:
-// 
+//
 // The above copyright notice and this permission notice shall be included in
 // all copies or substantial portions of the Software.
-// 
+//
 // THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
 // IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
 // FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
@@ -20,49 +20,35 @@
 // OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
 // THE SOFTWARE.
 //
-package dependencies.visualisation;
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import indexing.Token;
-import java.util.ArrayList;
-import dependencies.DependencyTree;
-import dependencies.DependencyTreeParse;
 
-public class DependencyTreeParseNoViz extends DependencyTreeParse {
+/**
+ * Implemented by state objects that provide their own compact binary representation, as an
+ * alternative to java serialization. Objects of implementing classes are saved by {@link State}
+ * with the {@link State#BINARY_CODEC} codec. Implementing classes must have a public constructor
+ * without arguments.
+ * 
+ * @author Stelios Karabasakis
+ */
+public interface BinaryState {
 	
 	/**
-	 * Constructor for class DependencyTreeParseNoViz
-	 * 
-	 * @param sentence
-	 * @throws IllegalArgumentException
+	 * @return the version of the binary format written by {@link #writeState(DataOutput)}
 	 */
-	public DependencyTreeParseNoViz(ArrayList<Token> sentence) throws IllegalArgumentException
-	{
-		super(sentence);
-	}
+	public int stateVersion();
 	
-	public DependencyTreeParseNoViz(DependencyTree tree)
-	{
-		super(tree);
-	}
+	public void writeState(DataOutput out) throws IOException;
 	
-	/*
-	 * (non-Javadoc)
-	 * @see dependencies.DependencyTreeParse#visualize()
-	 */
-	@Override
-	protected void visualize()
-	{
-		return;
-	}
-	
-	/*
-	 * (non-Javadoc)
-	 * @see dependencies.DependencyTreeParse#visualize_init()
+	/**
+	 * Replaces the contents of this object with the state read from the input
+	 * 
+	 * @param version
+	 *            the version of the binary format of the input
 	 */
-	@Override
-	protected void visualize_init()
-	{
-		return;
-	}
-	
-}
\ No newline at end of file
+	public void readState(DataInput in, int version) throws IOException;
+}
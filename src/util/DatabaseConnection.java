@@ -24,6 +24,7 @@ package util;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -42,6 +43,8 @@ import java.util.logging.Level;
  * {@link #openQuery}, {@link #getResults} and {@link #closeQuery} can be used in that order.</li>
  * <li>To create and execute a query batch, use member functions {@link #addQueryToQueue} and
  * {@link #executeQueue}</li>
+ * <li>To stream the results of a large, repeatedly executed SELECT type query through a server-side
+ * cursor, use member function {@link #prepareStreamingQuery}</li>
  * </ul>
  * 
  * @author Stelios Karabasakis
@@ -101,7 +104,8 @@ public class DatabaseConnection {
 	 */
 	private static String connectionUri()
 	{
-		return "jdbc:" + protocol + "://" + host + ":" + port + "/" + schema + "?rewriteBatchedStatements=true";
+		return "jdbc:" + protocol + "://" + host + ":" + port + "/" + schema + "?rewriteBatchedStatements=true"
+			+ "&useCursorFetch=true";
 	}
 	
 	/**
@@ -154,6 +158,26 @@ public class DatabaseConnection {
 		return rs;
 	}
 	
+	/**
+	 * Prepares a read-only, forward-only query whose results are fetched from the server through a
+	 * cursor, {@code fetchSize} rows at a time, instead of being loaded into memory in their
+	 * entirety. The returned statement can be executed repeatedly with different parameters, and
+	 * should be closed by the caller when no longer needed.
+	 * 
+	 * @param sql
+	 *            The parameterized query to be prepared
+	 * @param fetchSize
+	 *            The number of rows to fetch from the server per round trip
+	 * @return The prepared statement
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepareStreamingQuery(String sql, int fetchSize) throws SQLException
+	{
+		PreparedStatement stmt = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(fetchSize);
+		return stmt;
+	}
+	
 	/**
 	 * Adds a query to the end of the batch execution query
 	 * 
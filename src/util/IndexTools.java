@@ -25,20 +25,24 @@ package util;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.logging.Level;
 import org.apache.lucene.analysis.KeywordAnalyzer;
-import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriter.MaxFieldLength;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.lucene.store.SimpleFSDirectory;
 import application.ReviewDocumentIndexer.Config;
 import classes.Counter;
 import classes.ReviewId;
+import config.Globals;
 import config.Paths;
 
 
@@ -49,8 +53,9 @@ import config.Paths;
  */
 public class IndexTools {
 	
-	private IndexReader		ir	= null;
-	private IndexSearcher	is	= null;
+	private IndexReader		ir			= null;
+	private IndexSearcher	is			= null;
+	private long[]			reviewDocs	= null;
 
 	/**
 	 * Constructor for class IndexTools
@@ -126,52 +131,84 @@ public class IndexTools {
 		}
 	}
 	
+	/*
+	 * Returns the (review id, doc id) pairs of all live documents in the index, packed into longs
+	 * and sorted, so that the documents of a review can be found with a binary search. The pairs
+	 * are built once per reader, from the field cache if the review id field is indexed.
+	 */
+	private long[] getReviewDocs() throws IOException
+	{
+		if (reviewDocs == null) {
+			String field = Globals.IndexFieldNames.reviewid;
+			int maxdocs = ir.maxDoc();
+			long[] review_docs = new long[ir.numDocs()];
+			int n_docs = 0;
+			
+			// Review ids missing from the field cache, e.g. in documents indexed before the field was
+			// indexed, are loaded from the stored documents
+			int[] reviewids = ir.getFieldNames(IndexReader.FieldOption.INDEXED).contains(field) ? FieldCache.DEFAULT
+				.getInts(ir, field) : null;
+			FieldSelector selector = new MapFieldSelector(new String[]{ field });
+			for (int doc = 0 ; doc < maxdocs ; doc++) {
+				if (!ir.isDeleted(doc)) {
+					int reviewid = reviewids != null ? reviewids[doc] : 0;
+					if (reviewid == 0) {
+						reviewid = Integer.parseInt(ir.document(doc, selector).get(field));
+					}
+					review_docs[n_docs++] = (long)reviewid << 32 | doc;
+				}
+			}
+			
+			Arrays.sort(review_docs, 0, n_docs);
+			reviewDocs = n_docs == review_docs.length ? review_docs : Arrays.copyOf(review_docs, n_docs);
+		}
+		return reviewDocs;
+	}
+	
 	public HashSet<Integer> removeDuplicatesByReviewId()
 	{
-
-		String field = "reviewid";
-		HashSet<Integer> encounteredReviewIds = new HashSet<Integer>();
 		HashSet<Integer> duplicateReviewIds = new HashSet<Integer>();
 		Counter duplicates = new Counter();
 		
-		// Go through all documents in the index and retrieve reviewId value
-		int ndocs = ir.maxDoc();
-		for (int i = 0 ; i < ndocs ; i++) {
-			try {
-				Document doc = ir.document(i);
-				Integer reviewid = Integer.parseInt(doc.get(field));
-				if (encounteredReviewIds.contains(reviewid)) {
-					// ir.deleteDocument(i);
+		// Documents of the same review are adjacent in the sorted review id column
+		try {
+			long[] review_docs = getReviewDocs();
+			for (int i = 1 ; i < review_docs.length ; i++) {
+				int reviewid = (int)(review_docs[i] >>> 32);
+				if (reviewid == (int)(review_docs[i - 1] >>> 32)) {
+					// ir.deleteDocument((int)review_docs[i]);
 					duplicateReviewIds.add(reviewid);
 					duplicates.increment();
-					System.out.println("Document was deleted as duplicate: " + i);
+					System.out.println("Document was deleted as duplicate: " + (int)review_docs[i]);
 				}
-				else {
-					encounteredReviewIds.add(reviewid);
-				}
-			} catch ( CorruptIndexException e ) {
-				AppLogger.error.log(Level.SEVERE, "Lucene detected an inconsistency upon retrieving document " + i);
-				throw new RuntimeException("Exiting application", e);
-			} catch ( IOException e ) {
-				AppLogger.error.log(Level.SEVERE, "I/O error upon retrieving document " + i);
 			}
+		} catch ( CorruptIndexException e ) {
+			AppLogger.error.log(Level.SEVERE, "Lucene detected an inconsistency upon retrieving review ids");
+			throw new RuntimeException("Exiting application", e);
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "I/O error upon retrieving review ids");
+			throw new RuntimeException("Exiting application", e);
 		}
 		
 		System.out.println("Deleted a total of " + duplicates.get() + " duplicate documents.");
 		return duplicateReviewIds;
 	}
 
+	/**
+	 * @return the ids of the documents indexed for a review, in ascending order, or null if the
+	 *         review is not in the index
+	 */
 	public Integer[] getReview(ReviewId id)
 	{
 		ArrayList<Integer> docs = new ArrayList<Integer>();
-		String field = "reviewid";
 		try {
-			int maxdocs = ir.maxDoc();
-			for (int doc = 0 ; doc < maxdocs ; doc++) {
-				String reviewid = ir.document(doc).get(field);
-				if (Integer.parseInt(reviewid) == id.get()) {
-					docs.add(doc);
-				}
+			long[] review_docs = getReviewDocs();
+			int pos = Arrays.binarySearch(review_docs, (long)id.get() << 32);
+			if (pos < 0) {
+				pos = -pos - 1;
+			}
+			for ( ; pos < review_docs.length && (int)(review_docs[pos] >>> 32) == id.get() ; pos++) {
+				docs.add((int)review_docs[pos]);
 			}
 		} catch ( CorruptIndexException e ) {
 			AppLogger.error.log(Level.SEVERE, "Lucene detected an inconsistency upon opening the index located at "
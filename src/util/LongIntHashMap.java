@@ -0,0 +1,280 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package util;
+
+import java.io.Serializable;
+
+
+/**
+ * A hash map from primitive long keys to primitive int values, for counters that are updated too
+ * often to afford boxing a key and a value on every update. Entries are stored in parallel arrays
+ * with open addressing and linear probing. Keys that have not been added map to 0.
+ * <p>
+ * Like {@link java.util.HashMap}, this class is not thread-safe. Concurrent producers should
+ * update separate maps and merge them with {@link #addAll(LongIntHashMap)}.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class LongIntHashMap implements Serializable {
+	
+	private static final long	serialVersionUID	= -1480253726371806529L;
+	private static final float	LOAD_FACTOR			= 0.7f;
+	
+	private long[]				keys;
+	private int[]				values;
+	private boolean[]			used;
+	private int					size;
+	private int					threshold;
+	
+	/**
+	 * Iterates over the entries of the map, in no particular order. The map must not be modified
+	 * while a cursor is in use.
+	 */
+	public class Cursor {
+		
+		private int	slot	= -1;
+		
+		/**
+		 * Advances the cursor to the next entry
+		 * 
+		 * @return false if there are no more entries
+		 */
+		public boolean next()
+		{
+			while ( ++slot < used.length ) {
+				if (used[slot])
+					return true;
+			}
+			return false;
+		}
+		
+		public long key()
+		{
+			return keys[slot];
+		}
+		
+		public int value()
+		{
+			return values[slot];
+		}
+	}
+	
+	
+	/**
+	 * Constructor for class LongIntHashMap
+	 */
+	public LongIntHashMap()
+	{
+		this(16);
+	}
+	
+	/**
+	 * Constructor for class LongIntHashMap
+	 * 
+	 * @param expectedSize
+	 *            The number of entries the map should hold without being resized
+	 */
+	public LongIntHashMap(int expectedSize)
+	{
+		allocate(capacityFor(expectedSize));
+	}
+	
+	private static int capacityFor(int expected_size)
+	{
+		int capacity = 16;
+		while ( capacity * LOAD_FACTOR <= expected_size ) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+	
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		threshold = (int)(capacity * LOAD_FACTOR);
+	}
+	
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+	
+	/*
+	 * Returns the slot that holds the key, or the empty slot where it should be inserted
+	 */
+	private int slotOf(long key)
+	{
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while ( used[slot] && keys[slot] != key ) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	public int get(long key)
+	{
+		int slot = slotOf(key);
+		return used[slot] ? values[slot] : 0;
+	}
+	
+	public boolean containsKey(long key)
+	{
+		return used[slotOf(key)];
+	}
+	
+	public void put(long key, int value)
+	{
+		int slot = slotOf(key);
+		if (!used[slot]) {
+			if (size >= threshold) {
+				rehash(keys.length << 1);
+				slot = slotOf(key);
+			}
+			used[slot] = true;
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+	}
+	
+	/**
+	 * Adds a delta to the value of a key, adding the key to the map if necessary
+	 * 
+	 * @return the new value of the key
+	 */
+	public int add(long key, int delta)
+	{
+		int slot = slotOf(key);
+		if (!used[slot]) {
+			if (size >= threshold) {
+				rehash(keys.length << 1);
+				slot = slotOf(key);
+			}
+			used[slot] = true;
+			keys[slot] = key;
+			values[slot] = 0;
+			size++;
+		}
+		return values[slot] += delta;
+	}
+	
+	/**
+	 * Adds the values of all keys of another map to the values of the same keys in this map
+	 */
+	public void addAll(LongIntHashMap other)
+	{
+		for (int slot = 0 ; slot < other.used.length ; slot++) {
+			if (other.used[slot]) {
+				add(other.keys[slot], other.values[slot]);
+			}
+		}
+	}
+	
+	/**
+	 * Copies all entries of another map into this map, replacing the values of existing keys
+	 */
+	public void putAll(LongIntHashMap other)
+	{
+		for (int slot = 0 ; slot < other.used.length ; slot++) {
+			if (other.used[slot]) {
+				put(other.keys[slot], other.values[slot]);
+			}
+		}
+	}
+	
+	/**
+	 * Removes a key from the map
+	 * 
+	 * @return true if the key was found
+	 */
+	public boolean remove(long key)
+	{
+		int slot = slotOf(key);
+		if (!used[slot])
+			return false;
+		
+		// Shift back the entries that follow in the same probe sequence, so that no lookup stops at
+		// the freed slot before reaching its key
+		int mask = keys.length - 1;
+		int free = slot;
+		int next = (free + 1) & mask;
+		while ( used[next] ) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[free] = false;
+		size--;
+		return true;
+	}
+	
+	private void rehash(int capacity)
+	{
+		long[] old_keys = keys;
+		int[] old_values = values;
+		boolean[] old_used = used;
+		allocate(capacity);
+		for (int slot = 0 ; slot < old_used.length ; slot++) {
+			if (old_used[slot]) {
+				int new_slot = slotOf(old_keys[slot]);
+				used[new_slot] = true;
+				keys[new_slot] = old_keys[slot];
+				values[new_slot] = old_values[slot];
+			}
+		}
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	public void clear()
+	{
+		if (size > 0) {
+			allocate(16);
+			size = 0;
+		}
+	}
+	
+	/**
+	 * @return a new cursor, positioned before the first entry
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+}
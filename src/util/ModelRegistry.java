@@ -0,0 +1,259 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package util;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import config.Paths;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.parser.lexparser.ParserData;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+import edu.stanford.nlp.trees.GrammaticalStructureFactory;
+import edu.stanford.nlp.trees.PennTreebankLanguagePack;
+
+
+/**
+ * JVM-wide registry of the Stanford NLP models used by the application, i.e. the POS tagger model
+ * and the PCFG parser grammar. Each model is read from disk at most once per JVM, when it is first
+ * requested, and is then handed out as per-thread instances, since neither {@link MaxentTagger} nor
+ * {@link LexicalizedParser} can be safely used by several threads at once.
+ * <p>
+ * Per-thread parsers are built on top of a single, read-only copy of the parser grammar, i.e. its
+ * {@link ParserData}. The tagger API does not allow sharing its weights between instances, so a
+ * tagger is loaded once per thread that asks for one, and is then reused by every filter created on
+ * that thread.
+ * <p>
+ * Load time and heap growth are recorded for every model load, and can be retrieved with
+ * {@link #getLoadStatistics}. A model that cannot be loaded is not cached: the request fails with
+ * an exception, and the next request tries to load the model again.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class ModelRegistry {
+	
+	public static final String		taggerModel		= Paths.taggerPath + "/" + MaxentTagger.DEFAULT_DISTRIBUTION_PATH;
+	public static final String		parserModel		= Paths.depParserPath + "/englishPCFG.ser.gz";
+	public static final String[]	parserOptions	= { "-maxLength", "60", "-retainTmpSubcategories" };
+	
+	private static ParserData		parserData		= null;
+	
+	private static final LinkedHashMap<String, LoadStatistics>	loadStatistics	= new LinkedHashMap<String, LoadStatistics>();
+	
+	private static final ThreadLocal<MaxentTagger>	taggers	= new ThreadLocal<MaxentTagger>() {
+		
+		@Override
+		protected MaxentTagger initialValue()
+		{
+			return loadTagger();
+		}
+	};
+	
+	private static final ThreadLocal<LexicalizedParser>	parsers	= new ThreadLocal<LexicalizedParser>() {
+		
+		@Override
+		protected LexicalizedParser initialValue()
+		{
+			return newParser();
+		}
+	};
+	
+	private static final ThreadLocal<GrammaticalStructureFactory>	gsFactories	= new ThreadLocal<GrammaticalStructureFactory>() {
+		
+		@Override
+		protected GrammaticalStructureFactory initialValue()
+		{
+			return new PennTreebankLanguagePack().grammaticalStructureFactory();
+		}
+	};
+	
+	/**
+	 * Time and memory spent on loading a model
+	 */
+	public static class LoadStatistics {
+		
+		private int		loads		= 0;
+		private long	loadMillis	= 0;
+		private long	heapBytes	= 0;
+		
+		private synchronized void record(long millis, long bytes)
+		{
+			loads++;
+			loadMillis += millis;
+			heapBytes += bytes;
+		}
+		
+		/**
+		 * @return the number of times the model was loaded
+		 */
+		public synchronized int getLoads()
+		{
+			return loads;
+		}
+		
+		/**
+		 * @return the total time spent loading the model, in milliseconds
+		 */
+		public synchronized long getLoadMillis()
+		{
+			return loadMillis;
+		}
+		
+		/**
+		 * @return the total heap growth observed while loading the model, in bytes. This is only an
+		 *         estimate, since other threads may allocate memory at the same time.
+		 */
+		public synchronized long getHeapBytes()
+		{
+			return heapBytes;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public synchronized String toString()
+		{
+			return loads + " load(s), " + loadMillis + " ms, ~" + heapBytes / (1024 * 1024) + " MB";
+		}
+	}
+
+	/**
+	 * @return the POS tagger of the calling thread
+	 */
+	public static MaxentTagger getTagger()
+	{
+		return taggers.get();
+	}
+	
+	/**
+	 * @return the lexicalized parser of the calling thread
+	 */
+	public static LexicalizedParser getParser()
+	{
+		return parsers.get();
+	}
+	
+	/**
+	 * @return the grammatical structure factory of the calling thread
+	 */
+	public static GrammaticalStructureFactory getGrammaticalStructureFactory()
+	{
+		return gsFactories.get();
+	}
+	
+	/**
+	 * @return a copy of the load statistics of every model loaded so far, keyed by model path
+	 */
+	public static LinkedHashMap<String, LoadStatistics> getLoadStatistics()
+	{
+		synchronized (loadStatistics) {
+			return new LinkedHashMap<String, LoadStatistics>(loadStatistics);
+		}
+	}
+	
+	/**
+	 * Logs the load statistics of every model loaded so far
+	 */
+	public static void printLoadStatistics()
+	{
+		for (Entry<String, LoadStatistics> entry : getLoadStatistics().entrySet()) {
+			AppLogger.error.log(Level.INFO, "Model " + entry.getKey() + ": " + entry.getValue());
+		}
+	}
+
+	private static MaxentTagger loadTagger()
+	{
+		long start_time = System.currentTimeMillis();
+		long start_heap = usedHeap();
+		
+		MaxentTagger tagger = null;
+		try {
+			tagger = new MaxentTagger(taggerModel);
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "Cannot read model " + MaxentTagger.DEFAULT_DISTRIBUTION_PATH
+				+ " from the following location:\n" + Paths.taggerPath);
+			throw new RuntimeException("Exiting application", e);
+		} catch ( ClassNotFoundException e ) {
+			AppLogger.error.log(Level.SEVERE, "An error occured while loading a POS tagger based on model "
+				+ MaxentTagger.DEFAULT_DISTRIBUTION_PATH);
+			throw new RuntimeException("Exiting application", e);
+		}
+		
+		recordLoad(taggerModel, start_time, start_heap);
+		return tagger;
+	}
+	
+	private static LexicalizedParser newParser()
+	{
+		LexicalizedParser lp = new LexicalizedParser(getParserData());
+		lp.setOptionFlags(parserOptions);
+		return lp;
+	}
+	
+	private static synchronized ParserData getParserData()
+	{
+		if (parserData == null) {
+			long start_time = System.currentTimeMillis();
+			long start_heap = usedHeap();
+			
+			ParserData loaded = new LexicalizedParser(parserModel).parserData();
+			if (loaded == null) {
+				AppLogger.error.log(Level.SEVERE, "Cannot load parser model " + parserModel);
+				throw new RuntimeException("Exiting application");
+			}
+			parserData = loaded;
+
+			recordLoad(parserModel, start_time, start_heap);
+		}
+		
+		return parserData;
+	}
+	
+	private static void recordLoad(String model, long start_time, long start_heap)
+	{
+		long millis = System.currentTimeMillis() - start_time;
+		long bytes = Math.max(0, usedHeap() - start_heap);
+		
+		LoadStatistics stats;
+		synchronized (loadStatistics) {
+			stats = loadStatistics.get(model);
+			if (stats == null) {
+				stats = new LoadStatistics();
+				loadStatistics.put(model, stats);
+			}
+		}
+		stats.record(millis, bytes);
+		
+		AppLogger.error.log(Level.INFO, "Loaded model " + model + " on thread " + Thread.currentThread().getName()
+			+ " in " + millis + " ms (~" + bytes / (1024 * 1024) + " MB)");
+	}
+	
+	private static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
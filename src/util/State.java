@@ -22,6 +22,11 @@
 //
 package util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -29,22 +34,132 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import config.Paths;
 
 
 /**
- * TODO Description missing
+ * Saves and restores an object to and from a state file, for persistence between runs of the
+ * application.
+ * <p>
+ * State files start with a header that records the name and version of the {@link StateCodec}
+ * that encoded the object. Objects that implement {@link BinaryState} are saved in their own
+ * compact binary format, while all other objects are saved with java serialization. State files
+ * written by earlier versions of this class, which contain a bare serialized object, can still be
+ * restored.
+ * <p>
+ * Saving is atomic: the object is written to a temporary file, which replaces the state file only
+ * when completely written. The previous state file is kept in the backup state directory.
+ * 
  * @author Stelios Karabasakis
  */
 public class State<T> {
 	
-	private T					obj;
-	private String				obj_name;
-	private File				state_file;
-	private File				backup_state_file;
-	private ObjectOutputStream	state_out	= null;
-	private ObjectInputStream	state_in	= null;
+	private static final int								MAGIC				= 0x53544154;	// "STAT"
+	private static final short								FORMAT_VERSION		= 1;
+	private static final short								SERIALIZED_MAGIC	= (short)0xACED;
+	private static final int								BUFFER_SIZE			= 1 << 16;
+	
+	/**
+	 * Codec that saves objects with java serialization
+	 */
+	public static final StateCodec<Object>					JAVA_CODEC			= new JavaCodec();
+	
+	/**
+	 * Codec that saves objects that implement {@link BinaryState} in their own binary format
+	 */
+	public static final StateCodec<BinaryState>				BINARY_CODEC		= new BinaryCodec();
+	
+	private static final HashMap<String, StateCodec<?>>		codecs				= new HashMap<String, StateCodec<?>>();
+	private static ExecutorService							backgroundWriter	= null;
+	private static final ArrayList<Future<?>>				backgroundSaves		= new ArrayList<Future<?>>();
+	
+	static {
+		registerCodec(JAVA_CODEC);
+		registerCodec(BINARY_CODEC);
+	}
+	
+	private static class JavaCodec implements StateCodec<Object> {
+		
+		@Override
+		public String name()
+		{
+			return "java";
+		}
+		
+		@Override
+		public int version()
+		{
+			return 1;
+		}
+		
+		@Override
+		public void encode(Object obj, DataOutputStream out) throws IOException
+		{
+			ObjectOutputStream oos = new ObjectOutputStream(out);
+			oos.writeObject(obj);
+			oos.flush();
+		}
+		
+		@Override
+		public Object decode(DataInputStream in, int version) throws IOException
+		{
+			return readSerialized(in);
+		}
+	}
+	
+	private static class BinaryCodec implements StateCodec<BinaryState> {
+		
+		@Override
+		public String name()
+		{
+			return "binary";
+		}
+		
+		@Override
+		public int version()
+		{
+			return 1;
+		}
+		
+		@Override
+		public void encode(BinaryState obj, DataOutputStream out) throws IOException
+		{
+			out.writeUTF(obj.getClass().getName());
+			out.writeInt(obj.stateVersion());
+			obj.writeState(out);
+		}
+		
+		@Override
+		public BinaryState decode(DataInputStream in, int version) throws IOException
+		{
+			String class_name = in.readUTF();
+			int state_version = in.readInt();
+			BinaryState obj;
+			try {
+				obj = (BinaryState)Class.forName(class_name).newInstance();
+			} catch ( Exception e ) {
+				throw new IOException("Cannot instantiate state class " + class_name);
+			}
+			obj.readState(in, state_version);
+			return obj;
+		}
+	}
+	
+	private T												obj;
+	private String											obj_name;
+	private File											state_file;
+	private File											backup_state_file;
+	private StateCodec<? super T>							codec				= null;
 	
 	public State(String obj_name, T obj)
 	{
@@ -54,6 +169,39 @@ public class State<T> {
 		state_file = new File(Paths.stateFiles + "/" + obj_name + ".ser");
 	}
 	
+	/**
+	 * Makes a codec available for decoding state files that were encoded with it
+	 */
+	public static synchronized void registerCodec(StateCodec<?> codec)
+	{
+		codecs.put(codec.name(), codec);
+	}
+	
+	private static synchronized StateCodec<?> getCodec(String name)
+	{
+		return codecs.get(name);
+	}
+	
+	/**
+	 * Sets the codec used for saving the state object, overriding the default one
+	 */
+	public void setCodec(StateCodec<? super T> codec)
+	{
+		registerCodec(codec);
+		this.codec = codec;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private StateCodec<? super T> getCodec()
+	{
+		if (codec != null)
+			return codec;
+		else if (obj instanceof BinaryState)
+			return (StateCodec<? super T>)(StateCodec<?>)BINARY_CODEC;
+		else
+			return JAVA_CODEC;
+	}
+	
 	public boolean exists()
 	{
 		return state_file.exists();
@@ -74,67 +222,209 @@ public class State<T> {
 	{
 		this.obj = obj;
 	}
-
-	private File backupAndRecreate()
+	
+	/*
+	 * Writes the header and the encoded object to an output stream
+	 */
+	private void encode(OutputStream os) throws IOException
 	{
-		if (state_file.exists()) {
-			backup_state_file.delete();
-			if (!state_file.renameTo(backup_state_file)) {
-				AppLogger.error.log(Level.WARNING, "Could not save backup file for " + obj_name + ".ser");
+		StateCodec<? super T> obj_codec = getCodec();
+		DataOutputStream out = new DataOutputStream(os);
+		out.writeInt(MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		out.writeUTF(obj_codec.name());
+		out.writeInt(obj_codec.version());
+		obj_codec.encode(obj, out);
+		out.flush();
+	}
+	
+	/*
+	 * Writes encoded state to a temporary file, copies the current state file to the backup
+	 * location, then renames the temporary file over the current state file. The current state file
+	 * is never removed, so a valid state file exists at every point of the save.
+	 */
+	private void writeStateFile(byte[] encoded) throws IOException
+	{
+		File tmp_file = new File(state_file.getPath() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(tmp_file, false);
+		try {
+			if (encoded != null) {
+				fos.write(encoded);
+			}
+			else {
+				BufferedOutputStream bos = new BufferedOutputStream(fos, BUFFER_SIZE);
+				encode(bos);
+				bos.flush();
 			}
+			fos.getFD().sync();
+		} finally {
+			fos.close();
 		}
-		else {
+		
+		if (state_file.exists()) {
 			try {
-				state_file.createNewFile();
+				copyFile(state_file, backup_state_file);
 			} catch ( IOException e ) {
-				state_file = null;
-				AppLogger.error.log(Level.SEVERE, "Creation of state file " + obj_name + ".ser failed!");
+				AppLogger.error.log(Level.WARNING, "Could not save backup file for " + obj_name + ".ser");
 			}
 		}
-		
-		return state_file;
+		if (!tmp_file.renameTo(state_file))
+			throw new IOException("Cannot move " + tmp_file.getName() + " over " + state_file.getName()
+				+ ". The previous state file is left unchanged.");
 	}
 	
 	public void saveState()
 	{
 		try {
-			if (state_out == null) {
-				state_out = new ObjectOutputStream(new FileOutputStream(backupAndRecreate(), false));
-			}
-			else {
-				state_out.reset();
-				state_out.close();
-				state_out = new ObjectOutputStream(new FileOutputStream(backupAndRecreate(), false));
-			}
-			
-			state_out.writeObject(obj);
+			writeStateFile(null);
 		} catch ( IOException e ) {
 			AppLogger.error.log(Level.SEVERE, "Cannot write to state file for " + this.obj_name);
 		}
 	}
 	
+	/**
+	 * Encodes the state object in memory and then writes it to the state file in a background
+	 * thread, so that the caller can go on modifying the object while the file is being written.
+	 * State files are written in the order their saves were requested. Use
+	 * {@link #awaitBackgroundSaves()} to wait until all pending saves complete.
+	 */
+	public void saveStateInBackground()
+	{
+		final byte[] encoded;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+			encode(bytes);
+			encoded = bytes.toByteArray();
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "Cannot encode state object " + this.obj_name);
+			return;
+		}
+		
+		synchronized (backgroundSaves) {
+			if (backgroundWriter == null) {
+				backgroundWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					
+					@Override
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "state-writer");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			backgroundSaves.add(backgroundWriter.submit(new Runnable() {
+				
+				@Override
+				public void run()
+				{
+					try {
+						writeStateFile(encoded);
+					} catch ( IOException e ) {
+						AppLogger.error.log(Level.SEVERE, "Cannot write to state file for " + obj_name);
+					}
+				}
+			}));
+		}
+	}
+	
+	/**
+	 * Blocks until all state files scheduled with {@link #saveStateInBackground()} are written
+	 */
+	public static void awaitBackgroundSaves()
+	{
+		ArrayList<Future<?>> pending;
+		synchronized (backgroundSaves) {
+			pending = new ArrayList<Future<?>>(backgroundSaves);
+			backgroundSaves.clear();
+		}
+		
+		for (Future<?> save : pending) {
+			try {
+				save.get();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch ( ExecutionException e ) {
+				AppLogger.error.log(Level.SEVERE, "A background state save failed: " + e.getCause());
+			}
+		}
+	}
+	
 	@SuppressWarnings("unchecked")
 	public T restoreState() throws IOException
 	{
+		DataInputStream in = null;
 		try {
-			if (state_in != null) {
-				state_in.close();
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(state_file), BUFFER_SIZE));
+			in.mark(2);
+			if (in.readShort() == SERIALIZED_MAGIC) {
+				// Bare serialized object, as written by earlier versions
+				in.reset();
+				return (T)readSerialized(in);
 			}
-			state_in = new ObjectInputStream(new FileInputStream(state_file));
-			T obj = (T)state_in.readUnshared();
-			state_in.close();
 			
-			return obj;
+			in.reset();
+			if (in.readInt() != MAGIC || in.readShort() > FORMAT_VERSION)
+				throw new IOException("Unrecognized state file format");
+			String codec_name = in.readUTF();
+			int codec_version = in.readInt();
+			StateCodec<?> obj_codec = getCodec(codec_name);
+			if (obj_codec == null)
+				throw new IOException("No codec named " + codec_name + " is registered");
+			
+			return (T)obj_codec.decode(in, codec_version);
 		} catch ( IOException e ) {
 			AppLogger.error.log(Level.SEVERE, "Cannot restore state file for " + this.obj_name);
 			throw e;
+		} catch ( ClassCastException e ) {
+			AppLogger.error.log(Level.SEVERE, "State file " + this.obj_name + " contains an object of another class");
+			throw new IOException(e.getMessage());
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+	
+	private static Object readSerialized(DataInputStream in) throws IOException
+	{
+		try {
+			return new ObjectInputStream(in).readUnshared();
 		} catch ( ClassNotFoundException e ) {
-			AppLogger.error.log(Level.SEVERE, "Class of serialized object " + this.obj_name + " cannot be found.");
+			AppLogger.error.log(Level.SEVERE, "Class of serialized object cannot be found: " + e.getMessage());
+			return null;
 		}
-		
-		return null;
 	}
 	
+	/*
+	 * Copies a file with FileChannel#transferTo, overwriting the destination file
+	 */
+	private static void copyFile(File src, File dest) throws IOException
+	{
+		FileChannel channel_src = new FileInputStream(src).getChannel();
+		try {
+			FileChannel channel_dest = new FileOutputStream(dest, false).getChannel();
+			try {
+				long size = channel_src.size();
+				long position = 0;
+				while ( position < size ) {
+					position += channel_src.transferTo(position, size - position, channel_dest);
+				}
+			} finally {
+				channel_dest.close();
+			}
+		} finally {
+			channel_src.close();
+		}
+	}
+	
+	/**
+	 * Copies a directory tree. Files whose copy in the destination tree has the same size and
+	 * modification time as the original are assumed to be unchanged and are not copied again, so
+	 * that repeated backups of an index only copy newly written segment files. Files are copied
+	 * with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+	 */
 	public static void backupDirectoryTree(File src, File dest)
 	{
 		if (src.isDirectory()) {
@@ -148,24 +438,12 @@ public class State<T> {
 			}
 		}
 		else {
+			if (dest.exists() && dest.length() == src.length() && dest.lastModified() == src.lastModified())
+				return;
 			
-			if (dest.exists()) {
-				dest.delete();
-			}
 			try {
-				dest.createNewFile();
-				
-				FileInputStream stream_src = new FileInputStream(src);
-				FileOutputStream stream_dest = new FileOutputStream(dest, false);
-				
-				// Copy the bits from instream to outstream
-				byte[] buf = new byte[512 * 1024];
-				int len;
-				while ( (len = stream_src.read(buf)) > -1 ) {
-					stream_dest.write(buf, 0, len);
-				}
-				stream_src.close();
-				stream_dest.close();
+				copyFile(src, dest);
+				dest.setLastModified(src.lastModified());
 			} catch ( FileNotFoundException e ) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -0,0 +1,58 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+/**
+ * Converts a state object to and from a stream of bytes. Every codec is identified by a unique
+ * name and a format version, which are recorded in the header of each state file, so that a state
+ * file can be decoded by the same codec that encoded it, and so that codecs can evolve their format
+ * without breaking older state files.
+ * 
+ * @see State
+ * @author Stelios Karabasakis
+ */
+public interface StateCodec<T> {
+	
+	/**
+	 * @return the unique name of the codec
+	 */
+	public String name();
+	
+	/**
+	 * @return the format version that {@link #encode(Object, DataOutputStream)} writes
+	 */
+	public int version();
+	
+	public void encode(T obj, DataOutputStream out) throws IOException;
+	
+	/**
+	 * @param version
+	 *            the format version the object was encoded with
+	 */
+	public T decode(DataInputStream in, int version) throws IOException;
+}
@@ -0,0 +1,510 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package wordnet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import net.didion.jwnl.JWNLException;
+import net.didion.jwnl.data.Exc;
+import net.didion.jwnl.data.IndexWord;
+import net.didion.jwnl.data.POS;
+import net.didion.jwnl.dictionary.Dictionary;
+import util.AppLogger;
+import config.Paths;
+
+
+/**
+ * A read-only, precompiled copy of the wordnet dictionary data that is needed for lemmatization.
+ * The lexicon file is generated once from the JWNL dictionary (see {@link #compile(Dictionary, File)}
+ * ) and contains, for each of the four open class POS categories:
+ * <ul>
+ * <li>a table of all index words, sorted by lemma, along with the offset of their first sense</li>
+ * <li>a table of all morphological exceptions (e.g. "geese" -&gt; "goose"), sorted by inflected
+ * form</li>
+ * </ul>
+ * At runtime, the file is memory-mapped and searched in place with binary search, so that opening
+ * the lexicon is practically instant and lookups need no locking. Base forms of inflected words are
+ * found in the same way as the JWNL morphological processor does, i.e. by looking up the exception
+ * lists first and then by detaching the regular inflectional suffixes of each POS category.
+ * Tokenization of compound words into their parts is not performed.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class CompiledWordnetLexicon implements WordnetLookup {
+	
+	private static final int		MAGIC			= 0x574e4c58;	// "WNLX"
+	private static final int		VERSION			= 1;
+	private static final String		CHARSET			= "UTF-8";
+	private static final POS[]		POS_ARRAY		= new POS[]{ POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB };
+	
+	/*
+	 * Regular inflectional suffixes and their replacements, per POS category, in the order that
+	 * they are tried. These are the detachment rules of the wordnet morphy algorithm.
+	 */
+	private static final String[][]	NOUN_SUFFIXES	= new String[][]{ { "s", "" }, { "ses", "s" }, { "xes", "x" },
+			{ "zes", "z" }, { "ches", "ch" }, { "shes", "sh" }, { "men", "man" }, { "ies", "y" } };
+	private static final String[][]	VERB_SUFFIXES	= new String[][]{ { "s", "" }, { "ies", "y" }, { "es", "e" },
+			{ "es", "" }, { "ed", "e" }, { "ed", "" }, { "ing", "e" }, { "ing", "" } };
+	private static final String[][]	ADJ_SUFFIXES	= new String[][]{ { "er", "" }, { "est", "" }, { "er", "e" },
+			{ "est", "e" } };
+	private static final String[][]	ADV_SUFFIXES	= new String[0][];
+	
+	private File					file;
+	private MappedByteBuffer		buffer;
+	private int[]					wordTables;
+	private int[]					exceptionTables;
+	
+	/**
+	 * Constructor for class CompiledWordnetLexicon. Maps the given lexicon file in memory.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid lexicon file
+	 */
+	public CompiledWordnetLexicon(File file) throws IOException
+	{
+		this.file = file;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.BIG_ENDIAN);
+		} finally {
+			raf.close();
+		}
+		
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("File " + file.getPath() + " is not a compiled wordnet lexicon of version "
+				+ VERSION);
+		
+		// Read the locations of the tables from the file header
+		wordTables = new int[POS_ARRAY.length];
+		exceptionTables = new int[POS_ARRAY.length];
+		int header_pos = 8;
+		for (int i = 0 ; i < POS_ARRAY.length ; i++) {
+			wordTables[i] = buffer.getInt(header_pos);
+			exceptionTables[i] = buffer.getInt(header_pos + 4);
+			header_pos += 8;
+		}
+	}
+	
+	/**
+	 * @return the compiled lexicon located at {@link Paths#compiledWordnetFile}, or null if no such
+	 *         file exists or it cannot be read
+	 */
+	public static CompiledWordnetLexicon open()
+	{
+		File file = new File(Paths.compiledWordnetFile);
+		if (file.isFile()) {
+			try {
+				return new CompiledWordnetLexicon(file);
+			} catch ( IOException e ) {
+				AppLogger.error.log(Level.WARNING, "Cannot open compiled wordnet lexicon at " + file.getPath()
+					+ ". Falling back to JWNL lookups.");
+			}
+		}
+		else {
+			AppLogger.error.log(Level.WARNING, "No compiled wordnet lexicon found at " + file.getPath()
+				+ ". Falling back to JWNL lookups.");
+		}
+		return null;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see wordnet.WordnetLookup#lookupIndexWord(net.didion.jwnl.data.POS, java.lang.String)
+	 */
+	@Override
+	public Entry lookupIndexWord(POS pos, String word)
+	{
+		int pos_index = posIndex(pos);
+		if (pos_index < 0 || word == null)
+			return null;
+		
+		String query = prepareQueryString(word);
+		if (query.length() == 0)
+			return null;
+		
+		// The word itself is a lemma
+		Entry entry = findIndexWord(pos_index, query);
+		if (entry != null)
+			return entry;
+		
+		// The word is an exception to the regular inflection rules
+		String[] base_forms = findExceptions(pos_index, query);
+		for (String base_form : base_forms) {
+			entry = findIndexWord(pos_index, base_form);
+			if (entry != null)
+				return entry;
+		}
+		
+		// The word is regularly inflected
+		for (String[] suffix : suffixesOf(pos)) {
+			if (query.endsWith(suffix[0]) && query.length() > suffix[0].length()) {
+				String base_form = query.substring(0, query.length() - suffix[0].length()) + suffix[1];
+				entry = findIndexWord(pos_index, base_form);
+				if (entry != null)
+					return entry;
+			}
+		}
+		
+		return null;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see wordnet.WordnetLookup#lookupAllIndexWords(java.lang.String)
+	 */
+	@Override
+	public Entry[] lookupAllIndexWords(String word)
+	{
+		ArrayList<Entry> entries = new ArrayList<Entry>(POS_ARRAY.length);
+		for (POS pos : POS_ARRAY) {
+			Entry entry = lookupIndexWord(pos, word);
+			if (entry != null) {
+				entries.add(entry);
+			}
+		}
+		return entries.toArray(new Entry[entries.size()]);
+	}
+	
+	/*
+	 * Normalizes a query string in the same way as JWNL does
+	 */
+	private static String prepareQueryString(String word)
+	{
+		return word.trim().toLowerCase().replace('_', ' ');
+	}
+	
+	private static int posIndex(POS pos)
+	{
+		for (int i = 0 ; i < POS_ARRAY.length ; i++) {
+			if (POS_ARRAY[i] == pos)
+				return i;
+		}
+		return -1;
+	}
+	
+	private static String[][] suffixesOf(POS pos)
+	{
+		if (pos == POS.NOUN)
+			return NOUN_SUFFIXES;
+		else if (pos == POS.VERB)
+			return VERB_SUFFIXES;
+		else if (pos == POS.ADJECTIVE)
+			return ADJ_SUFFIXES;
+		else
+			return ADV_SUFFIXES;
+	}
+	
+	/*
+	 * Tables are laid out as follows:
+	 * int count | int[count] record positions (absolute, sorted by key) | records
+	 * 
+	 * Word records: short key length | key bytes | long offset
+	 * Exception records: short key length | key bytes | byte count | (short length | bytes)[count]
+	 */
+	
+	private Entry findIndexWord(int pos_index, String lemma)
+	{
+		int record = find(wordTables[pos_index], lemma);
+		if (record < 0)
+			return null;
+		
+		int key_length = buffer.getShort(record);
+		return new Entry(lemma, POS_ARRAY[pos_index], buffer.getLong(record + 2 + key_length));
+	}
+	
+	private String[] findExceptions(int pos_index, String word)
+	{
+		int record = find(exceptionTables[pos_index], word);
+		if (record < 0)
+			return new String[0];
+		
+		int position = record + 2 + buffer.getShort(record);
+		String[] base_forms = new String[buffer.get(position++) & 0xff];
+		for (int i = 0 ; i < base_forms.length ; i++) {
+			int length = buffer.getShort(position);
+			base_forms[i] = readString(position + 2, length);
+			position += 2 + length;
+		}
+		return base_forms;
+	}
+	
+	/*
+	 * Binary search of a table for the record with the given key
+	 * @return the position of the record, or -1 if not found
+	 */
+	private int find(int table, String key)
+	{
+		byte[] key_bytes = toBytes(key);
+		int low = 0;
+		int high = buffer.getInt(table) - 1;
+		while ( low <= high ) {
+			int mid = (low + high) >>> 1;
+			int record = buffer.getInt(table + 4 + 4 * mid);
+			int cmp = compareKey(record, key_bytes);
+			if (cmp < 0) {
+				low = mid + 1;
+			}
+			else if (cmp > 0) {
+				high = mid - 1;
+			}
+			else
+				return record;
+		}
+		return -1;
+	}
+	
+	/*
+	 * Compares the key of the record at the given position with the given key, as unsigned bytes.
+	 * Uses absolute reads only, so that it is safe to call from many threads at once.
+	 */
+	private int compareKey(int record, byte[] key)
+	{
+		int length = buffer.getShort(record);
+		int common = Math.min(length, key.length);
+		for (int i = 0 ; i < common ; i++) {
+			int cmp = (buffer.get(record + 2 + i) & 0xff) - (key[i] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - key.length;
+	}
+	
+	private String readString(int position, int length)
+	{
+		byte[] bytes = new byte[length];
+		for (int i = 0 ; i < length ; i++) {
+			bytes[i] = buffer.get(position + i);
+		}
+		try {
+			return new String(bytes, CHARSET);
+		} catch ( UnsupportedEncodingException e ) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static byte[] toBytes(String str)
+	{
+		try {
+			return str.getBytes(CHARSET);
+		} catch ( UnsupportedEncodingException e ) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * @return the lexicon file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		int words = 0;
+		int exceptions = 0;
+		for (int i = 0 ; i < POS_ARRAY.length ; i++) {
+			words += buffer.getInt(wordTables[i]);
+			exceptions += buffer.getInt(exceptionTables[i]);
+		}
+		return "CompiledWordnetLexicon (" + file.getPath() + "): " + words + " index words, " + exceptions
+			+ " exceptions";
+	}
+	
+	/*
+	 * Compares byte arrays as unsigned bytes, which is the order the reader expects
+	 */
+	private static class ByteKey implements Comparable<ByteKey> {
+		
+		private byte[]	bytes;
+		
+		private ByteKey(String key)
+		{
+			bytes = toBytes(key);
+		}
+		
+		@Override
+		public int compareTo(ByteKey o)
+		{
+			int common = Math.min(bytes.length, o.bytes.length);
+			for (int i = 0 ; i < common ; i++) {
+				int cmp = (bytes[i] & 0xff) - (o.bytes[i] & 0xff);
+				if (cmp != 0)
+					return cmp;
+			}
+			return bytes.length - o.bytes.length;
+		}
+	}
+	
+	/**
+	 * Exports all index words and morphological exceptions of the given JWNL dictionary to a
+	 * compiled lexicon file
+	 * 
+	 * @throws JWNLException
+	 *             if the dictionary cannot be read
+	 * @throws IOException
+	 *             if the lexicon file cannot be written
+	 */
+	@SuppressWarnings("unchecked")
+	public static void compile(Dictionary wordnet, File file) throws JWNLException, IOException
+	{
+		// Read all index words and exceptions, sorted by key
+		ArrayList<TreeMap<ByteKey, Long>> words = new ArrayList<TreeMap<ByteKey, Long>>();
+		ArrayList<TreeMap<ByteKey, List<String>>> exceptions = new ArrayList<TreeMap<ByteKey, List<String>>>();
+		for (POS pos : POS_ARRAY) {
+			TreeMap<ByteKey, Long> pos_words = new TreeMap<ByteKey, Long>();
+			Iterator word_iter = wordnet.getIndexWordIterator(pos);
+			while ( word_iter.hasNext() ) {
+				IndexWord indexword = (IndexWord)word_iter.next();
+				pos_words.put(new ByteKey(prepareQueryString(indexword.getLemma())), indexword.getSense(1)
+					.getOffset());
+			}
+			words.add(pos_words);
+			
+			TreeMap<ByteKey, List<String>> pos_exceptions = new TreeMap<ByteKey, List<String>>();
+			Iterator exc_iter = wordnet.getExceptionIterator(pos);
+			while ( exc_iter.hasNext() ) {
+				Exc exc = (Exc)exc_iter.next();
+				pos_exceptions.put(new ByteKey(prepareQueryString(exc.getLemma())), exc.getExceptions());
+			}
+			exceptions.add(pos_exceptions);
+		}
+		
+		// Calculate the position of each table in the file
+		int[] word_tables = new int[POS_ARRAY.length];
+		int[] exception_tables = new int[POS_ARRAY.length];
+		int position = 8 + 8 * POS_ARRAY.length;
+		for (int i = 0 ; i < POS_ARRAY.length ; i++) {
+			word_tables[i] = position;
+			position += 4 + 4 * words.get(i).size();
+			for (ByteKey key : words.get(i).keySet()) {
+				position += 2 + key.bytes.length + 8;
+			}
+			exception_tables[i] = position;
+			position += 4 + 4 * exceptions.get(i).size();
+			for (Map.Entry<ByteKey, List<String>> exception : exceptions.get(i).entrySet()) {
+				position += 2 + exception.getKey().bytes.length + 1;
+				for (String base_form : exception.getValue()) {
+					position += 2 + toBytes(prepareQueryString(base_form)).length;
+				}
+			}
+		}
+		
+		// Write the lexicon file
+		File tmp_file = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp_file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for (int i = 0 ; i < POS_ARRAY.length ; i++) {
+				out.writeInt(word_tables[i]);
+				out.writeInt(exception_tables[i]);
+			}
+			
+			for (int i = 0 ; i < POS_ARRAY.length ; i++) {
+				// Index words of this POS
+				TreeMap<ByteKey, Long> pos_words = words.get(i);
+				out.writeInt(pos_words.size());
+				int record = word_tables[i] + 4 + 4 * pos_words.size();
+				for (ByteKey key : pos_words.keySet()) {
+					out.writeInt(record);
+					record += 2 + key.bytes.length + 8;
+				}
+				for (Map.Entry<ByteKey, Long> word : pos_words.entrySet()) {
+					out.writeShort(word.getKey().bytes.length);
+					out.write(word.getKey().bytes);
+					out.writeLong(word.getValue());
+				}
+				
+				// Exceptions of this POS
+				TreeMap<ByteKey, List<String>> pos_exceptions = exceptions.get(i);
+				out.writeInt(pos_exceptions.size());
+				record = exception_tables[i] + 4 + 4 * pos_exceptions.size();
+				for (Map.Entry<ByteKey, List<String>> exception : pos_exceptions.entrySet()) {
+					out.writeInt(record);
+					record += 2 + exception.getKey().bytes.length + 1;
+					for (String base_form : exception.getValue()) {
+						record += 2 + toBytes(prepareQueryString(base_form)).length;
+					}
+				}
+				for (Map.Entry<ByteKey, List<String>> exception : pos_exceptions.entrySet()) {
+					out.writeShort(exception.getKey().bytes.length);
+					out.write(exception.getKey().bytes);
+					out.writeByte(exception.getValue().size());
+					for (String base_form : exception.getValue()) {
+						byte[] base_form_bytes = toBytes(prepareQueryString(base_form));
+						out.writeShort(base_form_bytes.length);
+						out.write(base_form_bytes);
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+		
+		if (file.exists() && !file.delete() || !tmp_file.renameTo(file))
+			throw new IOException("Cannot move compiled lexicon to " + file.getPath());
+	}
+	
+	/**
+	 * Compiles the wordnet dictionary configured in {@link Paths#jwnlConfigFile} to
+	 * {@link Paths#compiledWordnetFile}
+	 */
+	public static void main(String[] args)
+	{
+		File file = new File(Paths.compiledWordnetFile);
+		try {
+			System.out.print("Compiling wordnet lexicon... ");
+			compile(DictionaryFactory.getWordnetInstance(), file);
+			System.out.println("DONE");
+			System.out.println(new CompiledWordnetLexicon(file));
+		} catch ( JWNLException e ) {
+			AppLogger.error.log(Level.SEVERE, "Cannot read data from the wordnet dictionary");
+			throw new RuntimeException("Exiting application", e);
+		} catch ( IOException e ) {
+			AppLogger.error.log(Level.SEVERE, "Cannot write compiled wordnet lexicon to " + file.getPath());
+			throw new RuntimeException("Exiting application", e);
+		}
+	}
+}
@@ -0,0 +1,304 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package wordnet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * A compact, read-only trie of the compound terms found in wordnet, used for looking up multi-word
+ * lemmas token by token. It is functionally equivalent to an {@link IndexMap} tree, but it is
+ * stored in a handful of primitive arrays instead of a tree of hash maps:
+ * <ul>
+ * <li>Every distinct token is interned to an integer term id</li>
+ * <li>Nodes are numbered in breadth-first order. The outgoing edges of node {@code n} are stored in
+ * positions {@code firstEdge[n]} to {@code firstEdge[n+1]-1} of the {@code edgeTerms} and
+ * {@code edgeTargets} arrays, sorted by term id, so that a child is found with a binary search</li>
+ * <li>End-of-phrase nodes are marked in a bitset</li>
+ * </ul>
+ * Nodes are referred to by their integer id. {@link #ROOT} is the root of the trie, and
+ * {@link #NO_NODE} is returned when a path does not exist. The trie is saved to and loaded from a
+ * simple binary file, which is much faster to read than a serialized {@link IndexMap}.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class CompoundTermTrie {
+	
+	public static final int				ROOT		= 0;
+	public static final int				NO_NODE		= -1;
+	
+	private static final int			MAGIC		= 0x574e5452;	// "WNTR"
+	private static final int			VERSION		= 1;
+	
+	private HashMap<String, Integer>	termIds;
+	private String[]					terms;
+	private int[]						firstEdge;
+	private int[]						edgeTerms;
+	private int[]						edgeTargets;
+	private long[]						endNodes;
+	
+	private CompoundTermTrie()
+	{
+	}
+	
+	/**
+	 * Constructor for class CompoundTermTrie. Compiles the given index tree into a trie.
+	 */
+	public CompoundTermTrie(IndexMap index)
+	{
+		// Intern all terms of the index tree and count its nodes and edges
+		ArrayList<IndexMap> nodes = new ArrayList<IndexMap>();
+		HashMap<String, Integer> term_ids = new HashMap<String, Integer>();
+		ArrayList<String> term_list = new ArrayList<String>();
+		nodes.add(index);
+		int edges = 0;
+		for (int n = 0 ; n < nodes.size() ; n++) {
+			for (Map.Entry<String, IndexMap> child : nodes.get(n).children().entrySet()) {
+				if (!child.getKey().equals(IndexMap.END_KEY)) {
+					if (!term_ids.containsKey(child.getKey())) {
+						term_ids.put(child.getKey(), term_list.size());
+						term_list.add(child.getKey());
+					}
+					nodes.add(child.getValue());
+					edges++;
+				}
+			}
+		}
+		
+		termIds = term_ids;
+		terms = term_list.toArray(new String[term_list.size()]);
+		firstEdge = new int[nodes.size() + 1];
+		edgeTerms = new int[edges];
+		edgeTargets = new int[edges];
+		endNodes = new long[(nodes.size() + 63) / 64];
+		
+		// Lay out the edges of each node, in the same breadth-first order as above
+		int next_node = 1;
+		int edge = 0;
+		for (int n = 0 ; n < nodes.size() ; n++) {
+			IndexMap node = nodes.get(n);
+			firstEdge[n] = edge;
+			if (node.isEndNode()) {
+				endNodes[n >>> 6] |= 1L << (n & 63);
+			}
+			
+			long[] node_edges = new long[node.children().size()];
+			int node_edge_count = 0;
+			for (String key : node.children().keySet()) {
+				if (!key.equals(IndexMap.END_KEY)) {
+					// Pack the term id with the id of the target node, so that they are sorted together
+					node_edges[node_edge_count] = ((long)term_ids.get(key) << 32) | next_node++;
+					node_edge_count++;
+				}
+			}
+			Arrays.sort(node_edges, 0, node_edge_count);
+			for (int i = 0 ; i < node_edge_count ; i++) {
+				edgeTerms[edge] = (int)(node_edges[i] >>> 32);
+				edgeTargets[edge] = (int)node_edges[i];
+				edge++;
+			}
+		}
+		firstEdge[nodes.size()] = edge;
+	}
+	
+	/**
+	 * @return the child of the given node that is reached with the given term, or {@link #NO_NODE}
+	 *         if no such child exists
+	 */
+	public int get(int node, String term)
+	{
+		if (node == NO_NODE)
+			return NO_NODE;
+		Integer term_id = termIds.get(term);
+		if (term_id == null)
+			return NO_NODE;
+		
+		int low = firstEdge[node];
+		int high = firstEdge[node + 1] - 1;
+		while ( low <= high ) {
+			int mid = (low + high) >>> 1;
+			int cmp = edgeTerms[mid] - term_id;
+			if (cmp < 0) {
+				low = mid + 1;
+			}
+			else if (cmp > 0) {
+				high = mid - 1;
+			}
+			else
+				return edgeTargets[mid];
+		}
+		return NO_NODE;
+	}
+	
+	/**
+	 * @return the child of the root node that is reached with the given term, or {@link #NO_NODE}
+	 *         if no compound term starts with that term
+	 */
+	public int get(String term)
+	{
+		return get(ROOT, term);
+	}
+	
+	/**
+	 * @return the node reached from the root by following the given sequence of terms, or
+	 *         {@link #NO_NODE}
+	 */
+	public int get(String[] terms)
+	{
+		int node = ROOT;
+		for (String term : terms) {
+			node = get(node, term);
+			if (node == NO_NODE) {
+				break;
+			}
+		}
+		return node;
+	}
+	
+	public boolean has(int node, String term)
+	{
+		return get(node, term) != NO_NODE;
+	}
+	
+	/**
+	 * @return true if the path from the root to the given node forms a compound term
+	 */
+	public boolean isEndNode(int node)
+	{
+		return node != NO_NODE && (endNodes[node >>> 6] & 1L << (node & 63)) != 0;
+	}
+	
+	public boolean isIntermediateNode(int node)
+	{
+		return node != NO_NODE && firstEdge[node + 1] > firstEdge[node];
+	}
+	
+	public int getNodeCount()
+	{
+		return firstEdge.length - 1;
+	}
+	
+	public int getTermCount()
+	{
+		return terms.length;
+	}
+	
+	/**
+	 * Saves the trie to a binary file
+	 * 
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(terms.length);
+			for (String term : terms) {
+				out.writeUTF(term);
+			}
+			writeArray(out, firstEdge);
+			writeArray(out, edgeTerms);
+			writeArray(out, edgeTargets);
+			out.writeInt(endNodes.length);
+			for (long bits : endNodes) {
+				out.writeLong(bits);
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Loads a trie from a binary file previously written with {@link #save(File)}
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid trie file
+	 */
+	public static CompoundTermTrie load(File file) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("File " + file.getPath() + " is not a compound term trie of version " + VERSION);
+			
+			CompoundTermTrie trie = new CompoundTermTrie();
+			trie.terms = new String[in.readInt()];
+			trie.termIds = new HashMap<String, Integer>(trie.terms.length * 4 / 3 + 1);
+			for (int i = 0 ; i < trie.terms.length ; i++) {
+				trie.terms[i] = in.readUTF().intern();
+				trie.termIds.put(trie.terms[i], i);
+			}
+			trie.firstEdge = readArray(in);
+			trie.edgeTerms = readArray(in);
+			trie.edgeTargets = readArray(in);
+			trie.endNodes = new long[in.readInt()];
+			for (int i = 0 ; i < trie.endNodes.length ; i++) {
+				trie.endNodes[i] = in.readLong();
+			}
+			
+			return trie;
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static void writeArray(DataOutputStream out, int[] array) throws IOException
+	{
+		out.writeInt(array.length);
+		for (int value : array) {
+			out.writeInt(value);
+		}
+	}
+	
+	private static int[] readArray(DataInputStream in) throws IOException
+	{
+		int[] array = new int[in.readInt()];
+		for (int i = 0 ; i < array.length ; i++) {
+			array[i] = in.readInt();
+		}
+		return array;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "CompoundTermTrie: " + getTermCount() + " terms, " + getNodeCount() + " nodes";
+	}
+}
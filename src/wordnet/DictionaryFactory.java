@@ -22,10 +22,12 @@
 //
 package wordnet;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.logging.Level;
 import net.didion.jwnl.JWNL;
@@ -44,6 +46,13 @@ import config.Paths;
  * @author Stelios Karabasakis
  */
 public class DictionaryFactory {
+	
+	private static HashMap<Dictionary, WordnetCache>	wordnetCaches		= new HashMap<Dictionary, WordnetCache>();
+	private static boolean								useCompiledLexicon	= false;
+	private static CompiledWordnetLexicon				wordnetLexicon		= null;
+	private static boolean								lexiconOpened		= false;
+	private static boolean								backendLogged		= false;
+	private static CompoundTermTrie						compoundTermsTrie	= null;
 
 	public static Dictionary getWordnetInstance()
 	{
@@ -60,29 +69,129 @@ public class DictionaryFactory {
 		}
 		return Dictionary.getInstance();
 	}
+	
+	/**
+	 * @return the shared lookup cache for the given wordnet dictionary. All lemmatizers in the JVM
+	 *         that use the same dictionary share the same cache, so that each distinct word is only
+	 *         looked up once.
+	 */
+	public static synchronized WordnetCache getWordnetCache(Dictionary wordnet)
+	{
+		WordnetCache wordnetCache = wordnetCaches.get(wordnet);
+		if (wordnetCache == null) {
+			wordnetCache = new WordnetCache(wordnet, WordnetCache.DEFAULT_CAPACITY);
+			wordnetCaches.put(wordnet, wordnetCache);
+		}
+		return wordnetCache;
+	}
+	
+	/**
+	 * Selects the compiled wordnet lexicon (see {@link CompiledWordnetLexicon}) as the backend of
+	 * the wordnet lookups needed for lemmatization. The compiled lexicon is opt-in, because it does
+	 * not reproduce all of the morphological processing of JWNL, and so it may produce different
+	 * lemmas for some words. Must be called before any lemmatizer is created.
+	 */
+	public static synchronized void setUseCompiledLexicon(boolean use_compiled_lexicon)
+	{
+		useCompiledLexicon = use_compiled_lexicon;
+	}
+	
+	/**
+	 * @return true if the compiled wordnet lexicon has been selected and could be opened, in which
+	 *         case lemmatization does not need the JWNL dictionary at all
+	 */
+	public static synchronized boolean isCompiledLexiconActive()
+	{
+		if (useCompiledLexicon && !lexiconOpened) {
+			wordnetLexicon = CompiledWordnetLexicon.open();
+			lexiconOpened = true;
+		}
+		return wordnetLexicon != null;
+	}
+	
+	/**
+	 * @return the wordnet dictionary needed for lemmatization, or null if lemmatization is backed by
+	 *         the compiled wordnet lexicon, so that JWNL does not have to be initialized
+	 */
+	public static Dictionary getLemmatizationWordnet()
+	{
+		return isCompiledLexiconActive() ? null : getWordnetInstance();
+	}
+	
+	/**
+	 * @return the implementation of the wordnet lookups needed for lemmatization: the compiled
+	 *         lexicon file, if it has been selected with {@link #setUseCompiledLexicon(boolean)}, or
+	 *         else the shared lookup cache in front of the given wordnet dictionary. If the given
+	 *         dictionary is null, the default JWNL dictionary is used.
+	 */
+	public static synchronized WordnetLookup getWordnetLookup(Dictionary wordnet)
+	{
+		WordnetLookup lookup;
+		if (isCompiledLexiconActive()) {
+			lookup = wordnetLexicon;
+		}
+		else {
+			lookup = getWordnetCache(wordnet != null ? wordnet : getWordnetInstance());
+		}
+		
+		if (!backendLogged) {
+			AppLogger.error.log(Level.INFO, "Wordnet lookups for lemmatization are served by "
+				+ (lookup == wordnetLexicon ? "the compiled lexicon at " + Paths.compiledWordnetFile : "JWNL"));
+			backendLogged = true;
+		}
+		return lookup;
+	}
 
-	public static IndexMap setupCompoundTermsIndex(Dictionary wordnet)
+	/**
+	 * @return the trie of all compound terms that are lemmatized in wordnet. The trie is loaded from
+	 *         its binary file in the state directory, or compiled from the wordnet dictionary (or
+	 *         from a previously serialized {@link IndexMap}) and saved, if the file does not exist.
+	 *         The wordnet dictionary is only needed in the latter case; if it is null, the default
+	 *         JWNL dictionary is initialized on demand.
+	 */
+	public static synchronized CompoundTermTrie setupCompoundTermsIndex(Dictionary wordnet)
 	{
-		IndexMap compoundTermsIndex = null;
-		State<IndexMap> compound_index_state = new State<IndexMap>("compoundTermsIndex", compoundTermsIndex);
+		if (compoundTermsTrie != null)
+			return compoundTermsTrie;
+		
+		File trie_file = new File(Paths.stateFiles + "/compoundTermsIndex.trie");
 		try {
-			compoundTermsIndex = compound_index_state.restoreState();
+			compoundTermsTrie = CompoundTermTrie.load(trie_file);
 		} catch ( IOException e ) {
-			// Generating an index of compound terms that are lemmatized in Wordnet
-			compoundTermsIndex = new IndexMap();
-
-			ArrayList<String[]> compoundTermsList = new ArrayList<String[]>();
-			POS[] pos_array = new POS[]{ POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB };
-			for (POS pos : pos_array) {
-				compoundTermsList.addAll(getCompoundTermsList(wordnet, pos));
+			IndexMap compoundTermsIndex = null;
+			State<IndexMap> compound_index_state = new State<IndexMap>("compoundTermsIndex", compoundTermsIndex);
+			try {
+				if (compound_index_state.exists()) {
+					compoundTermsIndex = compound_index_state.restoreState();
+				}
+			} catch ( IOException e1 ) {
+				compoundTermsIndex = null;
+			}
+			
+			if (compoundTermsIndex == null) {
+				// Generating an index of compound terms that are lemmatized in Wordnet
+				compoundTermsIndex = new IndexMap();
+				
+				if (wordnet == null) {
+					wordnet = getWordnetInstance();
+				}
+				ArrayList<String[]> compoundTermsList = new ArrayList<String[]>();
+				POS[] pos_array = new POS[]{ POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB };
+				for (POS pos : pos_array) {
+					compoundTermsList.addAll(getCompoundTermsList(wordnet, pos));
+				}
+				compoundTermsIndex.index(compoundTermsList);
 			}
-			compoundTermsIndex.index(compoundTermsList);
 			
-			compound_index_state.setObj(compoundTermsIndex);
-			compound_index_state.saveState();
+			compoundTermsTrie = new CompoundTermTrie(compoundTermsIndex);
+			try {
+				compoundTermsTrie.save(trie_file);
+			} catch ( IOException e1 ) {
+				AppLogger.error.log(Level.WARNING, "Cannot save compound terms index to " + trie_file.getPath());
+			}
 		}
 		
-		return compoundTermsIndex;
+		return compoundTermsTrie;
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -34,8 +34,10 @@ import java.util.HashMap;
 public class IndexMap implements Serializable {
 	
 	private static final long			serialVersionUID	= 4491762253642324190L;
+	
+	static final String					END_KEY				= ".";
 
-	private HashMap<String, IndexMap>	map	= null;
+	private HashMap<String, IndexMap>	map					= null;
 	
 	public boolean has(String key)
 	{
@@ -71,7 +73,7 @@ public class IndexMap implements Serializable {
 			int current_level = 0;
 			IndexMap current_map = this;
 			while ( current_level <= keyphrase.length ) {
-				String key = current_level == keyphrase.length ? "." : keyphrase[current_level];
+				String key = current_level == keyphrase.length ? END_KEY : keyphrase[current_level];
 				if (!current_map.has(key)) {
 					current_map.put(key);
 				}
@@ -83,12 +85,17 @@ public class IndexMap implements Serializable {
 	
 	public boolean isEndNode()
 	{
-		return map.containsKey(".");
+		return map.containsKey(END_KEY);
 	}
 	
 	public boolean isIntermediateNode()
 	{
-		return map.containsKey(".") ? map.size() > 1 : map.size() >= 1;
+		return map.containsKey(END_KEY) ? map.size() > 1 : map.size() >= 1;
+	}
+	
+	HashMap<String, IndexMap> children()
+	{
+		return map;
 	}
 
 
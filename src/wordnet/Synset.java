@@ -59,6 +59,15 @@ public class Synset implements Serializable, Comparable<Synset> {
 		this.offset = offset;
 	}
 	
+	/**
+	 * Constructor for class Synset
+	 */
+	public Synset(SynsetCategory synsetcat, long offset)
+	{
+		pos = synsetcat;
+		this.offset = offset;
+	}
+	
 	public Synset(String synsetStr) throws IllegalArgumentException
 	{
 		synsetStr = synsetStr.toLowerCase().trim().replaceAll(" ", "");
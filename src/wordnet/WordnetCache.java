@@ -0,0 +1,289 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package wordnet;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import net.didion.jwnl.JWNLException;
+import net.didion.jwnl.data.IndexWord;
+import net.didion.jwnl.data.POS;
+import net.didion.jwnl.dictionary.Dictionary;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+
+/**
+ * A bounded, thread-safe memoization layer in front of a wordnet {@link Dictionary}. It caches the
+ * outcome of the two kinds of lookups performed during lemmatization, i.e. single (word, POS)
+ * lookups and all-POS lookups, so that each distinct word only needs to be read from the dictionary
+ * files and morphologically processed once. Words that are not found in wordnet are cached as well.
+ * <p>
+ * The cache is split into a number of independently locked segments, each holding its entries in
+ * least-recently-used order. When a segment is full, its least recently used entry is evicted.
+ * 
+ * @author Stelios Karabasakis
+ */
+public class WordnetCache implements WordnetLookup {
+	
+	private static final Entry[]	NOT_FOUND			= new Entry[0];
+	private static final String		ALL_POS_KEY			= "*";
+	public static final int			DEFAULT_CAPACITY	= 200000;
+	private static final int		SEGMENTS			= 16;
+	
+	private Dictionary				wordnet;
+	private Segment[]				segments;
+	
+	private final AtomicLong		hits				= new AtomicLong();
+	private final AtomicLong		misses				= new AtomicLong();
+	private final AtomicLong		evictions			= new AtomicLong();
+	
+	/*
+	 * One segment of the cache: a size-bounded LinkedHashMap in access order
+	 */
+	@SuppressWarnings("serial")
+	private class Segment extends LinkedHashMap<String, WordnetLookup.Entry[]> {
+		
+		private final int	capacity;
+		
+		private Segment(int capacity)
+		{
+			super(16, 0.75F, true);
+			this.capacity = capacity;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, WordnetLookup.Entry[]> eldest)
+		{
+			if (size() > capacity) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			else
+				return false;
+		}
+	}
+	
+	/**
+	 * Constructor for class WordnetCache
+	 * 
+	 * @param wordnet
+	 *            The dictionary to cache lookups for
+	 * @param capacity
+	 *            The maximum number of lookups to keep in the cache
+	 */
+	public WordnetCache(Dictionary wordnet, int capacity)
+	{
+		this.wordnet = wordnet;
+		segments = new Segment[SEGMENTS];
+		for (int i = 0 ; i < SEGMENTS ; i++) {
+			segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see wordnet.WordnetLookup#lookupIndexWord(net.didion.jwnl.data.POS, java.lang.String)
+	 */
+	@Override
+	public Entry lookupIndexWord(POS pos, String word) throws JWNLException
+	{
+		String key = pos.getKey() + word;
+		Entry[] cached = get(key);
+		if (cached == null) {
+			// Entries are built while holding the lock, since reading the first sense of an index
+			// word is itself a (lazy) dictionary lookup
+			synchronized (wordnet) {
+				IndexWord indexword = wordnet.lookupIndexWord(pos, word);
+				cached = indexword == null ? NOT_FOUND : new Entry[]{ new Entry(indexword) };
+			}
+			put(key, cached);
+		}
+		
+		return cached.length == 0 ? null : cached[0];
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see wordnet.WordnetLookup#lookupAllIndexWords(java.lang.String)
+	 */
+	@Override
+	public Entry[] lookupAllIndexWords(String word) throws JWNLException
+	{
+		String key = ALL_POS_KEY + word;
+		Entry[] cached = get(key);
+		if (cached == null) {
+			synchronized (wordnet) {
+				IndexWord[] indexwords = wordnet.lookupAllIndexWords(word).getIndexWordArray();
+				cached = indexwords.length == 0 ? NOT_FOUND : new Entry[indexwords.length];
+				for (int i = 0 ; i < indexwords.length ; i++) {
+					cached[i] = new Entry(indexwords[i]);
+				}
+			}
+			put(key, cached);
+		}
+		
+		return cached;
+	}
+	
+	private Segment segmentFor(String key)
+	{
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return segments[(h & 0x7fffffff) % SEGMENTS];
+	}
+	
+	private Entry[] get(String key)
+	{
+		Segment segment = segmentFor(key);
+		Entry[] cached;
+		synchronized (segment) {
+			cached = segment.get(key);
+		}
+		
+		if (cached != null) {
+			hits.incrementAndGet();
+		}
+		else {
+			misses.incrementAndGet();
+		}
+		return cached;
+	}
+	
+	private void put(String key, Entry[] value)
+	{
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, value);
+		}
+	}
+	
+	/**
+	 * Prewarms the cache with the {@code topN} most frequent terms of a field in a Lucene index, by
+	 * looking each of them up in every open class POS category, as well as in all categories at
+	 * once. Synset terms (e.g. "n01234567") are skipped.
+	 * 
+	 * @return the number of terms that were looked up
+	 * @throws IOException
+	 *             if the index cannot be read
+	 */
+	public int prewarm(IndexReader reader, String field, int topN) throws IOException
+	{
+		// Collect the topN terms with the highest document frequency
+		PriorityQueue<TermFrequency> top_terms = new PriorityQueue<TermFrequency>(topN + 1);
+		String interned_field = field.intern();
+		TermEnum te = reader.terms(new Term(interned_field, ""));
+		try {
+			do {
+				Term term = te.term();
+				if (term == null || term.field() != interned_field) {
+					break;
+				}
+				if (!Synset.matchesPattern(term.text())) {
+					top_terms.add(new TermFrequency(term.text(), te.docFreq()));
+					if (top_terms.size() > topN) {
+						top_terms.poll();
+					}
+				}
+			} while ( te.next() );
+		} finally {
+			te.close();
+		}
+		
+		// Look up the collected terms
+		POS[] pos_array = new POS[]{ POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB };
+		int prewarmed = 0;
+		for (TermFrequency top_term : top_terms) {
+			try {
+				for (POS pos : pos_array) {
+					lookupIndexWord(pos, top_term.term);
+				}
+				lookupAllIndexWords(top_term.term);
+				prewarmed++;
+			} catch ( JWNLException e ) {
+				continue;
+			}
+		}
+		
+		return prewarmed;
+	}
+	
+	private static class TermFrequency implements Comparable<TermFrequency> {
+		
+		private String	term;
+		private int		freq;
+		
+		private TermFrequency(String term, int freq)
+		{
+			this.term = term;
+			this.freq = freq;
+		}
+		
+		@Override
+		public int compareTo(TermFrequency o)
+		{
+			return freq < o.freq ? -1 : freq == o.freq ? 0 : 1;
+		}
+	}
+	
+	public int size()
+	{
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+	
+	public long getMisses()
+	{
+		return misses.get();
+	}
+	
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		long lookups = getHits() + getMisses();
+		return "WordnetCache: " + size() + " entries, " + getHits() + " hits, " + getMisses() + " misses ("
+			+ (lookups == 0 ? 0 : getHits() * 100 / lookups) + "% hit rate), " + getEvictions() + " evictions";
+	}
+}
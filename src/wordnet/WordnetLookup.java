@@ -0,0 +1,99 @@
+// The MIT License
+//
+// Copyright (c) 2010 Stelios Karabasakis
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+package wordnet;
+
+import net.didion.jwnl.JWNLException;
+import net.didion.jwnl.data.IndexWord;
+import net.didion.jwnl.data.POS;
+
+
+/**
+ * The subset of wordnet dictionary lookups that is needed for lemmatization. Implementations must
+ * be safe to use from multiple threads.
+ * 
+ * @author Stelios Karabasakis
+ */
+public interface WordnetLookup {
+	
+	/**
+	 * The part of a wordnet {@link IndexWord} that is needed for lemmatization: its lemma, its POS
+	 * and the offset of its first sense.
+	 */
+	public static final class Entry {
+		
+		private final String	lemma;
+		private final POS		pos;
+		private final long		offset;
+		
+		/**
+		 * Constructor for class WordnetLookup.Entry
+		 */
+		public Entry(String lemma, POS pos, long offset)
+		{
+			this.lemma = lemma;
+			this.pos = pos;
+			this.offset = offset;
+		}
+		
+		/**
+		 * Constructor for class WordnetLookup.Entry. Reads the first sense of the index word from
+		 * the dictionary, so callers that share the dictionary between threads must hold its lock.
+		 */
+		public Entry(IndexWord indexword) throws JWNLException
+		{
+			this(indexword.getLemma(), indexword.getPOS(), indexword.getSense(1).getOffset());
+		}
+		
+		public String getLemma()
+		{
+			return lemma;
+		}
+		
+		public POS getPos()
+		{
+			return pos;
+		}
+		
+		public long getOffset()
+		{
+			return offset;
+		}
+	}
+	
+	/**
+	 * Equivalent of {@link net.didion.jwnl.dictionary.Dictionary#lookupIndexWord(POS, String)}
+	 * 
+	 * @return the index word for the base form of the given word and POS, or null if none exists
+	 * @throws JWNLException
+	 */
+	public Entry lookupIndexWord(POS pos, String word) throws JWNLException;
+	
+	/**
+	 * Equivalent of {@link net.didion.jwnl.dictionary.Dictionary#lookupAllIndexWords(String)}
+	 * 
+	 * @return the index words for the base forms of the given word in all POS categories. The
+	 *         returned array must not be modified.
+	 * @throws JWNLException
+	 */
+	public Entry[] lookupAllIndexWords(String word) throws JWNLException;
+}